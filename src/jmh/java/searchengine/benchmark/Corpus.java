@@ -0,0 +1,32 @@
+package searchengine.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Корпус html-страниц для бенчмарков (src/jmh/resources/corpus): новости и карточка товара на русском,
+ * статья и документация на английском.
+ */
+public final class Corpus {
+
+    public static final String BASE_URI = "https://example.ru/";
+
+    private Corpus() {
+    }
+
+    /**
+     * Метод, загружающий страницу корпуса.
+     * @param name - имя файла страницы.
+     * @return - html-код страницы.
+     * @throws IOException - если страницы нет в корпусе.
+     */
+    public static String load(String name) throws IOException {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (in == null) {
+                throw new IOException("Страница не найдена в корпусе: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.benchmark;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.util.HtmlParser;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки разбора страницы при обходе: построение документа Jsoup и извлечение канонических ссылок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlParserBenchmark {
+
+    @Param({"ru-news.html", "ru-shop.html", "en-article.html", "en-docs.html"})
+    public String page;
+
+    private String html;
+    private Document document;
+
+    @Setup
+    public void setUp() throws IOException {
+        html = Corpus.load(page);
+        document = Jsoup.parse(html, Corpus.BASE_URI);
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html, Corpus.BASE_URI);
+    }
+
+    @Benchmark
+    public Set<String> getLinks() {
+        return HtmlParser.getLinks(document);
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.util.Lemmatisator;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки лемматизации страницы: очистка html от тегов и подсчет лемм.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmatisatorBenchmark {
+
+    @Param({"ru-news.html", "ru-shop.html", "en-article.html", "en-docs.html"})
+    public String page;
+
+    private Lemmatisator lemmatisator;
+    private String html;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmatisator = new Lemmatisator();
+        html = Corpus.load(page);
+        text = lemmatisator.clearFromTags(html);
+    }
+
+    @Benchmark
+    public HashMap<String, Integer> getLemmasList() {
+        return lemmatisator.getLemmasList(text);
+    }
+
+    @Benchmark
+    public String clearFromTags() {
+        return lemmatisator.clearFromTags(html);
+    }
+}
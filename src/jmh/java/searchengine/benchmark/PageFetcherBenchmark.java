@@ -0,0 +1,99 @@
+package searchengine.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.config.FetcherSettings;
+import searchengine.config.SitesList;
+import searchengine.util.FetchedPage;
+import searchengine.util.PageFetcher;
+import searchengine.util.SiteRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк загрузки страниц: число загрузок в секунду через PageFetcher с локального http-сервера.
+ * С keepAlive = true соединение переиспользуется, с keepAlive = false сервер закрывает его после каждого ответа
+ * (Connection: close), и каждая загрузка открывает новое соединение. Сервер поддерживает только HTTP/1.1.
+ * Сервер отправляет ответы без задержки Nagle: иначе на переиспользуемом соединении каждый ответ ждет
+ * отложенного подтверждения клиента (около 40 мс), и измеряется задержка TCP, а не загрузка.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageFetcherBenchmark {
+
+    @Param({"true", "false"})
+    public boolean keepAlive;
+
+    private byte[] page;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private PageFetcher pageFetcher;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        page = Corpus.load("ru-news.html").getBytes(StandardCharsets.UTF_8);
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "benchmark-site");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(serverExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/news";
+
+        FetcherSettings settings = new FetcherSettings();
+        settings.setHttp2(false);
+        SitesList sitesList = new SitesList();
+        pageFetcher = new PageFetcher(settings, sitesList, new SiteRegistry(sitesList, null), new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public FetchedPage fetch() throws IOException {
+        return pageFetcher.fetch(url);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        if (!keepAlive) {
+            exchange.getResponseHeaders().set("Connection", "close");
+        }
+        exchange.sendResponseHeaders(200, page.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(page);
+        }
+    }
+}
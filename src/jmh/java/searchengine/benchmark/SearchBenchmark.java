@@ -0,0 +1,127 @@
+package searchengine.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SearchSettings;
+import searchengine.config.ShardSettings;
+import searchengine.dto.result.RelevancePage;
+import searchengine.model.entity.Page;
+import searchengine.model.entity.SearchingIndex;
+import searchengine.model.entity.Site;
+import searchengine.services.SearchServiceImpl;
+import searchengine.util.Lemmatisator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки этапов поиска, не требующих БД и сети: подбор однокоренных слов запроса в тексте страницы,
+ * построение сниппета по документу, подсчет релевантности и сортировка результатов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final Map<String, String> QUERIES = Map.of(
+            "ru-news.html", "линии метро",
+            "ru-shop.html", "медицинский костюм",
+            "en-article.html", "ranking pages",
+            "en-docs.html", "crawl delay");
+
+    /**
+     * Число найденных страниц, для которых считается релевантность и выполняется сортировка.
+     */
+    private static final int RESULTS = 1000;
+
+    /**
+     * Число лемм запроса на одной найденной странице.
+     */
+    private static final int INDEXES_PER_PAGE = 3;
+
+    @Param({"ru-news.html", "ru-shop.html", "en-article.html", "en-docs.html"})
+    public String page;
+
+    private SearchServiceImpl searchService;
+    private String html;
+    private String query;
+    private String newQuery;
+    private Document document;
+    private List<Page> pages;
+    private List<List<SearchingIndex>> indexes;
+
+    @Setup
+    public void setUp() throws IOException {
+        Lemmatisator lemmatisator = new Lemmatisator();
+        searchService = new SearchServiceImpl(lemmatisator, null, null, null, null, null, null, null,
+                new SimpleMeterRegistry(), new SearchSettings(), new ShardSettings(), new ObjectMapper(),
+                new TransactionTemplate());
+        html = Corpus.load(page);
+        query = QUERIES.get(page);
+        newQuery = searchService.getNewQuery(html, query).toLowerCase();
+        document = Jsoup.parse(html, Corpus.BASE_URI);
+
+        Site site = new Site();
+        site.setId(1);
+        Random random = new Random(42);
+        pages = new ArrayList<>(RESULTS);
+        indexes = new ArrayList<>(RESULTS);
+        for (int i = 0; i < RESULTS; i++) {
+            Page result = new Page();
+            result.setId(i);
+            result.setSite(site);
+            result.setPath("/page/" + i);
+            pages.add(result);
+            List<SearchingIndex> pageIndexes = new ArrayList<>(INDEXES_PER_PAGE);
+            for (int j = 0; j < INDEXES_PER_PAGE; j++) {
+                SearchingIndex index = new SearchingIndex();
+                index.setPage(result);
+                index.setLemmasCount((float) (1 + random.nextInt(50)));
+                pageIndexes.add(index);
+            }
+            indexes.add(pageIndexes);
+        }
+    }
+
+    @Benchmark
+    public String getNewQuery() {
+        return searchService.getNewQuery(html, query);
+    }
+
+    @Benchmark
+    public String getSnippet() {
+        return searchService.getSnippet(document, newQuery);
+    }
+
+    @Benchmark
+    public List<RelevancePage> scoreAndSort() {
+        List<RelevancePage> relevancePages = new ArrayList<>(RESULTS);
+        for (int i = 0; i < RESULTS; i++) {
+            relevancePages.add(searchService.getNewRelevancePage(pages.get(i), "", "",
+                    searchService.getRelevance(indexes.get(i))));
+        }
+        searchService.sortPagesByRelevance(relevancePages);
+        return relevancePages;
+    }
+}
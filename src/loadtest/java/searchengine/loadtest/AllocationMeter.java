@@ -0,0 +1,39 @@
+package searchengine.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Счетчик памяти, выделенной потоками JVM. Суммирует выделения по всем живым потокам,
+ * поэтому выделения потоков, завершившихся между замерами, не учитываются.
+ */
+public class AllocationMeter {
+
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    public AllocationMeter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threadMXBean = bean instanceof com.sun.management.ThreadMXBean sunBean
+                && sunBean.isThreadAllocatedMemorySupported() ? sunBean : null;
+        if (threadMXBean != null) {
+            threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * Метод, возвращающий общий объем памяти, выделенной живыми потоками.
+     * @return - объем в байтах, либо -1, если JVM не поддерживает замер.
+     */
+    public long getAllocatedBytes() {
+        if (threadMXBean == null) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+}
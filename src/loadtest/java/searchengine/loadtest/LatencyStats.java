@@ -0,0 +1,43 @@
+package searchengine.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Распределение задержек запросов: перцентили считаются по отсортированному массиву всех замеров.
+ * @param count - число замеров.
+ * @param mean - среднее значение, мс.
+ * @param p50 - медиана, мс.
+ * @param p95 - 95-й перцентиль, мс.
+ * @param p99 - 99-й перцентиль, мс.
+ * @param max - максимальное значение, мс.
+ */
+public record LatencyStats(int count, double mean, double p50, double p95, double p99, double max) {
+
+    /**
+     * Метод, вычисляющий распределение по замерам.
+     * @param nanos - задержки в наносекундах.
+     * @return - распределение в миллисекундах.
+     */
+    public static LatencyStats of(long[] nanos) {
+        if (nanos.length == 0) {
+            return new LatencyStats(0, 0, 0, 0, 0, 0);
+        }
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (long value : sorted) {
+            sum += value;
+        }
+        return new LatencyStats(sorted.length, toMillis(sum / sorted.length), percentile(sorted, 0.50),
+                percentile(sorted, 0.95), percentile(sorted, 0.99), toMillis(sorted[sorted.length - 1]));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,174 @@
+package searchengine.loadtest;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+import searchengine.model.IndexingMode;
+import searchengine.model.repository.PageRepository;
+import searchengine.services.IndexingService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Сквозной нагрузочный прогон: синтетический сайт на локальном http-сервере, встроенная MariaDB,
+ * полная индексация сайта через IndexingService и параллельная нагрузка на /api/search.
+ * В отчет попадают скорость индексации (страниц в секунду), перцентили времени ответа поиска
+ * и скорость выделения памяти на каждом этапе.
+ * Запуск: mvn -Ploadtest verify [-Dloadtest.pages=5000 -Dloadtest.latency=20 ...]
+ */
+public class LoadTest {
+
+    private static final long POLL_INTERVAL = 200;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = new LoadTestSettings();
+        AllocationMeter allocationMeter = new AllocationMeter();
+
+        DBConfigurationBuilder dbConfig = DBConfigurationBuilder.newBuilder();
+        dbConfig.setPort(0);
+        DB db = DB.newEmbeddedDB(dbConfig.build());
+        db.start();
+        db.createDB("search_engine");
+        SiteSimulator simulator = new SiteSimulator(settings);
+        simulator.start();
+        ConfigurableApplicationContext context = null;
+        try {
+            context = new SpringApplicationBuilder(Application.class)
+                    .run(toArguments(getApplicationProperties(settings, simulator, db.getConfiguration().getPort()),
+                            args));
+            int serverPort = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+            IndexingService indexingService = context.getBean(IndexingService.class);
+            PageRepository pageRepository = context.getBean(PageRepository.class);
+            long allocatedBefore = allocationMeter.getAllocatedBytes();
+            long start = System.nanoTime();
+            indexingService.startIndexing(IndexingMode.FULL);
+            awaitIndexing(indexingService, settings.getIndexingTimeout() * 1000L);
+            double indexingSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            long indexingAllocated = allocationMeter.getAllocatedBytes() - allocatedBefore;
+            long pages = pageRepository.count();
+
+            SearchWorkload workload = new SearchWorkload(settings,
+                    "http://localhost:" + serverPort + "/api/search", simulator.getVocabulary());
+            allocatedBefore = allocationMeter.getAllocatedBytes();
+            SearchWorkload.Result search = workload.run();
+            long searchAllocated = allocationMeter.getAllocatedBytes() - allocatedBefore;
+            double searchSeconds = search.elapsedNanos() / 1_000_000_000.0;
+
+            Report report = new Report(settings, pages, indexingSeconds, pages / indexingSeconds,
+                    toMegabytesPerSecond(indexingAllocated, indexingSeconds), search.latency(), search.throughput(),
+                    search.errors(), toMegabytesPerSecond(searchAllocated, searchSeconds));
+            printReport(report);
+            writeReport(report, Paths.get(settings.getReport()));
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            simulator.stop();
+            db.stop();
+        }
+    }
+
+    /**
+     * Метод, формирующий настройки приложения для прогона: база данных, сайт симулятора,
+     * отключенные задержка обхода, карта сайта и контрольные точки.
+     */
+    private static Map<String, Object> getApplicationProperties(LoadTestSettings settings, SiteSimulator simulator,
+                                                                int dbPort) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", "jdbc:mysql://localhost:" + dbPort
+                + "/search_engine?useSSL=false&allowPublicKeyRetrieval=true");
+        properties.put("spring.datasource.username", "root");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("indexing-settings.sites[0].url", simulator.getUrl());
+        properties.put("indexing-settings.sites[0].name", "Синтетический сайт");
+        properties.put("indexing-settings.crawl-delay", 0);
+        properties.put("indexing-settings.sitemap-enabled", false);
+        properties.put("indexing-settings.checkpoint-interval", 0);
+        properties.put("indexing-settings.checkpoint-dir", "target/loadtest-checkpoints");
+        return properties;
+    }
+
+    /**
+     * Метод, передающий настройки прогона аргументами командной строки: свойства по умолчанию
+     * (SpringApplicationBuilder.properties) перекрываются файлом application.yaml, и приложение
+     * подключилось бы к базе из него, а не ко встроенной. Аргументы запуска с теми же именами имеют приоритет.
+     */
+    private static String[] toArguments(Map<String, Object> properties, String[] args) {
+        List<String> arguments = new ArrayList<>();
+        properties.forEach((name, value) -> {
+            if (Arrays.stream(args).noneMatch(arg -> arg.startsWith("--" + name + "="))) {
+                arguments.add("--" + name + "=" + value);
+            }
+        });
+        arguments.addAll(Arrays.asList(args));
+        return arguments.toArray(new String[0]);
+    }
+
+    private static void awaitIndexing(IndexingService indexingService, long timeout) throws Exception {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (indexingService.isIndexingStart()) {
+            if (System.currentTimeMillis() > deadline) {
+                indexingService.stopIndexing();
+                throw new TimeoutException("Индексация не завершилась за " + timeout + " мс");
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    private static double toMegabytesPerSecond(long bytes, double seconds) {
+        return bytes < 0 || seconds <= 0 ? -1 : bytes / (1024.0 * 1024.0) / seconds;
+    }
+
+    private static void printReport(Report report) {
+        LatencyStats latency = report.searchLatency();
+        System.out.printf("""
+                        Индексация: %d страниц за %.1f с (%.1f стр/с), выделение памяти %.1f МБ/с
+                        Поиск: %d запросов, %.1f запр/с, ошибок %d, выделение памяти %.1f МБ/с
+                        Время ответа, мс: mean %.1f, p50 %.1f, p95 %.1f, p99 %.1f, max %.1f
+                        """,
+                report.pages(), report.indexingSeconds(), report.pagesPerSecond(), report.indexingAllocationRate(),
+                latency.count(), report.searchThroughput(), report.searchErrors(), report.searchAllocationRate(),
+                latency.mean(), latency.p50(), latency.p95(), latency.p99(), latency.max());
+    }
+
+    private static void writeReport(Report report, Path file) throws Exception {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        System.out.println("Отчет записан в " + file.toAbsolutePath());
+    }
+
+    /**
+     * Отчет нагрузочного прогона.
+     * @param settings - параметры прогона.
+     * @param pages - число проиндексированных страниц.
+     * @param indexingSeconds - длительность индексации, с.
+     * @param pagesPerSecond - скорость индексации.
+     * @param indexingAllocationRate - скорость выделения памяти во время индексации, МБ/с.
+     * @param searchLatency - распределение времени ответа поиска.
+     * @param searchThroughput - число поисковых запросов в секунду.
+     * @param searchErrors - число поисковых запросов, завершившихся ошибкой.
+     * @param searchAllocationRate - скорость выделения памяти во время нагрузки на поиск, МБ/с.
+     */
+    public record Report(LoadTestSettings settings, long pages, double indexingSeconds, double pagesPerSecond,
+                         double indexingAllocationRate, LatencyStats searchLatency, double searchThroughput,
+                         int searchErrors, double searchAllocationRate) {
+    }
+}
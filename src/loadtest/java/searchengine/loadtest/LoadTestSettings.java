@@ -0,0 +1,71 @@
+package searchengine.loadtest;
+
+import lombok.Getter;
+
+/**
+ * Параметры нагрузочного прогона. Задаются системными свойствами с префиксом loadtest,
+ * например: -Dloadtest.pages=5000 -Dloadtest.latency=20.
+ */
+@Getter
+public class LoadTestSettings {
+    /**
+     * Число страниц синтетического сайта.
+     */
+    private final int pages = intProperty("pages", 2000);
+    /**
+     * Число ссылок на другие страницы на каждой странице.
+     */
+    private final int fanOut = intProperty("fan-out", 8);
+    /**
+     * Число слов в тексте страницы.
+     */
+    private final int pageWords = intProperty("page-words", 400);
+    /**
+     * Язык текста страниц: ru, en или mixed.
+     */
+    private final String language = stringProperty("language", "mixed");
+    /**
+     * Задержка ответа симулятора, в миллисекундах.
+     */
+    private final int latency = intProperty("latency", 0);
+    /**
+     * Доля ответов симулятора с ошибкой 500 (от 0 до 1).
+     */
+    private final double errorRate = doubleProperty("error-rate", 0.0);
+    /**
+     * Число потоков, одновременно выполняющих поисковые запросы.
+     */
+    private final int searchThreads = intProperty("search-threads", 8);
+    /**
+     * Число поисковых запросов на один поток.
+     */
+    private final int searchRequests = intProperty("search-requests", 200);
+    /**
+     * Число запросов на поток, выполняемых до начала замеров (прогрев).
+     */
+    private final int searchWarmup = intProperty("search-warmup", 20);
+    /**
+     * Максимальная длительность индексации, в секундах.
+     */
+    private final int indexingTimeout = intProperty("indexing-timeout", 1800);
+    /**
+     * Начальное значение генератора случайных чисел (одинаковое значение дает одинаковый сайт и запросы).
+     */
+    private final long seed = intProperty("seed", 42);
+    /**
+     * Файл, в который записывается отчет в формате json.
+     */
+    private final String report = stringProperty("report", "target/loadtest-report.json");
+
+    private static String stringProperty(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(stringProperty(name, String.valueOf(defaultValue)));
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        return Double.parseDouble(stringProperty(name, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,130 @@
+package searchengine.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Нагрузка на /api/search: несколько потоков выполняют запросы из одного-трех слов словаря сайта
+ * и замеряют время ответа. Замеры начинаются одновременно во всех потоках после прогрева.
+ */
+public class SearchWorkload {
+
+    private final LoadTestSettings settings;
+    private final String searchUrl;
+    private final List<String> vocabulary;
+    private final HttpClient httpClient;
+
+    public SearchWorkload(LoadTestSettings settings, String searchUrl, List<String> vocabulary) {
+        this.settings = settings;
+        this.searchUrl = searchUrl;
+        this.vocabulary = vocabulary;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Метод, выполняющий нагрузку.
+     * @return - результат нагрузки.
+     * @throws Exception - если поток нагрузки завершился с ошибкой.
+     */
+    public Result run() throws Exception {
+        int threads = Math.max(1, settings.getSearchThreads());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch warmedUp = new CountDownLatch(threads);
+        AtomicInteger errors = new AtomicInteger();
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Random random = new Random(settings.getSeed() + i);
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < settings.getSearchWarmup(); j++) {
+                        send(nextQuery(random));
+                    }
+                    warmedUp.countDown();
+                    warmedUp.await();
+                    long[] latencies = new long[settings.getSearchRequests()];
+                    for (int j = 0; j < latencies.length; j++) {
+                        String query = nextQuery(random);
+                        long start = System.nanoTime();
+                        if (!send(query)) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[j] = System.nanoTime() - start;
+                    }
+                    return latencies;
+                }));
+            }
+            warmedUp.await();
+            long start = System.nanoTime();
+            long[] all = new long[threads * settings.getSearchRequests()];
+            int position = 0;
+            for (Future<long[]> future : futures) {
+                long[] latencies = future.get();
+                System.arraycopy(latencies, 0, all, position, latencies.length);
+                position += latencies.length;
+            }
+            long elapsed = System.nanoTime() - start;
+            return new Result(LatencyStats.of(all), all.length / (elapsed / 1_000_000_000.0), errors.get(), elapsed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String nextQuery(Random random) {
+        int words = 1 + random.nextInt(3);
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                query.append(' ');
+            }
+            query.append(vocabulary.get(random.nextInt(vocabulary.size())));
+        }
+        return query.toString();
+    }
+
+    /**
+     * Метод, выполняющий поисковый запрос.
+     * @param query - поисковый запрос.
+     * @return - true, если сервер ответил 200.
+     */
+    private boolean send(String query) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(searchUrl + "?limit=20&query="
+                        + URLEncoder.encode(query, StandardCharsets.UTF_8)))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Результат нагрузки.
+     * @param latency - распределение времени ответа.
+     * @param throughput - число запросов в секунду.
+     * @param errors - число запросов, завершившихся ошибкой.
+     * @param elapsedNanos - длительность замеров, нс.
+     */
+    public record Result(LatencyStats latency, double throughput, int errors, long elapsedNanos) {
+    }
+}
@@ -0,0 +1,177 @@
+package searchengine.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Локальный http-сервер, отдающий синтетический сайт: страницы /page/{n} со ссылками друг на друга и текстом
+ * на русском и (или) английском языке. Содержимое страницы определяется только ее номером и seed,
+ * поэтому повторные прогоны индексируют одинаковый сайт. Задержка и ошибки 500 добавляются к каждому ответу.
+ * Граф страниц - дерево (у страницы n дети n * fanOut + 1 ... n * fanOut + fanOut), дополненное
+ * случайными ссылками, поэтому все страницы достижимы с главной.
+ */
+public class SiteSimulator {
+
+    static final List<String> RUSSIAN_WORDS = List.of(
+            "поиск", "индекс", "страница", "сайт", "новость", "город", "дорога", "метро", "линия", "станция",
+            "погода", "весна", "лето", "осень", "зима", "магазин", "товар", "цена", "скидка", "доставка",
+            "костюм", "медицинский", "врач", "больница", "школа", "учитель", "ученик", "книга", "журнал", "статья",
+            "команда", "игра", "матч", "турнир", "победа", "сезон", "тренер", "баскетбол", "футбол", "болельщик",
+            "компания", "рынок", "банк", "кредит", "рубль", "экономика", "закон", "суд", "решение", "власть",
+            "красный", "большой", "новый", "старый", "быстрый", "городской", "летний", "важный", "первый", "последний");
+
+    static final List<String> ENGLISH_WORDS = List.of(
+            "search", "index", "page", "site", "news", "city", "road", "subway", "line", "station",
+            "weather", "spring", "summer", "autumn", "winter", "store", "product", "price", "discount", "delivery",
+            "crawler", "ranking", "query", "snippet", "lemma", "document", "server", "request", "response", "cache",
+            "team", "game", "match", "tournament", "victory", "season", "coach", "basketball", "football", "fan",
+            "company", "market", "bank", "credit", "dollar", "economy", "law", "court", "decision", "government",
+            "red", "large", "new", "old", "fast", "urban", "important", "first", "last", "quick");
+
+    private final LoadTestSettings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public SiteSimulator(LoadTestSettings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "site-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Метод, возвращающий адрес главной страницы сайта.
+     * @return - адрес вида http://localhost:port.
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Метод, возвращающий словарь, из которого составляются тексты страниц (для генерации поисковых запросов).
+     * @return - список слов.
+     */
+    public List<String> getVocabulary() {
+        return switch (settings.getLanguage()) {
+            case "ru" -> RUSSIAN_WORDS;
+            case "en" -> ENGLISH_WORDS;
+            default -> {
+                List<String> words = new ArrayList<>(RUSSIAN_WORDS);
+                words.addAll(ENGLISH_WORDS);
+                yield words;
+            }
+        };
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (settings.getLatency() > 0) {
+                Thread.sleep(settings.getLatency());
+            }
+            String path = exchange.getRequestURI().getPath();
+            int number = getPageNumber(path);
+            if (number < 0) {
+                send(exchange, 404, "text/plain", "Not found");
+            } else if (ThreadLocalRandom.current().nextDouble() < settings.getErrorRate()) {
+                send(exchange, 500, "text/plain", "Internal Server Error");
+            } else {
+                send(exchange, 200, "text/html; charset=utf-8", renderPage(number));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int getPageNumber(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (path.startsWith("/page/")) {
+            try {
+                int number = Integer.parseInt(path.substring("/page/".length()));
+                return number > 0 && number < settings.getPages() ? number : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Метод, формирующий html-код страницы: заголовок, ссылки на дочерние и случайные страницы, текст.
+     * @param number - номер страницы.
+     * @return - html-код.
+     */
+    String renderPage(int number) {
+        Random random = new Random(settings.getSeed() * 31 + number);
+        List<String> vocabulary = getVocabulary();
+        StringBuilder html = new StringBuilder(settings.getPageWords() * 12 + 1024);
+        html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>");
+        appendWords(html, vocabulary, random, 4);
+        html.append("</title></head><body><nav>");
+        for (int i = 1; i <= settings.getFanOut(); i++) {
+            long child = (long) number * settings.getFanOut() + i;
+            int target = child < settings.getPages() ? (int) child : random.nextInt(settings.getPages());
+            html.append("<a href=\"").append(target == 0 ? "/" : "/page/" + target).append("\">");
+            appendWords(html, vocabulary, random, 2);
+            html.append("</a> ");
+        }
+        html.append("</nav><h1>");
+        appendWords(html, vocabulary, random, 5);
+        html.append("</h1>");
+        int written = 0;
+        while (written < settings.getPageWords()) {
+            int sentence = Math.min(8 + random.nextInt(12), settings.getPageWords() - written);
+            html.append("<p>");
+            appendWords(html, vocabulary, random, sentence);
+            html.append(".</p>");
+            written += sentence;
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    private static void appendWords(StringBuilder html, List<String> vocabulary, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                html.append(' ');
+            }
+            html.append(vocabulary.get(random.nextInt(vocabulary.size())));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -2,10 +2,24 @@ package searchengine;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.util.Lemmatisator;
 
 @SpringBootApplication
 public class Application {
+
+    /**
+     * Системное свойство пробного запуска при сборке архива AppCDS (профиль appcds в pom.xml):
+     * приложение запускается, дожидается загрузки словарей морфологии и завершается,
+     * а JVM записывает все загруженные за это время классы в архив.
+     */
+    private static final String CDS_TRAINING_PROPERTY = "searchengine.cds-training";
+
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(Application.class, args);
+        if (Boolean.getBoolean(CDS_TRAINING_PROPERTY)) {
+            context.getBean(Lemmatisator.class).awaitLoaded();
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
@@ -0,0 +1,47 @@
+package searchengine;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.dto.result.SnapshotInfo;
+import searchengine.services.SnapshotService;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Выгрузка и загрузка снимка индекса из командной строки, без веб-сервера:
+ * java -cp SearchEngine.jar -Dloader.main=searchengine.SnapshotTool org.springframework.boot.loader.PropertiesLauncher
+ * export|import [файл] [--параметр=значение ...]
+ * Используются те же application.yaml и БД, что и у приложения; само приложение при этом должно быть остановлено.
+ */
+public class SnapshotTool {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !args[0].equals("export") && !args[0].equals("import")) {
+            System.out.println("Usage: SnapshotTool export|import [file] [--property=value ...]");
+            System.exit(2);
+        }
+        Path file = args.length > 1 && !args[1].startsWith("--") ? Paths.get(args[1]) : null;
+        String[] properties = Arrays.stream(args).filter(arg -> arg.startsWith("--")).toArray(String[]::new);
+        String[] applicationArgs = Arrays.copyOf(properties, properties.length + 1);
+        applicationArgs[properties.length] = "--index-storage.snapshot-on-startup=false";
+
+        SpringApplication application = new SpringApplication(Application.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        int exitCode = 0;
+        try (ConfigurableApplicationContext context = application.run(applicationArgs)) {
+            SnapshotService snapshotService = context.getBean(SnapshotService.class);
+            SnapshotInfo info = args[0].equals("export")
+                    ? snapshotService.exportSnapshot(file)
+                    : snapshotService.importSnapshot(file);
+            System.out.println("Сайтов: " + info.getSites() + ", страниц: " + info.getPages() + ", лемм: "
+                    + info.getLemmas() + ", записей индекса: " + info.getPostings() + ", размер: "
+                    + info.getBytes() + " байт, время: " + info.getMillis() + " мс");
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import searchengine.util.AdaptiveConcurrencyLimiter;
+import searchengine.util.AdmissionInterceptor;
+
+/**
+ * Регистрация ограничителей запросов: у поиска и у управления индексацией отдельные лимиты,
+ * поэтому всплеск поисковых запросов не мешает управлять индексацией и наоборот.
+ */
+@Configuration
+public class AdmissionConfig implements WebMvcConfigurer {
+
+    private final AdmissionSettings admissionSettings;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+
+    public AdmissionConfig(AdmissionSettings admissionSettings, MeterRegistry meterRegistry,
+                           ObjectMapper objectMapper) {
+        this.admissionSettings = admissionSettings;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!admissionSettings.isEnabled()) {
+            return;
+        }
+        registry.addInterceptor(createInterceptor("search", admissionSettings.getSearch()))
+                .addPathPatterns("/api/search", "/api/suggest", "/api/shard/**");
+        registry.addInterceptor(createInterceptor("admin", admissionSettings.getAdmin()))
+                .addPathPatterns("/api/startIndexing", "/api/indexPage", "/api/indexPages", "/api/snapshot/**");
+    }
+
+    private AdmissionInterceptor createInterceptor(String group, AdmissionLimit limit) {
+        return new AdmissionInterceptor(new AdaptiveConcurrencyLimiter(group, limit, meterRegistry), objectMapper,
+                admissionSettings.getRetryAfter());
+    }
+}
@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Настройки ограничителя одновременных запросов одной группы эндпоинтов (AdaptiveConcurrencyLimiter).
+ */
+@Getter
+@Setter
+public class AdmissionLimit {
+    /**
+     * Начальное, минимальное и максимальное число одновременно выполняемых запросов.
+     */
+    private int initialLimit = 20;
+    private int minLimit = 2;
+    private int maxLimit = 200;
+    /**
+     * Максимальное число запросов, ожидающих освобождения места; остальные сразу отклоняются.
+     */
+    private int queueSize = 20;
+    /**
+     * Максимальное время ожидания места в очереди, в миллисекундах.
+     */
+    private long maxWait = 100;
+    /**
+     * Время выполнения запроса, в миллисекундах, при превышении которого лимит уменьшается.
+     */
+    private long latencyThreshold = 1000;
+    /**
+     * Во сколько раз уменьшается лимит при медленном или неуспешном запросе.
+     */
+    private double backoffRatio = 0.9;
+}
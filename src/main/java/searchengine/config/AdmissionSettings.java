@@ -0,0 +1,42 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "admission-control")
+public class AdmissionSettings {
+    /**
+     * Ограничивать ли число одновременно выполняемых запросов к поиску и к управлению индексацией.
+     * Запросы сверх лимита ждут в короткой очереди, а при ее переполнении отклоняются с кодом 503.
+     */
+    private boolean enabled = true;
+    /**
+     * Значение заголовка Retry-After отклоненных запросов, в секундах.
+     */
+    private int retryAfter = 1;
+    /**
+     * Лимит поиска: /api/search, /api/suggest и запросов шардов /api/shard/**.
+     */
+    private AdmissionLimit search = new AdmissionLimit();
+    /**
+     * Лимит управления индексацией: /api/startIndexing, /api/indexPage, /api/indexPages и /api/snapshot/**
+     * (/api/stopIndexing не ограничивается, чтобы индексацию всегда можно было остановить).
+     */
+    private AdmissionLimit admin = defaultAdminLimit();
+
+    private static AdmissionLimit defaultAdminLimit() {
+        AdmissionLimit limit = new AdmissionLimit();
+        limit.setInitialLimit(4);
+        limit.setMinLimit(1);
+        limit.setMaxLimit(8);
+        limit.setQueueSize(8);
+        limit.setMaxWait(1000);
+        limit.setLatencyThreshold(10_000);
+        return limit;
+    }
+}
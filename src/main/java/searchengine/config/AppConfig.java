@@ -3,8 +3,8 @@ package searchengine.config;
 import lombok.AllArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.model.Status;
-import searchengine.model.entity.Site;
 import searchengine.model.repository.SiteRepository;
 
 import java.time.LocalDateTime;
@@ -15,15 +15,15 @@ public class AppConfig {
 
     private SiteRepository siteRepository;
 
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Метод, помечающий как FAILED сайты, индексация которых была прервана остановкой приложения.
+     * Выполняется одним запросом UPDATE, без чтения таблицы site.
+     */
     @Bean
     public void checkAppOffError() {
-        for (Site site : siteRepository.findAll()) {
-            if (site.getStatus().equals(Status.INDEXING)) {
-                site.setStatus(Status.FAILED);
-                site.setLastError("Работа приложения была прервана во время индексации");
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
-            }
-        }
+        transactionTemplate.executeWithoutResult(status -> siteRepository.replaceStatus(Status.INDEXING,
+                Status.FAILED, "Работа приложения была прервана во время индексации", LocalDateTime.now()));
     }
 }
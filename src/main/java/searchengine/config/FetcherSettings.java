@@ -0,0 +1,33 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "fetcher-settings")
+public class FetcherSettings {
+    /**
+     * Таймаут установки соединения, в миллисекундах.
+     */
+    private long connectTimeout = 10_000;
+    /**
+     * Таймаут всего запроса (до получения заголовков ответа), в миллисекундах.
+     */
+    private long requestTimeout = 30_000;
+    /**
+     * Максимальный размер тела ответа в байтах; все, что дальше, отбрасывается.
+     */
+    private int maxBodySize = 5 * 1024 * 1024;
+    /**
+     * Использовать ли HTTP/2 (с откатом на HTTP/1.1, если сервер его не поддерживает).
+     */
+    private boolean http2 = true;
+    /**
+     * Следовать ли перенаправлениям (страница, перенаправленная на другой сайт, не индексируется).
+     */
+    private boolean followRedirects = true;
+}
@@ -0,0 +1,42 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "index-storage")
+public class IndexStorageSettings {
+    /**
+     * Хранилище поискового индекса: mysql - таблица searching_index, segments - сегменты на диске.
+     */
+    private String engine = "mysql";
+    /**
+     * Каталог сегментов индекса.
+     */
+    private String dir = "index";
+    /**
+     * Число страниц в памяти, после которого они записываются на диск новым сегментом.
+     */
+    private int flushPages = 1000;
+    /**
+     * Число сегментов, при превышении которого самые маленькие из них объединяются в фоне.
+     */
+    private int mergeFactor = 8;
+    /**
+     * Файл снимка индекса для выгрузки и загрузки (/api/snapshot/export, /api/snapshot/import, SnapshotTool).
+     */
+    private String snapshotFile = "index-snapshot.bin";
+    /**
+     * Сохранять ли в снимке html-код страниц (без него в результатах поиска не будет заголовков и сниппетов).
+     */
+    private boolean snapshotContent = true;
+    /**
+     * Загружать ли снимок при запуске: в пустую БД он импортируется, а если он совпадает с данными в БД,
+     * по нему строятся словари автодополнения и отпечатки страниц вместо просмотра таблиц.
+     */
+    private boolean snapshotOnStartup = false;
+}
@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "reindex-queue")
+public class ReindexQueueSettings {
+    /**
+     * Число потоков, загружающих и индексирующих страницы из очереди переиндексации.
+     */
+    private int threads = 2;
+    /**
+     * Максимальное число адресов в очереди; адреса сверх него отклоняются.
+     */
+    private int capacity = 10_000;
+    /**
+     * Время, в миллисекундах, которое адрес ждет в очереди после первой отправки: повторные отправки
+     * того же адреса за это время объединяются, и страница индексируется один раз.
+     */
+    private long coalesceWindow = 2000;
+    /**
+     * Максимальное число адресов в одном задании.
+     */
+    private int maxUrlsPerJob = 1000;
+    /**
+     * Число последних заданий, состояние которых можно запросить.
+     */
+    private int maxJobs = 1000;
+}
@@ -0,0 +1,42 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    /**
+     * Число потоков, параллельно строящих заголовки и сниппеты результатов (общее для всех запросов).
+     */
+    private int assemblyThreads = Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * Максимальное число задач построения сниппетов в очереди; при переполнении сниппет сразу сокращается.
+     */
+    private int assemblyQueueCapacity = 256;
+    /**
+     * Время на построение сниппетов одной страницы выдачи, в миллисекундах.
+     * Результаты, не успевшие за это время, возвращаются с сокращенным сниппетом.
+     */
+    private long assemblyDeadline = 3000;
+    /**
+     * Длина сокращенного сниппета (начало текста страницы), в символах.
+     */
+    private int truncatedSnippetLength = 200;
+    /**
+     * Максимальное число лемм в словаре автодополнения (общем и каждого сайта); остаются самые частые.
+     */
+    private int suggestMaxEntries = 200_000;
+    /**
+     * Максимальное число лемм в словаре исправления опечаток (для каждого языка); остаются самые частые.
+     */
+    private int spellingMaxEntries = 100_000;
+    /**
+     * Максимальное число исправляемых опечаток в одном слове (вставки, удаления, замены и перестановки символов).
+     */
+    private int spellingMaxEditDistance = 2;
+}
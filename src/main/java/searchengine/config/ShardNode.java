@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Setter
+@Getter
+public class ShardNode {
+    /**
+     * Имя шарда (в плане запроса и в списке не ответивших шардов).
+     */
+    private String name;
+    /**
+     * Адрес узла, например http://localhost:8081. Если не задан, шард работает в этом же процессе.
+     */
+    private String url;
+    /**
+     * Адреса сайтов шарда в этом процессе (для шарда с url не используются: удаленный узел ищет по своим сайтам).
+     * Если не заданы, шард ищет по всем сайтам.
+     */
+    private List<String> sites;
+}
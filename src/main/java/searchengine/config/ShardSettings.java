@@ -0,0 +1,35 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-shards")
+public class ShardSettings {
+    /**
+     * Искать ли по шардам: запрос рассылается всем шардам, а их результаты объединяются.
+     * Если выключено, поиск идет только по индексу этого узла.
+     */
+    private boolean enabled = false;
+    /**
+     * Время ожидания ответа шарда на каждом этапе поиска, в миллисекундах.
+     * Не ответившие шарды пропускаются, а результат помечается как неполный.
+     */
+    private long timeout = 2000;
+    /**
+     * Число потоков, отправляющих запросы шардам (общее для всех запросов).
+     */
+    private int threads = 16;
+    /**
+     * Максимальное число запросов к шардам в очереди; при переполнении шард считается не ответившим.
+     */
+    private int queueCapacity = 256;
+    private List<ShardNode> nodes = new ArrayList<>();
+}
@@ -8,4 +8,19 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    /**
+     * Минимальный интервал между запросами к сайту в миллисекундах.
+     * Если не задан, используется значение crawl-delay из indexing-settings.
+     */
+    private Long crawlDelay;
+    /**
+     * Вес сайта при распределении потоков обхода между сайтами: сколько задач сайта запускается подряд
+     * в очередном круге планировщика. По умолчанию 1.
+     */
+    private int weight = 1;
+    /**
+     * Максимальное число одновременно выполняемых задач обхода сайта.
+     * Если не задано, сайт ограничен только общим числом потоков (parallelism).
+     */
+    private Integer maxConcurrency;
 }
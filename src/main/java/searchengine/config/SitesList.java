@@ -13,4 +13,84 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<Site> sites;
+    /**
+     * Интервал между запросами к одному хосту по умолчанию, в миллисекундах.
+     */
+    private long crawlDelay = 150;
+    /**
+     * User-agent, которым представляется поисковый робот (в том числе при разборе robots.txt).
+     */
+    private String userAgent = "SearchEngineBot";
+    /**
+     * Наполнять ли очередь обхода адресами из sitemap.xml.
+     */
+    private boolean sitemapEnabled = true;
+    /**
+     * Общее число потоков обхода для всех сайтов. Если не задано, равно числу процессоров.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * Каталог, в котором хранятся контрольные точки обхода сайтов.
+     */
+    private String checkpointDir = "checkpoints";
+    /**
+     * Интервал записи контрольных точек обхода, в миллисекундах (0 - только при остановке обхода).
+     */
+    private long checkpointInterval = 60_000;
+    /**
+     * Где хранится очередь обхода сайта: memory - в памяти, disk - в файлах каталога checkpoint-dir
+     * (в памяти остается только начало очереди; для сайтов с миллионами страниц).
+     */
+    private String frontier = "memory";
+    /**
+     * Наибольшее число адресов начала очереди обхода в памяти (frontier: disk).
+     */
+    private int frontierMemoryEntries = 10_000;
+    /**
+     * Размер файла сегмента очереди обхода, в байтах (frontier: disk).
+     */
+    private int frontierSegmentSize = 16 * 1024 * 1024;
+    /**
+     * Начальное число ячеек таблицы отпечатков встреченных адресов (frontier: disk); таблица растет сама.
+     */
+    private int frontierVisitedCapacity = 1 << 20;
+    /**
+     * Сохранять ли почти одинаковые страницы сайта как копии, не индексируя их леммы повторно.
+     */
+    private boolean nearDuplicateEnabled = true;
+    /**
+     * Максимальное расстояние Хэмминга между отпечатками SimHash почти одинаковых страниц.
+     */
+    private int nearDuplicateMaxDistance = 3;
+    /**
+     * Минимальное число разных лемм на странице, при котором она проверяется на совпадение с другими:
+     * отпечатки коротких страниц слишком часто совпадают случайно.
+     */
+    private int nearDuplicateMinLemmas = 20;
+
+    /**
+     * Метод, возвращающий настройки сайта из конфигурации.
+     * @param url - адрес сайта.
+     * @return - настройки сайта, либо null, если сайта нет в конфигурации.
+     */
+    public Site getSite(String url) {
+        if (sites != null) {
+            for (Site site : sites) {
+                if (site.getUrl().equals(url)) {
+                    return site;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Метод, возвращающий интервал между запросами для сайта из конфигурации.
+     * @param url - адрес сайта.
+     * @return - интервал в миллисекундах.
+     */
+    public long getCrawlDelay(String url) {
+        Site site = getSite(url);
+        return site != null && site.getCrawlDelay() != null ? site.getCrawlDelay() : crawlDelay;
+    }
 }
@@ -1,19 +1,38 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import searchengine.dto.response.IndexingFailedResponse;
 import searchengine.dto.response.IndexingResponse;
+import searchengine.dto.response.ReindexJobResponse;
+import searchengine.dto.response.SearchFailedResponse;
 import searchengine.dto.response.SearchSuccessResponse;
+import searchengine.dto.response.SnapshotResponse;
+import searchengine.dto.response.SuggestResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.result.RelevancePage;
+import searchengine.dto.result.RelevancePageForResponse;
+import searchengine.dto.result.ReindexJobInfo;
+import searchengine.dto.result.SearchResult;
+import searchengine.model.IndexingMode;
 import searchengine.services.IndexingService;
+import searchengine.services.ReindexQueueService;
 import searchengine.services.SearchService;
+import searchengine.services.SnapshotService;
 import searchengine.services.StatisticsService;
+import searchengine.util.SearchCursor;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api")
@@ -25,10 +44,23 @@ public class ApiController {
 
     private final StatisticsService statisticsService;
 
-        public ApiController(IndexingService indexingService, SearchService searchService, StatisticsService statisticsService) {
+    private final SnapshotService snapshotService;
+
+    private final ReindexQueueService reindexQueueService;
+
+    private final ObjectMapper objectMapper;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+        public ApiController(IndexingService indexingService, SearchService searchService, StatisticsService statisticsService,
+                             SnapshotService snapshotService, ReindexQueueService reindexQueueService,
+                             ObjectMapper objectMapper) {
             this.indexingService = indexingService;
             this.searchService = searchService;
             this.statisticsService = statisticsService;
+            this.snapshotService = snapshotService;
+            this.reindexQueueService = reindexQueueService;
+            this.objectMapper = objectMapper;
         }
 
     @GetMapping(value = "/statistics", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -36,54 +68,233 @@ public class ApiController {
         return ResponseEntity.ok().body(statisticsService.getStatisticsForResponse());
     }
 
+    /**
+     * Запуск индексации всех сайтов или одного сайта. resume=true продолжает обход с контрольной точки,
+     * incremental=true обходит сайты заново без удаления сохраненных страниц; по умолчанию сайты индексируются заново.
+     */
     @GetMapping(value = "/startIndexing", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<IndexingResponse> startIndexing() {
+    public ResponseEntity<IndexingResponse> startIndexing(@RequestParam(value = "site", required = false) String site,
+                                                          @RequestParam(value = "resume", defaultValue = "false") boolean resume,
+                                                          @RequestParam(value = "incremental", defaultValue = "false") boolean incremental) {
+        IndexingMode mode = resume ? IndexingMode.RESUME : incremental ? IndexingMode.INCREMENTAL : IndexingMode.FULL;
+        if (site != null) {
+            if (indexingService.isSiteIndexing(site)) {
+                return ResponseEntity.ok().body(new IndexingFailedResponse("Индексация уже запущена"));
+            }
+            if (!indexingService.startSiteIndexing(site, mode)) {
+                return ResponseEntity.ok().body(new IndexingFailedResponse(
+                        "Данный сайт не указан в конфигурационном файле"));
+            }
+            return ResponseEntity.ok().body(new IndexingResponse());
+        }
         if(indexingService.isIndexingStart()) {
             return ResponseEntity.ok().body(new IndexingFailedResponse( "Индексация уже запущена"));
         } else {
-            indexingService.startIndexing();
+            indexingService.startIndexing(mode);
             return ResponseEntity.ok().body(new IndexingResponse());
         }
     }
 
+    /**
+     * Остановка индексации всех сайтов или одного сайта. Если обходы не завершились за отведенное время,
+     * возвращается ошибка, а остановка продолжается в фоне.
+     */
     @GetMapping(value = "/stopIndexing", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<IndexingResponse> stopIndexing() {
-        if (!indexingService.isIndexingStart()) {
-            return ResponseEntity.ok().body(new IndexingFailedResponse("Индексация не запущена"));
+    public ResponseEntity<IndexingResponse> stopIndexing(@RequestParam(value = "site", required = false) String site) {
+        try {
+            if (site != null) {
+                if (!indexingService.stopSiteIndexing(site)) {
+                    return ResponseEntity.ok().body(new IndexingFailedResponse("Индексация не запущена"));
+                }
+                return ResponseEntity.ok().body(new IndexingResponse());
+            }
+            if (!indexingService.isIndexingStart()) {
+                return ResponseEntity.ok().body(new IndexingFailedResponse("Индексация не запущена"));
+            }
+            indexingService.stopIndexing();
+        } catch (TimeoutException e) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse(e.getMessage()));
         }
-        indexingService.stopIndexing();
         return ResponseEntity.ok().body(new IndexingResponse());
     }
 
+    /**
+     * Постановка страницы в очередь переиндексации. Ответ возвращается сразу, без ожидания индексации;
+     * ход индексации можно узнать по id задания через /api/indexPages/{jobId}.
+     */
     @RequestMapping(value = "/indexPage", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<IndexingResponse> indexPage(@RequestParam("url") String url) throws IOException {
+    public ResponseEntity<IndexingResponse> indexPage(@RequestParam("url") String url) {
         if (indexingService.getParentUrl(url) == null) {
             return ResponseEntity.ok().body(new IndexingFailedResponse(
                     "Данная страница находится за пределами сайтов, указанных в конфигурационном файле"));
         }
-        indexingService.indexPage(url);
-        return ResponseEntity.ok().body(new IndexingResponse());
+        return ResponseEntity.ok().body(new ReindexJobResponse(reindexQueueService.submit(List.of(url))));
+    }
+
+    /**
+     * Постановка списка страниц в очередь переиндексации одним заданием (тело запроса - JSON-массив адресов).
+     * Адреса вне сайтов из конфигурации отклоняются, а остальные индексируются в фоне; повторная отправка адреса,
+     * который еще ждет в очереди, не приводит к повторной индексации.
+     */
+    @PostMapping(value = "/indexPages", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IndexingResponse> indexPages(@RequestBody List<String> urls) {
+        if (urls.isEmpty()) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Не заданы адреса страниц"));
+        }
+        if (urls.size() > reindexQueueService.getMaxUrlsPerJob()) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse(
+                    "В одном задании можно передать не больше " + reindexQueueService.getMaxUrlsPerJob() + " адресов"));
+        }
+        return ResponseEntity.ok().body(new ReindexJobResponse(reindexQueueService.submit(urls)));
+    }
+
+    /**
+     * Состояние задания переиндексации с результатом по каждому адресу.
+     */
+    @GetMapping(value = "/indexPages/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IndexingResponse> indexPagesStatus(@PathVariable("jobId") String jobId) {
+        ReindexJobInfo job = reindexQueueService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Задание не найдено"));
+        }
+        return ResponseEntity.ok().body(new ReindexJobResponse(job));
+    }
+
+    /**
+     * Выгрузка снимка индекса (сайты, страницы, леммы и индекс) в файл index-storage.snapshot-file.
+     */
+    @PostMapping(value = "/snapshot/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IndexingResponse> exportSnapshot() {
+        if (indexingService.isIndexingStart()) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Снимок нельзя создать во время индексации"));
+        }
+        if (snapshotService.isSnapshotRunning()) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Выгрузка или загрузка снимка уже выполняется"));
+        }
+        try {
+            return ResponseEntity.ok().body(new SnapshotResponse(snapshotService.exportSnapshot(null)));
+        } catch (IOException | IllegalStateException e) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Не удалось создать снимок: " + e.getMessage()));
+        }
     }
 
+    /**
+     * Загрузка снимка индекса из файла index-storage.snapshot-file: все текущие данные заменяются данными снимка.
+     */
+    @PostMapping(value = "/snapshot/import", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IndexingResponse> importSnapshot() {
+        if (indexingService.isIndexingStart()) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Снимок нельзя загрузить во время индексации"));
+        }
+        if (snapshotService.isSnapshotRunning()) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Выгрузка или загрузка снимка уже выполняется"));
+        }
+        try {
+            return ResponseEntity.ok().body(new SnapshotResponse(snapshotService.importSnapshot(null)));
+        } catch (IOException | IllegalStateException e) {
+            return ResponseEntity.ok().body(new IndexingFailedResponse("Не удалось загрузить снимок: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SuggestResponse> suggest(@RequestParam(value = "query") String query,
+                                                   @RequestParam(value = "site", required = false) String site,
+                                                   @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok().body(new SuggestResponse(
+                searchService.suggest(query, site, Math.max(1, Math.min(limit, 50)))));
+    }
+
+    /**
+     * Поиск. Страница выдачи задается смещением (offset) или курсором (cursor) из поля nextCursor
+     * предыдущего ответа. При stream=true ответ передается в формате NDJSON: каждая найденная страница -
+     * отдельной строкой сразу после построения ее сниппета, последняя строка - итог с числом найденных
+     * страниц и курсором следующей страницы выдачи. При explain=true в ответ добавляется план выполнения запроса
+     * с временем каждого шага. Если совпадений нет, в ответе может быть исправленный запрос (suggestion);
+     * при autocorrect=true поиск выполняется по нему, а он возвращается в поле correctedQuery.
+     * При поиске по шардам ответ, в который не вошли результаты части шардов, помечается полем partial,
+     * а эти шарды перечисляются в поле failedShards.
+     */
     @GetMapping(value = "/search")
     public Object search(@RequestParam(value = "query") String query,
                                                    @RequestParam(value = "site", required = false) String site,
                                                    @RequestParam(value = "offset", defaultValue = "0", required = false) int offset,
-                                                   @RequestParam(value = "limit", defaultValue = "20", required = false) int limit) {
-        List<RelevancePage> result = searchService.search(query, site, offset, limit);
-        if (query.length() == 0) {
+                                                   @RequestParam(value = "limit", defaultValue = "20", required = false) int limit,
+                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "stream", defaultValue = "false") boolean stream,
+                                                   @RequestParam(value = "explain", defaultValue = "false") boolean explain,
+                                                   @RequestParam(value = "autocorrect", defaultValue = "false") boolean autocorrect) {
+        if (query.trim().isEmpty()) {
             return ResponseEntity.ok().body(new IndexingFailedResponse(
                     "Задан пустой поисковый запрос"));
-        } else if (result.isEmpty()) {
-            return ResponseEntity.ok().body(new IndexingFailedResponse(
-                    "Совпадения не найдены"));
-        } else {
-            return ResponseEntity.ok()
-                    .body(new SearchSuccessResponse(true, result.size(),
-                            searchService.getPagesForResponse(result)
-                                    .subList(offset,
-                                            (offset + limit > result.size()) ? offset + result.size() % limit : offset + limit)));
+        }
+        SearchCursor searchCursor;
+        try {
+            searchCursor = cursor == null || cursor.isEmpty() ? null : SearchCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new IndexingFailedResponse("Некорректный курсор"));
+        }
+        if (stream) {
+            StreamingResponseBody body = out -> {
+                Object summary = search(query, site, offset, limit, searchCursor, explain, autocorrect, page -> {
+                    try {
+                        writeLine(out, searchService.getPageForResponse(page));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, () -> null);
+                writeLine(out, summary);
+            };
+            return ResponseEntity.ok().contentType(NDJSON).body(body);
+        }
+        List<RelevancePage> result = new ArrayList<>();
+        return ResponseEntity.ok().body(search(query, site, offset, limit, searchCursor, explain, autocorrect,
+                result::add, () -> searchService.getPagesForResponse(result)));
+    }
 
+    /**
+     * Метод, выполняющий поиск и формирующий итог ответа. Если ничего не найдено, запрос проверяется
+     * на опечатки: исправленный вариант возвращается в поле suggestion, а при autocorrect=true
+     * поиск сразу повторяется по исправленному запросу.
+     * @param consumer - обработчик найденных страниц.
+     * @param data - список страниц для ответа (null для потокового ответа).
+     * @return - итог поиска.
+     */
+    private Object search(String query, String site, int offset, int limit, SearchCursor cursor, boolean explain,
+                          boolean autocorrect, Consumer<RelevancePage> consumer,
+                          Supplier<List<RelevancePageForResponse>> data) {
+        SearchResult searchResult = searchService.search(query, site, offset, limit, cursor, consumer);
+        String suggestion = null;
+        String correctedQuery = null;
+        if (searchResult.getCount() == 0) {
+            suggestion = searchService.correctQuery(query);
+            if (suggestion != null && autocorrect) {
+                searchResult = searchService.search(suggestion, site, offset, limit, cursor, consumer);
+                if (searchResult.getCount() > 0) {
+                    correctedQuery = suggestion;
+                    suggestion = null;
+                }
+            }
+        }
+        boolean partial = searchResult.getFailedShards() != null;
+        if (searchResult.getCount() == 0 && !explain && !partial) {
+            return new SearchFailedResponse("Совпадения не найдены", suggestion);
         }
+        SearchSuccessResponse response = new SearchSuccessResponse(true, searchResult.getCount(), data.get(),
+                searchResult.getNextCursor());
+        response.setCorrectedQuery(correctedQuery);
+        if (partial) {
+            response.setPartial(true);
+            response.setFailedShards(searchResult.getFailedShards());
+        }
+        if (explain) {
+            response.setPlan(searchResult.getPlan());
+        }
+        return response;
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
     }
 }
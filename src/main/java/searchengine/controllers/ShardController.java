@@ -0,0 +1,45 @@
+package searchengine.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import searchengine.dto.shard.ShardFetch;
+import searchengine.dto.shard.ShardHit;
+import searchengine.dto.shard.ShardHits;
+import searchengine.dto.shard.ShardQuery;
+import searchengine.dto.shard.ShardStatistics;
+import searchengine.services.SearchService;
+
+import java.util.List;
+
+/**
+ * Запросы координатора поиска по шардам к этому узлу (см. ShardCoordinator).
+ * Узел отвечает по всем своим сайтам, независимо от собственной настройки search-shards.
+ */
+@RestController
+@RequestMapping("/api/shard")
+public class ShardController {
+
+    private final SearchService searchService;
+
+    public ShardController(SearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    @PostMapping("/statistics")
+    public ResponseEntity<ShardStatistics> statistics(@RequestBody ShardQuery query) {
+        return ResponseEntity.ok().body(searchService.getShardStatistics(query.getQuery(), null));
+    }
+
+    @PostMapping("/search")
+    public ResponseEntity<ShardHits> search(@RequestBody ShardQuery query) {
+        return ResponseEntity.ok().body(searchService.searchShard(query, null));
+    }
+
+    @PostMapping("/fetch")
+    public ResponseEntity<List<ShardHit>> fetch(@RequestBody ShardFetch fetch) {
+        return ResponseEntity.ok().body(searchService.fetchShard(fetch, null));
+    }
+}
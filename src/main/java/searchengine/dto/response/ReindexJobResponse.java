@@ -0,0 +1,15 @@
+package searchengine.dto.response;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import searchengine.dto.result.ReindexJobInfo;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class ReindexJobResponse extends IndexingResponse {
+    private ReindexJobInfo job;
+
+    public ReindexJobResponse(ReindexJobInfo job) {
+        this.job = job;
+    }
+}
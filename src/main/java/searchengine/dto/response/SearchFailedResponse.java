@@ -0,0 +1,20 @@
+package searchengine.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchFailedResponse extends IndexingFailedResponse {
+    /**
+     * Исправленный запрос, по которому могут найтись совпадения ("возможно, вы имели в виду").
+     */
+    private String suggestion;
+
+    public SearchFailedResponse(String error, String suggestion) {
+        super(error);
+        this.suggestion = suggestion;
+    }
+}
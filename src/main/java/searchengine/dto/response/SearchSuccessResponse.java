@@ -1,19 +1,47 @@
 package searchengine.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
+import searchengine.dto.result.QueryPlan;
 import searchengine.dto.result.RelevancePageForResponse;
 
 import java.util.List;
 
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SearchSuccessResponse {
     private boolean result;
     private int count;
     private List<RelevancePageForResponse> data;
+    /**
+     * Курсор следующей страницы выдачи (отсутствует на последней странице).
+     */
+    private String nextCursor;
+    /**
+     * План выполнения запроса (только при explain=true).
+     */
+    private QueryPlan plan;
+    /**
+     * Исправленный запрос, по которому выполнен поиск (если в исходном запросе исправлены опечатки).
+     */
+    private String correctedQuery;
+    /**
+     * Признак неполного результата: часть шардов не ответила вовремя (только при поиске по шардам).
+     */
+    private Boolean partial;
+    /**
+     * Шарды, результаты которых не вошли в ответ.
+     */
+    private List<String> failedShards;
 
     public SearchSuccessResponse(boolean result, int count, List<RelevancePageForResponse> data) {
         this.result = result;
         this.count = count;
         this.data = data;
     }
+
+    public SearchSuccessResponse(boolean result, int count, List<RelevancePageForResponse> data, String nextCursor) {
+        this(result, count, data);
+        this.nextCursor = nextCursor;
+    }
 }
@@ -0,0 +1,15 @@
+package searchengine.dto.response;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import searchengine.dto.result.SnapshotInfo;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class SnapshotResponse extends IndexingResponse {
+    private SnapshotInfo snapshot;
+
+    public SnapshotResponse(SnapshotInfo snapshot) {
+        this.snapshot = snapshot;
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.dto.response;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class SuggestResponse extends IndexingResponse {
+    private List<String> suggestions;
+
+    public SuggestResponse(List<String> suggestions) {
+        this.suggestions = suggestions;
+    }
+}
@@ -0,0 +1,25 @@
+package searchengine.dto.result;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class QueryPlan {
+    /**
+     * Шаги выполнения запроса в порядке выполнения.
+     */
+    private List<QueryPlanStep> steps = new ArrayList<>();
+    /**
+     * Общее время выполнения плана, в миллисекундах.
+     */
+    private double millis;
+    /**
+     * Планы выполнения запроса на шардах по имени шарда (только при поиске по шардам).
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, QueryPlan> shards;
+}
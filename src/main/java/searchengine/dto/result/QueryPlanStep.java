@@ -0,0 +1,33 @@
+package searchengine.dto.result;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryPlanStep {
+    /**
+     * Вид шага: lemmatize, lookup, missing, drop, scan, intersect, skip, pages или phrase;
+     * при поиске по шардам - этапы координатора statistics, query и fetch.
+     */
+    private String step;
+    /**
+     * Лемма, к которой относится шаг (для шагов по отдельной лемме).
+     */
+    private String lemma;
+    /**
+     * Число страниц, на которых встречается лемма.
+     */
+    private Integer frequency;
+    /**
+     * Число страниц-кандидатов после шага. Для шага phrase - оценка сверху: фраза проверяется только
+     * на тех кандидатах, которые нужны для страницы выдачи, а непроверенные кандидаты считаются найденными.
+     */
+    private Integer candidates;
+    /**
+     * Время выполнения шага, в миллисекундах.
+     */
+    private double millis;
+}
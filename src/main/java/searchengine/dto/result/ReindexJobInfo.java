@@ -0,0 +1,25 @@
+package searchengine.dto.result;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class ReindexJobInfo {
+    private String id;
+    private LocalDateTime createdAt;
+    /**
+     * Обработаны ли все адреса задания.
+     */
+    private boolean finished;
+    private int total;
+    /**
+     * Число адресов в очереди, включая обрабатываемые.
+     */
+    private int queued;
+    private int indexed;
+    private int failed;
+    private int rejected;
+    private List<ReindexUrlResult> urls;
+}
@@ -0,0 +1,25 @@
+package searchengine.dto.result;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReindexUrlResult {
+    /**
+     * Адрес страницы, как он передан в задании.
+     */
+    private String url;
+    private ReindexUrlStatus status;
+    private String error;
+    /**
+     * Время завершения обработки адреса.
+     */
+    private LocalDateTime finishedAt;
+}
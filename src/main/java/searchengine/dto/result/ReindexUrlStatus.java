@@ -0,0 +1,24 @@
+package searchengine.dto.result;
+
+/**
+ * Состояние адреса в задании переиндексации.
+ */
+public enum ReindexUrlStatus {
+    /**
+     * Ожидает в очереди.
+     */
+    QUEUED,
+    /**
+     * Загружается и индексируется.
+     */
+    RUNNING,
+    INDEXED,
+    /**
+     * Страницу не удалось загрузить или проиндексировать (причина - в поле error).
+     */
+    FAILED,
+    /**
+     * Адрес не принят в очередь: он не относится к сайтам из конфигурации или очередь переполнена.
+     */
+    REJECTED
+}
@@ -1,5 +1,6 @@
 package searchengine.dto.result;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 @Data
@@ -9,4 +10,8 @@ public class RelevancePage {
     private String title;
     private String snippet;
     private float relevance;
+    @JsonIgnore
+    private Integer siteId;
+    @JsonIgnore
+    private Integer pageId;
 }
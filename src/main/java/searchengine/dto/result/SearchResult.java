@@ -0,0 +1,31 @@
+package searchengine.dto.result;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class SearchResult {
+    /**
+     * Общее число найденных страниц.
+     */
+    private int count;
+    /**
+     * Курсор следующей страницы выдачи, либо null, если это последняя страница.
+     */
+    private String nextCursor;
+    /**
+     * План выполнения запроса с временем каждого шага.
+     */
+    private QueryPlan plan;
+    /**
+     * Шарды, не ответившие вовремя (результат неполный), либо null.
+     */
+    private List<String> failedShards;
+
+    public SearchResult(int count, String nextCursor, QueryPlan plan) {
+        this(count, nextCursor, plan, null);
+    }
+}
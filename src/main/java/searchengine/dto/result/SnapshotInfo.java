@@ -0,0 +1,44 @@
+package searchengine.dto.result;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class SnapshotInfo {
+    /**
+     * Версия формата снимка.
+     */
+    private int version;
+    /**
+     * Время создания снимка.
+     */
+    private LocalDateTime createdAt;
+    /**
+     * Содержит ли снимок html-код страниц.
+     */
+    private boolean content;
+    /**
+     * Следующее значение hibernate_sequence на момент создания снимка.
+     */
+    private long nextId;
+    private int sites;
+    private long pages;
+    /**
+     * Наибольший id страницы (вместе с числом страниц и лемм позволяет проверить, что снимок совпадает с БД).
+     */
+    private int maxPageId;
+    private long lemmas;
+    /**
+     * Число записей индекса (лемма на странице).
+     */
+    private long postings;
+    /**
+     * Размер файла снимка в байтах.
+     */
+    private long bytes;
+    /**
+     * Время выгрузки или загрузки, в миллисекундах.
+     */
+    private long millis;
+}
@@ -0,0 +1,18 @@
+package searchengine.dto.shard;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ShardFetch {
+    /**
+     * Поисковый запрос, по которому строятся сниппеты.
+     */
+    private String query;
+    /**
+     * id страниц шарда, попавших в выдачу.
+     */
+    private List<Integer> pageIds = new ArrayList<>();
+}
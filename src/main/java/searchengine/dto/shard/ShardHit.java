@@ -0,0 +1,18 @@
+package searchengine.dto.shard;
+
+import lombok.Data;
+
+/**
+ * Результат поиска на шарде. В отличие от RelevancePage, id страницы и сайта передаются координатору.
+ */
+@Data
+public class ShardHit {
+    private int pageId;
+    private Integer siteId;
+    private String site;
+    private String siteName;
+    private String uri;
+    private String title;
+    private String snippet;
+    private float relevance;
+}
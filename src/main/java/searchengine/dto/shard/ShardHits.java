@@ -0,0 +1,27 @@
+package searchengine.dto.shard;
+
+import lombok.Data;
+import searchengine.dto.result.QueryPlan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ShardHits {
+    /**
+     * Общее число найденных на шарде страниц.
+     */
+    private int count;
+    /**
+     * Число найденных страниц после курсора (равно count, если курсор не задан).
+     */
+    private int after;
+    /**
+     * Лучшие результаты шарда после курсора по убыванию релевантности, без заголовков и сниппетов.
+     */
+    private List<ShardHit> hits = new ArrayList<>();
+    /**
+     * План выполнения запроса на шарде.
+     */
+    private QueryPlan plan;
+}
@@ -0,0 +1,32 @@
+package searchengine.dto.shard;
+
+import lombok.Data;
+
+@Data
+public class ShardQuery {
+    /**
+     * Поисковый запрос.
+     */
+    private String query;
+    /**
+     * Адрес сайта, либо null для поиска по всем сайтам.
+     */
+    private String site;
+    /**
+     * Сколько лучших результатов вернуть.
+     */
+    private int limit;
+    /**
+     * Курсор, после которого начинаются результаты, либо null.
+     */
+    private String cursor;
+    /**
+     * true, если результат этого шарда с той же релевантностью и id страницы, что и у курсора, идет после курсора
+     * (последний выданный результат получен от шарда с меньшим номером).
+     */
+    private boolean includeCursor;
+    /**
+     * Общая статистика всех шардов.
+     */
+    private ShardStatistics statistics;
+}
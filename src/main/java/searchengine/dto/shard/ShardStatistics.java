@@ -0,0 +1,31 @@
+package searchengine.dto.shard;
+
+import lombok.Data;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Статистика поискового запроса на шарде (или сумма по всем шардам), от которой зависит,
+ * какие леммы запроса слишком частые и не участвуют в поиске.
+ */
+@Data
+public class ShardStatistics {
+    /**
+     * Число страниц (без дубликатов).
+     */
+    private long pages;
+    /**
+     * Число страниц, на которых встречается каждая лемма запроса.
+     */
+    private Map<String, Integer> frequencies = new TreeMap<>();
+
+    /**
+     * Метод, прибавляющий статистику другого шарда.
+     * @param other - статистика шарда.
+     */
+    public void add(ShardStatistics other) {
+        pages += other.getPages();
+        other.getFrequencies().forEach((lemma, frequency) -> frequencies.merge(lemma, frequency, Integer::sum));
+    }
+}
@@ -0,0 +1,21 @@
+package searchengine.model;
+
+/**
+ * Режим запуска индексации сайтов.
+ */
+public enum IndexingMode {
+    /**
+     * Индексация заново: сохраненные страницы сайтов удаляются.
+     */
+    FULL,
+    /**
+     * Продолжение обхода с последней контрольной точки без удаления сохраненных страниц;
+     * сайты без контрольной точки индексируются заново.
+     */
+    RESUME,
+    /**
+     * Повторный обход без удаления сохраненных страниц: страницы из карты сайта, не изменявшиеся (по lastmod)
+     * после их индексации, не загружаются, остальные найденные страницы индексируются заново или добавляются.
+     */
+    INCREMENTAL
+}
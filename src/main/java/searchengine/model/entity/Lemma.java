@@ -10,7 +10,7 @@ import javax.persistence.*;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "lemma")
+@Table(name = "lemma", indexes = @Index(name = "idx_lemma_lemma_site", columnList = "lemma, site_id", unique = true))
 public class Lemma {
 
     @Id
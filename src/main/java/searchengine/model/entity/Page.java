@@ -5,12 +5,17 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 
 @Entity
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(indexes = @Index(columnList = "path", unique = true))
+@Table(name = "page", indexes = @Index(name = "idx_page_site_path_hash", columnList = "site_id, path_hash", unique = true))
 public class Page {
 
     @Id
@@ -24,10 +29,51 @@ public class Page {
     @Column(columnDefinition = "TEXT", nullable = false)
     private String path;
 
+    @Column(name = "path_hash", columnDefinition = "CHAR(32)", nullable = false)
+    private String pathHash;
+
     @Column(nullable = false)
     private Integer code;
 
     @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
     private String content;
 
+    @Column(name = "indexed_at", columnDefinition = "DATETIME")
+    private LocalDateTime indexedAt;
+
+    /**
+     * Отпечаток SimHash лемм страницы, либо null, если он не вычислялся.
+     */
+    @Column(name = "simhash")
+    private Long simhash;
+
+    /**
+     * Id почти совпадающей страницы сайта, если страница сохранена как ее копия: тогда содержимое страницы
+     * не хранится, а ее леммы не индексируются.
+     */
+    @Column(name = "duplicate_of")
+    private Integer duplicateOf;
+
+    /**
+     * Метод, задающий адрес страницы вместе с его хэшем, по которому строится уникальный индекс в рамках сайта.
+     * @param path - адрес страницы от корня сайта.
+     */
+    public void setPath(String path) {
+        this.path = path;
+        this.pathHash = hashPath(path);
+    }
+
+    /**
+     * Метод, вычисляющий хэш адреса страницы (совпадает с MD5(path) в MySQL).
+     * @param path - адрес страницы от корня сайта.
+     * @return - MD5-хэш адреса в шестнадцатеричном виде.
+     */
+    public static String hashPath(String path) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(digest.digest(path.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
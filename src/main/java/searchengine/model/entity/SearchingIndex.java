@@ -10,7 +10,9 @@ import javax.persistence.*;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "searching_index")
+@Table(name = "searching_index", indexes = {
+        @Index(name = "idx_searching_index_lemma_page", columnList = "lemma_id, page_id, lemmas_count"),
+        @Index(name = "idx_searching_index_page_lemma", columnList = "page_id, lemma_id, lemmas_count")})
 public class SearchingIndex {
 
     @Id
@@ -18,8 +20,8 @@ public class SearchingIndex {
     @Column(nullable = false)
     private Integer id;
 
-    @OneToOne(cascade = CascadeType.MERGE)
-    @JoinColumn(name = "page_id", referencedColumnName = "id")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "page_id", referencedColumnName = "id", nullable = false)
     private Page page;
 
     @ManyToOne(fetch = FetchType.LAZY)
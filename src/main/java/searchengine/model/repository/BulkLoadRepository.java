@@ -0,0 +1,175 @@
+package searchengine.model.repository;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.entity.Site;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная загрузка строк в таблицы в обход Hibernate (импорт снимка индекса, частоты лемм): сайты, страницы и леммы
+ * сохраняются с id из снимка, строки вставляются многострочными INSERT по MAX_ROWS_PER_STATEMENT.
+ */
+@Repository
+public class BulkLoadRepository {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BulkLoadRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Метод, возвращающий следующее значение hibernate_sequence (общей последовательности id всех таблиц).
+     * @return - следующий id.
+     */
+    public long getNextId() {
+        Long nextId = jdbcTemplate.queryForObject("SELECT MAX(next_val) FROM hibernate_sequence", Long.class);
+        return nextId == null ? 1 : nextId;
+    }
+
+    /**
+     * Метод, сдвигающий hibernate_sequence так, чтобы новые id были не меньше заданного
+     * (после вставки строк с id из снимка).
+     * @param nextId - наименьший следующий id.
+     */
+    public void ensureNextId(long nextId) {
+        jdbcTemplate.update("UPDATE hibernate_sequence SET next_val = GREATEST(next_val, ?)", nextId);
+    }
+
+    /**
+     * Метод, резервирующий в hibernate_sequence диапазон id одним запросом.
+     * Как и генератор id Hibernate, резервирует id в отдельном соединении с автофиксацией, а не в текущей
+     * транзакции: иначе блокировка строки hibernate_sequence держится до конца транзакции, и генератор Hibernate
+     * в той же транзакции ждет ее в своем соединении до истечения innodb_lock_wait_timeout.
+     * @param count - число id.
+     * @return - первый id диапазона.
+     */
+    public long reserveIds(int count) {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE hibernate_sequence SET next_val = LAST_INSERT_ID(next_val + ?)")) {
+                update.setInt(1, count);
+                update.executeUpdate();
+            }
+            try (Statement select = connection.createStatement();
+                 ResultSet result = select.executeQuery("SELECT LAST_INSERT_ID()")) {
+                result.next();
+                return result.getLong(1) - count;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Не удалось зарезервировать id", e);
+        }
+    }
+
+    public void insertSites(Collection<Site> sites) {
+        List<Object[]> rows = new ArrayList<>(sites.size());
+        for (Site site : sites) {
+            rows.add(new Object[]{site.getId(), site.getStatus().name(), site.getStatusTime(), site.getLastError(),
+                    site.getUrl(), site.getName()});
+        }
+        insert("site", "id, status, status_time, last_error, url, name", rows);
+    }
+
+    public void insertPages(Collection<Page> pages) {
+        List<Object[]> rows = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            rows.add(new Object[]{page.getId(), page.getSite() == null ? null : page.getSite().getId(),
+                    page.getPath(), page.getPathHash(), page.getCode(), page.getContent(), page.getIndexedAt(),
+                    page.getSimhash(), page.getDuplicateOf()});
+        }
+        insert("page", "id, site_id, path, path_hash, code, content, indexed_at, simhash, duplicate_of", rows);
+    }
+
+    public void insertLemmas(Collection<Lemma> lemmas) {
+        List<Object[]> rows = new ArrayList<>(lemmas.size());
+        for (Lemma lemma : lemmas) {
+            rows.add(new Object[]{lemma.getId(), lemma.getSite() == null ? null : lemma.getSite().getId(),
+                    lemma.getLemma(), lemma.getFrequency()});
+        }
+        insert("lemma", "id, site_id, lemma, frequency", rows);
+    }
+
+    /**
+     * Метод, добавляющий леммы сайта с частотой 1, либо атомарно увеличивающий на единицу частоту уже
+     * существующих (INSERT ... ON DUPLICATE KEY UPDATE по уникальному ключу (lemma, site_id)), так что
+     * одновременная индексация страниц с одной новой леммой не теряет приращения и не создает дубликатов.
+     * Леммы вставляются в порядке сортировки, чтобы параллельные транзакции блокировали ключи в одном порядке.
+     * @param siteId - id сайта.
+     * @param lemmas - леммы.
+     */
+    public void upsertLemmas(Integer siteId, Collection<String> lemmas) {
+        if (lemmas.isEmpty()) {
+            return;
+        }
+        List<String> sorted = new ArrayList<>(lemmas);
+        Collections.sort(sorted);
+        long id = reserveIds(sorted.size());
+        List<Object[]> rows = new ArrayList<>(sorted.size());
+        for (String lemma : sorted) {
+            rows.add(new Object[]{id++, siteId, lemma, 1});
+        }
+        insert("lemma", "id, site_id, lemma, frequency", rows, " ON DUPLICATE KEY UPDATE frequency = frequency + 1");
+    }
+
+    /**
+     * Метод, вставляющий строки индекса с id из hibernate_sequence.
+     * @param pages - страницы и их леммы с рангом.
+     */
+    public void insertIndexes(Map<Page, Map<Lemma, Float>> pages) {
+        int count = 0;
+        for (Map<Lemma, Float> ranks : pages.values()) {
+            count += ranks.size();
+        }
+        if (count == 0) {
+            return;
+        }
+        long id = reserveIds(count);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (Map.Entry<Page, Map<Lemma, Float>> page : pages.entrySet()) {
+            for (Map.Entry<Lemma, Float> rank : page.getValue().entrySet()) {
+                rows.add(new Object[]{id++, page.getKey().getId(), rank.getKey().getId(), rank.getValue()});
+            }
+        }
+        insert("searching_index", "id, page_id, lemma_id, lemmas_count", rows);
+    }
+
+    private void insert(String table, String columns, List<Object[]> rows) {
+        insert(table, columns, rows, "");
+    }
+
+    private void insert(String table, String columns, List<Object[]> rows, String suffix) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String placeholders = "(" + "?, ".repeat(rows.get(0).length - 1) + "?)";
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, rows.size()));
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (").append(columns)
+                    .append(") VALUES ");
+            List<Object> args = new ArrayList<>(chunk.size() * chunk.get(0).length);
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append(placeholders);
+                Collections.addAll(args, chunk.get(i));
+            }
+            jdbcTemplate.update(sql.append(suffix).toString(), args.toArray());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package searchengine.model.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.entity.SearchingIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище поискового индекса в таблице searching_index.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "index-storage", name = "engine", havingValue = "mysql", matchIfMissing = true)
+public class JpaPostingRepository implements PostingRepository {
+
+    private final SearchingIndexRepository indexRepository;
+    private final LemmaRepository lemmaRepository;
+    private final BulkLoadRepository bulkLoadRepository;
+
+    public JpaPostingRepository(SearchingIndexRepository indexRepository, LemmaRepository lemmaRepository,
+                                BulkLoadRepository bulkLoadRepository) {
+        this.indexRepository = indexRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.bulkLoadRepository = bulkLoadRepository;
+    }
+
+    @Override
+    public List<Posting> findByLemma(String lemma, Integer siteId) {
+        return toPostings(siteId == null ? indexRepository.findPostingsByLemma(lemma)
+                : indexRepository.findPostingsByLemmaAndSiteId(lemma, siteId));
+    }
+
+    @Override
+    public List<Posting> findByLemmaAndPageIdIn(String lemma, Collection<Integer> pageIds) {
+        return toPostings(indexRepository.findPostingsByLemmaAndPageIdIn(lemma, pageIds));
+    }
+
+    @Override
+    public int countPages(String lemma, Collection<Integer> siteIds) {
+        return siteIds.isEmpty() ? 0 : (int) indexRepository.countByLemmaAndSiteIdIn(lemma, siteIds);
+    }
+
+    @Override
+    public Map<String, Float> findByPage(Page page) {
+        Map<String, Float> lemmas = new HashMap<>();
+        for (Object[] row : indexRepository.findLemmasByPage(page)) {
+            lemmas.merge((String) row[0], ((Number) row[1]).floatValue(), Float::sum);
+        }
+        return lemmas;
+    }
+
+    @Override
+    public Map<String, Integer> countLemmasBySiteId(Integer siteId) {
+        Map<String, Integer> lemmas = new HashMap<>();
+        for (Object[] row : lemmaRepository.findFrequenciesBySiteId(siteId)) {
+            lemmas.merge((String) row[0], ((Number) row[1]).intValue(), Integer::sum);
+        }
+        return lemmas;
+    }
+
+    @Override
+    public void saveAll(Page page, Map<Lemma, Float> ranks) {
+        List<SearchingIndex> indexes = new ArrayList<>(ranks.size());
+        for (Map.Entry<Lemma, Float> entry : ranks.entrySet()) {
+            SearchingIndex index = new SearchingIndex();
+            index.setPage(page);
+            index.setLemma(entry.getKey());
+            index.setLemmasCount(entry.getValue());
+            indexes.add(index);
+        }
+        indexRepository.saveAll(indexes);
+    }
+
+    @Override
+    public void loadAll(Map<Page, Map<Lemma, Float>> pages) {
+        bulkLoadRepository.insertIndexes(pages);
+    }
+
+    @Override
+    public void forEachPage(BiConsumer<Integer, Map<String, Float>> consumer) {
+        try (Stream<Object[]> rows = indexRepository.streamAll()) {
+            Integer pageId = null;
+            Map<String, Float> lemmas = new HashMap<>();
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                Integer rowPageId = ((Number) row[0]).intValue();
+                if (!rowPageId.equals(pageId)) {
+                    if (pageId != null) {
+                        consumer.accept(pageId, lemmas);
+                    }
+                    pageId = rowPageId;
+                    lemmas = new HashMap<>();
+                }
+                lemmas.merge((String) row[1], ((Number) row[2]).floatValue(), Float::sum);
+            }
+            if (pageId != null) {
+                consumer.accept(pageId, lemmas);
+            }
+        }
+    }
+
+    @Override
+    public void deleteByPage(Page page) {
+        indexRepository.deleteByPage(page);
+    }
+
+    @Override
+    public void deleteBySiteId(Integer siteId) {
+        lemmaRepository.decreaseFrequencyBySiteId(siteId);
+        indexRepository.deleteBySiteId(siteId);
+    }
+
+    @Override
+    public void deleteAll() {
+        indexRepository.deleteAllInBatch();
+    }
+
+    private static List<Posting> toPostings(List<Object[]> rows) {
+        List<Posting> postings = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            postings.add(new Posting(((Number) row[0]).intValue(), ((Number) row[1]).floatValue()));
+        }
+        return postings;
+    }
+}
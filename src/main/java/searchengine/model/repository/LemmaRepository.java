@@ -1,11 +1,20 @@
 package searchengine.model.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.entity.Lemma;
 import searchengine.model.entity.Site;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
@@ -13,4 +22,72 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     List<Lemma> findByLemma(String lemma);
 
     List<Lemma> findBySite(Site site);
+
+    List<Lemma> findByLemmaIn(Collection<String> lemmas);
+
+    List<Lemma> findBySiteAndLemmaIn(Site site, Collection<String> lemmas);
+
+    List<Lemma> findBySiteIdAndLemmaIn(Integer siteId, Collection<String> lemmas);
+
+    /**
+     * Метод, атомарно увеличивающий частоту лемм на единицу (страница с этими леммами добавлена).
+     * @param ids - идентификаторы лемм.
+     * @return - число измененных лемм.
+     */
+    @Modifying
+    @Query("UPDATE Lemma l SET l.frequency = l.frequency + 1 WHERE l.id IN :ids")
+    int increaseFrequency(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Метод, уменьшающий частоту лемм на число страниц сайта, на которых они встречаются.
+     * Вызывается перед удалением индексов сайта.
+     * @param siteId - идентификатор сайта.
+     * @return - число измененных лемм.
+     */
+    @Modifying
+    @Query(value = "UPDATE lemma l JOIN (SELECT si.lemma_id, COUNT(*) AS pages FROM searching_index si "
+            + "JOIN page p ON p.id = si.page_id WHERE p.site_id = :siteId GROUP BY si.lemma_id) c "
+            + "ON c.lemma_id = l.id SET l.frequency = l.frequency - c.pages", nativeQuery = true)
+    int decreaseFrequencyBySiteId(@Param("siteId") Integer siteId);
+
+    /**
+     * Метод, уменьшающий частоту заданных лемм сайта на одно и то же число (строки тех же лемм
+     * на других сайтах не меняются).
+     * @param siteId - идентификатор сайта.
+     * @param lemmas - леммы.
+     * @param count - на сколько уменьшить частоту.
+     * @return - число измененных лемм.
+     */
+    @Modifying
+    @Query("UPDATE Lemma l SET l.frequency = l.frequency - :count WHERE l.site.id = :siteId AND l.lemma IN :lemmas")
+    int decreaseFrequency(@Param("siteId") Integer siteId, @Param("lemmas") Collection<String> lemmas,
+                          @Param("count") int count);
+
+    @Modifying
+    @Query(value = "DELETE FROM lemma WHERE frequency <= 0", nativeQuery = true)
+    int deleteUnused();
+
+    /**
+     * Метод, возвращающий все леммы с частотой (без загрузки сущностей).
+     * @return - строки вида [лемма, частота].
+     */
+    @Query(value = "SELECT lemma, frequency FROM lemma WHERE frequency > 0", nativeQuery = true)
+    List<Object[]> findAllFrequencies();
+
+    /**
+     * Метод, возвращающий леммы сайта с числом страниц сайта, на которых они встречаются.
+     * @param siteId - идентификатор сайта.
+     * @return - строки вида [лемма, число страниц].
+     */
+    @Query(value = "SELECT l.lemma, COUNT(*) FROM searching_index si JOIN page p ON p.id = si.page_id "
+            + "JOIN lemma l ON l.id = si.lemma_id WHERE p.site_id = :siteId GROUP BY l.lemma", nativeQuery = true)
+    List<Object[]> findFrequenciesBySiteId(@Param("siteId") Integer siteId);
+
+    /**
+     * Метод, читающий все леммы потоком (для выгрузки снимка индекса). Вызывается в транзакции; поток нужно закрыть.
+     * @return - строки вида [id, id сайта, лемма, частота].
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT l.id, l.site.id, l.lemma, l.frequency FROM Lemma l")
+    Stream<Object[]> streamAll();
 }
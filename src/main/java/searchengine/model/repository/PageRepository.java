@@ -1,11 +1,20 @@
 package searchengine.model.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.entity.Page;
 import searchengine.model.entity.Site;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PageRepository extends JpaRepository<Page, Integer> {
@@ -13,4 +22,62 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     List<Page> findByPath(String path);
 
     List<Page> findBySite(Site site);
+
+    List<Page> findBySiteAndPathHash(Site site, String pathHash);
+
+    long countByDuplicateOfIsNull();
+
+    long countBySiteIdInAndDuplicateOfIsNull(Collection<Integer> siteIds);
+
+    @Query("SELECT MAX(p.id) FROM Page p")
+    Integer findMaxId();
+
+    /**
+     * Метод, читающий все страницы потоком по возрастанию id (для выгрузки снимка индекса).
+     * Вызывается в транзакции; поток нужно закрыть.
+     * @return - строки [id, id сайта, путь, код ответа, время индексации, отпечаток, id оригинала, html-код].
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT p.id, p.site.id, p.path, p.code, p.indexedAt, p.simhash, p.duplicateOf, p.content "
+            + "FROM Page p ORDER BY p.id")
+    Stream<Object[]> streamAll();
+
+    /**
+     * Метод, читающий все страницы без html-кода потоком по возрастанию id.
+     * @return - строки [id, id сайта, путь, код ответа, время индексации, отпечаток, id оригинала].
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT p.id, p.site.id, p.path, p.code, p.indexedAt, p.simhash, p.duplicateOf FROM Page p ORDER BY p.id")
+    Stream<Object[]> streamMetadata();
+
+    /**
+     * Метод, возвращающий id сайта и путь страниц без html-кода (для страниц-кандидатов поиска).
+     * @param ids - id страниц.
+     * @return - строки [id, id сайта, путь].
+     */
+    @Query("SELECT p.id, p.site.id, p.path FROM Page p WHERE p.id IN :ids")
+    List<Object[]> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT p.id FROM Page p WHERE p.site.id = :siteId")
+    List<Integer> findIdsBySiteId(@Param("siteId") Integer siteId);
+
+    /**
+     * Метод, возвращающий отпечатки проиндексированных страниц (не копий).
+     * @return - строки [id страницы, id сайта, отпечаток].
+     */
+    @Query(value = "SELECT id, site_id, simhash FROM page WHERE simhash IS NOT NULL AND duplicate_of IS NULL",
+            nativeQuery = true)
+    List<Object[]> findFingerprints();
+
+    @Modifying
+    @Query(value = "UPDATE page SET duplicate_of = :newPageId WHERE duplicate_of = :pageId", nativeQuery = true)
+    int relinkDuplicates(@Param("pageId") Integer pageId, @Param("newPageId") Integer newPageId);
+
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE duplicate_of = :pageId", nativeQuery = true)
+    int deleteDuplicatesOf(@Param("pageId") Integer pageId);
+
+    @Modifying
+    @Query(value = "DELETE FROM page WHERE site_id = :siteId", nativeQuery = true)
+    int deleteBySiteId(@Param("siteId") Integer siteId);
 }
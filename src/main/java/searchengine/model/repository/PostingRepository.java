@@ -0,0 +1,103 @@
+package searchengine.model.repository;
+
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Хранилище поискового индекса: для каждой леммы - страницы, на которых она встречается, и ее ранг на странице.
+ * Реализация выбирается настройкой index-storage.engine: таблица searching_index (JpaPostingRepository)
+ * или сегменты на диске (SegmentPostingRepository). Сайты, страницы и леммы в обоих случаях хранятся в БД.
+ * Изменения, выполненные внутри транзакции, становятся видны поиску после ее фиксации.
+ */
+public interface PostingRepository {
+
+    /**
+     * Метод, возвращающий страницы, на которых встречается лемма.
+     * @param lemma - лемма.
+     * @param siteId - id сайта, либо null для всех сайтов.
+     * @return - страницы и ранг леммы на них.
+     */
+    List<Posting> findByLemma(String lemma, Integer siteId);
+
+    /**
+     * Метод, возвращающий ранг леммы на тех из заданных страниц, на которых она встречается.
+     * @param lemma - лемма.
+     * @param pageIds - id страниц.
+     * @return - страницы и ранг леммы на них.
+     */
+    List<Posting> findByLemmaAndPageIdIn(String lemma, Collection<Integer> pageIds);
+
+    /**
+     * Метод, возвращающий число страниц сайтов, на которых встречается лемма.
+     * @param lemma - лемма.
+     * @param siteIds - id сайтов.
+     * @return - число страниц.
+     */
+    int countPages(String lemma, Collection<Integer> siteIds);
+
+    /**
+     * Метод, возвращающий леммы страницы.
+     * @param page - страница.
+     * @return - леммы страницы и их ранг.
+     */
+    Map<String, Float> findByPage(Page page);
+
+    /**
+     * Метод, возвращающий леммы сайта с числом страниц сайта, на которых они встречаются.
+     * @param siteId - id сайта.
+     * @return - леммы и число страниц.
+     */
+    Map<String, Integer> countLemmasBySiteId(Integer siteId);
+
+    /**
+     * Метод, сохраняющий индекс новой страницы.
+     * @param page - сохраненная страница.
+     * @param ranks - леммы страницы и их ранг.
+     */
+    void saveAll(Page page, Map<Lemma, Float> ranks);
+
+    /**
+     * Метод, загружающий индекс страниц пакетом (при импорте снимка индекса). Частоты лемм не меняются,
+     * изменения видны поиску сразу.
+     * @param pages - сохраненные страницы и их леммы с рангом.
+     */
+    void loadAll(Map<Page, Map<Lemma, Float>> pages);
+
+    /**
+     * Метод, передающий обработчику леммы каждой страницы индекса (при выгрузке снимка индекса).
+     * Для хранилища в БД вызывается в транзакции.
+     * @param consumer - обработчик id страницы и ее лемм с рангом.
+     */
+    void forEachPage(BiConsumer<Integer, Map<String, Float>> consumer);
+
+    /**
+     * Метод, удаляющий индекс страницы.
+     * @param page - страница.
+     */
+    void deleteByPage(Page page);
+
+    /**
+     * Метод, удаляющий индекс всех страниц сайта и уменьшающий частоты его лемм на число страниц сайта,
+     * на которых они встречаются (неиспользуемые леммы не удаляются).
+     * @param siteId - id сайта.
+     */
+    void deleteBySiteId(Integer siteId);
+
+    /**
+     * Метод, удаляющий весь индекс.
+     */
+    void deleteAll();
+
+    /**
+     * Страница, на которой встречается лемма.
+     * @param pageId - id страницы.
+     * @param rank - ранг леммы на странице.
+     */
+    record Posting(int pageId, float rank) {
+    }
+}
@@ -1,18 +1,73 @@
 package searchengine.model.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import searchengine.model.entity.Lemma;
 import searchengine.model.entity.Page;
 import searchengine.model.entity.SearchingIndex;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface SearchingIndexRepository extends JpaRepository<SearchingIndex, Integer> {
 
-    List<SearchingIndex> findByPage(Page page);
+    /**
+     * Метод, возвращающий страницы, на которых встречается лемма (без загрузки сущностей).
+     * @param lemma - лемма.
+     * @return - строки вида [id страницы, ранг].
+     */
+    @Query("SELECT si.page.id, si.lemmasCount FROM SearchingIndex si WHERE si.lemma.lemma = :lemma")
+    List<Object[]> findPostingsByLemma(@Param("lemma") String lemma);
+
+    @Query("SELECT si.page.id, si.lemmasCount FROM SearchingIndex si "
+            + "WHERE si.lemma.lemma = :lemma AND si.page.site.id = :siteId")
+    List<Object[]> findPostingsByLemmaAndSiteId(@Param("lemma") String lemma, @Param("siteId") Integer siteId);
+
+    @Query("SELECT si.page.id, si.lemmasCount FROM SearchingIndex si "
+            + "WHERE si.lemma.lemma = :lemma AND si.page.id IN :pageIds")
+    List<Object[]> findPostingsByLemmaAndPageIdIn(@Param("lemma") String lemma,
+                                                  @Param("pageIds") Collection<Integer> pageIds);
+
+    /**
+     * Метод, возвращающий число страниц сайтов, на которых встречается лемма. Сайт берется у страницы,
+     * как и в SegmentPostingRepository, поэтому оба хранилища дают одинаковую частоту для шарда.
+     * @param lemma - лемма.
+     * @param siteIds - id сайтов.
+     * @return - число страниц.
+     */
+    @Query("SELECT COUNT(si) FROM SearchingIndex si WHERE si.lemma.lemma = :lemma AND si.page.site.id IN :siteIds")
+    long countByLemmaAndSiteIdIn(@Param("lemma") String lemma, @Param("siteIds") Collection<Integer> siteIds);
+
+    /**
+     * Метод, возвращающий леммы страницы (без загрузки сущностей).
+     * @param page - страница.
+     * @return - строки вида [лемма, ранг].
+     */
+    @Query("SELECT si.lemma.lemma, si.lemmasCount FROM SearchingIndex si WHERE si.page = :page")
+    List<Object[]> findLemmasByPage(@Param("page") Page page);
+
+    @Modifying
+    @Query("DELETE FROM SearchingIndex si WHERE si.page = :page")
+    int deleteByPage(@Param("page") Page page);
 
-    List<SearchingIndex> findByLemma(Lemma lemma);
+    @Modifying
+    @Query(value = "DELETE si FROM searching_index si JOIN page p ON p.id = si.page_id WHERE p.site_id = :siteId",
+            nativeQuery = true)
+    int deleteBySiteId(@Param("siteId") Integer siteId);
 
-}
\ No newline at end of file
+    /**
+     * Метод, читающий весь индекс потоком, сгруппированным по страницам. Вызывается в транзакции; поток нужно закрыть.
+     * @return - строки вида [id страницы, лемма, ранг].
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT si.page.id, si.lemma.lemma, si.lemmasCount FROM SearchingIndex si ORDER BY si.page.id")
+    Stream<Object[]> streamAll();
+}
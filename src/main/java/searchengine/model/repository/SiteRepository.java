@@ -1,9 +1,14 @@
 package searchengine.model.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.model.Status;
 import searchengine.model.entity.Site;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -11,4 +16,18 @@ public interface SiteRepository extends JpaRepository<Site, Integer> {
 
     List<Site> findByUrl(String url);
 
+    /**
+     * Метод, переводящий все сайты из одного статуса в другой одним запросом.
+     * @param from - текущий статус.
+     * @param to - новый статус.
+     * @param lastError - текст ошибки.
+     * @param statusTime - время изменения статуса.
+     * @return - число измененных сайтов.
+     */
+    @Modifying
+    @Query("UPDATE Site s SET s.status = :to, s.lastError = :lastError, s.statusTime = :statusTime " +
+            "WHERE s.status = :from")
+    int replaceStatus(@Param("from") Status from, @Param("to") Status to, @Param("lastError") String lastError,
+                      @Param("statusTime") LocalDateTime statusTime);
+
 }
@@ -0,0 +1,108 @@
+package searchengine.model.segment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Страницы, еще не записанные в сегмент: хранятся в памяти (и в журнале) до записи на диск.
+ * Не потокобезопасен, доступ синхронизируется SegmentPostingRepository.
+ */
+class MemTable {
+
+    /**
+     * Леммы каждой страницы с рангом.
+     */
+    private final Map<Integer, PageEntry> pages = new HashMap<>();
+    /**
+     * Страницы каждой леммы по возрастанию id.
+     */
+    private final Map<String, TreeMap<Integer, Float>> postings = new HashMap<>();
+
+    void add(int pageId, int siteId, Map<String, Float> ranks) {
+        remove(pageId);
+        pages.put(pageId, new PageEntry(siteId, ranks));
+        ranks.forEach((term, rank) -> postings.computeIfAbsent(term, key -> new TreeMap<>()).put(pageId, rank));
+    }
+
+    boolean remove(int pageId) {
+        PageEntry page = pages.remove(pageId);
+        if (page == null) {
+            return false;
+        }
+        for (String term : page.ranks().keySet()) {
+            TreeMap<Integer, Float> termPostings = postings.get(term);
+            termPostings.remove(pageId);
+            if (termPostings.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        return true;
+    }
+
+    boolean contains(int pageId) {
+        return pages.containsKey(pageId);
+    }
+
+    PageEntry getPage(int pageId) {
+        return pages.get(pageId);
+    }
+
+    void forEachPage(BiConsumer<Integer, PageEntry> consumer) {
+        pages.forEach(consumer);
+    }
+
+    int size() {
+        return pages.size();
+    }
+
+    boolean isEmpty() {
+        return pages.isEmpty();
+    }
+
+    /**
+     * Метод, передающий обработчику страницы леммы.
+     * @param term - лемма.
+     * @param consumer - обработчик.
+     */
+    void forEachPosting(String term, Segment.PostingConsumer consumer) {
+        TreeMap<Integer, Float> termPostings = postings.get(term);
+        if (termPostings != null) {
+            termPostings.forEach((pageId, rank) -> consumer.accept(pageId, pages.get(pageId).siteId(), rank));
+        }
+    }
+
+    /**
+     * Метод, записывающий страницы в новый сегмент.
+     * @param file - файл сегмента.
+     */
+    void writeTo(Path file) throws IOException {
+        Map<String, Integer> ordinals = new HashMap<>();
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            PostingBuffer buffer = new PostingBuffer();
+            for (Map.Entry<String, TreeMap<Integer, Float>> entry : new TreeMap<>(postings).entrySet()) {
+                buffer.clear();
+                entry.getValue().forEach((pageId, rank) -> buffer.add(pageId, pages.get(pageId).siteId(), rank));
+                ordinals.put(entry.getKey(), writer.addTerm(entry.getKey(), buffer.pageIds, buffer.siteIds,
+                        buffer.ranks, buffer.size));
+            }
+            for (Map.Entry<Integer, PageEntry> entry : new TreeMap<>(pages).entrySet()) {
+                buffer.clear();
+                entry.getValue().ranks().forEach((term, rank) -> buffer.add(ordinals.get(term), 0, rank));
+                writer.addPage(entry.getKey(), buffer.pageIds, buffer.ranks, buffer.size);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Страница в памяти.
+     * @param siteId - id сайта.
+     * @param ranks - леммы страницы и их ранг.
+     */
+    record PageEntry(int siteId, Map<String, Float> ranks) {
+    }
+}
@@ -0,0 +1,52 @@
+package searchengine.model.segment;
+
+import java.util.Arrays;
+
+/**
+ * Расширяемые массивы записей (id страницы или номер леммы, id сайта, ранг) для записи сегмента.
+ */
+class PostingBuffer {
+
+    int[] pageIds = new int[64];
+    int[] siteIds = new int[64];
+    float[] ranks = new float[64];
+    int size;
+
+    void add(int pageId, int siteId, float rank) {
+        if (size == pageIds.length) {
+            int capacity = size * 2;
+            pageIds = Arrays.copyOf(pageIds, capacity);
+            siteIds = Arrays.copyOf(siteIds, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+        }
+        pageIds[size] = pageId;
+        siteIds[size] = siteId;
+        ranks[size] = rank;
+        size++;
+    }
+
+    /**
+     * Метод, упорядочивающий записи по возрастанию id страницы.
+     */
+    void sortByPageId() {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (long) pageIds[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] sortedSiteIds = new int[size];
+        float[] sortedRanks = new float[size];
+        for (int i = 0; i < size; i++) {
+            int index = (int) keys[i];
+            pageIds[i] = (int) (keys[i] >>> 32);
+            sortedSiteIds[i] = siteIds[index];
+            sortedRanks[i] = ranks[index];
+        }
+        System.arraycopy(sortedSiteIds, 0, siteIds, 0, size);
+        System.arraycopy(sortedRanks, 0, ranks, 0, size);
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,250 @@
+package searchengine.model.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Неизменяемый сегмент индекса на диске, отображенный в память.
+ * Формат файла:
+ * <ul>
+ *     <li>заголовок: MAGIC, VERSION, число лемм, число страниц, число записей, смещение словаря, смещение таблицы страниц;</li>
+ *     <li>страницы каждой леммы: число блоков, таблица пропусков (последний id страницы блока и смещение блока),
+ *     затем блоки по BLOCK_SIZE записей (разность id страницы с предыдущей и id сайта в varint, ранг в float);</li>
+ *     <li>словарь: отсортированная таблица лемм (смещение строки, смещение страниц, число страниц), затем строки лемм;</li>
+ *     <li>леммы каждой страницы (число лемм, затем номер леммы в словаре в varint и ранг в float);</li>
+ *     <li>таблица страниц, отсортированная по id: id страницы и смещение ее лемм.</li>
+ * </ul>
+ * Все чтения выполняются по абсолютным смещениям, поэтому сегмент можно читать из нескольких потоков.
+ */
+class Segment {
+
+    static final int MAGIC = 0x53454753;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int BLOCK_SIZE = 128;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int termCount;
+    private final int pageCount;
+    private final long postingCount;
+    private final int dictionaryOffset;
+    private final int pagesOffset;
+
+    private Segment(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a segment file: " + file);
+        }
+        this.termCount = buffer.getInt(8);
+        this.pageCount = buffer.getInt(12);
+        this.postingCount = buffer.getLong(16);
+        this.dictionaryOffset = buffer.getInt(24);
+        this.pagesOffset = buffer.getInt(28);
+    }
+
+    /**
+     * Метод, открывающий сегмент.
+     * @param file - файл сегмента.
+     * @return - сегмент.
+     * @throws IOException - если файл не читается или не является сегментом.
+     */
+    static Segment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getSize() {
+        return buffer.capacity();
+    }
+
+    int getTermCount() {
+        return termCount;
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    long getPostingCount() {
+        return postingCount;
+    }
+
+    /**
+     * Метод, ищущий лемму в словаре двоичным поиском.
+     * @param term - лемма.
+     * @return - номер леммы в словаре, либо -1.
+     */
+    int findTerm(String term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = getTerm(middle).compareTo(term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    String getTerm(int ordinal) {
+        int offset = buffer.getInt(dictionaryOffset + ordinal * 12);
+        int length = buffer.getShort(offset) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Метод, передающий обработчику все страницы леммы в порядке возрастания id.
+     * @param ordinal - номер леммы в словаре.
+     * @param consumer - обработчик.
+     */
+    void forEachPosting(int ordinal, PostingConsumer consumer) {
+        int offset = getPostingsOffset(ordinal);
+        int count = getPostingCount(ordinal);
+        int position = buffer.getInt(offset + 8);
+        int[] value = new int[1];
+        int pageId = 0;
+        for (int i = 0; i < count; i++) {
+            position = readVarInt(position, value);
+            pageId += value[0];
+            position = readVarInt(position, value);
+            consumer.accept(pageId, value[0], buffer.getFloat(position));
+            position += 4;
+        }
+    }
+
+    /**
+     * Метод, находящий ранг леммы на странице: по таблице пропусков выбирается единственный блок,
+     * в котором может быть страница, и просматривается только он.
+     * @param ordinal - номер леммы в словаре.
+     * @param pageId - id страницы.
+     * @return - ранг, либо NaN, если леммы на странице нет.
+     */
+    float findRank(int ordinal, int pageId) {
+        int offset = getPostingsOffset(ordinal);
+        int count = getPostingCount(ordinal);
+        int blockCount = buffer.getInt(offset);
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getInt(offset + 4 + middle * 8) < pageId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (buffer.getInt(offset + 4 + low * 8) < pageId) {
+            return Float.NaN;
+        }
+        int position = buffer.getInt(offset + 4 + low * 8 + 4);
+        int current = low == 0 ? 0 : buffer.getInt(offset + 4 + (low - 1) * 8);
+        int blockEnd = Math.min(count, (low + 1) * BLOCK_SIZE);
+        int[] value = new int[1];
+        for (int i = low * BLOCK_SIZE; i < blockEnd; i++) {
+            position = readVarInt(position, value);
+            current += value[0];
+            position = readVarInt(position, value);
+            if (current == pageId) {
+                return buffer.getFloat(position);
+            }
+            position += 4;
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Метод, ищущий страницу в таблице страниц двоичным поиском.
+     * @param pageId - id страницы.
+     * @return - номер страницы в таблице, либо -1.
+     */
+    int findPage(int pageId) {
+        int low = 0;
+        int high = pageCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int current = getPageId(middle);
+            if (current < pageId) {
+                low = middle + 1;
+            } else if (current > pageId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    int getPageId(int index) {
+        return buffer.getInt(pagesOffset + index * 8);
+    }
+
+    /**
+     * Метод, передающий обработчику леммы страницы.
+     * @param index - номер страницы в таблице страниц.
+     * @param consumer - обработчик номера леммы в словаре и ее ранга.
+     */
+    void forEachPageTerm(int index, PageTermConsumer consumer) {
+        int position = buffer.getInt(pagesOffset + index * 8 + 4);
+        int[] value = new int[1];
+        position = readVarInt(position, value);
+        int count = value[0];
+        for (int i = 0; i < count; i++) {
+            position = readVarInt(position, value);
+            consumer.accept(value[0], buffer.getFloat(position));
+            position += 4;
+        }
+    }
+
+    /**
+     * Метод, возвращающий число страниц леммы.
+     * @param ordinal - номер леммы в словаре.
+     * @return - число страниц.
+     */
+    int getPostingCount(int ordinal) {
+        return buffer.getInt(dictionaryOffset + ordinal * 12 + 8);
+    }
+
+    private int getPostingsOffset(int ordinal) {
+        return buffer.getInt(dictionaryOffset + ordinal * 12 + 4);
+    }
+
+    private int readVarInt(int position, int[] value) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = buffer.get(position++);
+            result |= (next & 0x7F) << shift;
+            if (next >= 0) {
+                value[0] = result;
+                return position;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface PostingConsumer {
+        void accept(int pageId, int siteId, float rank);
+    }
+
+    @FunctionalInterface
+    interface PageTermConsumer {
+        void accept(int ordinal, float rank);
+    }
+}
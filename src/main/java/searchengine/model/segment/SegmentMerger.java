@@ -0,0 +1,105 @@
+package searchengine.model.segment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Объединение нескольких сегментов в один. Словари сегментов обходятся слиянием по порядку лемм,
+ * страницы одной леммы из разных сегментов объединяются по возрастанию id; удаленные страницы
+ * в новый сегмент не переносятся.
+ */
+final class SegmentMerger {
+
+    private SegmentMerger() {
+    }
+
+    /**
+     * Метод, записывающий объединение сегментов в файл.
+     * @param sources - исходные сегменты (каждая страница есть только в одном из них).
+     * @param deleted - id удаленных страниц.
+     * @param target - файл нового сегмента.
+     * @throws IOException - при ошибке записи.
+     */
+    static void merge(List<Segment> sources, BitSet deleted, Path target) throws IOException {
+        int[][] ordinalMaps = new int[sources.size()][];
+        PriorityQueue<TermCursor> terms = new PriorityQueue<>(Comparator.comparing(TermCursor::term));
+        for (int i = 0; i < sources.size(); i++) {
+            Segment source = sources.get(i);
+            ordinalMaps[i] = new int[source.getTermCount()];
+            Arrays.fill(ordinalMaps[i], -1);
+            if (source.getTermCount() > 0) {
+                terms.add(new TermCursor(i, 0, source.getTerm(0)));
+            }
+        }
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            PostingBuffer buffer = new PostingBuffer();
+            List<TermCursor> sameTerm = new ArrayList<>();
+            while (!terms.isEmpty()) {
+                String term = terms.peek().term();
+                sameTerm.clear();
+                while (!terms.isEmpty() && terms.peek().term().equals(term)) {
+                    sameTerm.add(terms.poll());
+                }
+                buffer.clear();
+                for (TermCursor cursor : sameTerm) {
+                    Segment source = sources.get(cursor.segment());
+                    source.forEachPosting(cursor.ordinal(), (pageId, siteId, rank) -> {
+                        if (!deleted.get(pageId)) {
+                            buffer.add(pageId, siteId, rank);
+                        }
+                    });
+                    int next = cursor.ordinal() + 1;
+                    if (next < source.getTermCount()) {
+                        terms.add(new TermCursor(cursor.segment(), next, source.getTerm(next)));
+                    }
+                }
+                if (buffer.size == 0) {
+                    continue;
+                }
+                if (sameTerm.size() > 1) {
+                    buffer.sortByPageId();
+                }
+                int ordinal = writer.addTerm(term, buffer.pageIds, buffer.siteIds, buffer.ranks, buffer.size);
+                for (TermCursor cursor : sameTerm) {
+                    ordinalMaps[cursor.segment()][cursor.ordinal()] = ordinal;
+                }
+            }
+
+            PriorityQueue<int[]> pages = new PriorityQueue<>(Comparator.comparingInt(page -> page[0]));
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i).getPageCount() > 0) {
+                    pages.add(new int[]{sources.get(i).getPageId(0), i, 0});
+                }
+            }
+            while (!pages.isEmpty()) {
+                int[] page = pages.poll();
+                Segment source = sources.get(page[1]);
+                if (!deleted.get(page[0])) {
+                    int[] ordinalMap = ordinalMaps[page[1]];
+                    buffer.clear();
+                    source.forEachPageTerm(page[2], (ordinal, rank) -> {
+                        if (ordinalMap[ordinal] >= 0) {
+                            buffer.add(ordinalMap[ordinal], 0, rank);
+                        }
+                    });
+                    if (buffer.size > 0) {
+                        writer.addPage(page[0], buffer.pageIds, buffer.ranks, buffer.size);
+                    }
+                }
+                if (page[2] + 1 < source.getPageCount()) {
+                    pages.add(new int[]{source.getPageId(page[2] + 1), page[1], page[2] + 1});
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    private record TermCursor(int segment, int ordinal, String term) {
+    }
+}
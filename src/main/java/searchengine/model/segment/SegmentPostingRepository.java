@@ -0,0 +1,798 @@
+package searchengine.model.segment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.IndexStorageSettings;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.repository.LemmaRepository;
+import searchengine.model.repository.PageRepository;
+import searchengine.model.repository.PostingRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище поискового индекса в неизменяемых сегментах на диске (index-storage.engine: segments).
+ * Новые страницы накапливаются в памяти (MemTable) и в журнале; каждые flush-pages страниц записываются
+ * в фоне новым сегментом. Удаленные страницы отмечаются в наборе удаленных id (id страниц не переиспользуются)
+ * и не переносятся в сегменты при объединении: когда сегментов становится больше merge-factor,
+ * самые маленькие из них объединяются в фоне. Список действующих сегментов хранится в файле segments.manifest,
+ * который заменяется атомарно, поэтому после сбоя используются только целиком записанные сегменты,
+ * а страницы, не попавшие в сегменты, восстанавливаются из журнала.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "index-storage", name = "engine", havingValue = "segments")
+public class SegmentPostingRepository implements PostingRepository {
+
+    private static final String MANIFEST = "segments.manifest";
+    private static final String DELETES = "deletes.bin";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String LOG_PREFIX = "log-";
+    private static final String LOG_SUFFIX = ".wal";
+
+    private static final byte LOG_ADD = 1;
+    private static final byte LOG_DELETE = 2;
+
+    /**
+     * Максимальный суммарный размер объединяемых сегментов (смещения в сегменте - 32-битные).
+     */
+    private static final long MAX_MERGE_SIZE = 1L << 30;
+
+    /**
+     * Максимальное число лемм в одном запросе изменения частот.
+     */
+    private static final int MAX_LEMMAS_PER_QUERY = 1000;
+
+    private final IndexStorageSettings settings;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final Path dir;
+
+    /**
+     * Поиск выполняется под блокировкой чтения, изменения состояния - под блокировкой записи.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private MemTable active = new MemTable();
+    /**
+     * Страницы, которые записываются в сегмент, либо null.
+     */
+    private MemTable flushing;
+    private Path flushingLog;
+    private List<Segment> segments = List.of();
+    private final BitSet deleted = new BitSet();
+    private long nextFileNumber;
+    private Path logFile;
+    private DataOutputStream log;
+    /**
+     * Номер состояния хранилища: увеличивается при удалении всего индекса, чтобы фоновая запись,
+     * начатая раньше, не вернула удаленные данные.
+     */
+    private long epoch;
+
+    private final ScheduledExecutorService backgroundExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SegmentPostingRepository(IndexStorageSettings settings, PageRepository pageRepository,
+                                    LemmaRepository lemmaRepository, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.dir = Paths.get(settings.getDir());
+        meterRegistry.gauge("searchengine.index.segments", this, SegmentPostingRepository::getSegmentCount);
+        meterRegistry.gauge("searchengine.index.memtable.pages", this, SegmentPostingRepository::getMemTablePages);
+    }
+
+    /**
+     * Метод, открывающий сегменты из манифеста, удаляющий файлы, не попавшие в манифест,
+     * и восстанавливающий из журналов страницы, которые не были записаны в сегменты.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        lock.writeLock().lock();
+        try {
+            Set<String> live = new HashSet<>();
+            Path manifest = dir.resolve(MANIFEST);
+            if (Files.isRegularFile(manifest)) {
+                live.addAll(Files.readAllLines(manifest));
+            }
+            List<Segment> opened = new ArrayList<>();
+            List<Path> logs = new ArrayList<>();
+            for (Path file : listFiles()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) && live.contains(name)) {
+                    opened.add(Segment.open(file));
+                } else if (name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX)) {
+                    logs.add(file);
+                } else if (!name.equals(MANIFEST) && !name.equals(DELETES)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                nextFileNumber = Math.max(nextFileNumber, getFileNumber(name) + 1);
+            }
+            segments = List.copyOf(opened);
+            Path deletes = dir.resolve(DELETES);
+            if (Files.isRegularFile(deletes)) {
+                deleted.or(BitSet.valueOf(Files.readAllBytes(deletes)));
+            }
+            logs.sort(Comparator.comparingLong(file -> getFileNumber(file.getFileName().toString())));
+            for (Path file : logs) {
+                replay(file);
+            }
+            if (!active.isEmpty()) {
+                segments = append(segments, write(active));
+                active = new MemTable();
+            }
+            saveManifest();
+            saveDeletes();
+            for (Path file : logs) {
+                Files.deleteIfExists(file);
+            }
+            openLog();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Posting> findByLemma(String lemma, Integer siteId) {
+        List<Posting> postings = new ArrayList<>();
+        forEachPosting(lemma, (pageId, pageSiteId, rank) -> {
+            if ((siteId == null || pageSiteId == siteId) && !deleted.get(pageId)) {
+                postings.add(new Posting(pageId, rank));
+            }
+        });
+        return postings;
+    }
+
+    @Override
+    public int countPages(String lemma, Collection<Integer> siteIds) {
+        int[] count = new int[1];
+        forEachPosting(lemma, (pageId, pageSiteId, rank) -> {
+            if (siteIds.contains(pageSiteId) && !deleted.get(pageId)) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Метод, передающий обработчику все записи леммы из сегментов и таблиц в памяти (включая удаленные страницы).
+     * @param lemma - лемма.
+     * @param consumer - обработчик записей.
+     */
+    private void forEachPosting(String lemma, Segment.PostingConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                int ordinal = segment.findTerm(lemma);
+                if (ordinal >= 0) {
+                    segment.forEachPosting(ordinal, consumer);
+                }
+            }
+            if (flushing != null) {
+                flushing.forEachPosting(lemma, consumer);
+            }
+            active.forEachPosting(lemma, consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Posting> findByLemmaAndPageIdIn(String lemma, Collection<Integer> pageIds) {
+        List<Posting> postings = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                int ordinal = segment.findTerm(lemma);
+                if (ordinal < 0) {
+                    continue;
+                }
+                for (Integer pageId : pageIds) {
+                    float rank = segment.findRank(ordinal, pageId);
+                    if (!Float.isNaN(rank) && !deleted.get(pageId)) {
+                        postings.add(new Posting(pageId, rank));
+                    }
+                }
+            }
+            for (MemTable memTable : getMemTables()) {
+                for (Integer pageId : pageIds) {
+                    MemTable.PageEntry page = memTable.getPage(pageId);
+                    Float rank = page == null ? null : page.ranks().get(lemma);
+                    if (rank != null && !deleted.get(pageId)) {
+                        postings.add(new Posting(pageId, rank));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return postings;
+    }
+
+    @Override
+    public Map<String, Float> findByPage(Page page) {
+        Map<String, Float> lemmas = new HashMap<>();
+        int pageId = page.getId();
+        lock.readLock().lock();
+        try {
+            if (deleted.get(pageId)) {
+                return lemmas;
+            }
+            for (Segment segment : segments) {
+                int index = segment.findPage(pageId);
+                if (index >= 0) {
+                    segment.forEachPageTerm(index, (ordinal, rank) -> lemmas.put(segment.getTerm(ordinal), rank));
+                }
+            }
+            for (MemTable memTable : getMemTables()) {
+                MemTable.PageEntry entry = memTable.getPage(pageId);
+                if (entry != null) {
+                    lemmas.putAll(entry.ranks());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return lemmas;
+    }
+
+    /**
+     * Метод, подсчитывающий страницы сайта для каждой леммы полным просмотром сегментов.
+     * @param siteId - id сайта.
+     * @return - леммы и число страниц.
+     */
+    @Override
+    public Map<String, Integer> countLemmasBySiteId(Integer siteId) {
+        Map<String, Integer> lemmas = new HashMap<>();
+        int[] count = new int[1];
+        Segment.PostingConsumer consumer = (pageId, pageSiteId, rank) -> {
+            if (pageSiteId == siteId && !deleted.get(pageId)) {
+                count[0]++;
+            }
+        };
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                for (int ordinal = 0; ordinal < segment.getTermCount(); ordinal++) {
+                    count[0] = 0;
+                    segment.forEachPosting(ordinal, consumer);
+                    if (count[0] > 0) {
+                        lemmas.merge(segment.getTerm(ordinal), count[0], Integer::sum);
+                    }
+                }
+            }
+            for (MemTable memTable : getMemTables()) {
+                memTable.forEachPage((pageId, page) -> {
+                    if (page.siteId() == siteId && !deleted.get(pageId)) {
+                        page.ranks().keySet().forEach(lemma -> lemmas.merge(lemma, 1, Integer::sum));
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return lemmas;
+    }
+
+    @Override
+    public void saveAll(Page page, Map<Lemma, Float> ranks) {
+        Map<String, Float> lemmas = new HashMap<>();
+        ranks.forEach((lemma, rank) -> lemmas.merge(lemma.getLemma(), rank, Float::sum));
+        int pageId = page.getId();
+        int siteId = page.getSite().getId();
+        afterCommit(() -> add(pageId, siteId, lemmas));
+    }
+
+    @Override
+    public void loadAll(Map<Page, Map<Lemma, Float>> pages) {
+        pages.forEach((page, ranks) -> {
+            Map<String, Float> lemmas = new HashMap<>();
+            ranks.forEach((lemma, rank) -> lemmas.merge(lemma.getLemma(), rank, Float::sum));
+            add(page.getId(), page.getSite().getId(), lemmas);
+        });
+    }
+
+    /**
+     * Метод, передающий обработчику леммы каждой страницы из сегментов и памяти.
+     * Выполняется под блокировкой чтения, поэтому обработчик видит согласованное состояние индекса.
+     * @param consumer - обработчик id страницы и ее лемм с рангом.
+     */
+    @Override
+    public void forEachPage(BiConsumer<Integer, Map<String, Float>> consumer) {
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                for (int index = 0; index < segment.getPageCount(); index++) {
+                    int pageId = segment.getPageId(index);
+                    if (deleted.get(pageId)) {
+                        continue;
+                    }
+                    Map<String, Float> lemmas = new HashMap<>();
+                    segment.forEachPageTerm(index, (ordinal, rank) -> lemmas.put(segment.getTerm(ordinal), rank));
+                    consumer.accept(pageId, lemmas);
+                }
+            }
+            for (MemTable memTable : getMemTables()) {
+                memTable.forEachPage((pageId, page) -> {
+                    if (!deleted.get(pageId)) {
+                        consumer.accept(pageId, page.ranks());
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByPage(Page page) {
+        List<Integer> pageIds = List.of(page.getId());
+        afterCommit(() -> delete(pageIds));
+    }
+
+    /**
+     * Метод, уменьшающий частоты лемм сайта (в текущей транзакции) и отмечающий страницы сайта удаленными
+     * после ее фиксации.
+     * @param siteId - id сайта.
+     */
+    @Override
+    public void deleteBySiteId(Integer siteId) {
+        Map<Integer, List<String>> lemmasByCount = new HashMap<>();
+        countLemmasBySiteId(siteId).forEach((lemma, count) ->
+                lemmasByCount.computeIfAbsent(count, key -> new ArrayList<>()).add(lemma));
+        lemmasByCount.forEach((count, lemmas) -> {
+            for (int from = 0; from < lemmas.size(); from += MAX_LEMMAS_PER_QUERY) {
+                lemmaRepository.decreaseFrequency(siteId,
+                        lemmas.subList(from, Math.min(from + MAX_LEMMAS_PER_QUERY, lemmas.size())), count);
+            }
+        });
+        List<Integer> pageIds = pageRepository.findIdsBySiteId(siteId);
+        afterCommit(() -> delete(pageIds));
+    }
+
+    @Override
+    public void deleteAll() {
+        lock.writeLock().lock();
+        try {
+            epoch++;
+            closeLog();
+            active = new MemTable();
+            flushing = null;
+            flushingLog = null;
+            segments = List.of();
+            deleted.clear();
+            for (Path file : listFiles()) {
+                Files.deleteIfExists(file);
+            }
+            saveManifest();
+            openLog();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getMemTablePages() {
+        lock.readLock().lock();
+        try {
+            return active.size() + (flushing == null ? 0 : flushing.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backgroundExecutor.shutdown();
+        try {
+            backgroundExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            closeLog();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод, добавляющий страницу в память и журнал. Если в памяти накопилось flush-pages страниц
+     * и предыдущая запись сегмента завершена, страницы передаются на запись в новый сегмент.
+     */
+    private void add(int pageId, int siteId, Map<String, Float> lemmas) {
+        lock.writeLock().lock();
+        try {
+            writeLog(out -> {
+                out.writeByte(LOG_ADD);
+                out.writeInt(pageId);
+                out.writeInt(siteId);
+                out.writeInt(lemmas.size());
+                for (Map.Entry<String, Float> entry : lemmas.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeFloat(entry.getValue());
+                }
+            });
+            active.add(pageId, siteId, lemmas);
+            if (active.size() >= settings.getFlushPages() && flushing == null) {
+                flushing = active;
+                flushingLog = logFile;
+                active = new MemTable();
+                closeLog();
+                long flushEpoch = epoch;
+                backgroundExecutor.execute(() -> flush(flushEpoch));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void delete(List<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            writeLog(out -> {
+                out.writeByte(LOG_DELETE);
+                out.writeInt(pageIds.size());
+                for (Integer pageId : pageIds) {
+                    out.writeInt(pageId);
+                }
+            });
+            for (Integer pageId : pageIds) {
+                active.remove(pageId);
+                deleted.set(pageId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод, записывающий страницы из памяти в новый сегмент (в фоновом потоке).
+     * При ошибке запись повторяется позже, а страницы остаются в памяти и в журнале.
+     * @param flushEpoch - номер состояния хранилища на момент начала записи.
+     */
+    private void flush(long flushEpoch) {
+        MemTable memTable;
+        lock.readLock().lock();
+        try {
+            memTable = flushing;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (memTable == null) {
+            return;
+        }
+        Segment segment;
+        try {
+            segment = write(memTable);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            backgroundExecutor.schedule(() -> flush(flushEpoch), 10, TimeUnit.SECONDS);
+            return;
+        }
+        Path flushedLog;
+        lock.writeLock().lock();
+        try {
+            if (epoch != flushEpoch) {
+                deleteQuietly(segment.getFile());
+                return;
+            }
+            segments = append(segments, segment);
+            flushing = null;
+            flushedLog = flushingLog;
+            flushingLog = null;
+            saveManifest();
+            saveDeletes();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        deleteQuietly(flushedLog);
+        merge();
+    }
+
+    /**
+     * Метод, объединяющий самые маленькие сегменты, пока их больше merge-factor.
+     */
+    private void merge() {
+        while (true) {
+            List<Segment> sources;
+            BitSet deletedSnapshot;
+            long mergeEpoch;
+            lock.readLock().lock();
+            try {
+                if (segments.size() <= Math.max(2, settings.getMergeFactor())) {
+                    return;
+                }
+                sources = selectMergeSources(segments);
+                deletedSnapshot = (BitSet) deleted.clone();
+                mergeEpoch = epoch;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (sources.size() < 2) {
+                return;
+            }
+            Segment merged;
+            try {
+                Path file = nextSegmentFile();
+                Path temp = dir.resolve(file.getFileName() + ".tmp");
+                try {
+                    SegmentMerger.merge(sources, deletedSnapshot, temp);
+                    move(temp, file);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                merged = Segment.open(file);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                if (epoch != mergeEpoch || !segments.containsAll(sources)) {
+                    deleteQuietly(merged.getFile());
+                    return;
+                }
+                List<Segment> remaining = new ArrayList<>(segments);
+                remaining.removeAll(sources);
+                remaining.add(merged);
+                segments = List.copyOf(remaining);
+                pruneDeleted();
+                saveManifest();
+                saveDeletes();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            sources.forEach(source -> deleteQuietly(source.getFile()));
+        }
+    }
+
+    /**
+     * Метод, выбирающий для объединения merge-factor самых маленьких сегментов
+     * (с ограничением суммарного размера).
+     */
+    private List<Segment> selectMergeSources(List<Segment> current) {
+        List<Segment> bySize = new ArrayList<>(current);
+        bySize.sort(Comparator.comparingLong(Segment::getSize));
+        List<Segment> sources = new ArrayList<>();
+        long size = 0;
+        for (Segment segment : bySize) {
+            if (sources.size() >= Math.max(2, settings.getMergeFactor()) || size + segment.getSize() > MAX_MERGE_SIZE) {
+                break;
+            }
+            sources.add(segment);
+            size += segment.getSize();
+        }
+        return sources;
+    }
+
+    /**
+     * Метод, убирающий из набора удаленных id страницы, которых уже нет ни в одном сегменте и в памяти.
+     */
+    private void pruneDeleted() {
+        for (int pageId = deleted.nextSetBit(0); pageId >= 0; pageId = deleted.nextSetBit(pageId + 1)) {
+            boolean present = active.contains(pageId) || flushing != null && flushing.contains(pageId);
+            for (int i = 0; !present && i < segments.size(); i++) {
+                present = segments.get(i).findPage(pageId) >= 0;
+            }
+            if (!present) {
+                deleted.clear(pageId);
+            }
+        }
+    }
+
+    private Segment write(MemTable memTable) throws IOException {
+        Path file = nextSegmentFile();
+        Path temp = dir.resolve(file.getFileName() + ".tmp");
+        try {
+            memTable.writeTo(temp);
+            move(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return Segment.open(file);
+    }
+
+    private synchronized Path nextSegmentFile() {
+        return dir.resolve(SEGMENT_PREFIX + nextFileNumber++ + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Метод, восстанавливающий изменения из журнала. Недописанная последняя запись пропускается.
+     */
+    private void replay(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int type = in.read();
+                if (type == LOG_ADD) {
+                    int pageId = in.readInt();
+                    int siteId = in.readInt();
+                    int count = in.readInt();
+                    Map<String, Float> lemmas = new HashMap<>(count * 2);
+                    for (int i = 0; i < count; i++) {
+                        lemmas.put(in.readUTF(), in.readFloat());
+                    }
+                    active.add(pageId, siteId, lemmas);
+                } else if (type == LOG_DELETE) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        int pageId = in.readInt();
+                        active.remove(pageId);
+                        deleted.set(pageId);
+                    }
+                } else {
+                    return;
+                }
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            System.out.println("Журнал " + file + " обрезан: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void openLog() throws IOException {
+        logFile = dir.resolve(LOG_PREFIX + nextFileNumber++ + LOG_SUFFIX);
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            log = null;
+        }
+    }
+
+    private void writeLog(LogRecord record) {
+        try {
+            if (log == null) {
+                openLog();
+            }
+            record.write(log);
+            log.flush();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void saveManifest() throws IOException {
+        List<String> names = new ArrayList<>();
+        for (Segment segment : segments) {
+            names.add(segment.getFile().getFileName().toString());
+        }
+        Path temp = dir.resolve(MANIFEST + ".tmp");
+        Files.write(temp, names);
+        move(temp, dir.resolve(MANIFEST));
+    }
+
+    private void saveDeletes() throws IOException {
+        Path temp = dir.resolve(DELETES + ".tmp");
+        Files.write(temp, deleted.toByteArray());
+        move(temp, dir.resolve(DELETES));
+    }
+
+    private List<MemTable> getMemTables() {
+        return flushing == null ? List.of(active) : List.of(flushing, active);
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static List<Segment> append(List<Segment> segments, Segment segment) {
+        List<Segment> result = new ArrayList<>(segments);
+        result.add(segment);
+        return List.copyOf(result);
+    }
+
+    private static long getFileNumber(String name) {
+        String digits = name.replaceAll("\\D", "");
+        return digits.isEmpty() ? 0 : Long.parseLong(digits);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Метод, выполняющий действие после фиксации текущей транзакции (или сразу, если транзакции нет).
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface LogRecord {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
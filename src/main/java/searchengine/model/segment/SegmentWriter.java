@@ -0,0 +1,162 @@
+package searchengine.model.segment;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись сегмента индекса. Леммы передаются в порядке возрастания, страницы лемм и страницы
+ * (после всех лемм) - в порядке возрастания id. Формат файла описан в Segment.
+ */
+class SegmentWriter implements Closeable {
+
+    private final Path file;
+    private final DataOutputStream out;
+
+    private final List<byte[]> terms = new ArrayList<>();
+    private final List<Integer> termOffsets = new ArrayList<>();
+    private final List<Integer> termPostings = new ArrayList<>();
+    private final List<int[]> pages = new ArrayList<>();
+    private long postingCount;
+    private int dictionaryOffset;
+    private boolean pagesStarted;
+
+    SegmentWriter(Path file) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        out.write(new byte[Segment.HEADER_SIZE]);
+    }
+
+    /**
+     * Метод, записывающий страницы леммы блоками по Segment.BLOCK_SIZE с таблицей пропусков перед ними.
+     * @param term - лемма.
+     * @param pageIds - id страниц по возрастанию.
+     * @param siteIds - id сайтов страниц.
+     * @param ranks - ранги леммы на страницах.
+     * @param count - число страниц.
+     * @return - порядковый номер леммы в сегменте.
+     */
+    int addTerm(String term, int[] pageIds, int[] siteIds, float[] ranks, int count) throws IOException {
+        if (pagesStarted || count == 0) {
+            throw new IllegalStateException("Term " + term + " cannot be added");
+        }
+        int blockCount = (count + Segment.BLOCK_SIZE - 1) / Segment.BLOCK_SIZE;
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream(count * 6);
+        DataOutputStream blocksOut = new DataOutputStream(blocks);
+        int[] lastPageIds = new int[blockCount];
+        int[] blockOffsets = new int[blockCount];
+        int previous = 0;
+        for (int block = 0; block < blockCount; block++) {
+            blockOffsets[block] = blocksOut.size();
+            int to = Math.min(count, (block + 1) * Segment.BLOCK_SIZE);
+            for (int i = block * Segment.BLOCK_SIZE; i < to; i++) {
+                writeVarInt(blocksOut, pageIds[i] - previous);
+                writeVarInt(blocksOut, siteIds[i]);
+                blocksOut.writeFloat(ranks[i]);
+                previous = pageIds[i];
+            }
+            lastPageIds[block] = previous;
+        }
+        int offset = out.size();
+        int dataOffset = offset + 4 + blockCount * 8;
+        out.writeInt(blockCount);
+        for (int block = 0; block < blockCount; block++) {
+            out.writeInt(lastPageIds[block]);
+            out.writeInt(dataOffset + blockOffsets[block]);
+        }
+        blocks.writeTo(out);
+
+        terms.add(term.getBytes(StandardCharsets.UTF_8));
+        termOffsets.add(offset);
+        termPostings.add(count);
+        postingCount += count;
+        return terms.size() - 1;
+    }
+
+    /**
+     * Метод, записывающий леммы страницы (для поиска лемм по странице).
+     * @param pageId - id страницы.
+     * @param ordinals - порядковые номера лемм в сегменте.
+     * @param ranks - ранги лемм.
+     * @param count - число лемм.
+     */
+    void addPage(int pageId, int[] ordinals, float[] ranks, int count) throws IOException {
+        if (!pagesStarted) {
+            pagesStarted = true;
+            writeDictionary();
+        }
+        pages.add(new int[]{pageId, out.size()});
+        writeVarInt(out, count);
+        for (int i = 0; i < count; i++) {
+            writeVarInt(out, ordinals[i]);
+            out.writeFloat(ranks[i]);
+        }
+    }
+
+    /**
+     * Метод, дописывающий таблицу страниц и заголовок сегмента.
+     */
+    void finish() throws IOException {
+        if (!pagesStarted) {
+            pagesStarted = true;
+            writeDictionary();
+        }
+        int pagesOffset = out.size();
+        for (int[] page : pages) {
+            out.writeInt(page[0]);
+            out.writeInt(page[1]);
+        }
+        out.close();
+        ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_SIZE);
+        header.putInt(Segment.MAGIC).putInt(Segment.VERSION).putInt(terms.size()).putInt(pages.size())
+                .putLong(postingCount).putInt(dictionaryOffset).putInt(pagesOffset).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Метод, записывающий словарь: таблицу лемм (смещение строки, смещение страниц, число страниц),
+     * затем строки лемм (длина и байты UTF-8).
+     */
+    private void writeDictionary() throws IOException {
+        dictionaryOffset = out.size();
+        int stringOffset = dictionaryOffset + terms.size() * 12;
+        for (int i = 0; i < terms.size(); i++) {
+            out.writeInt(stringOffset);
+            out.writeInt(termOffsets.get(i));
+            out.writeInt(termPostings.get(i));
+            stringOffset += 2 + terms.get(i).length;
+        }
+        for (byte[] term : terms) {
+            out.writeShort(term.length);
+            out.write(term);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -1,16 +1,36 @@
 package searchengine.services;
 
+import searchengine.model.IndexingMode;
+import searchengine.model.entity.Page;
+import searchengine.util.FetchedPage;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeoutException;
+
 public interface IndexingService {
 
-    void startIndexing();
+    void startIndexing(IndexingMode mode);
 
     boolean isIndexingStart();
 
-    void stopIndexing();
+    void stopIndexing() throws TimeoutException;
+
+    boolean startSiteIndexing(String siteUrl, IndexingMode mode);
+
+    boolean stopSiteIndexing(String siteUrl) throws TimeoutException;
 
-    void indexPage(String url);
+    boolean isSiteIndexing(String siteUrl);
+
+    void indexPage(String url) throws IOException;
+
+    void indexPage(FetchedPage fetchedPage);
+
+    boolean isPageUpToDate(String url, Instant lastModified);
 
     String getParentUrl(String path);
 
-    String getFullAddressByUri(String uri);
+    String getFullAddress(Page page);
+
+    void deleteAllData();
 }
@@ -1,256 +1,588 @@
 package searchengine.services;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.SitesList;
+import searchengine.model.IndexingMode;
 import searchengine.model.Status;
 import searchengine.model.entity.Lemma;
 import searchengine.model.entity.Page;
-import searchengine.model.entity.SearchingIndex;
 import searchengine.model.entity.Site;
+import searchengine.model.repository.BulkLoadRepository;
 import searchengine.model.repository.LemmaRepository;
 import searchengine.model.repository.PageRepository;
-import searchengine.model.repository.SearchingIndexRepository;
+import searchengine.model.repository.PostingRepository;
 import searchengine.model.repository.SiteRepository;
+import searchengine.util.CancellationToken;
+import searchengine.util.CrawlCheckpointStore;
+import searchengine.util.CrawlContext;
+import searchengine.util.CrawlFrontier;
+import searchengine.util.CrawlScheduler;
+import searchengine.util.FetchedPage;
+import searchengine.util.HostRateLimiter;
 import searchengine.util.Lemmatisator;
+import searchengine.util.NearDuplicateIndex;
+import searchengine.util.PageFetcher;
 import searchengine.util.RecursivePageWalker;
+import searchengine.util.RegisteredSite;
+import searchengine.util.RobotsTxtCache;
+import searchengine.util.SimHash;
+import searchengine.util.SiteCrawl;
+import searchengine.util.SiteRegistry;
+import searchengine.util.SitemapParser;
+import searchengine.util.SuggestIndex;
+import searchengine.util.UrlCanonicalizer;
 import searchengine.util.WebSiteTree;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class IndexingServiceImpl implements IndexingService {
 
     private final SitesList sitesList;
     private final Lemmatisator lemmatisator;
-    private final SearchingIndexRepository indexRepository;
+    private final PostingRepository postingRepository;
     private final LemmaRepository lemmaRepository;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
+    private final BulkLoadRepository bulkLoadRepository;
+    private final HostRateLimiter rateLimiter;
+    private final RobotsTxtCache robotsTxtCache;
+    private final PageFetcher pageFetcher;
+    private final SitemapParser sitemapParser;
+    private final SiteRegistry siteRegistry;
+    private final CrawlScheduler crawlScheduler;
+    private final CrawlCheckpointStore checkpointStore;
+    private final SuggestIndex suggestIndex;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer lemmatizationTimer;
+    private final Timer dbBatchTimer;
 
+    /**
+     * Время, в течение которого stopIndexing ожидает завершения обхода, в миллисекундах.
+     */
+    static final long STOP_TIMEOUT = 2000;
+
+    static final String STOPPED_BY_USER = "Индексация остановлена пользователем";
+
+    /**
+     * Число попыток записи страницы, если транзакция прервана взаимной блокировкой
+     * (параллельные страницы увеличивают частоты одних и тех же лемм).
+     */
+    private static final int WRITE_ATTEMPTS = 3;
+
+    /**
+     * Признак полной индексации (всех сайтов из конфигурации).
+     */
     private final AtomicBoolean indexingStart = new AtomicBoolean(false);
-    private final AtomicBoolean indexingStop = new AtomicBoolean(false);
+    private volatile CancellationToken cancellationToken = new CancellationToken();
+    private volatile CompletableFuture<Void> indexingRun = CompletableFuture.completedFuture(null);
+    /**
+     * Выполняющиеся обходы сайтов по адресу сайта из конфигурации.
+     */
+    private final Map<String, SiteRun> siteRuns = new ConcurrentHashMap<>();
 
+    /**
+     * Компоненты обхода сайтов (http-клиент, robots.txt, sitemap, планировщик) создаются при первой индексации,
+     * а не при запуске приложения.
+     */
     public IndexingServiceImpl(SitesList sitesList, Lemmatisator lemmatisator,
-                               SearchingIndexRepository indexRepository, LemmaRepository lemmaRepository,
-                               PageRepository pageRepository, SiteRepository siteRepository) {
+                               PostingRepository postingRepository, LemmaRepository lemmaRepository,
+                               PageRepository pageRepository, SiteRepository siteRepository,
+                               BulkLoadRepository bulkLoadRepository, HostRateLimiter rateLimiter,
+                               @Lazy RobotsTxtCache robotsTxtCache,
+                               @Lazy PageFetcher pageFetcher, @Lazy SitemapParser sitemapParser,
+                               SiteRegistry siteRegistry, @Lazy CrawlScheduler crawlScheduler,
+                               CrawlCheckpointStore checkpointStore, SuggestIndex suggestIndex,
+                               NearDuplicateIndex nearDuplicateIndex, TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
         this.sitesList = sitesList;
         this.lemmatisator = lemmatisator;
-        this.indexRepository = indexRepository;
+        this.postingRepository = postingRepository;
         this.lemmaRepository = lemmaRepository;
         this.pageRepository = pageRepository;
         this.siteRepository = siteRepository;
+        this.bulkLoadRepository = bulkLoadRepository;
+        this.rateLimiter = rateLimiter;
+        this.robotsTxtCache = robotsTxtCache;
+        this.pageFetcher = pageFetcher;
+        this.sitemapParser = sitemapParser;
+        this.siteRegistry = siteRegistry;
+        this.crawlScheduler = crawlScheduler;
+        this.checkpointStore = checkpointStore;
+        this.suggestIndex = suggestIndex;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.lemmatizationTimer = meterRegistry.timer("searchengine.indexing.lemmatization");
+        this.dbBatchTimer = meterRegistry.timer("searchengine.indexing.db.batch");
     }
 
     /**
-     * Метод, начинающий индексацию сайтов.
+     * Метод, начинающий индексацию всех сайтов.
+     * Сайты обходятся одновременно общим планировщиком обхода (CrawlScheduler).
+     * @param mode - FULL, чтобы проиндексировать сайты заново; RESUME, чтобы продолжить обход сайтов
+     *             с последних контрольных точек, не удаляя уже сохраненные страницы (сайты без контрольной точки
+     *             индексируются заново); INCREMENTAL, чтобы обойти сайты заново, не удаляя сохраненные страницы
+     *             и пропуская неизмененные страницы из карт сайтов.
      */
     @Override
-    public void startIndexing() {
+    public synchronized void startIndexing(IndexingMode mode) {
+        if (isIndexingStart()) {
+            return;
+        }
+        CancellationToken token = new CancellationToken();
+        cancellationToken = token;
+        indexingStart.set(true);
         Runnable startIndexing = new Runnable() {
             @Override
             public void run() {
-                deleteAllData();
-                addIndexingSites(sitesList);
-                siteRepository.findAll().parallelStream().forEach(site -> {
-                    try {
-                        WebSiteTree webSiteTree = new WebSiteTree(site.getUrl());
-                        RecursivePageWalker recursivePageWalker = new RecursivePageWalker(webSiteTree, IndexingServiceImpl.this);
-                        ForkJoinPool forkJoinPool = new ForkJoinPool();
-                        forkJoinPool.invoke(recursivePageWalker);
-                        if (indexingStop.get()) {
-                            forkJoinPool.shutdownNow();
-                            stopIndexingInfoAdd();
-                            indexingStop.set(false);
-                        } else {
-                            saveIndexedSiteInfo(site);
-                        }
-                        saveIndexedSiteInfo(site);
-                    } catch (Exception e) {
-                        saveFailedIndexingSiteInfo(site, e.getMessage());
+                if (mode == IndexingMode.FULL) {
+                    deleteAllData();
+                }
+                if (mode != IndexingMode.RESUME) {
+                    checkpointStore.deleteAll();
+                }
+                robotsTxtCache.clear();
+                rateLimiter.clear();
+                List<Site> sites = new ArrayList<>();
+                Map<String, CrawlFrontier> frontiers = new HashMap<>();
+                for (searchengine.config.Site siteFromProp : sitesList.getSites()) {
+                    CrawlFrontier frontier = mode == IndexingMode.RESUME
+                            ? checkpointStore.load(siteFromProp.getUrl()) : null;
+                    if (frontier != null) {
+                        frontiers.put(siteFromProp.getUrl(), frontier);
                     }
-                });
-                indexingStart.set(false);
+                    sites.add(prepareSite(siteFromProp.getUrl(), frontier != null || mode == IndexingMode.INCREMENTAL));
+                }
+                siteRegistry.refresh();
+                List<CompletableFuture<Void>> crawls = new ArrayList<>();
+                for (Site site : sites) {
+                    if (token.isCancelled()) {
+                        break;
+                    }
+                    SiteRun siteRun = new SiteRun(new CancellationToken(), new CompletableFuture<>());
+                    siteRuns.put(site.getUrl(), siteRun);
+                    CancellationToken.Registration registration = token.onCancel(siteRun.token()::cancel);
+                    siteRun.completion().whenComplete((result, e) -> registration.close());
+                    crawlSite(site, siteRun, frontiers.get(site.getUrl()));
+                    crawls.add(siteRun.completion());
+                }
+                CompletableFuture.allOf(crawls.toArray(new CompletableFuture[0])).join();
+                // Статус сайтов, обход которых начат, записывается по его завершении (crawlSite),
+                // здесь - только сайтов, до обхода которых индексация не дошла.
+                for (Site site : sites.subList(crawls.size(), sites.size())) {
+                    saveFailedIndexingSiteInfo(site, STOPPED_BY_USER);
+                }
             }
         };
-        CompletableFuture.runAsync(startIndexing);
-        indexingStart.set(true);
+        indexingRun = CompletableFuture.runAsync(startIndexing)
+                .whenComplete((result, e) -> indexingStart.set(false));
     }
 
     /**
-     * Метод, завершающий индексацию сайтов.
+     * Метод, начинающий (или повторяющий) индексацию одного сайта, не затрагивая остальные.
+     * При индексации заново ранее сохраненные страницы сайта удаляются, частоты общих с другими сайтами лемм
+     * уменьшаются.
+     * @param siteUrl - адрес сайта, как он указан в конфигурации.
+     * @param mode - FULL, чтобы проиндексировать сайт заново; RESUME, чтобы продолжить обход с последней
+     *             контрольной точки сайта (если она есть), не удаляя сохраненные страницы; INCREMENTAL, чтобы обойти
+     *             сайт заново, не удаляя сохраненные страницы и пропуская неизмененные страницы из карт сайта.
+     * @return - false, если сайта нет в конфигурации или он уже индексируется.
      */
     @Override
-    public void stopIndexing() {
-        if (isIndexingStart()) {
-            indexingStop.set(true);
+    public synchronized boolean startSiteIndexing(String siteUrl, IndexingMode mode) {
+        if (siteRegistry.findBySiteUrl(siteUrl) == null || isSiteIndexing(siteUrl)) {
+            return false;
         }
+        SiteRun siteRun = new SiteRun(new CancellationToken(), new CompletableFuture<>());
+        siteRuns.put(siteUrl, siteRun);
+        CompletableFuture.runAsync(() -> {
+            CrawlFrontier frontier = mode == IndexingMode.RESUME ? checkpointStore.load(siteUrl) : null;
+            Site site = prepareSite(siteUrl, frontier != null || mode == IndexingMode.INCREMENTAL);
+            siteRegistry.refresh();
+            crawlSite(site, siteRun, frontier);
+        }).exceptionally(e -> {
+            System.out.println(e.getMessage());
+            siteRuns.remove(siteUrl, siteRun);
+            siteRun.completion().complete(null);
+            return null;
+        });
+        return true;
     }
 
     /**
-     * Метод, индексирующий заданную страницу по url, либо обновляющий ее.
-     * @param url - url страницы, которую необходимо проиндексировать.
+     * Метод, завершающий индексацию всех сайтов.
+     * Отменяет текущие обходы: прерываются выполняющиеся запросы, очереди обхода очищаются,
+     * а уже начатые транзакции записи страниц дописываются.
+     * Метод ожидает завершения обходов не дольше STOP_TIMEOUT.
+     * @throws TimeoutException - если обходы не завершились за STOP_TIMEOUT; остановка продолжается в фоне.
      */
     @Override
-    public void indexPage(String url) {
-        String parentUrl = getParentUrl(url);
-        String path = url.substring(url.indexOf(parentUrl) + parentUrl.length());
+    public void stopIndexing() throws TimeoutException {
+        if (!isIndexingStart()) {
+            return;
+        }
+        cancellationToken.cancel();
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+        runs.add(indexingRun);
+        for (SiteRun siteRun : siteRuns.values()) {
+            siteRun.token().cancel();
+            runs.add(siteRun.completion());
+        }
+        awaitStop(CompletableFuture.allOf(runs.toArray(new CompletableFuture[0])));
+    }
 
-        List<Page> pagesByUrl = pageRepository.findByPath(path);
-        if (pagesByUrl.size() != 0 &&
-                indexRepository.findByPage(pagesByUrl.get(0)).size() != 0) {
+    /**
+     * Метод, завершающий индексацию одного сайта.
+     * @param siteUrl - адрес сайта, как он указан в конфигурации.
+     * @return - false, если сайт не индексируется.
+     * @throws TimeoutException - если обход не завершился за STOP_TIMEOUT; остановка продолжается в фоне.
+     */
+    @Override
+    public boolean stopSiteIndexing(String siteUrl) throws TimeoutException {
+        SiteRun siteRun = siteRuns.get(siteUrl);
+        if (siteRun == null) {
+            return false;
+        }
+        siteRun.token().cancel();
+        awaitStop(siteRun.completion());
+        return true;
+    }
+
+    @Override
+    public boolean isSiteIndexing(String siteUrl) {
+        return indexingStart.get() || siteRuns.containsKey(siteUrl);
+    }
+
+    /**
+     * Метод, регистрирующий обход сайта в планировщике и сохраняющий статус сайта по его завершении.
+     * Во время обхода периодически записывается контрольная точка; после успешного обхода она удаляется,
+     * а после остановки или ошибки записывается последний раз.
+     * @param site - сайт.
+     * @param siteRun - признак отмены и завершение обхода сайта.
+     * @param restoredFrontier - состояние обхода из контрольной точки, либо null для обхода с начала.
+     */
+    private void crawlSite(Site site, SiteRun siteRun, CrawlFrontier restoredFrontier) {
+        CrawlFrontier frontier = restoredFrontier != null ? restoredFrontier : checkpointStore.create(site.getUrl());
+        CancellationToken.Registration checkpoint = checkpointStore.schedule(site.getUrl(), frontier);
+        searchengine.config.Site settings = sitesList.getSite(site.getUrl());
+        int weight = settings == null ? 1 : settings.getWeight();
+        int maxConcurrency = settings == null || settings.getMaxConcurrency() == null
+                ? crawlScheduler.getParallelism() : settings.getMaxConcurrency();
+        SiteCrawl siteCrawl = crawlScheduler.register(site.getUrl(), weight, maxConcurrency, siteRun.token());
+        Gauge pendingGauge = Gauge.builder("searchengine.crawl.frontier.pending", frontier, CrawlFrontier::getPendingCount)
+                .tag("site", site.getUrl()).register(meterRegistry);
+        Gauge visitedGauge = Gauge.builder("searchengine.crawl.frontier.visited", frontier, CrawlFrontier::getVisitedCount)
+                .tag("site", site.getUrl()).register(meterRegistry);
+        siteCrawl.getCompletion().whenCompleteAsync((result, e) -> {
             try {
-                updatePage(pageRepository.findByPath(path).get(0));
-            } catch (IOException e) {
-                e.printStackTrace();
+                meterRegistry.remove(pendingGauge);
+                meterRegistry.remove(visitedGauge);
+                checkpoint.close();
+                boolean completed = e == null && !siteRun.token().isCancelled();
+                if (!completed) {
+                    checkpointStore.save(site.getUrl(), frontier);
+                }
+                frontier.close();
+                if (completed) {
+                    checkpointStore.delete(site.getUrl());
+                }
+                if (e != null) {
+                    saveFailedIndexingSiteInfo(site, e.getMessage());
+                } else if (siteRun.token().isCancelled()) {
+                    saveFailedIndexingSiteInfo(site, STOPPED_BY_USER);
+                } else {
+                    saveIndexedSiteInfo(site);
+                }
+            } finally {
+                suggestIndex.rebuild(site.getId());
+                siteRuns.remove(site.getUrl(), siteRun);
+                siteRun.completion().complete(null);
             }
-        } else {
-            try {
-                indexingPage(url);
-            } catch (IOException e) {
-                e.printStackTrace();
+        });
+        WebSiteTree webSiteTree = new WebSiteTree(UrlCanonicalizer.canonicalize(site.getUrl()));
+        CrawlContext crawlContext = new CrawlContext(site.getUrl(), this,
+                pageFetcher, rateLimiter, robotsTxtCache, sitemapParser, siteRegistry,
+                sitesList.getCrawlDelay(site.getUrl()), sitesList.isSitemapEnabled(), siteCrawl, frontier);
+        siteCrawl.submit(new RecursivePageWalker(webSiteTree, crawlContext, restoredFrontier != null));
+    }
+
+    /**
+     * Метод, подготавливающий сайт к индексации: удаляет его страницы, индексы и неиспользуемые леммы
+     * (если данные не сохраняются для продолжения или инкрементального обхода) и переводит сайт в статус INDEXING.
+     * Если сайта еще нет в таблице site, он добавляется.
+     * @param siteUrl - адрес сайта, как он указан в конфигурации.
+     * @param keepData - true, если обход продолжается с контрольной точки или инкрементальный
+     *                 и сохраненные страницы нужно оставить.
+     * @return - сайт.
+     */
+    private Site prepareSite(String siteUrl, boolean keepData) {
+        return transactionTemplate.execute(status -> {
+            List<Site> sites = siteRepository.findByUrl(siteUrl);
+            Site site;
+            if (sites.isEmpty()) {
+                site = new Site();
+                site.setUrl(siteUrl);
+                site.setName(sitesList.getSite(siteUrl).getName());
+            } else if (keepData) {
+                site = sites.get(0);
+            } else {
+                site = sites.get(0);
+                postingRepository.deleteBySiteId(site.getId());
+                lemmaRepository.deleteUnused();
+                pageRepository.deleteBySiteId(site.getId());
+                nearDuplicateIndex.clear(site.getId());
             }
+            site.setStatus(Status.INDEXING);
+            site.setStatusTime(LocalDateTime.now());
+            site.setLastError(null);
+            return siteRepository.save(site);
+        });
+    }
+
+    /**
+     * Метод, ожидающий завершения остановленных обходов не дольше STOP_TIMEOUT.
+     * @param run - завершение обходов.
+     * @throws TimeoutException - если обходы не завершились за STOP_TIMEOUT.
+     */
+    private void awaitStop(CompletableFuture<Void> run) throws TimeoutException {
+        try {
+            run.get(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println(e.getMessage());
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Обход не завершился за " + STOP_TIMEOUT + " мс, остановка продолжается");
         }
     }
 
+    /**
+     * Метод, индексирующий заданную страницу по url, либо обновляющий ее.
+     * @param url - url страницы, которую необходимо проиндексировать.
+     * @throws IOException - если страницу не удалось загрузить.
+     */
+    @Override
+    public void indexPage(String url) throws IOException {
+        String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+        if (canonicalUrl == null) {
+            return;
+        }
+        indexPage(pageFetcher.fetch(canonicalUrl));
+        RegisteredSite site = siteRegistry.find(canonicalUrl);
+        if (site != null) {
+            suggestIndex.rebuild(site.getId());
+        }
+    }
+
+    /**
+     * Метод, индексирующий уже загруженную страницу, либо обновляющий ее.
+     * @param fetchedPage - загруженная страница.
+     */
+    @Override
+    public void indexPage(FetchedPage fetchedPage) {
+        String url = fetchedPage.getUrl();
+        String path = getPathByUrl(url);
+
+        Site site = getSiteReference(url);
+        List<Page> pagesByUrl = pageRepository.findBySiteAndPathHash(site, Page.hashPath(path));
+        if (pagesByUrl.size() != 0) {
+            updatePage(pagesByUrl.get(0), fetchedPage);
+        } else {
+            indexingPage(fetchedPage);
+        }
+    }
+
+    /**
+     * Метод, проверяющий, что страница уже проиндексирована не раньше даты ее последнего изменения.
+     * @param url - адрес страницы.
+     * @param lastModified - дата последнего изменения страницы (например, lastmod из карты сайта).
+     * @return - true, если страницу можно не загружать повторно.
+     */
+    @Override
+    public boolean isPageUpToDate(String url, Instant lastModified) {
+        if (getParentUrl(url) == null) {
+            return false;
+        }
+        String path = getPathByUrl(url);
+        Site site = getSiteReference(url);
+        List<Page> pagesByUrl = pageRepository.findBySiteAndPathHash(site, Page.hashPath(path));
+        if (pagesByUrl.isEmpty() || pagesByUrl.get(0).getIndexedAt() == null) {
+            return false;
+        }
+        LocalDateTime modified = LocalDateTime.ofInstant(lastModified, ZoneId.systemDefault());
+        return !pagesByUrl.get(0).getIndexedAt().isBefore(modified);
+    }
+
     /**
      * Метод, индексирующий страницу.
-     * @param url - адрес страницы, которую необходимо проиндексировать.
-     * @throws IOException
+     * Леммы вычисляются до начала транзакции, а страница, леммы и индексы записываются одной транзакцией
+     * пакетными запросами, поэтому при остановке индексации страница либо записывается целиком, либо не записывается.
+     * Если на сайте уже есть почти такая же страница (по отпечатку SimHash ее лемм), страница сохраняется
+     * как ее копия: без содержимого и без индексов.
+     * @param fetchedPage - загруженная страница, которую необходимо проиндексировать.
+     * @return - сохраненная страница, либо null, если страница не сохранялась.
      */
-    public void indexingPage(String url) throws IOException {
-        Connection.Response response = Jsoup.connect(url).execute();
-
-        if (response.statusCode() == 200) {
-            Site site = siteRepository.findByUrl(getParentUrl(url)).get(0);
-            Page page = saveNewPage(site, url, response.statusCode(), response.body());
-            String text = lemmatisator.clearFromTags(response.body());
-            HashMap<String, Integer> lemmas = lemmatisator.getLemmasList(text);
-            for (Map.Entry<String, Integer> map : lemmas.entrySet()) {
-                List<Lemma> lemmaByLemma = lemmaRepository.findByLemma(map.getKey());
-                if (!lemmaByLemma.isEmpty()) {
-                    Lemma lemma = lemmaRepository.findByLemma(map.getKey()).get(0);
-                    lemma.setFrequency(lemma.getFrequency() + 1);
-                    lemmaRepository.save(lemma);
-                } else {
-                    saveNewLemma(site, map.getKey());
+    public Page indexingPage(FetchedPage fetchedPage) {
+        if (fetchedPage.getStatusCode() != 200 || !fetchedPage.isHtml()) {
+            return null;
+        }
+        String url = fetchedPage.getUrl();
+        String content = fetchedPage.getContent();
+        RegisteredSite registeredSite = siteRegistry.find(url);
+        HashMap<String, Integer> lemmas = lemmatizationTimer.record(() ->
+                lemmatisator.getLemmasList(lemmatisator.clearFromTags(content)));
+        long fingerprint = SimHash.compute(lemmas);
+        Integer original = sitesList.isNearDuplicateEnabled() && lemmas.size() >= sitesList.getNearDuplicateMinLemmas()
+                ? nearDuplicateIndex.find(registeredSite.getId(), fingerprint) : null;
+        Page page = dbBatchTimer.record(() -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> {
+                        Site site = siteRepository.findById(registeredSite.getId()).orElseThrow();
+                        int code = fetchedPage.getStatusCode();
+                        Page savedPage;
+                        if (original != null && pageRepository.existsById(original)) {
+                            savedPage = saveNewPage(site, url, code, "", fingerprint, original);
+                        } else {
+                            savedPage = saveNewPage(site, url, code, content, fingerprint, null);
+                            saveLemmasAndIndexes(site, savedPage, lemmas);
+                        }
+                        site.setStatusTime(LocalDateTime.now());
+                        siteRepository.save(site);
+                        return savedPage;
+                    });
+                } catch (PessimisticLockingFailureException e) {
+                    if (attempt >= WRITE_ATTEMPTS) {
+                        throw e;
+                    }
                 }
-                saveNewIndex(page, lemmaRepository.findByLemma(map.getKey()).get(0), map.getValue().floatValue());
             }
-            site.setStatusTime(LocalDateTime.now());
-            siteRepository.save(site);
+        });
+        if (page.getDuplicateOf() != null) {
+            meterRegistry.counter("searchengine.indexing.duplicates", "site", registeredSite.getUrl()).increment();
+        } else {
+            if (original != null) {
+                nearDuplicateIndex.remove(registeredSite.getId(), original);
+            }
+            nearDuplicateIndex.add(registeredSite.getId(), page.getId(), fingerprint);
         }
+        meterRegistry.counter("searchengine.indexing.pages", "site", registeredSite.getUrl()).increment();
+        return page;
     }
 
     /**
      * Метод, обновления существующей страницы.
+     * Копии обновляемой страницы привязываются к ее новой версии, а если новая версия не сохранилась,
+     * удаляются, чтобы при следующем обходе проиндексироваться заново.
      * @param page - страница, которую необходимо обновить.
+     * @param fetchedPage - новая версия страницы.
      */
-    public void updatePage(Page page) throws IOException {
-        String fullAddress = getFullAddressByUri(page.getPath());
-        List<SearchingIndex> indexes = indexRepository.findByPage(page);
-        for (SearchingIndex index : indexes) {
-            Lemma lemma = index.getLemma();
-            List<Lemma> lemmasWithOneFrequency = new ArrayList<>();
-            if (lemma.getFrequency() == 1) {
-                lemmasWithOneFrequency.add(lemma);
-            } else {
-                lemma.setFrequency(lemma.getFrequency() - 1);
-                lemmaRepository.save(lemma);
-            }
-            indexRepository.delete(index);
-            for (Lemma lemmaWithOneFrequency : lemmasWithOneFrequency) {
-                lemmaRepository.delete(lemmaWithOneFrequency);
+    public void updatePage(Page page, FetchedPage fetchedPage) {
+        nearDuplicateIndex.remove(page.getSite().getId(), page.getId());
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<String> lemmas = postingRepository.findByPage(page).keySet();
+            postingRepository.deleteByPage(page);
+            if (!lemmas.isEmpty()) {
+                lemmaRepository.decreaseFrequency(page.getSite().getId(), lemmas, 1);
+                lemmaRepository.deleteUnused();
             }
-        }
-        pageRepository.delete(page);
+            pageRepository.delete(page);
+        });
 
-        indexingPage(fullAddress);
+        Page newPage = indexingPage(fetchedPage);
+        if (page.getDuplicateOf() == null) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (newPage == null) {
+                    pageRepository.deleteDuplicatesOf(page.getId());
+                } else {
+                    pageRepository.relinkDuplicates(page.getId(),
+                            newPage.getDuplicateOf() != null ? newPage.getDuplicateOf() : newPage.getId());
+                }
+            });
+        }
     }
 
     @Override
     public boolean isIndexingStart() {
-        return indexingStart.get();
+        return indexingStart.get() || !siteRuns.isEmpty();
     }
 
     /**
-     * Метод, возвращающий родительский url страницы из БД.
+     * Метод, возвращающий родительский url страницы по реестру сайтов.
      * @param url - адрес страницы.
-     * @return - сайт, которому эта страница принадлежит.
+     * @return - сайт, которому эта страница принадлежит, либо null, если сайта нет в конфигурации или в таблице site.
      */
     @Override
     public String getParentUrl(String url) {
-        String regex = "(http[s]?://[^#,\\s]*\\.?[a-z]*\\.ru)";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(url);
-        if (matcher.find() && siteRepository.findByUrl(matcher.group()).size() != 0) {
-            return matcher.group();
-        }
-        return null;
+        RegisteredSite site = siteRegistry.find(url);
+        return site == null || site.getId() == null ? null : site.getUrl();
     }
 
     /**
      * Метод, возвращающий полный адрес страницы.
-     * @param uri - адрес страницы от корня сайта.
+     * @param page - страница.
      * @return - полный адрес страницы.
      */
     @Override
-    public String getFullAddressByUri(String uri) {
-        StringBuilder builder = new StringBuilder();
-        Site site = pageRepository.findByPath(uri).get(0).getSite();
-        builder.append(site.getUrl());
-        builder.append(uri);
-        return builder.toString();
+    public String getFullAddress(Page page) {
+        RegisteredSite site = siteRegistry.findById(page.getSite().getId());
+        String siteUrl = site.getUrl().endsWith("/")
+                ? site.getUrl().substring(0, site.getUrl().length() - 1)
+                : site.getUrl();
+        return siteUrl + page.getPath();
     }
 
     /**
-     * Метод, удаляющий все данные из БД.
+     * Метод, возвращающий путь страницы от корня сайта (по каноническому адресу), который хранится в page.path.
+     * @param url - адрес страницы.
+     * @return - путь страницы.
      */
-    public void deleteAllData() {
-        indexRepository.deleteAll();
-        lemmaRepository.deleteAll();
-        pageRepository.deleteAll();
-        siteRepository.deleteAll();
+    public String getPathByUrl(String url) {
+        return UrlCanonicalizer.getPath(UrlCanonicalizer.canonicalize(url));
     }
 
     /**
-     * Метод, добавляющий в таблицу site сайты из файла properties.yaml.
-     * @param sitesList - список сайтов из файла properties.yaml.
+     * Метод, возвращающий сайт страницы по реестру сайтов, не загружая его из БД.
+     * @param url - адрес страницы.
+     * @return - ссылка на сущность сайта.
      */
-    public void addIndexingSites(SitesList sitesList) {
-        for (searchengine.config.Site siteFromProp : sitesList.getSites()) {
-            Site site = new Site();
-            site.setStatus(Status.INDEXING);
-            site.setStatusTime(LocalDateTime.now());
-            site.setUrl(siteFromProp.getUrl());
-            site.setName(siteFromProp.getName());
-            siteRepository.save(site);
-        }
+    private Site getSiteReference(String url) {
+        return siteRepository.getReferenceById(siteRegistry.find(url).getId());
     }
 
     /**
-     * Метод, сохраняющий информацию в таблицу site в случае остановки индексации пользователем.
+     * Метод, удаляющий все данные из БД.
      */
-    public void stopIndexingInfoAdd() {
-        for (Site site : siteRepository.findAll()) {
-            if (!site.getStatus().equals(Status.INDEXED)) {
-                site.setStatus(Status.FAILED);
-                site.setStatusTime(LocalDateTime.now());
-                site.setLastError("Индексация остановлена пользователем");
-                siteRepository.save(site);
-            }
-        }
+    @Override
+    public void deleteAllData() {
+        postingRepository.deleteAll();
+        lemmaRepository.deleteAllInBatch();
+        pageRepository.deleteAllInBatch();
+        siteRepository.deleteAllInBatch();
+        nearDuplicateIndex.clearAll();
     }
 
     /**
@@ -288,43 +620,70 @@ public class IndexingServiceImpl implements IndexingService {
      * @param url - адрес страницы.
      * @param code - код ответа, полученный при запросе.
      * @param content - html-код страницы.
+     * @param simhash - отпечаток SimHash лемм страницы.
+     * @param duplicateOf - id страницы, копией которой является эта страница, либо null.
      * @return - страница, добавленная в БД.
      */
-    public Page saveNewPage(Site site, String url, Integer code, String content) {
+    public Page saveNewPage(Site site, String url, Integer code, String content, Long simhash, Integer duplicateOf) {
         Page page = new Page();
         page.setSite(site);
-        page.setPath(url.substring(url.indexOf(getParentUrl(url)) + getParentUrl(url).length()));
+        page.setPath(getPathByUrl(url));
         page.setCode(code);
         page.setContent(content);
+        page.setIndexedAt(LocalDateTime.now());
+        page.setSimhash(simhash);
+        page.setDuplicateOf(duplicateOf);
         pageRepository.save(page);
 
         return page;
     }
 
     /**
-     * Метод, добавляющий новую лемму в таблицу lemma.
-     * @param site - сайт, на котором найдена лемма.
-     * @param lemma - лемма.
+     * Метод, сохраняющий леммы страницы в таблицу lemma и индексы в хранилище индекса пакетно.
+     * Частоты лемм увеличиваются в БД (frequency = frequency + 1), а не вычисляются по прочитанным значениям,
+     * поэтому параллельная индексация страниц не теряет приращений: частоты найденных лемм сайта увеличиваются
+     * одним UPDATE, отсутствующие леммы добавляются для сайта страницы одним INSERT ... ON DUPLICATE KEY UPDATE.
+     * Леммы ищутся и добавляются по одному ключу (лемма, сайт): у каждого сайта свои строки лемм.
+     * @param site - сайт, на котором найдены леммы.
+     * @param page - страница с леммами.
+     * @param lemmas - леммы страницы и их количество на странице.
      */
-    public void saveNewLemma(Site site, String lemma) {
-        Lemma newLemma = new Lemma();
-        newLemma.setSite(site);
-        newLemma.setLemma(lemma);
-        newLemma.setFrequency(1);
-        lemmaRepository.save(newLemma);
+    public void saveLemmasAndIndexes(Site site, Page page, Map<String, Integer> lemmas) {
+        Map<String, Lemma> lemmasByText = new HashMap<>();
+        for (Lemma lemma : lemmaRepository.findBySiteAndLemmaIn(site, lemmas.keySet())) {
+            lemmasByText.put(lemma.getLemma(), lemma);
+        }
+        if (!lemmasByText.isEmpty()) {
+            List<Integer> ids = new ArrayList<>(lemmasByText.size());
+            for (Lemma lemma : lemmasByText.values()) {
+                ids.add(lemma.getId());
+            }
+            Collections.sort(ids);
+            lemmaRepository.increaseFrequency(ids);
+        }
+        List<String> newLemmas = new ArrayList<>();
+        for (String text : lemmas.keySet()) {
+            if (!lemmasByText.containsKey(text)) {
+                newLemmas.add(text);
+            }
+        }
+        if (!newLemmas.isEmpty()) {
+            bulkLoadRepository.upsertLemmas(site.getId(), newLemmas);
+            for (Lemma lemma : lemmaRepository.findBySiteAndLemmaIn(site, newLemmas)) {
+                lemmasByText.put(lemma.getLemma(), lemma);
+            }
+        }
+
+        Map<Lemma, Float> ranks = new HashMap<>(lemmas.size() * 2);
+        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
+            ranks.put(lemmasByText.get(entry.getKey()), entry.getValue().floatValue());
+        }
+        postingRepository.saveAll(page, ranks);
     }
 
     /**
-     * метод, добавляющий новый индекс в таблицу index.
-     * @param page - страница с леммой.
-     * @param lemma - лемма, связанная со страницей.
-     * @param lemmasCount - количество данной леммы для данной страницы.
+     * Признак отмены и завершение обхода одного сайта.
      */
-    public void saveNewIndex(Page page, Lemma lemma, Float lemmasCount) {
-        SearchingIndex index = new SearchingIndex();
-        index.setPage(page);
-        index.setLemma(lemma);
-        index.setLemmasCount(lemmasCount);
-        indexRepository.save(index);
+    private record SiteRun(CancellationToken token, CompletableFuture<Void> completion) {
     }
 }
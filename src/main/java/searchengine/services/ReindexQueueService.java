@@ -0,0 +1,14 @@
+package searchengine.services;
+
+import searchengine.dto.result.ReindexJobInfo;
+
+import java.util.List;
+
+public interface ReindexQueueService {
+
+    ReindexJobInfo submit(List<String> urls);
+
+    ReindexJobInfo getJob(String id);
+
+    int getMaxUrlsPerJob();
+}
@@ -0,0 +1,304 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import searchengine.config.ReindexQueueSettings;
+import searchengine.dto.result.ReindexJobInfo;
+import searchengine.dto.result.ReindexUrlResult;
+import searchengine.dto.result.ReindexUrlStatus;
+import searchengine.util.UrlCanonicalizer;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь переиндексации отдельных страниц (/api/indexPage, /api/indexPages). Адреса принимаются заданием
+ * и сразу ставятся в очередь, а загружаются и индексируются фоновыми потоками. Адрес ждет в очереди
+ * coalesce-window после первой отправки; повторные отправки того же адреса (в том числе из других заданий)
+ * за это время присоединяются к ожидающему адресу, и страница индексируется один раз.
+ * Состояние последних max-jobs заданий хранится в памяти.
+ */
+@Service
+public class ReindexQueueServiceImpl implements ReindexQueueService {
+
+    private static final String OUT_OF_SITES =
+            "Данная страница находится за пределами сайтов, указанных в конфигурационном файле";
+
+    private final IndexingService indexingService;
+    private final ReindexQueueSettings settings;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Ожидающие адреса по каноническому адресу; изменяются вместе с очередью под блокировкой this.
+     */
+    private final Map<String, PendingUrl> pending = new HashMap<>();
+    private final DelayQueue<PendingUrl> queue = new DelayQueue<>();
+    /**
+     * Адреса, которые сейчас индексируются. Один адрес никогда не индексируется двумя потоками одновременно:
+     * повторно отправленный адрес ждет в pending, пока не закончится его текущая индексация.
+     */
+    private final Set<String> running = new HashSet<>();
+    /**
+     * Ожидающие адреса, выдержавшие coalesce-window во время индексации того же адреса;
+     * ставятся в очередь снова, когда она закончится.
+     */
+    private final Map<String, PendingUrl> deferred = new HashMap<>();
+    private final Map<String, Job> jobs;
+    private final ExecutorService workers;
+
+    public ReindexQueueServiceImpl(IndexingService indexingService, ReindexQueueSettings settings,
+                                   MeterRegistry meterRegistry) {
+        this.indexingService = indexingService;
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        int maxJobs = Math.max(1, settings.getMaxJobs());
+        this.jobs = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+                return size() > maxJobs;
+            }
+        };
+        int threads = Math.max(1, settings.getThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reindex-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::work);
+        }
+        meterRegistry.gauge("searchengine.reindex.queued", this, ReindexQueueServiceImpl::getQueued);
+    }
+
+    /**
+     * Метод, создающий задание переиндексации и ставящий его адреса в очередь.
+     * Адреса вне сайтов из конфигурации и адреса сверх емкости очереди сразу отклоняются;
+     * повторы адреса внутри задания учитываются один раз.
+     * @param urls - адреса страниц.
+     * @return - состояние задания.
+     */
+    @Override
+    public ReindexJobInfo submit(List<String> urls) {
+        Job job = new Job(UUID.randomUUID().toString());
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        for (String url : urls) {
+            String canonicalUrl = url == null ? null : UrlCanonicalizer.canonicalize(url.trim());
+            if (canonicalUrl == null || indexingService.getParentUrl(canonicalUrl) == null) {
+                if (job.add(canonicalUrl == null ? String.valueOf(url) : canonicalUrl, url,
+                        ReindexUrlStatus.REJECTED, OUT_OF_SITES)) {
+                    count("rejected");
+                }
+            } else if (job.add(canonicalUrl, url, ReindexUrlStatus.QUEUED, null) && !enqueue(canonicalUrl, job)) {
+                job.update(canonicalUrl, ReindexUrlStatus.REJECTED, "Очередь переиндексации переполнена");
+                count("rejected");
+            }
+        }
+        return job.getInfo();
+    }
+
+    @Override
+    public ReindexJobInfo getJob(String id) {
+        Job job;
+        synchronized (jobs) {
+            job = jobs.get(id);
+        }
+        return job == null ? null : job.getInfo();
+    }
+
+    @Override
+    public int getMaxUrlsPerJob() {
+        return settings.getMaxUrlsPerJob();
+    }
+
+    public synchronized int getQueued() {
+        return pending.size();
+    }
+
+    /**
+     * Метод, ставящий адрес в очередь или присоединяющий задание к уже ожидающему адресу.
+     * @return - false, если очередь переполнена.
+     */
+    private synchronized boolean enqueue(String url, Job job) {
+        PendingUrl pendingUrl = pending.get(url);
+        if (pendingUrl != null) {
+            pendingUrl.jobs.add(job);
+            count("coalesced");
+            return true;
+        }
+        if (pending.size() >= settings.getCapacity()) {
+            return false;
+        }
+        pendingUrl = new PendingUrl(url, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getCoalesceWindow()));
+        pendingUrl.jobs.add(job);
+        pending.put(url, pendingUrl);
+        queue.add(pendingUrl);
+        return true;
+    }
+
+    /**
+     * Цикл потока переиндексации: адрес, выдержавший coalesce-window, снимается с ожидания
+     * (следующая отправка того же адреса снова поставит его в очередь) и индексируется.
+     * Если тот же адрес еще индексируется другим потоком, адрес откладывается до конца этой индексации
+     * и остается ожидающим, так что новые отправки по-прежнему присоединяются к нему.
+     */
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            PendingUrl next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            List<Job> waiting;
+            synchronized (this) {
+                if (running.contains(next.url)) {
+                    deferred.put(next.url, next);
+                    continue;
+                }
+                pending.remove(next.url);
+                running.add(next.url);
+                waiting = List.copyOf(next.jobs);
+            }
+            try {
+                index(next.url, waiting);
+            } finally {
+                synchronized (this) {
+                    running.remove(next.url);
+                    PendingUrl again = deferred.remove(next.url);
+                    if (again != null) {
+                        queue.add(again);
+                    }
+                }
+            }
+        }
+    }
+
+    private void index(String url, List<Job> waiting) {
+        waiting.forEach(job -> job.update(url, ReindexUrlStatus.RUNNING, null));
+        long start = System.nanoTime();
+        ReindexUrlStatus status = ReindexUrlStatus.INDEXED;
+        String error = null;
+        try {
+            indexingService.indexPage(url);
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            status = ReindexUrlStatus.FAILED;
+            error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        }
+        meterRegistry.timer("searchengine.reindex").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        count(status == ReindexUrlStatus.INDEXED ? "indexed" : "failed");
+        for (Job job : waiting) {
+            job.update(url, status, error);
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("searchengine.reindex.urls", "result", result).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Ожидающий адрес и задания, в которые он входит.
+     */
+    private static class PendingUrl implements Delayed {
+
+        private final String url;
+        private final long readyAt;
+        private final List<Job> jobs = new ArrayList<>();
+
+        private PendingUrl(String url, long readyAt) {
+            this.url = url;
+            this.readyAt = readyAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((PendingUrl) other).readyAt);
+        }
+    }
+
+    /**
+     * Задание переиндексации: результаты по каноническим адресам в порядке отправки.
+     */
+    private static class Job {
+
+        private final String id;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final Map<String, ReindexUrlResult> results = new LinkedHashMap<>();
+
+        private Job(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Метод, добавляющий адрес в задание.
+         * @return - false, если адрес уже есть в задании.
+         */
+        private synchronized boolean add(String key, String url, ReindexUrlStatus status, String error) {
+            if (results.containsKey(key)) {
+                return false;
+            }
+            results.put(key, new ReindexUrlResult(url, status, error,
+                    status == ReindexUrlStatus.REJECTED ? LocalDateTime.now() : null));
+            return true;
+        }
+
+        private synchronized void update(String key, ReindexUrlStatus status, String error) {
+            ReindexUrlResult result = results.get(key);
+            if (result != null) {
+                result.setStatus(status);
+                result.setError(error);
+                if (status != ReindexUrlStatus.RUNNING) {
+                    result.setFinishedAt(LocalDateTime.now());
+                }
+            }
+        }
+
+        private synchronized ReindexJobInfo getInfo() {
+            ReindexJobInfo info = new ReindexJobInfo();
+            info.setId(id);
+            info.setCreatedAt(createdAt);
+            List<ReindexUrlResult> urls = new ArrayList<>(results.size());
+            for (ReindexUrlResult result : results.values()) {
+                urls.add(new ReindexUrlResult(result.getUrl(), result.getStatus(), result.getError(),
+                        result.getFinishedAt()));
+                switch (result.getStatus()) {
+                    case QUEUED, RUNNING -> info.setQueued(info.getQueued() + 1);
+                    case INDEXED -> info.setIndexed(info.getIndexed() + 1);
+                    case FAILED -> info.setFailed(info.getFailed() + 1);
+                    case REJECTED -> info.setRejected(info.getRejected() + 1);
+                }
+            }
+            info.setTotal(urls.size());
+            info.setFinished(info.getQueued() == 0);
+            info.setUrls(urls);
+            return info;
+        }
+    }
+}
@@ -2,13 +2,34 @@ package searchengine.services;
 
 import searchengine.dto.result.RelevancePage;
 import searchengine.dto.result.RelevancePageForResponse;
+import searchengine.dto.result.SearchResult;
+import searchengine.dto.shard.ShardFetch;
+import searchengine.dto.shard.ShardHit;
+import searchengine.dto.shard.ShardHits;
+import searchengine.dto.shard.ShardQuery;
+import searchengine.dto.shard.ShardStatistics;
+import searchengine.util.SearchCursor;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface SearchService {
 
-    List<RelevancePage> search(String query, String site, int offset, int limit);
+    SearchResult search(String query, String site, int offset, int limit, SearchCursor cursor,
+                        Consumer<RelevancePage> consumer);
 
     List<RelevancePageForResponse> getPagesForResponse(List<RelevancePage> pages);
 
+    RelevancePageForResponse getPageForResponse(RelevancePage page);
+
+    List<String> suggest(String query, String site, int limit);
+
+    String correctQuery(String query);
+
+    ShardStatistics getShardStatistics(String query, List<String> sites);
+
+    ShardHits searchShard(ShardQuery query, List<String> sites);
+
+    List<ShardHit> fetchShard(ShardFetch fetch, List<String> sites);
+
 }
@@ -1,88 +1,522 @@
 package searchengine.services;
 
-import org.jsoup.Connection;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SearchSettings;
+import searchengine.config.ShardNode;
+import searchengine.config.ShardSettings;
+import searchengine.dto.result.QueryPlan;
+import searchengine.dto.result.QueryPlanStep;
 import searchengine.dto.result.RelevancePage;
 import searchengine.dto.result.RelevancePageForResponse;
-import searchengine.model.entity.Lemma;
+import searchengine.dto.result.SearchResult;
+import searchengine.dto.shard.ShardFetch;
+import searchengine.dto.shard.ShardHit;
+import searchengine.dto.shard.ShardHits;
+import searchengine.dto.shard.ShardQuery;
+import searchengine.dto.shard.ShardStatistics;
 import searchengine.model.entity.Page;
 import searchengine.model.entity.SearchingIndex;
-import searchengine.model.entity.Site;
-import searchengine.model.repository.LemmaRepository;
 import searchengine.model.repository.PageRepository;
-import searchengine.model.repository.SearchingIndexRepository;
+import searchengine.model.repository.PostingRepository;
 import searchengine.model.repository.SiteRepository;
+import searchengine.util.HttpSearchShard;
 import searchengine.util.Lemmatisator;
+import searchengine.util.LocalSearchShard;
+import searchengine.util.QueryPlanner;
+import searchengine.util.RegisteredSite;
+import searchengine.util.SearchCursor;
+import searchengine.util.SearchShard;
+import searchengine.util.ShardCoordinator;
+import searchengine.util.SiteRegistry;
+import searchengine.util.SpellingIndex;
+import searchengine.util.SuggestIndex;
 
-import java.io.IOException;
+import javax.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
 public class SearchServiceImpl implements SearchService {
 
+    /**
+     * Порядок выдачи: по убыванию релевантности, при равной релевантности - по возрастанию id страницы.
+     */
+    private static final Comparator<RelevancePage> RELEVANCE_ORDER = Comparator
+            .comparing(RelevancePage::getRelevance, Comparator.reverseOrder())
+            .thenComparing(RelevancePage::getPageId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * Размер начала html-кода страницы, по которому строится сокращенный сниппет.
+     */
+    private static final int TRUNCATED_CONTENT_LENGTH = 16 * 1024;
+
+    /**
+     * Максимальное число страниц, загружаемых одним запросом при проверке фразы.
+     */
+    private static final int MAX_PAGES_PER_QUERY = 1000;
+
     private final Lemmatisator lemmatisator;
-    private final SearchingIndexRepository indexRepository;
-    private final LemmaRepository lemmaRepository;
+    private final PostingRepository postingRepository;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
-    private final IndexingService indexingService;
+    private final SiteRegistry siteRegistry;
+    private final QueryPlanner queryPlanner;
+    private final SuggestIndex suggestIndex;
+    private final SpellingIndex spellingIndex;
+    private final MeterRegistry meterRegistry;
+    private final SearchSettings searchSettings;
+    private final ExecutorService assemblyExecutor;
+    private final Counter truncatedSnippets;
+    private final TransactionTemplate readTransaction;
+    /**
+     * Координатор поиска по шардам, либо null, если поиск идет только по индексу этого узла.
+     */
+    private final ShardCoordinator shardCoordinator;
 
-    public SearchServiceImpl(Lemmatisator lemmatisator, SearchingIndexRepository indexRepository,
-                             LemmaRepository lemmaRepository, PageRepository pageRepository,
-                             SiteRepository siteRepository, IndexingService indexingService) {
+    public SearchServiceImpl(Lemmatisator lemmatisator, PostingRepository postingRepository,
+                             PageRepository pageRepository, SiteRepository siteRepository,
+                             SiteRegistry siteRegistry, QueryPlanner queryPlanner,
+                             SuggestIndex suggestIndex, SpellingIndex spellingIndex, MeterRegistry meterRegistry,
+                             SearchSettings searchSettings, ShardSettings shardSettings, ObjectMapper objectMapper,
+                             TransactionTemplate transactionTemplate) {
         this.lemmatisator = lemmatisator;
-        this.indexRepository = indexRepository;
-        this.lemmaRepository = lemmaRepository;
+        this.postingRepository = postingRepository;
         this.pageRepository = pageRepository;
         this.siteRepository = siteRepository;
-        this.indexingService = indexingService;
+        this.siteRegistry = siteRegistry;
+        this.queryPlanner = queryPlanner;
+        this.suggestIndex = suggestIndex;
+        this.spellingIndex = spellingIndex;
+        this.meterRegistry = meterRegistry;
+        this.searchSettings = searchSettings;
+        int threads = Math.max(1, searchSettings.getAssemblyThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.assemblyExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, searchSettings.getAssemblyQueueCapacity())), runnable -> {
+            Thread thread = new Thread(runnable, "search-assembly-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.truncatedSnippets = meterRegistry.counter("searchengine.search.snippets.truncated");
+        this.readTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readTransaction.setReadOnly(true);
+        this.shardCoordinator = shardSettings.isEnabled()
+                ? new ShardCoordinator(createShards(shardSettings, objectMapper), shardSettings) : null;
     }
 
     /**
-     * Метод поиска.
+     * Метод, создающий шарды из конфигурации: шард без адреса ищет по части сайтов в этом процессе,
+     * шард с адресом - на другом узле по http.
+     * @param shardSettings - настройки шардов.
+     * @param objectMapper - сериализация запросов к узлам.
+     * @return - шарды.
+     */
+    private List<SearchShard> createShards(ShardSettings shardSettings, ObjectMapper objectMapper) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(shardSettings.getTimeout()))
+                .build();
+        List<SearchShard> shards = new ArrayList<>();
+        for (ShardNode node : shardSettings.getNodes()) {
+            String name = node.getName() != null ? node.getName() : "shard-" + (shards.size() + 1);
+            if (node.getUrl() == null || node.getUrl().isBlank()) {
+                List<String> sites = node.getSites() == null || node.getSites().isEmpty() ? null : node.getSites();
+                shards.add(new LocalSearchShard(name, sites, this));
+            } else {
+                shards.add(new HttpSearchShard(name, node.getUrl(), httpClient, objectMapper,
+                        shardSettings.getTimeout()));
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Метод поиска. Найденные страницы сначала ранжируются целиком, а html-код загружается, и заголовки
+     * и сниппеты строятся только для запрошенной страницы выдачи, поэтому дальние страницы выдачи
+     * обходятся не дороже первых.
+     * Если включен поиск по шардам, запрос выполняет координатор шардов.
      * @param query - поисковый запрос.
      * @param site - адрес сайта.
-     * @param offset - указатель, на какой странице находится пользователь.
+     * @param offset - число результатов, которые нужно пропустить (если курсор не задан).
      * @param limit - количество совпадений на одной странице.
-     * @return - список найденных совпадений.
+     * @param cursor - курсор, после которого начинается страница выдачи, либо null.
+     * @param consumer - обработчик результатов; вызывается по мере построения сниппетов, в порядке релевантности.
+     * @return - общее число найденных страниц (для запроса из нескольких слов - оценка, см. selectWindow),
+     * курсор следующей страницы выдачи, план выполнения запроса и не ответившие шарды.
      */
     @Override
-    public List<RelevancePage> search(String query, String site, int offset, int limit) {
+    public SearchResult search(String query, String site, int offset, int limit, SearchCursor cursor,
+                               Consumer<RelevancePage> consumer) {
         if (query.trim().isEmpty()) {
-            return null;
+            return new SearchResult(0, null, new QueryPlan());
         }
-        query = query.toLowerCase();
-        List<Page> pages;
-        String firstWordInQuery = lemmatisator.getLemma(query.split("\\s+")[0]);
-        List<Lemma> firstWordInQueryLemmas = lemmaRepository.findByLemma(firstWordInQuery);
-        if (firstWordInQueryLemmas.isEmpty()) {
-            return new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            query = query.trim().toLowerCase();
+            if (shardCoordinator != null) {
+                return shardCoordinator.search(query, site, offset, limit, cursor, consumer);
+            }
+            Ranking ranking = rankPages(query, site, null, null);
+            int from = cursor == null ? 0 : getCursorPosition(ranking.relevancePages(), cursor, false);
+            Window window = selectWindow(ranking, from, cursor == null ? Math.max(offset, 0) : 0, limit, query, true);
+            List<RelevancePage> hits = window.hits();
+            String nextCursor = window.hasMore() && !hits.isEmpty()
+                    ? SearchCursor.after(hits.get(hits.size() - 1)).encode() : null;
+            assemblePages(hits, window.pagesById(), query, consumer);
+            return new SearchResult(window.count(), nextCursor, ranking.plan());
+        } finally {
+            meterRegistry.timer("searchengine.search").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        Lemma firstWordInQueryLemma = firstWordInQueryLemmas.get(0);
-        List<SearchingIndex> indexes = indexRepository.findByLemma(firstWordInQueryLemma);
-        if (site == null) {
-            pages = indexes.stream().map(SearchingIndex::getPage).toList();
-        } else {
-            Site siteByUrl = siteRepository.findByUrl(site).get(0);
-            pages = indexes.stream().map(SearchingIndex::getPage).filter(page -> page.getSite().equals(siteByUrl)).toList();
+    }
+
+    /**
+     * Метод, параллельно строящий заголовки и сниппеты результатов страницы выдачи.
+     * Результаты передаются обработчику в порядке релевантности. Если сниппет не построен к сроку
+     * (assembly-deadline на всю страницу выдачи), завершился ошибкой или пул перегружен,
+     * результат возвращается с сокращенным сниппетом - началом сохраненного текста страницы.
+     * @param relevancePages - результаты страницы выдачи.
+     * @param pagesById - найденные страницы по id.
+     * @param query - поисковый запрос.
+     * @param consumer - обработчик результатов.
+     */
+    private void assemblePages(List<RelevancePage> relevancePages, Map<Integer, Page> pagesById, String query,
+                               Consumer<RelevancePage> consumer) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchSettings.getAssemblyDeadline());
+        List<Future<String[]>> futures = new ArrayList<>(relevancePages.size());
+        for (RelevancePage relevancePage : relevancePages) {
+            Page page = pagesById.get(relevancePage.getPageId());
+            try {
+                futures.add(assemblyExecutor.submit(() ->
+                        new String[]{getTitle(page.getContent()), getSnippet(page, query)}));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+            }
+        }
+        for (int i = 0; i < relevancePages.size(); i++) {
+            RelevancePage relevancePage = relevancePages.get(i);
+            String[] titleAndSnippet = awaitAssembly(futures.get(i), deadline);
+            if (titleAndSnippet == null) {
+                Document doc = Jsoup.parse(getContentPrefix(pagesById.get(relevancePage.getPageId())));
+                titleAndSnippet = new String[]{doc.title(), getTruncatedSnippet(doc)};
+                truncatedSnippets.increment();
+            }
+            relevancePage.setTitle(titleAndSnippet[0]);
+            relevancePage.setSnippet(titleAndSnippet[1]);
+            consumer.accept(relevancePage);
+        }
+    }
+
+    /**
+     * Метод, ожидающий построения заголовка и сниппета до срока.
+     * @param future - задача построения, либо null, если пул ее не принял.
+     * @param deadline - срок (значение System.nanoTime()).
+     * @return - заголовок и сниппет, либо null, если они не построены.
+     */
+    private String[] awaitAssembly(Future<String[]> future, long deadline) {
+        if (future == null) {
+            return null;
         }
-        List<Lemma> lemmasList = getLemmasListForSearching(query);
-        sortLemmasByFrequency(lemmasList);
-        List<RelevancePage> relevancePages = null;
         try {
-            relevancePages = getRelevancePages(lemmasList, pages, query);
-        } catch (IOException e) {
-            e.printStackTrace();
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+        } catch (ExecutionException e) {
+            System.out.println(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Метод, возвращающий начало html-кода страницы, достаточное для заголовка и сокращенного сниппета.
+     * @param page - страница.
+     * @return - начало html-кода.
+     */
+    private String getContentPrefix(Page page) {
+        String content = page.getContent();
+        return content.length() <= TRUNCATED_CONTENT_LENGTH ? content : content.substring(0, TRUNCATED_CONTENT_LENGTH);
+    }
+
+    /**
+     * Метод, возвращающий сокращенный сниппет - начало текста страницы.
+     * @param doc - html-документ (или его начало).
+     * @return - сниппет.
+     */
+    public String getTruncatedSnippet(Document doc) {
+        String text = doc.body() == null ? "" : doc.body().text();
+        int length = searchSettings.getTruncatedSnippetLength();
+        return text.length() <= length ? text : text.substring(0, length) + "...";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        assemblyExecutor.shutdownNow();
+        if (shardCoordinator != null) {
+            shardCoordinator.shutdown();
+        }
+    }
+
+    /**
+     * Метод, возвращающий статистику запроса на шарде этого узла.
+     * @param query - поисковый запрос.
+     * @param sites - адреса сайтов шарда, либо null для всех сайтов.
+     * @return - число страниц и частоты лемм запроса.
+     */
+    @Override
+    public ShardStatistics getShardStatistics(String query, List<String> sites) {
+        return queryPlanner.statistics(query.trim().toLowerCase(), getSiteIds(sites));
+    }
+
+    /**
+     * Метод, находящий лучшие результаты на шарде этого узла с общей статистикой всех шардов
+     * (заголовки и сниппеты не строятся).
+     * @param shardQuery - запрос координатора.
+     * @param sites - адреса сайтов шарда, либо null для всех сайтов.
+     * @return - число найденных страниц и лучшие результаты после курсора.
+     */
+    @Override
+    public ShardHits searchShard(ShardQuery shardQuery, List<String> sites) {
+        String query = shardQuery.getQuery().trim().toLowerCase();
+        SearchCursor cursor = shardQuery.getCursor() == null ? null : SearchCursor.decode(shardQuery.getCursor());
+        Set<Integer> siteIds = getSiteIds(sites);
+        ShardHits shardHits = new ShardHits();
+        if (query.isEmpty()) {
+            return shardHits;
+        }
+        return readTransaction.execute(status -> {
+            Ranking ranking = rankPages(query, shardQuery.getSite(), siteIds, shardQuery.getStatistics());
+            int start = cursor == null ? 0
+                    : getCursorPosition(ranking.relevancePages(), cursor, shardQuery.isIncludeCursor());
+            Window window = selectWindow(ranking, start, 0, shardQuery.getLimit(), query, false);
+            shardHits.setCount(window.count());
+            shardHits.setAfter(window.after());
+            window.hits().forEach(page -> shardHits.getHits().add(getShardHit(page)));
+            shardHits.setPlan(ranking.plan());
+            return shardHits;
+        });
+    }
+
+    /**
+     * Метод, строящий заголовки и сниппеты результатов шарда этого узла, попавших в выдачу.
+     * @param fetch - запрос и id страниц.
+     * @param sites - адреса сайтов шарда, либо null для всех сайтов.
+     * @return - результаты с заголовками и сниппетами (страницы не из этого шарда пропускаются).
+     */
+    @Override
+    public List<ShardHit> fetchShard(ShardFetch fetch, List<String> sites) {
+        String query = fetch.getQuery().trim().toLowerCase();
+        Set<Integer> siteIds = getSiteIds(sites);
+        return readTransaction.execute(status -> {
+            Map<Integer, Page> pagesById = new HashMap<>();
+            for (Page page : pageRepository.findAllById(fetch.getPageIds())) {
+                if (siteIds == null || siteIds.contains(page.getSite().getId())) {
+                    pagesById.put(page.getId(), page);
+                }
+            }
+            List<RelevancePage> relevancePages = new ArrayList<>();
+            for (Integer pageId : fetch.getPageIds()) {
+                Page page = pagesById.get(pageId);
+                if (page != null) {
+                    relevancePages.add(getNewRelevancePage(page, null, null, 0));
+                }
+            }
+            List<ShardHit> hits = new ArrayList<>();
+            assemblePages(relevancePages, pagesById, query, page -> hits.add(getShardHit(page)));
+            return hits;
+        });
+    }
+
+    /**
+     * Метод, возвращающий id сайтов шарда.
+     * @param sites - адреса сайтов шарда, либо null.
+     * @return - id сайтов, уже добавленных в БД, либо null для всех сайтов.
+     */
+    private Set<Integer> getSiteIds(List<String> sites) {
+        if (sites == null) {
+            return null;
+        }
+        Set<Integer> siteIds = new HashSet<>();
+        for (String url : sites) {
+            RegisteredSite site = siteRegistry.findBySiteUrl(url);
+            if (site != null && site.getId() != null) {
+                siteIds.add(site.getId());
+            }
+        }
+        return siteIds;
+    }
+
+    private ShardHit getShardHit(RelevancePage page) {
+        ShardHit hit = new ShardHit();
+        RegisteredSite site = siteRegistry.findById(page.getSiteId());
+        hit.setPageId(page.getPageId());
+        hit.setSiteId(page.getSiteId());
+        hit.setSite(site == null ? null : site.getUrl());
+        hit.setSiteName(site == null ? null : site.getName());
+        hit.setUri(page.getUri());
+        hit.setTitle(page.getTitle());
+        hit.setSnippet(page.getSnippet());
+        hit.setRelevance(page.getRelevance());
+        return hit;
+    }
+
+    /**
+     * Метод, находящий и ранжирующий страницы по запросу (без заголовков и сниппетов);
+     * время каждого этапа записывается в метрику searchengine.search.stage.
+     * @param query - непустой поисковый запрос в нижнем регистре.
+     * @param site - адрес сайта, либо null для поиска по всем сайтам.
+     * @param siteIds - id сайтов шарда, либо null для всех сайтов.
+     * @param statistics - общая статистика шардов, либо null.
+     * @return - результаты поиска, упорядоченные по релевантности, найденные страницы по id и план запроса.
+     */
+    private Ranking rankPages(String query, String site, Set<Integer> siteIds, ShardStatistics statistics) {
+        Integer siteId = null;
+        if (site != null) {
+            RegisteredSite siteByUrl = siteRegistry.findBySiteUrl(site);
+            if (siteByUrl == null || siteByUrl.getId() == null
+                    || siteIds != null && !siteIds.contains(siteByUrl.getId())) {
+                return new Ranking(new ArrayList<>(), false, new QueryPlan());
+            }
+            siteId = siteByUrl.getId();
+        } else if (siteIds != null && siteIds.isEmpty()) {
+            return new Ranking(new ArrayList<>(), false, new QueryPlan());
+        }
+        QueryPlanner.Result result = queryPlanner.plan(query, siteId, statistics);
+        List<QueryPlanner.Candidate> candidates = result.candidates();
+        if (siteId == null && siteIds != null) {
+            candidates = candidates.stream()
+                    .filter(candidate -> siteIds.contains(candidate.siteId()))
+                    .toList();
         }
-        assert relevancePages != null;
+        QueryPlan plan = result.plan();
+        double lemmasMillis = 0;
+        for (QueryPlanStep step : plan.getSteps()) {
+            if (step.getStep().equals("lemmatize") || step.getStep().equals("lookup")) {
+                lemmasMillis += step.getMillis();
+            }
+        }
+        recordStage("lemmas", (long) (lemmasMillis * 1_000_000));
+        recordStage("candidates", (long) ((plan.getMillis() - lemmasMillis) * 1_000_000));
+
+        long stageStart = System.nanoTime();
+        List<RelevancePage> relevancePages = getRelevancePages(candidates);
         sortPagesByRelevance(relevancePages);
-        return relevancePages;
+        recordStage("scoring", System.nanoTime() - stageStart);
+        return new Ranking(relevancePages, query.split("\\s+").length > 1, plan);
+    }
+
+    /**
+     * Метод, выбирающий результаты страницы выдачи и загружающий их страницы.
+     * Для запроса из нескольких слов остаются только страницы, содержащие слова запроса (в однокоренной форме)
+     * подряд. Фраза проверяется по html-коду страницы, поэтому проверяются не все кандидаты, а только идущие
+     * по порядку релевантности, пока не наберется страница выдачи и еще один результат (чтобы знать,
+     * есть ли следующая страница). Непроверенные кандидаты учитываются в общем числе найденных страниц,
+     * так что оно точно, только если проверены все кандидаты. Проверка добавляется в план запроса шагом phrase.
+     * @param ranking - результат ранжирования.
+     * @param start - позиция в ranking, с которой начинается выдача (позиция курсора, либо 0).
+     * @param skip - число найденных страниц, которые нужно пропустить после start.
+     * @param limit - размер страницы выдачи.
+     * @param query - поисковый запрос.
+     * @param withContent - true, если страницы результатов нужно загрузить (для заголовков и сниппетов).
+     * @return - результаты страницы выдачи и их страницы.
+     */
+    private Window selectWindow(Ranking ranking, int start, int skip, int limit, String query, boolean withContent) {
+        List<RelevancePage> ranked = ranking.relevancePages();
+        int wanted = skip + Math.max(limit, 1);
+        if (!ranking.phrase()) {
+            int from = Math.min(start + skip, ranked.size());
+            int to = Math.min(start + wanted, ranked.size());
+            List<RelevancePage> hits = ranked.subList(from, to);
+            Map<Integer, Page> pagesById = withContent ? findPages(hits) : new HashMap<>();
+            return new Window(hits, pagesById, ranked.size(), ranked.size() - start, to < ranked.size());
+        }
+        long stepStart = System.nanoTime();
+        List<RelevancePage> matched = new ArrayList<>();
+        Map<Integer, Page> pagesById = new HashMap<>();
+        Map<Integer, Page> batch = new HashMap<>();
+        int position = start;
+        int batchEnd = start;
+        int rejected = 0;
+        while (position < ranked.size() && matched.size() <= wanted) {
+            if (position == batchEnd) {
+                batchEnd = Math.min(position + Math.min(wanted + 1 - matched.size(), MAX_PAGES_PER_QUERY),
+                        ranked.size());
+                batch = findPages(ranked.subList(position, batchEnd));
+            }
+            RelevancePage relevancePage = ranked.get(position++);
+            Page page = batch.get(relevancePage.getPageId());
+            if (page != null && containsPhrase(page.getContent(), query)) {
+                matched.add(relevancePage);
+                pagesById.put(page.getId(), page);
+            } else {
+                rejected++;
+            }
+        }
+        int count = ranked.size() - rejected;
+        double millis = (System.nanoTime() - stepStart) / 1_000_000.0;
+        ranking.plan().getSteps().add(new QueryPlanStep("phrase", null, null, count, millis));
+        ranking.plan().setMillis(ranking.plan().getMillis() + millis);
+        List<RelevancePage> hits = matched.subList(Math.min(skip, matched.size()), Math.min(wanted, matched.size()));
+        return new Window(hits, pagesById, count, ranked.size() - start - rejected, matched.size() > wanted);
+    }
+
+    /**
+     * Метод, загружающий страницы результатов поиска.
+     * @param relevancePages - результаты поиска.
+     * @return - страницы по id.
+     */
+    private Map<Integer, Page> findPages(List<RelevancePage> relevancePages) {
+        List<Integer> pageIds = new ArrayList<>(relevancePages.size());
+        relevancePages.forEach(relevancePage -> pageIds.add(relevancePage.getPageId()));
+        Map<Integer, Page> pagesById = new HashMap<>();
+        for (Page page : pageRepository.findAllById(pageIds)) {
+            pagesById.put(page.getId(), page);
+        }
+        return pagesById;
+    }
+
+    /**
+     * Метод, возвращающий позицию первого результата после курсора.
+     * @param relevancePages - результаты поиска, упорядоченные по релевантности.
+     * @param cursor - курсор.
+     * @param includeCursor - true, если результат, совпадающий с курсором, идет после него
+     *                      (курсор указывает на результат шарда с меньшим номером).
+     * @return - индекс первого результата страницы выдачи.
+     */
+    private int getCursorPosition(List<RelevancePage> relevancePages, SearchCursor cursor, boolean includeCursor) {
+        RelevancePage probe = new RelevancePage();
+        probe.setRelevance(cursor.relevance());
+        probe.setPageId(cursor.pageId());
+        int position = Collections.binarySearch(relevancePages, probe, RELEVANCE_ORDER);
+        if (position >= 0) {
+            return includeCursor ? position : position + 1;
+        }
+        return -position - 1;
+    }
+
+    private void recordStage(String stage, long nanos) {
+        meterRegistry.timer("searchengine.search.stage", "stage", stage).record(nanos, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -95,21 +529,39 @@ public class SearchServiceImpl implements SearchService {
     }
 
     /**
-     * Метод, возвращающий сниппет с найденным текстовым элементом.
+     * Метод, возвращающий сниппет с найденным текстовым элементом. Сниппет строится по сохраненному
+     * html-коду страницы, без обращения к сайту.
      * @param page - страница.
      * @param query - поисковый запрос.
      * @return - сниппет.
-     * @throws IOException
      */
-    public String getSnippet(Page page, String query) throws IOException {
-        StringBuilder builder = new StringBuilder();
+    public String getSnippet(Page page, String query) {
+        long start = System.nanoTime();
+        try {
+            return buildSnippet(page, query);
+        } finally {
+            recordStage("snippets", System.nanoTime() - start);
+        }
+    }
+
+    private String buildSnippet(Page page, String query) {
         String newQuery = getNewQuery(page.getContent(), query).toLowerCase();
-        Connection connection = Jsoup.connect(indexingService.getFullAddressByUri(page.getPath()));
-        Document doc = connection.get();
+        return getSnippet(Jsoup.parse(page.getContent()), newQuery);
+    }
+
+    /**
+     * Метод, находящий в документе первый текстовый элемент с запросом и выделяющий запрос в нем.
+     * @param doc - html-документ страницы.
+     * @param newQuery - запрос в нижнем регистре (с однокоренными словами из текста страницы);
+     * ищется как обычный текст, специальные символы регулярных выражений в нем не действуют.
+     * @return - сниппет, либо пустая строка.
+     */
+    public String getSnippet(Document doc, String newQuery) {
+        StringBuilder builder = new StringBuilder();
         Elements elements = doc.body().select("*");
+        Pattern pattern = Pattern.compile(".{0,30}" + Pattern.quote(newQuery) + ".{0,30}");
         for (Element element : elements) {
             String text = element.ownText().toLowerCase();
-            Pattern pattern = Pattern.compile(".{0,30}" + newQuery + ".{0,30}");
             Matcher matcher = pattern.matcher(text);
             if (matcher.find()) {
                 int firstMatchIndex = matcher.group().indexOf(newQuery);
@@ -130,49 +582,49 @@ public class SearchServiceImpl implements SearchService {
      * @return - релевантность.
      */
     public float getRelevance(Page page) {
+        long start = System.nanoTime();
         float relevance = 0;
-        for (SearchingIndex index : indexRepository.findByPage(page)) {
-            relevance += index.getLemmasCount();
+        for (float rank : postingRepository.findByPage(page).values()) {
+            relevance += rank;
         }
+        recordStage("scoring", System.nanoTime() - start);
         return relevance;
     }
 
     /**
-     * Метод, сортирующий леммы по частоте.
-     * @param lemmasList - список лемм.
+     * Метод, для расчета абсолютной релевантности страницы по ее индексам.
+     * @param indexes - индексы страницы.
+     * @return - релевантность.
      */
-    public void sortLemmasByFrequency(List<Lemma> lemmasList) {
-        lemmasList.sort(new Comparator<Lemma>() {
-            @Override
-            public int compare(Lemma o1, Lemma o2) {
-                return o1.getFrequency() - o2.getFrequency();
-            }
-        });
+    public float getRelevance(List<SearchingIndex> indexes) {
+        float relevance = 0;
+        for (SearchingIndex index : indexes) {
+            relevance += index.getLemmasCount();
+        }
+        return relevance;
     }
 
     /**
-     * Метод, сортирующий страницы по релевантности.
+     * Метод, сортирующий страницы по убыванию релевантности (при равной релевантности - по возрастанию id страницы).
      * @param relevancePages - список страниц.
      */
     public void sortPagesByRelevance(List<RelevancePage> relevancePages) {
-        relevancePages.sort(new Comparator<RelevancePage>() {
-            @Override
-            public int compare(RelevancePage o1, RelevancePage o2) {
-                return (int)(o2.getRelevance() - o1.getRelevance());
-            }
-        });
+        relevancePages.sort(RELEVANCE_ORDER);
     }
 
     /**
      * Метод, создающий новый объект с результатами поиска.
-     * @param path - адрес страницы.
+     * @param page - страница.
      * @param title - заголовок страницы.
      * @param snippet - сниппет с совпадениями.
      * @param relevance - релевантность.
      * @return - новый объект с результатами поиска.
      */
-    public RelevancePage getNewRelevancePage(String path, String title, String snippet, float relevance) {
+    public RelevancePage getNewRelevancePage(Page page, String title, String snippet, float relevance) {
         RelevancePage relevancePage = new RelevancePage();
+        String path = page.getPath();
+        relevancePage.setSiteId(page.getSite().getId());
+        relevancePage.setPageId(page.getId());
         relevancePage.setUri(path);
         relevancePage.setTitle(title);
         relevancePage.setSnippet(snippet);
@@ -182,59 +634,32 @@ public class SearchServiceImpl implements SearchService {
     }
 
     /**
-     * Метод, составляющий список лемм для поиска (с частотой не более 90 %).
-     * @param query - поисковый запрос.
-     * @return - список лемм.
+     * Метод, создающий список найденных страниц с релевантностью (заголовок и сниппет заполняются позже,
+     * только для страниц, попавших в выдачу).
+     * @param candidates - страницы, содержащие все значимые леммы запроса.
+     * @return - список объектов с результатами поиска.
      */
-    public List<Lemma> getLemmasListForSearching(String query) {
-        HashMap<String, Integer> lemmas = lemmatisator.splitTextInToLemmas(query);
-        List<Lemma> lemmasList = new ArrayList<>();
-
-        long pagesCount = pageRepository.count();
-        double maximumPercentage = pagesCount - (10 * pagesCount) / 100.0;
-
-        for (Map.Entry<String, Integer> map : lemmas.entrySet()) {
-            if (lemmaRepository.findByLemma(map.getKey()).size() == 0) {
-                continue;
-            }
-            Lemma lemma = lemmaRepository.findByLemma(map.getKey()).get(0);
-            if (lemma.getFrequency() < maximumPercentage) {
-                lemmasList.add(lemma);
-            }
+    public List<RelevancePage> getRelevancePages(List<QueryPlanner.Candidate> candidates) {
+        List<RelevancePage> relevancePages = new ArrayList<>(candidates.size());
+        for (QueryPlanner.Candidate candidate : candidates) {
+            RelevancePage relevancePage = new RelevancePage();
+            relevancePage.setSiteId(candidate.siteId());
+            relevancePage.setPageId(candidate.pageId());
+            relevancePage.setUri(candidate.path());
+            relevancePage.setRelevance(candidate.relevance());
+            relevancePages.add(relevancePage);
         }
-        return lemmasList;
+        return relevancePages;
     }
 
     /**
-     * Метод, создающий список страниц с результатами поиска для вывода в интерфейс.
-     * @param lemmasList - список лемм.
-     * @param pages - список страниц.
-     * @param query - поисковый запрос.
-     * @return - список объектов с результатами поиска.
-     * @throws IOException
-     */
-    public List<RelevancePage> getRelevancePages(List<Lemma> lemmasList, List<Page> pages, String query) throws IOException {
-        List<RelevancePage> relevancePages = new ArrayList<>();
-        if (lemmasList.size() == 1) {
-            pages.forEach(page -> {
-                try {
-                    relevancePages.add(getNewRelevancePage(page.getPath(),getTitle(page.getContent())
-                                    ,getSnippet(page, query), getRelevance(page)));
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
-        } else {
-            for (Page page : pages) {
-                String newQuery = getNewQuery(lemmatisator.clearFromTags(page.getContent()), query);
-                if (page.getContent().toLowerCase().contains(newQuery) &&
-                        pages.contains(page)) {
-                    relevancePages.add(getNewRelevancePage(page.getPath(), getTitle(page.getContent())
-                                    , getSnippet(page, query), getRelevance(page)));
-                }
-            }
-        }
-        return  relevancePages;
+     * Метод, проверяющий, что страница содержит слова запроса (в однокоренной форме) подряд.
+     * @param content - html-код страницы.
+     * @param query - поисковый запрос из нескольких слов.
+     * @return - true, если фраза найдена.
+     */
+    private boolean containsPhrase(String content, String query) {
+        return content.toLowerCase().contains(getNewQuery(content, query));
     }
 
     /**
@@ -267,18 +692,91 @@ public class SearchServiceImpl implements SearchService {
     public List<RelevancePageForResponse> getPagesForResponse(List<RelevancePage> pages) {
         List<RelevancePageForResponse> pagesForResponse = new ArrayList<>();
         for (RelevancePage page : pages) {
-            RelevancePageForResponse pageForResponse = new RelevancePageForResponse();
-            Page pageByPath = pageRepository.findByPath(page.getUri()).get(0);
-            pageForResponse.setSite(pageByPath.getSite().getUrl());
-            pageForResponse.setSiteName(pageByPath.getSite().getName());
-            pageForResponse.setUri(page.getUri());
-            pageForResponse.setTitle(page.getTitle());
-            pageForResponse.setSnippet(page.getSnippet());
-            pageForResponse.setRelevance(page.getRelevance());
-
-            pagesForResponse.add(pageForResponse);
+            pagesForResponse.add(getPageForResponse(page));
         }
 
         return pagesForResponse;
     }
+
+    /**
+     * Метод, возвращающий страницу для вывода в интерфейс (с полями site и siteName).
+     * Результаты поиска по шардам уже содержат эти поля и возвращаются как есть.
+     * @param page - страница из метода search.
+     * @return - страница для вывода в интерфейсе приложения.
+     */
+    @Override
+    public RelevancePageForResponse getPageForResponse(RelevancePage page) {
+        if (page instanceof RelevancePageForResponse pageForResponse) {
+            return pageForResponse;
+        }
+        RelevancePageForResponse pageForResponse = new RelevancePageForResponse();
+        RegisteredSite site = siteRegistry.findById(page.getSiteId());
+        pageForResponse.setSite(site.getUrl());
+        pageForResponse.setSiteName(site.getName());
+        pageForResponse.setSiteId(page.getSiteId());
+        pageForResponse.setPageId(page.getPageId());
+        pageForResponse.setUri(page.getUri());
+        pageForResponse.setTitle(page.getTitle());
+        pageForResponse.setSnippet(page.getSnippet());
+        pageForResponse.setRelevance(page.getRelevance());
+        return pageForResponse;
+    }
+
+    /**
+     * Метод, возвращающий варианты автодополнения поискового запроса.
+     * @param query - введенная часть запроса.
+     * @param site - адрес сайта, либо null для всех сайтов.
+     * @param limit - максимальное число вариантов.
+     * @return - варианты запроса; пустой список, если сайт не найден.
+     */
+    @Override
+    public List<String> suggest(String query, String site, int limit) {
+        Integer siteId = null;
+        if (site != null) {
+            RegisteredSite siteByUrl = siteRegistry.findBySiteUrl(site);
+            if (siteByUrl == null || siteByUrl.getId() == null) {
+                return new ArrayList<>();
+            }
+            siteId = siteByUrl.getId();
+        }
+        long start = System.nanoTime();
+        List<String> suggestions = suggestIndex.suggest(query, siteId, limit);
+        meterRegistry.timer("searchengine.suggest").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return suggestions;
+    }
+
+    /**
+     * Метод, исправляющий опечатки в поисковом запросе.
+     * @param query - поисковый запрос.
+     * @return - исправленный запрос, либо null, если исправлять нечего.
+     */
+    @Override
+    public String correctQuery(String query) {
+        long start = System.nanoTime();
+        String corrected = spellingIndex.correct(query);
+        meterRegistry.timer("searchengine.spelling").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return corrected;
+    }
+
+    /**
+     * Результат ранжирования.
+     * @param relevancePages - результаты поиска, упорядоченные по релевантности (для запроса из нескольких слов -
+     *                       кандидаты, фраза на которых еще не проверена).
+     * @param phrase - true, если запрос состоит из нескольких слов и их нужно найти на странице подряд.
+     * @param plan - план выполнения запроса.
+     */
+    private record Ranking(List<RelevancePage> relevancePages, boolean phrase, QueryPlan plan) {
+    }
+
+    /**
+     * Страница выдачи.
+     * @param hits - результаты страницы выдачи.
+     * @param pagesById - загруженные страницы результатов по id.
+     * @param count - общее число найденных страниц.
+     * @param after - число найденных страниц после начала выдачи.
+     * @param hasMore - true, если после страницы выдачи есть еще результаты.
+     */
+    private record Window(List<RelevancePage> hits, Map<Integer, Page> pagesById, int count, int after,
+                          boolean hasMore) {
+    }
 }
@@ -0,0 +1,16 @@
+package searchengine.services;
+
+import searchengine.dto.result.SnapshotInfo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface SnapshotService {
+
+    SnapshotInfo exportSnapshot(Path file) throws IOException;
+
+    SnapshotInfo importSnapshot(Path file) throws IOException;
+
+    boolean isSnapshotRunning();
+
+}
@@ -0,0 +1,491 @@
+package searchengine.services;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.IndexStorageSettings;
+import searchengine.dto.result.SnapshotInfo;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.entity.Site;
+import searchengine.model.repository.BulkLoadRepository;
+import searchengine.model.repository.LemmaRepository;
+import searchengine.model.repository.PageRepository;
+import searchengine.model.repository.PostingRepository;
+import searchengine.model.repository.SiteRepository;
+import searchengine.util.CrawlCheckpointStore;
+import searchengine.util.NearDuplicateIndex;
+import searchengine.util.SiteRegistry;
+import searchengine.util.SnapshotReader;
+import searchengine.util.SnapshotWriter;
+import searchengine.util.SuggestIndex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка и загрузка снимка индекса: сайтов, страниц, лемм и индекса (формат описан в SnapshotWriter).
+ * Снимок выгружается в одной читающей транзакции (REPEATABLE READ), поэтому таблицы в нем согласованы между собой.
+ * При загрузке снимок сначала целиком проверяется по контрольной сумме, затем данные удаляются и загружаются
+ * пакетами с id из снимка; словари автодополнения и отпечатки страниц строятся по тем же данным без запросов к БД.
+ */
+@Service
+public class SnapshotServiceImpl implements SnapshotService {
+
+    /**
+     * Максимальное число страниц и суммарный размер их html-кода в одном пакете вставки.
+     */
+    private static final int PAGE_BATCH_SIZE = 500;
+    private static final long PAGE_BATCH_BYTES = 8L * 1024 * 1024;
+    private static final int LEMMA_BATCH_SIZE = 5000;
+    private static final int POSTING_BATCH_SIZE = 20000;
+
+    private final IndexStorageSettings settings;
+    private final IndexingService indexingService;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final PostingRepository postingRepository;
+    private final BulkLoadRepository bulkLoadRepository;
+    private final SiteRegistry siteRegistry;
+    private final SuggestIndex suggestIndex;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final CrawlCheckpointStore checkpointStore;
+    private final TransactionTemplate readTransaction;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public SnapshotServiceImpl(IndexStorageSettings settings, IndexingService indexingService,
+                               SiteRepository siteRepository, PageRepository pageRepository,
+                               LemmaRepository lemmaRepository, PostingRepository postingRepository,
+                               BulkLoadRepository bulkLoadRepository, SiteRegistry siteRegistry,
+                               SuggestIndex suggestIndex, NearDuplicateIndex nearDuplicateIndex,
+                               CrawlCheckpointStore checkpointStore, TransactionTemplate transactionTemplate) {
+        this.settings = settings;
+        this.indexingService = indexingService;
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.postingRepository = postingRepository;
+        this.bulkLoadRepository = bulkLoadRepository;
+        this.siteRegistry = siteRegistry;
+        this.suggestIndex = suggestIndex;
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.checkpointStore = checkpointStore;
+        this.readTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Метод, выгружающий снимок индекса. Снимок записывается во временный файл, который затем
+     * заменяет прежний, поэтому прерванная выгрузка не портит последний снимок.
+     * @param file - файл снимка, либо null для index-storage.snapshot-file.
+     * @return - сведения о снимке.
+     */
+    @Override
+    public SnapshotInfo exportSnapshot(Path file) throws IOException {
+        Path target = file == null ? Paths.get(settings.getSnapshotFile()) : file;
+        begin();
+        try {
+            long start = System.currentTimeMillis();
+            if (target.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+            }
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            SnapshotInfo info = new SnapshotInfo();
+            try {
+                readTransaction.executeWithoutResult(status -> {
+                    try {
+                        writeSnapshot(temp, info);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                move(temp, target);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            info.setBytes(Files.size(target));
+            info.setMillis(System.currentTimeMillis() - start);
+            return info;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Метод, заменяющий все данные данными из снимка. Если загрузка прервалась ошибкой,
+     * загруженная часть удаляется.
+     * @param file - файл снимка, либо null для index-storage.snapshot-file.
+     * @return - сведения о снимке.
+     */
+    @Override
+    public SnapshotInfo importSnapshot(Path file) throws IOException {
+        Path source = file == null ? Paths.get(settings.getSnapshotFile()) : file;
+        begin();
+        try {
+            long start = System.currentTimeMillis();
+            try (SnapshotReader reader = new SnapshotReader(source)) {
+                reader.read(new SnapshotReader.Visitor() {
+                });
+            }
+            indexingService.deleteAllData();
+            checkpointStore.deleteAll();
+            ImportData data = new ImportData();
+            SnapshotInfo info;
+            try (SnapshotReader reader = new SnapshotReader(source)) {
+                info = reader.getInfo();
+                bulkLoadRepository.ensureNextId(info.getNextId());
+                reader.read(data);
+                data.finish();
+            } catch (IOException | RuntimeException e) {
+                indexingService.deleteAllData();
+                throw e;
+            }
+            siteRegistry.refresh();
+            data.apply();
+            info.setMillis(System.currentTimeMillis() - start);
+            return info;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Override
+    public boolean isSnapshotRunning() {
+        return running.get();
+    }
+
+    /**
+     * Метод, загружающий снимок при запуске приложения (index-storage.snapshot-on-startup).
+     * В пустую БД снимок импортируется; если снимок совпадает с БД по числу сайтов, страниц и лемм и по
+     * наибольшему id страницы, по нему строятся словари автодополнения и отпечатки страниц, и просмотр
+     * таблиц при запуске не выполняется. Выполняется раньше остальных обработчиков запуска.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void loadOnStartup() {
+        Path file = Paths.get(settings.getSnapshotFile());
+        if (!settings.isSnapshotOnStartup() || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            if (siteRepository.count() == 0) {
+                SnapshotInfo info = importSnapshot(file);
+                System.out.println("Снимок индекса " + file + " загружен за " + info.getMillis() + " мс");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            WarmupData data = new WarmupData();
+            try (SnapshotReader reader = new SnapshotReader(file)) {
+                if (!matches(reader.getInfo())) {
+                    System.out.println("Снимок индекса " + file + " не совпадает с БД и не используется");
+                    return;
+                }
+                reader.read(data);
+            }
+            data.apply();
+            System.out.println("Словари загружены из снимка индекса " + file + " за "
+                    + (System.currentTimeMillis() - start) + " мс");
+        } catch (IOException | RuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void begin() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Выгрузка или загрузка снимка уже выполняется");
+        }
+    }
+
+    /**
+     * Метод, записывающий снимок (в читающей транзакции). Число строк в заголовке считается в той же транзакции,
+     * что и чтение таблиц. Индекс страниц, которых нет в таблице page, и лемм, которых нет в таблице lemma,
+     * в снимок не попадает.
+     */
+    private void writeSnapshot(Path file, SnapshotInfo info) throws IOException {
+        info.setCreatedAt(LocalDateTime.now());
+        info.setContent(settings.isSnapshotContent());
+        info.setNextId(bulkLoadRepository.getNextId());
+        List<Site> sites = siteRepository.findAll();
+        info.setSites(sites.size());
+        info.setPages(pageRepository.count());
+        Integer maxPageId = pageRepository.findMaxId();
+        info.setMaxPageId(maxPageId == null ? 0 : maxPageId);
+        info.setLemmas(lemmaRepository.count());
+        try (SnapshotWriter writer = new SnapshotWriter(file, info)) {
+            for (Site site : sites) {
+                writer.writeSite(site);
+            }
+            int[] pageIds = new int[(int) info.getPages()];
+            int[] pageSiteIds = new int[pageIds.length];
+            int pageCount = 0;
+            try (Stream<Object[]> rows = info.isContent() ? pageRepository.streamAll() : pageRepository.streamMetadata()) {
+                Iterator<Object[]> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    Page page = toPage(iterator.next());
+                    writer.writePage(page);
+                    if (pageCount == pageIds.length) {
+                        pageIds = Arrays.copyOf(pageIds, pageCount * 2 + 1);
+                        pageSiteIds = Arrays.copyOf(pageSiteIds, pageIds.length);
+                    }
+                    pageIds[pageCount] = page.getId();
+                    pageSiteIds[pageCount++] = page.getSite() == null ? 0 : page.getSite().getId();
+                }
+            }
+            Map<String, Integer> lemmaIds = new HashMap<>();
+            try (Stream<Object[]> rows = lemmaRepository.streamAll()) {
+                Iterator<Object[]> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    Lemma lemma = toLemma(iterator.next());
+                    writer.writeLemma(lemma);
+                    lemmaIds.putIfAbsent(lemma.getLemma(), lemma.getId());
+                }
+            }
+            int[] ids = pageIds;
+            int[] siteIds = pageSiteIds;
+            int count = pageCount;
+            postingRepository.forEachPage((pageId, lemmas) -> {
+                int index = Arrays.binarySearch(ids, 0, count, pageId);
+                if (index < 0) {
+                    return;
+                }
+                int[] postingLemmaIds = new int[lemmas.size()];
+                float[] ranks = new float[lemmas.size()];
+                int size = 0;
+                for (Map.Entry<String, Float> entry : lemmas.entrySet()) {
+                    Integer lemmaId = lemmaIds.get(entry.getKey());
+                    if (lemmaId != null) {
+                        postingLemmaIds[size] = lemmaId;
+                        ranks[size++] = entry.getValue();
+                    }
+                }
+                try {
+                    writer.writePostings(pageId, siteIds[index], postingLemmaIds, ranks, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+        }
+    }
+
+    private boolean matches(SnapshotInfo info) {
+        Integer maxPageId = pageRepository.findMaxId();
+        return info.getSites() == siteRepository.count() && info.getPages() == pageRepository.count()
+                && info.getMaxPageId() == (maxPageId == null ? 0 : maxPageId)
+                && info.getLemmas() == lemmaRepository.count();
+    }
+
+    private static Page toPage(Object[] row) {
+        Page page = new Page();
+        page.setId(((Number) row[0]).intValue());
+        page.setSite(row[1] == null ? null : getSiteReference(((Number) row[1]).intValue()));
+        page.setPath((String) row[2]);
+        page.setCode(((Number) row[3]).intValue());
+        page.setIndexedAt((LocalDateTime) row[4]);
+        page.setSimhash(row[5] == null ? null : ((Number) row[5]).longValue());
+        page.setDuplicateOf(row[6] == null ? null : ((Number) row[6]).intValue());
+        page.setContent(row.length > 7 ? (String) row[7] : null);
+        return page;
+    }
+
+    private static Lemma toLemma(Object[] row) {
+        Lemma lemma = new Lemma();
+        lemma.setId(((Number) row[0]).intValue());
+        lemma.setSite(row[1] == null ? null : getSiteReference(((Number) row[1]).intValue()));
+        lemma.setLemma((String) row[2]);
+        lemma.setFrequency(((Number) row[3]).intValue());
+        return lemma;
+    }
+
+    private static Site getSiteReference(int siteId) {
+        Site site = new Site();
+        site.setId(siteId);
+        return site;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Данные снимка для словарей автодополнения, исправления опечаток и отпечатков страниц.
+     */
+    private class WarmupData implements SnapshotReader.Visitor {
+
+        protected final Map<Integer, Lemma> lemmas = new HashMap<>();
+        private final List<Object[]> fingerprints = new ArrayList<>();
+        private final Map<String, Integer> frequencies = new HashMap<>();
+        private final Map<Integer, Map<String, Integer>> siteLemmas = new HashMap<>();
+
+        @Override
+        public void site(Site site) throws IOException {
+            siteLemmas.putIfAbsent(site.getId(), new HashMap<>());
+        }
+
+        @Override
+        public void page(Page page) throws IOException {
+            if (page.getSimhash() != null && page.getDuplicateOf() == null && page.getSite() != null) {
+                fingerprints.add(new Object[]{page.getId(), page.getSite().getId(), page.getSimhash()});
+            }
+        }
+
+        @Override
+        public void lemma(Lemma lemma) throws IOException {
+            lemmas.put(lemma.getId(), lemma);
+            if (lemma.getFrequency() > 0) {
+                frequencies.merge(lemma.getLemma(), lemma.getFrequency(), Integer::sum);
+            }
+        }
+
+        @Override
+        public void postings(int pageId, int siteId, int[] lemmaIds, float[] ranks, int count) throws IOException {
+            if (siteId == 0) {
+                return;
+            }
+            Map<String, Integer> counts = siteLemmas.computeIfAbsent(siteId, id -> new HashMap<>());
+            for (int i = 0; i < count; i++) {
+                Lemma lemma = lemmas.get(lemmaIds[i]);
+                if (lemma != null) {
+                    counts.merge(lemma.getLemma(), 1, Integer::sum);
+                }
+            }
+        }
+
+        void apply() {
+            nearDuplicateIndex.load(fingerprints);
+            suggestIndex.load(siteLemmas, frequencies);
+        }
+    }
+
+    /**
+     * Загрузка снимка в БД и хранилище индекса пакетами по мере чтения.
+     */
+    private class ImportData extends WarmupData {
+
+        private final List<Site> sites = new ArrayList<>();
+        private final List<Page> pages = new ArrayList<>();
+        private long pageBytes;
+        private final List<Lemma> lemmaBatch = new ArrayList<>();
+        private final Map<Page, Map<Lemma, Float>> postings = new LinkedHashMap<>();
+        private int postingCount;
+
+        @Override
+        public void site(Site site) throws IOException {
+            super.site(site);
+            sites.add(site);
+        }
+
+        @Override
+        public void page(Page page) throws IOException {
+            super.page(page);
+            flushSites();
+            pages.add(page);
+            pageBytes += page.getContent().length();
+            if (pages.size() >= PAGE_BATCH_SIZE || pageBytes >= PAGE_BATCH_BYTES) {
+                flushPages();
+            }
+        }
+
+        @Override
+        public void lemma(Lemma lemma) throws IOException {
+            super.lemma(lemma);
+            flushSites();
+            flushPages();
+            lemmaBatch.add(lemma);
+            if (lemmaBatch.size() >= LEMMA_BATCH_SIZE) {
+                flushLemmas();
+            }
+        }
+
+        @Override
+        public void postings(int pageId, int siteId, int[] lemmaIds, float[] ranks, int count) throws IOException {
+            super.postings(pageId, siteId, lemmaIds, ranks, count);
+            flushSites();
+            flushPages();
+            flushLemmas();
+            if (siteId == 0) {
+                return;
+            }
+            Page page = new Page();
+            page.setId(pageId);
+            page.setSite(getSiteReference(siteId));
+            Map<Lemma, Float> pageRanks = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Lemma lemma = lemmas.get(lemmaIds[i]);
+                if (lemma != null) {
+                    pageRanks.put(lemma, ranks[i]);
+                }
+            }
+            postings.put(page, pageRanks);
+            postingCount += pageRanks.size();
+            if (postingCount >= POSTING_BATCH_SIZE) {
+                flushPostings();
+            }
+        }
+
+        void finish() {
+            flushSites();
+            flushPages();
+            flushLemmas();
+            flushPostings();
+        }
+
+        private void flushSites() {
+            if (!sites.isEmpty()) {
+                bulkLoadRepository.insertSites(sites);
+                sites.clear();
+            }
+        }
+
+        private void flushPages() {
+            if (!pages.isEmpty()) {
+                bulkLoadRepository.insertPages(pages);
+                pages.clear();
+                pageBytes = 0;
+            }
+        }
+
+        private void flushLemmas() {
+            if (!lemmaBatch.isEmpty()) {
+                bulkLoadRepository.insertLemmas(lemmaBatch);
+                lemmaBatch.clear();
+            }
+        }
+
+        private void flushPostings() {
+            if (!postings.isEmpty()) {
+                postingRepository.loadAll(postings);
+                postings.clear();
+                postingCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import searchengine.config.AdmissionLimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Адаптивный ограничитель числа одновременно выполняемых запросов (AIMD по времени выполнения).
+ * Пока запросы выполняются быстрее latency-threshold, а лимит используется хотя бы наполовину, лимит растет
+ * примерно на 1 за каждые limit завершенных запросов; медленный или неуспешный запрос уменьшает лимит
+ * в backoff-ratio раз. Запрос сверх лимита ждет места не дольше max-wait, если в очереди меньше queue-size
+ * запросов, иначе сразу отклоняется.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final long maxWaitNanos;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    private final Counter rejected;
+    private final Timer waitTimer;
+    private final Timer latencyTimer;
+
+    /**
+     * @param group - название группы эндпоинтов (тег group метрик searchengine.admission.*).
+     * @param settings - настройки лимита.
+     * @param meterRegistry - реестр метрик.
+     */
+    public AdaptiveConcurrencyLimiter(String group, AdmissionLimit settings, MeterRegistry meterRegistry) {
+        this.minLimit = Math.max(1, settings.getMinLimit());
+        this.maxLimit = Math.max(minLimit, settings.getMaxLimit());
+        this.queueSize = Math.max(0, settings.getQueueSize());
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, settings.getMaxWait()));
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(settings.getLatencyThreshold());
+        this.backoffRatio = settings.getBackoffRatio();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, settings.getInitialLimit()));
+        Gauge.builder("searchengine.admission.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("group", group).register(meterRegistry);
+        Gauge.builder("searchengine.admission.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("group", group).register(meterRegistry);
+        Gauge.builder("searchengine.admission.queued", this, AdaptiveConcurrencyLimiter::getWaiting)
+                .tag("group", group).register(meterRegistry);
+        this.rejected = meterRegistry.counter("searchengine.admission.rejected", "group", group);
+        this.waitTimer = meterRegistry.timer("searchengine.admission.wait", "group", group);
+        this.latencyTimer = meterRegistry.timer("searchengine.admission.latency", "group", group);
+    }
+
+    /**
+     * Метод, получающий разрешение на выполнение запроса; при необходимости ожидает места в очереди.
+     * @return - разрешение, либо null, если запрос нужно отклонить.
+     */
+    public Permit tryAcquire() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                if (waiting >= queueSize) {
+                    rejected.increment();
+                    return null;
+                }
+                waiting++;
+                try {
+                    long deadline = start + maxWaitNanos;
+                    while (inFlight >= (int) limit) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            rejected.increment();
+                            return null;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejected.increment();
+                    return null;
+                } finally {
+                    waiting--;
+                }
+            }
+            inFlight++;
+        }
+        long acquired = System.nanoTime();
+        waitTimer.record(acquired - start, TimeUnit.NANOSECONDS);
+        return new Permit(acquired);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Метод, освобождающий место и пересчитывающий лимит по времени выполнения запроса.
+     * @param latencyNanos - время выполнения запроса.
+     * @param failed - завершился ли запрос ошибкой.
+     */
+    private void release(long latencyNanos, boolean failed) {
+        latencyTimer.record(latencyNanos, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            if (failed || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight * 2 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            inFlight--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Разрешение на выполнение запроса; освобождается один раз после завершения запроса.
+     */
+    public class Permit {
+
+        private final long start;
+        private boolean released;
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        /**
+         * Метод, освобождающий разрешение.
+         * @param failed - завершился ли запрос ошибкой.
+         */
+        public void release(boolean failed) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            AdaptiveConcurrencyLimiter.this.release(System.nanoTime() - start, failed);
+        }
+    }
+}
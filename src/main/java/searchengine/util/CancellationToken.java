@@ -0,0 +1,63 @@
+package searchengine.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Признак отмены одного запуска индексации.
+ * Задачи обхода проверяют его перед каждым шагом, а незавершенные операции (HTTP-запросы, отложенные задачи)
+ * регистрируют обработчики, которые прерывают их сразу при отмене.
+ */
+public class CancellationToken {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final Set<Runnable> hooks = ConcurrentHashMap.newKeySet();
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Метод, отменяющий запуск и вызывающий все зарегистрированные обработчики (каждый ровно один раз).
+     */
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            for (Runnable hook : hooks) {
+                runHook(hook);
+            }
+        }
+    }
+
+    /**
+     * Метод, регистрирующий обработчик отмены. Если запуск уже отменен, обработчик вызывается сразу.
+     * @param hook - обработчик.
+     * @return - регистрация, закрытие которой удаляет обработчик.
+     */
+    public Registration onCancel(Runnable hook) {
+        hooks.add(hook);
+        if (cancelled.get()) {
+            runHook(hook);
+        }
+        return () -> hooks.remove(hook);
+    }
+
+    private void runHook(Runnable hook) {
+        if (hooks.remove(hook)) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Регистрация обработчика отмены.
+     */
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
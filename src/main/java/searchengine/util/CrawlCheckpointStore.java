@@ -0,0 +1,284 @@
+package searchengine.util;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранилище контрольных точек обхода сайтов.
+ * Для каждого сайта состояние обхода (встреченные и ожидающие адреса) периодически записывается
+ * в сжатый файл в каталоге checkpoint-dir. Файл заменяется атомарно, поэтому при аварийном завершении
+ * приложения на диске остается последняя целиком записанная контрольная точка.
+ * Если очередь обхода хранится на диске (frontier: disk), состояние обхода сайта лежит в каталоге
+ * site-&lt;md5&gt;.frontier, а контрольной точкой служит его файл состояния (DiskCrawlFrontier).
+ */
+@Component
+public class CrawlCheckpointStore {
+
+    private static final int MAGIC = 0x53454350;
+    private static final int VERSION = 1;
+
+    private final SitesList sitesList;
+
+    private final ScheduledExecutorService checkpointScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CrawlCheckpointStore(SitesList sitesList) {
+        this.sitesList = sitesList;
+    }
+
+    /**
+     * Метод, создающий пустое состояние обхода сайта в соответствии с настройкой frontier.
+     * Если каталог состояния обхода создать не удалось, очередь хранится в памяти.
+     * @param siteUrl - адрес сайта из конфигурации.
+     * @return - состояние обхода.
+     */
+    public CrawlFrontier create(String siteUrl) {
+        if (!isDiskFrontier()) {
+            return new MemoryCrawlFrontier();
+        }
+        try {
+            return DiskCrawlFrontier.create(getFrontierDir(siteUrl), sitesList.getFrontierMemoryEntries(),
+                    sitesList.getFrontierSegmentSize(), sitesList.getFrontierVisitedCapacity(),
+                    sitesList.getCheckpointInterval() <= 0);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return new MemoryCrawlFrontier();
+        }
+    }
+
+    /**
+     * Метод, запускающий периодическую запись контрольной точки обхода сайта.
+     * @param siteUrl - адрес сайта из конфигурации.
+     * @param frontier - состояние обхода сайта.
+     * @return - регистрация, закрытие которой останавливает запись.
+     */
+    public CancellationToken.Registration schedule(String siteUrl, CrawlFrontier frontier) {
+        long interval = sitesList.getCheckpointInterval();
+        if (interval <= 0) {
+            return () -> {
+            };
+        }
+        AtomicBoolean active = new AtomicBoolean(true);
+        ScheduledFuture<?> future = checkpointScheduler.scheduleWithFixedDelay(() -> {
+            synchronized (this) {
+                if (active.get()) {
+                    save(siteUrl, frontier);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        return () -> {
+            synchronized (this) {
+                active.set(false);
+            }
+            future.cancel(false);
+        };
+    }
+
+    /**
+     * Метод, записывающий контрольную точку обхода сайта.
+     * @param siteUrl - адрес сайта из конфигурации.
+     * @param frontier - состояние обхода сайта.
+     */
+    public synchronized void save(String siteUrl, CrawlFrontier frontier) {
+        if (frontier instanceof DiskCrawlFrontier diskFrontier) {
+            try {
+                diskFrontier.checkpoint();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            return;
+        }
+        MemoryCrawlFrontier.Snapshot snapshot = ((MemoryCrawlFrontier) frontier).snapshot();
+        Path file = getFile(siteUrl);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                write(temp, siteUrl, snapshot);
+                move(temp, file);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Метод, загружающий последнюю контрольную точку обхода сайта.
+     * @param siteUrl - адрес сайта из конфигурации.
+     * @return - состояние обхода, либо null, если контрольной точки нет или она не читается.
+     */
+    public CrawlFrontier load(String siteUrl) {
+        if (isDiskFrontier()) {
+            try {
+                return DiskCrawlFrontier.open(getFrontierDir(siteUrl), sitesList.getFrontierMemoryEntries(),
+                        sitesList.getFrontierSegmentSize(), sitesList.getCheckpointInterval() <= 0);
+            } catch (IOException | RuntimeException e) {
+                System.out.println(e.getMessage());
+                return null;
+            }
+        }
+        Path file = getFile(siteUrl);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(siteUrl)) {
+                return null;
+            }
+            in.readLong();
+            int visitedCount = in.readInt();
+            List<String> visited = new ArrayList<>(visitedCount);
+            for (int i = 0; i < visitedCount; i++) {
+                visited.add(in.readUTF());
+            }
+            int pendingCount = in.readInt();
+            Map<String, Instant> pending = new HashMap<>(pendingCount * 2);
+            for (int i = 0; i < pendingCount; i++) {
+                String url = in.readUTF();
+                long lastModified = in.readLong();
+                pending.put(url, lastModified < 0 ? null : Instant.ofEpochMilli(lastModified));
+            }
+            return MemoryCrawlFrontier.restore(new MemoryCrawlFrontier.Snapshot(visited, pending));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Метод, удаляющий контрольную точку обхода сайта (после успешного завершения обхода).
+     * Состояние обхода сайта должно быть уже закрыто.
+     * @param siteUrl - адрес сайта из конфигурации.
+     */
+    public synchronized void delete(String siteUrl) {
+        try {
+            Files.deleteIfExists(getFile(siteUrl));
+            DiskCrawlFrontier.delete(getFrontierDir(siteUrl));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Метод, удаляющий все контрольные точки (перед полной переиндексацией).
+     */
+    public synchronized void deleteAll() {
+        Path dir = Paths.get(sitesList.getCheckpointDir());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                if (file.toString().endsWith(".ckpt")) {
+                    Files.deleteIfExists(file);
+                } else if (file.toString().endsWith(".frontier")) {
+                    DiskCrawlFrontier.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Метод, записывающий снимок в файл: заголовок, встреченные адреса, затем ожидающие адреса с датой изменения.
+     * Адреса длиннее 64 КБ в UTF-8 не записываются.
+     */
+    private static void write(Path file, String siteUrl, MemoryCrawlFrontier.Snapshot snapshot) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file), 64 * 1024)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(siteUrl);
+            out.writeLong(System.currentTimeMillis());
+            List<String> visited = snapshot.visited().stream().filter(CrawlCheckpointStore::isWritable).toList();
+            out.writeInt(visited.size());
+            for (String url : visited) {
+                out.writeUTF(url);
+            }
+            List<Map.Entry<String, Instant>> pending = snapshot.pending().entrySet().stream()
+                    .filter(entry -> isWritable(entry.getKey())).toList();
+            out.writeInt(pending.size());
+            for (Map.Entry<String, Instant> entry : pending) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue() == null ? -1 : entry.getValue().toEpochMilli());
+            }
+        } catch (UTFDataFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean isWritable(String url) {
+        return url.length() <= 0xFFFF / 3 || url.getBytes(StandardCharsets.UTF_8).length <= 0xFFFF;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private boolean isDiskFrontier() {
+        return "disk".equalsIgnoreCase(sitesList.getFrontier());
+    }
+
+    private Path getFile(String siteUrl) {
+        return Paths.get(sitesList.getCheckpointDir(), "site-" + getName(siteUrl) + ".ckpt");
+    }
+
+    private Path getFrontierDir(String siteUrl) {
+        return Paths.get(sitesList.getCheckpointDir(), "site-" + getName(siteUrl) + ".frontier");
+    }
+
+    private static String getName(String siteUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(digest.digest(siteUrl.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpointScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,47 @@
+package searchengine.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import searchengine.services.IndexingService;
+
+/**
+ * Общие для всех задач обхода одного сайта сервисы и настройки.
+ */
+@Getter
+@AllArgsConstructor
+public class CrawlContext {
+    /**
+     * Адрес сайта из конфигурации.
+     */
+    private final String siteUrl;
+    private final IndexingService indexingService;
+    private final PageFetcher pageFetcher;
+    private final HostRateLimiter rateLimiter;
+    private final RobotsTxtCache robotsTxtCache;
+    private final SitemapParser sitemapParser;
+    private final SiteRegistry siteRegistry;
+    /**
+     * Интервал между запросами к сайту из конфигурации, в миллисекундах.
+     */
+    private final long crawlDelay;
+    /**
+     * Загружать ли карты сайта для наполнения очереди обхода.
+     */
+    private final boolean sitemapEnabled;
+    /**
+     * Обход сайта в планировщике: через него ставятся в очередь задачи обхода.
+     */
+    private final SiteCrawl siteCrawl;
+    /**
+     * Встреченные и ожидающие обхода адреса сайта.
+     */
+    private final CrawlFrontier frontier;
+
+    /**
+     * Метод, возвращающий признак отмены обхода сайта.
+     * @return - признак отмены.
+     */
+    public CancellationToken getCancellationToken() {
+        return siteCrawl.getCancellationToken();
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.util;
+
+import java.time.Instant;
+
+/**
+ * Состояние обхода одного сайта: встреченные адреса и очередь адресов, обработка которых еще не завершена.
+ * Адрес становится ожидающим до того, как завершится обработка страницы, на которой он найден,
+ * а выданный из очереди адрес остается ожидающим, пока его обработка не завершена, поэтому контрольная точка
+ * всегда содержит все адреса, которые осталось обойти.
+ * Реализации: MemoryCrawlFrontier (все адреса в памяти) и DiskCrawlFrontier (для очень больших сайтов:
+ * в памяти только начало очереди, остальное - в файлах), выбираются настройкой indexing-settings.frontier.
+ */
+public interface CrawlFrontier {
+
+    /**
+     * Метод, отмечающий адрес как встреченный.
+     * @param url - адрес страницы.
+     * @return - true, если адрес встретился впервые.
+     */
+    boolean markVisited(String url);
+
+    /**
+     * Метод, добавляющий адрес в конец очереди обхода.
+     * @param url - адрес страницы.
+     * @param lastModified - дата последнего изменения страницы, либо null.
+     */
+    void addPending(String url, Instant lastModified);
+
+    /**
+     * Метод, выдающий следующий адрес из очереди обхода. Адрес остается ожидающим до вызова complete.
+     * @return - адрес, либо null, если очередь пуста.
+     */
+    Entry poll();
+
+    /**
+     * Метод, отмечающий, что обработка адреса завершена.
+     * @param url - адрес страницы.
+     */
+    void complete(String url);
+
+    boolean isPending(String url);
+
+    long getVisitedCount();
+
+    long getPendingCount();
+
+    /**
+     * Метод, сообщающий, что очередь обхода хранится не только в памяти: тогда задачи обхода
+     * не накапливают карту сайта (WebSiteTree), чтобы память не росла с числом адресов.
+     * @return - true, если объем памяти не зависит от размера сайта.
+     */
+    boolean isBounded();
+
+    /**
+     * Метод, освобождающий ресурсы после завершения обхода (файлы остаются для продолжения обхода).
+     */
+    void close();
+
+    /**
+     * Адрес из очереди обхода.
+     * @param url - адрес страницы.
+     * @param lastModified - дата последнего изменения страницы из карты сайта, либо null.
+     */
+    record Entry(String url, Instant lastModified) {
+    }
+}
@@ -0,0 +1,203 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планировщик обхода сайтов.
+ * Все сайты обходятся общим пулом из parallelism потоков. Задачи каждого сайта стоят в отдельной очереди,
+ * а свободные потоки раздаются сайтам по кругу с учетом веса сайта (взвешенный round-robin),
+ * поэтому большой сайт не вытесняет остальные. Число одновременно выполняемых задач сайта
+ * дополнительно ограничено его max-concurrency.
+ */
+@Component
+@Lazy
+public class CrawlScheduler {
+
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * Сайты, обход которых выполняется, в порядке обслуживания.
+     */
+    private final List<SiteCrawl> sites = new ArrayList<>();
+    private int cursor;
+    private int served;
+    private int running;
+
+    public CrawlScheduler(SitesList sitesList, MeterRegistry meterRegistry) {
+        this.parallelism = Math.max(1, sitesList.getParallelism());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "crawl-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("searchengine.crawl.running", this, CrawlScheduler::getRunning);
+        meterRegistry.gauge("searchengine.crawl.queued", this, CrawlScheduler::getQueued);
+    }
+
+    /**
+     * Метод, регистрирующий обход сайта. При отмене обхода очередь сайта очищается,
+     * а обход завершается, как только закончатся выполняющиеся задачи.
+     * @param siteUrl - адрес сайта из конфигурации.
+     * @param weight - вес сайта (число задач сайта, запускаемых подряд).
+     * @param maxConcurrency - максимальное число одновременно выполняемых задач сайта.
+     * @param cancellationToken - признак отмены обхода сайта.
+     * @return - обход сайта.
+     */
+    public SiteCrawl register(String siteUrl, int weight, int maxConcurrency, CancellationToken cancellationToken) {
+        SiteCrawl site = new SiteCrawl(this, siteUrl, Math.max(1, weight),
+                Math.max(1, Math.min(maxConcurrency, parallelism)), cancellationToken);
+        synchronized (this) {
+            sites.add(site);
+        }
+        cancellationToken.onCancel(() -> cancel(site));
+        return site;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Метод, возвращающий число выполняющихся задач обхода.
+     * @return - число задач.
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Метод, возвращающий число задач обхода в очередях всех сайтов.
+     * @return - число задач.
+     */
+    public synchronized int getQueued() {
+        int queued = 0;
+        for (SiteCrawl site : sites) {
+            queued += site.queue.size();
+        }
+        return queued;
+    }
+
+    synchronized void submit(SiteCrawl site, Runnable task) {
+        if (site.getCancellationToken().isCancelled() || site.getCompletion().isDone()) {
+            return;
+        }
+        site.queue.add(task);
+        dispatch();
+    }
+
+    /**
+     * Метод, снимающий сайт с обслуживания и завершающий его обход.
+     * Обработчики завершения выполняются вне блокировки планировщика.
+     * @param site - обход сайта.
+     * @param e - ошибка обхода, либо null.
+     */
+    void finish(SiteCrawl site, Throwable e) {
+        synchronized (this) {
+            unregister(site);
+        }
+        if (e == null) {
+            site.getCompletion().complete(null);
+        } else {
+            site.getCompletion().completeExceptionally(e);
+        }
+    }
+
+    private void cancel(SiteCrawl site) {
+        boolean idle;
+        synchronized (this) {
+            site.queue.clear();
+            idle = site.active == 0;
+        }
+        if (idle) {
+            finish(site, null);
+        }
+    }
+
+    /**
+     * Метод, запускающий задачи из очередей сайтов, пока есть свободные потоки.
+     */
+    private void dispatch() {
+        while (running < parallelism) {
+            SiteCrawl site = nextSite();
+            if (site == null) {
+                return;
+            }
+            Runnable task = site.queue.poll();
+            site.active++;
+            running++;
+            executor.execute(() -> run(site, task));
+        }
+    }
+
+    private void run(SiteCrawl site, Runnable task) {
+        boolean cancelledAndIdle;
+        try {
+            task.run();
+        } finally {
+            synchronized (this) {
+                site.active--;
+                running--;
+                cancelledAndIdle = site.active == 0 && site.getCancellationToken().isCancelled();
+                dispatch();
+            }
+        }
+        if (cancelledAndIdle) {
+            finish(site, null);
+        }
+    }
+
+    /**
+     * Метод, выбирающий сайт для запуска следующей задачи: текущий сайт обслуживается, пока не исчерпан его вес,
+     * после чего очередь переходит к следующему сайту с задачами и свободным лимитом.
+     * @return - сайт, либо null, если запускать нечего.
+     */
+    private SiteCrawl nextSite() {
+        for (int i = 0; i <= sites.size(); i++) {
+            if (cursor >= sites.size()) {
+                cursor = 0;
+            }
+            if (sites.isEmpty()) {
+                return null;
+            }
+            SiteCrawl site = sites.get(cursor);
+            if (served < site.getWeight() && !site.queue.isEmpty() && site.active < site.getMaxConcurrency()) {
+                served++;
+                return site;
+            }
+            cursor++;
+            served = 0;
+        }
+        return null;
+    }
+
+    private void unregister(SiteCrawl site) {
+        int index = sites.indexOf(site);
+        if (index < 0) {
+            return;
+        }
+        sites.remove(index);
+        if (index < cursor) {
+            cursor--;
+        } else if (index == cursor) {
+            served = 0;
+        }
+        site.queue.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
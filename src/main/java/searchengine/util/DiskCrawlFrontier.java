@@ -0,0 +1,447 @@
+package searchengine.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Состояние обхода очень большого сайта, объем памяти которого не зависит от числа адресов.
+ * Все файлы лежат в отдельном каталоге сайта:
+ * <ul>
+ *     <li>visited.bin - отпечатки встреченных адресов (FingerprintSet);</li>
+ *     <li>queue-N.seg - очередь обхода: сегменты фиксированного размера, отображенные в память, в которые адреса
+ *     только дописываются. Запись: длина адреса в UTF-8 (int), байты адреса, дата изменения (long, -1 - неизвестна);
+ *     длина пишется последней, поэтому недописанная запись читается как конец очереди (0),
+ *     а -1 означает переход к следующему сегменту;</li>
+ *     <li>state.bin - контрольная точка: позиция чтения очереди и выданные, но не завершенные адреса.</li>
+ * </ul>
+ * В памяти хранятся только начало очереди (не больше memoryEntries прочитанных наперед записей)
+ * и выданные адреса, число которых ограничено задачами обхода.
+ * После сбоя обход продолжается с позиции чтения последней контрольной точки: адреса, выданные после нее,
+ * обходятся повторно, а адреса, добавленные после нее, не теряются, так как сегменты дописываются сразу.
+ */
+public class DiskCrawlFrontier implements CrawlFrontier {
+
+    private static final int STATE_MAGIC = 0x53454346;
+    private static final int STATE_VERSION = 1;
+    private static final long UNKNOWN = -1;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String VISITED_FILE = "visited.bin";
+    private static final String STATE_FILE = "state.bin";
+
+    private final Path dir;
+    private final int memoryEntries;
+    private final int segmentSize;
+    /**
+     * Удалять ли прочитанные сегменты сразу (если контрольные точки пишутся только при остановке обхода,
+     * к прочитанным записям возвращаться не нужно).
+     */
+    private final boolean dropConsumed;
+    private final FingerprintSet visited;
+
+    /**
+     * Начало очереди, прочитанное из сегментов, с позициями записей.
+     */
+    private final ArrayDeque<QueuedEntry> head = new ArrayDeque<>();
+    /**
+     * Выданные, но не завершенные адреса и дата их последнего изменения (UNKNOWN, если неизвестна).
+     */
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+
+    private MappedByteBuffer writeBuffer;
+    private int writeSegment;
+    private MappedByteBuffer readBuffer;
+    private int readSegment;
+    private int readOffset;
+    /**
+     * Номер первого сегмента, который еще может понадобиться после сбоя.
+     */
+    private int firstSegment;
+    /**
+     * Число записей очереди, которые еще не выданы (включая начало очереди в памяти).
+     */
+    private long queued;
+    private boolean closed;
+
+    private DiskCrawlFrontier(Path dir, int memoryEntries, int segmentSize, boolean dropConsumed,
+                              FingerprintSet visited) {
+        this.dir = dir;
+        this.memoryEntries = Math.max(1, memoryEntries);
+        this.segmentSize = segmentSize;
+        this.dropConsumed = dropConsumed;
+        this.visited = visited;
+    }
+
+    /**
+     * Метод, создающий пустое состояние обхода (прежнее содержимое каталога удаляется).
+     * @param dir - каталог состояния обхода сайта.
+     * @param memoryEntries - наибольшее число записей начала очереди в памяти.
+     * @param segmentSize - размер сегмента очереди в байтах.
+     * @param visitedCapacity - начальное число ячеек множества встреченных адресов.
+     * @param dropConsumed - удалять ли прочитанные сегменты сразу.
+     * @return - состояние обхода.
+     */
+    public static DiskCrawlFrontier create(Path dir, int memoryEntries, int segmentSize, int visitedCapacity,
+                                           boolean dropConsumed) throws IOException {
+        delete(dir);
+        Files.createDirectories(dir);
+        DiskCrawlFrontier frontier = new DiskCrawlFrontier(dir, memoryEntries, segmentSize, dropConsumed,
+                FingerprintSet.create(dir.resolve(VISITED_FILE), visitedCapacity));
+        frontier.writeBuffer = frontier.mapSegment(0, true);
+        frontier.readBuffer = frontier.writeBuffer;
+        return frontier;
+    }
+
+    /**
+     * Метод, восстанавливающий состояние обхода из последней контрольной точки. Очередь читается с позиции
+     * контрольной точки до фактического конца последнего сегмента; адреса, выданные на момент контрольной точки,
+     * снова добавляются в очередь.
+     * @param dir - каталог состояния обхода сайта.
+     * @param memoryEntries - наибольшее число записей начала очереди в памяти.
+     * @param segmentSize - размер новых сегментов очереди в байтах.
+     * @param dropConsumed - удалять ли прочитанные сегменты сразу.
+     * @return - состояние обхода, либо null, если контрольной точки нет.
+     * @throws IOException - если файлы состояния повреждены.
+     */
+    public static DiskCrawlFrontier open(Path dir, int memoryEntries, int segmentSize, boolean dropConsumed)
+            throws IOException {
+        Path stateFile = dir.resolve(STATE_FILE);
+        if (!Files.isRegularFile(stateFile)) {
+            return null;
+        }
+        DiskCrawlFrontier frontier = new DiskCrawlFrontier(dir, memoryEntries, segmentSize, dropConsumed,
+                FingerprintSet.open(dir.resolve(VISITED_FILE)));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            if (in.readInt() != STATE_MAGIC || in.readInt() != STATE_VERSION) {
+                throw new IOException("Corrupted crawl frontier state: " + stateFile);
+            }
+            frontier.readSegment = in.readInt();
+            frontier.readOffset = in.readInt();
+            frontier.firstSegment = frontier.readSegment;
+            int inFlightCount = in.readInt();
+            for (int i = 0; i < inFlightCount; i++) {
+                byte[] url = new byte[in.readInt()];
+                in.readFully(url);
+                frontier.inFlight.put(new String(url, StandardCharsets.UTF_8), in.readLong());
+            }
+        }
+        frontier.recover();
+        return frontier;
+    }
+
+    /**
+     * Метод, удаляющий каталог состояния обхода.
+     * @param dir - каталог состояния обхода сайта.
+     */
+    public static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Override
+    public boolean markVisited(String url) {
+        return visited.add(url);
+    }
+
+    @Override
+    public synchronized void addPending(String url, Instant lastModified) {
+        if (closed) {
+            return;
+        }
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        int recordSize = Integer.BYTES + bytes.length + Long.BYTES;
+        if (recordSize + Integer.BYTES > segmentSize) {
+            System.out.println("URL is too long for the crawl frontier: " + url);
+            return;
+        }
+        if (writeBuffer.remaining() < recordSize + Integer.BYTES) {
+            nextWriteSegment();
+        }
+        int position = writeBuffer.position();
+        writeBuffer.position(position + Integer.BYTES);
+        writeBuffer.put(bytes);
+        writeBuffer.putLong(lastModified == null ? UNKNOWN : lastModified.toEpochMilli());
+        writeBuffer.putInt(position, bytes.length);
+        queued++;
+    }
+
+    @Override
+    public synchronized Entry poll() {
+        if (closed) {
+            return null;
+        }
+        if (head.isEmpty()) {
+            readAhead();
+        }
+        QueuedEntry next = head.poll();
+        if (next == null) {
+            return null;
+        }
+        queued--;
+        inFlight.put(next.url(), next.lastModified());
+        return new Entry(next.url(), next.lastModified() == UNKNOWN ? null : Instant.ofEpochMilli(next.lastModified()));
+    }
+
+    @Override
+    public void complete(String url) {
+        inFlight.remove(url);
+    }
+
+    /**
+     * Метод, проверяющий, ожидает ли адрес обхода. Проверяются только выданные адреса и начало очереди в памяти.
+     * @param url - адрес страницы.
+     * @return - true, если адрес выдан и не завершен либо находится в начале очереди.
+     */
+    @Override
+    public synchronized boolean isPending(String url) {
+        if (inFlight.containsKey(url)) {
+            return true;
+        }
+        if (head.isEmpty()) {
+            readAhead();
+        }
+        for (QueuedEntry entry : head) {
+            if (entry.url().equals(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getVisitedCount() {
+        return visited.size();
+    }
+
+    @Override
+    public synchronized long getPendingCount() {
+        return queued + inFlight.size();
+    }
+
+    @Override
+    public boolean isBounded() {
+        return true;
+    }
+
+    /**
+     * Метод, записывающий контрольную точку: сегменты и множество встреченных адресов сбрасываются на диск,
+     * затем атомарно заменяется файл состояния, после чего удаляются сегменты до позиции чтения.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (closed) {
+            return;
+        }
+        int segment = readSegment;
+        int offset = readOffset;
+        QueuedEntry first = head.peek();
+        if (first != null) {
+            segment = first.segment();
+            offset = first.offset();
+        }
+        writeBuffer.force();
+        visited.force();
+        Path stateFile = dir.resolve(STATE_FILE);
+        Path temp = dir.resolve(STATE_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(STATE_MAGIC);
+            out.writeInt(STATE_VERSION);
+            out.writeInt(segment);
+            out.writeInt(offset);
+            Map<String, Long> inFlightCopy = Map.copyOf(inFlight);
+            out.writeInt(inFlightCopy.size());
+            for (Map.Entry<String, Long> entry : inFlightCopy.entrySet()) {
+                byte[] url = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(url.length);
+                out.write(url);
+                out.writeLong(entry.getValue());
+            }
+        }
+        try {
+            Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        deleteSegmentsBefore(segment);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        head.clear();
+        writeBuffer = null;
+        readBuffer = null;
+        visited.close();
+    }
+
+    /**
+     * Метод, читающий в память следующие записи очереди (не больше memoryEntries).
+     */
+    private void readAhead() {
+        while (head.size() < memoryEntries) {
+            if (readBuffer.limit() - readOffset < Integer.BYTES) {
+                if (readSegment == writeSegment || !nextReadSegment()) {
+                    return;
+                }
+                continue;
+            }
+            int length = readBuffer.getInt(readOffset);
+            if (length == END_OF_SEGMENT) {
+                if (readSegment == writeSegment || !nextReadSegment()) {
+                    return;
+                }
+                continue;
+            }
+            if (length == 0) {
+                return;
+            }
+            byte[] url = new byte[length];
+            readBuffer.get(readOffset + Integer.BYTES, url);
+            long lastModified = readBuffer.getLong(readOffset + Integer.BYTES + length);
+            head.add(new QueuedEntry(new String(url, StandardCharsets.UTF_8), lastModified, readSegment, readOffset));
+            readOffset += Integer.BYTES + length + Long.BYTES;
+        }
+    }
+
+    /**
+     * Метод, переводящий чтение на следующий сегмент.
+     * @return - false, если следующего сегмента нет.
+     */
+    private boolean nextReadSegment() {
+        int next = readSegment + 1;
+        try {
+            readBuffer = next == writeSegment ? writeBuffer : mapSegment(next, false);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        readSegment = next;
+        readOffset = 0;
+        if (dropConsumed) {
+            deleteSegmentsBefore(head.isEmpty() ? readSegment : head.peek().segment());
+        }
+        return true;
+    }
+
+    /**
+     * Метод, закрывающий текущий сегмент записи меткой перехода и создающий следующий.
+     */
+    private void nextWriteSegment() {
+        if (writeBuffer.remaining() >= Integer.BYTES) {
+            writeBuffer.putInt(writeBuffer.position(), END_OF_SEGMENT);
+        }
+        try {
+            writeBuffer = mapSegment(writeSegment + 1, true);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        writeSegment++;
+    }
+
+    /**
+     * Метод, находящий конец очереди после восстановления: сегменты читаются с позиции чтения до записи
+     * нулевой длины, адреса, выданные на момент контрольной точки, дописываются в конец очереди.
+     */
+    private void recover() throws IOException {
+        int lastSegment = readSegment;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Integer segment = getSegmentNumber(file);
+                if (segment != null) {
+                    lastSegment = Math.max(lastSegment, segment);
+                    firstSegment = Math.min(firstSegment, segment);
+                }
+            }
+        }
+        readBuffer = mapSegment(readSegment, false);
+        int segment = readSegment;
+        int offset = readOffset;
+        MappedByteBuffer buffer = readBuffer;
+        while (true) {
+            int length = buffer.limit() - offset < Integer.BYTES ? END_OF_SEGMENT : buffer.getInt(offset);
+            if (length == 0 || length == END_OF_SEGMENT && segment == lastSegment) {
+                break;
+            }
+            if (length == END_OF_SEGMENT) {
+                segment++;
+                offset = 0;
+                buffer = mapSegment(segment, false);
+                continue;
+            }
+            if (length < 0 || offset + Integer.BYTES + length + Long.BYTES > buffer.limit()) {
+                throw new IOException("Corrupted crawl frontier segment " + segment + " in " + dir);
+            }
+            offset += Integer.BYTES + length + Long.BYTES;
+            queued++;
+        }
+        writeSegment = segment;
+        writeBuffer = segment == readSegment ? readBuffer : buffer;
+        writeBuffer.position(offset);
+        Map<String, Long> restored = Map.copyOf(inFlight);
+        inFlight.clear();
+        restored.forEach((url, lastModified) ->
+                addPending(url, lastModified == UNKNOWN ? null : Instant.ofEpochMilli(lastModified)));
+    }
+
+    private void deleteSegmentsBefore(int segment) {
+        for (; firstSegment < segment; firstSegment++) {
+            try {
+                Files.deleteIfExists(getSegmentFile(firstSegment));
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    private MappedByteBuffer mapSegment(int segment, boolean create) throws IOException {
+        Path file = getSegmentFile(segment);
+        try (FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, create ? segmentSize : channel.size());
+        }
+    }
+
+    private Path getSegmentFile(int segment) {
+        return dir.resolve(String.format("queue-%08d.seg", segment));
+    }
+
+    private static Integer getSegmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("queue-") || !name.endsWith(".seg")) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(name.substring("queue-".length(), name.length() - ".seg".length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Запись начала очереди и ее позиция в сегментах.
+     */
+    private record QueuedEntry(String url, long lastModified, int segment, int offset) {
+    }
+}
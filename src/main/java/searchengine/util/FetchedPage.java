@@ -0,0 +1,54 @@
+package searchengine.util;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Результат загрузки страницы.
+ */
+public class FetchedPage {
+
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final Document document;
+
+    public FetchedPage(String url, int statusCode, String contentType, Document document) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.document = document;
+    }
+
+    /**
+     * @return - адрес страницы: конечный адрес после перенаправлений в пределах сайта, иначе запрошенный адрес.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return - разобранный html-документ, либо null, если ответ не является html.
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * @return - html-код страницы (пустая строка, если ответ не является html).
+     */
+    public String getContent() {
+        return document == null ? "" : document.outerHtml();
+    }
+
+    public boolean isHtml() {
+        return document != null;
+    }
+}
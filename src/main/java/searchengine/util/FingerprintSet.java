@@ -0,0 +1,196 @@
+package searchengine.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Множество 64-битных отпечатков строк в отображенном в память файле: хеш-таблица с открытой адресацией
+ * (линейное пробирование), 0 означает пустую ячейку. Формат файла: число отпечатков (long), резерв (long),
+ * затем ячейки. Таблица удваивается, когда заполнена наполовину. Совпадение отпечатков разных строк
+ * (вероятность порядка n^2 / 2^65) считается совпадением строк.
+ */
+public class FingerprintSet implements Closeable {
+
+    private static final int HEADER_SIZE = 16;
+    private static final int MIN_CAPACITY = 1024;
+    /**
+     * Наибольшее число ячеек, при котором файл отображается в память одним буфером.
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private final Path file;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private long count;
+
+    private FingerprintSet(Path file, MappedByteBuffer buffer, int capacity, long count) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    /**
+     * Метод, создающий пустое множество (существующий файл заменяется).
+     * @param file - файл множества.
+     * @param capacity - начальное число ячеек (округляется до степени двойки).
+     * @return - множество.
+     */
+    public static FingerprintSet create(Path file, int capacity) throws IOException {
+        int slots = Integer.highestOneBit(Math.max(MIN_CAPACITY, Math.min(capacity, MAX_CAPACITY)) - 1) << 1;
+        Files.deleteIfExists(file);
+        return new FingerprintSet(file, map(file, slots), slots, 0);
+    }
+
+    /**
+     * Метод, открывающий ранее записанное множество.
+     * @param file - файл множества.
+     * @return - множество.
+     * @throws IOException - если файл поврежден.
+     */
+    public static FingerprintSet open(Path file) throws IOException {
+        long size = Files.size(file);
+        long slots = (size - HEADER_SIZE) / Long.BYTES;
+        if (size < HEADER_SIZE || Long.bitCount(slots) != 1 || slots > MAX_CAPACITY
+                || HEADER_SIZE + slots * Long.BYTES != size) {
+            throw new IOException("Corrupted fingerprint set: " + file);
+        }
+        MappedByteBuffer buffer = map(file, (int) slots);
+        long count = buffer.getLong(0);
+        if (count < 0 || count >= slots) {
+            throw new IOException("Corrupted fingerprint set: " + file);
+        }
+        return new FingerprintSet(file, buffer, (int) slots, count);
+    }
+
+    /**
+     * Метод, добавляющий отпечаток строки.
+     * @param value - строка.
+     * @return - true, если отпечатка еще не было.
+     */
+    public synchronized boolean add(String value) {
+        long fingerprint = fingerprint(value);
+        if (contains(buffer, capacity, fingerprint)) {
+            return false;
+        }
+        if ((count + 1) * 2 > capacity) {
+            grow();
+        }
+        insert(buffer, capacity, fingerprint);
+        count++;
+        buffer.putLong(0, count);
+        return true;
+    }
+
+    public synchronized boolean contains(String value) {
+        return contains(buffer, capacity, fingerprint(value));
+    }
+
+    public synchronized long size() {
+        return count;
+    }
+
+    /**
+     * Метод, записывающий измененные страницы файла на диск.
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        buffer = null;
+    }
+
+    /**
+     * Метод, вычисляющий отпечаток строки: FNV-1a по байтам UTF-8 с перемешиванием битов (fmix64 из MurmurHash3),
+     * чтобы младшие биты, по которым выбирается ячейка, зависели от всей строки.
+     */
+    static long fingerprint(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Метод, переносящий отпечатки в таблицу вдвое большего размера. Новая таблица записывается во временный
+     * файл, который затем атомарно заменяет прежний. Если таблица уже наибольшего размера,
+     * она заполняется до 7/8, после чего добавление невозможно.
+     */
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            if ((count + 1) * 8 > (long) capacity * 7) {
+                throw new IllegalStateException("Fingerprint set is full: " + file);
+            }
+            return;
+        }
+        int newCapacity = capacity << 1;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temp);
+            MappedByteBuffer newBuffer = map(temp, newCapacity);
+            for (int slot = 0; slot < capacity; slot++) {
+                long fingerprint = buffer.getLong(HEADER_SIZE + slot * Long.BYTES);
+                if (fingerprint != 0) {
+                    insert(newBuffer, newCapacity, fingerprint);
+                }
+            }
+            newBuffer.putLong(0, count);
+            newBuffer.force();
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            buffer = newBuffer;
+            capacity = newCapacity;
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean contains(MappedByteBuffer buffer, int capacity, long fingerprint) {
+        int mask = capacity - 1;
+        for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+            long current = buffer.getLong(HEADER_SIZE + slot * Long.BYTES);
+            if (current == fingerprint) {
+                return true;
+            }
+            if (current == 0) {
+                return false;
+            }
+        }
+    }
+
+    private static void insert(MappedByteBuffer buffer, int capacity, long fingerprint) {
+        int mask = capacity - 1;
+        int slot = (int) fingerprint & mask;
+        while (buffer.getLong(HEADER_SIZE + slot * Long.BYTES) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        buffer.putLong(HEADER_SIZE + slot * Long.BYTES, fingerprint);
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * Long.BYTES);
+        }
+    }
+}
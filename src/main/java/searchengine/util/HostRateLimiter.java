@@ -0,0 +1,66 @@
+package searchengine.util;
+
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничитель частоты запросов к хостам (token bucket на каждый хост).
+ * Не усыпляет потоки: если токена нет, возвращает время, через которое запрос можно повторить.
+ */
+@Component
+public class HostRateLimiter {
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Метод, пытающийся получить разрешение на запрос к хосту.
+     * @param url - адрес, к которому будет выполнен запрос.
+     * @param intervalMillis - минимальный интервал между запросами к хосту.
+     * @return - 0, если запрос можно выполнять сейчас, иначе время ожидания в наносекундах.
+     */
+    public long tryAcquire(String url, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return 0;
+        }
+        Bucket bucket = buckets.computeIfAbsent(getHost(url), host -> new Bucket());
+        return bucket.tryAcquire(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+    }
+
+    /**
+     * Метод, сбрасывающий состояние всех хостов.
+     */
+    public void clear() {
+        buckets.clear();
+    }
+
+    private static String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Ведро токенов с емкостью в один токен: один запрос за интервал, без накопления "всплесков".
+     */
+    private static class Bucket {
+
+        private long nextFreeNanos = System.nanoTime();
+
+        synchronized long tryAcquire(long intervalNanos) {
+            long now = System.nanoTime();
+            long wait = nextFreeNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            nextFreeNanos = now + intervalNanos;
+            return 0;
+        }
+    }
+}
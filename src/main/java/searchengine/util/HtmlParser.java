@@ -1,76 +1,43 @@
 package searchengine.util;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
-import org.springframework.stereotype.Component;
 
 import java.util.concurrent.ConcurrentSkipListSet;
 
-import static java.lang.Thread.sleep;
-
 /**
- * Сервис, производящий парсинг html-кода страницы.
+ * Разбор html-кода загруженной страницы.
  */
-@Component
-public class HtmlParser {
+public final class HtmlParser {
+
+    private HtmlParser() {
+    }
 
     /**
-     * Метод, проверяющий является ли строка ссылкой.
-     * @param link - строка, которую необходимо проверить.
-     * @return - true, в случае если строка является ссылкой.
+     * Метод, проверяющий является ли строка ссылкой на страницу (а не на файл).
+     * @param link - канонический адрес, который необходимо проверить.
+     * @return - true, если по ссылке ожидается html-страница.
      */
-    private static boolean isLink(String link) {
-        String regex = "http[s]?://[^#,\\s]*\\.?[a-z]*\\.ru[^#,\\s]*";
-        return link.matches(regex);
+    public static boolean isPageLink(String link) {
+        return LinkFilter.isPage(link);
     }
 
     /**
-     * Метод, возвращающий список ссылок на другие страницы, найденные на заданной.
-     * @param url - адрес страницы.
+     * Метод, возвращающий список ссылок на другие страницы из уже загруженного документа.
+     * Ссылки приводятся к каноническому виду, поэтому один адрес в разных написаниях попадает в список один раз.
+     * @param document - html-документ страницы.
      * @return - список ссылок, найденных на этой странице.
      */
-    public static ConcurrentSkipListSet<String> getLinks(String url) {
+    public static ConcurrentSkipListSet<String> getLinks(Document document) {
         ConcurrentSkipListSet<String> links = new ConcurrentSkipListSet<>();
-        try {
-            sleep(150);
-            Connection connection = Jsoup.connect(url)
-                    .ignoreHttpErrors(true)
-                    .followRedirects(false);
-            Document document = connection.get();
-            Elements elements = document.select("body").select("a");
-            for (Element element : elements) {
-                String link = element.absUrl("href");
-                if (isLink(link) && !isFile(link)) {
-                    links.add(link);
-                }
+        Elements elements = document.select("body").select("a");
+        for (Element element : elements) {
+            String link = UrlCanonicalizer.canonicalize(element.absUrl("href"));
+            if (link != null && isPageLink(link)) {
+                links.add(link);
             }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
         }
         return links;
     }
-
-    /**
-     * Метод, проверяющий является ли ссылка файлом.
-     * @param link - адрес ссылки.
-     * @return - true - если ссылка является файлом.
-     */
-    private static boolean isFile(String link) {
-        link = link.toLowerCase();
-        return link.contains(".jpg")
-                || link.contains(".jpeg")
-                || link.contains(".png")
-                || link.contains(".gif")
-                || link.contains(".webp")
-                || link.contains(".pdf")
-                || link.contains(".eps")
-                || link.contains(".xlsx")
-                || link.contains(".doc")
-                || link.contains(".pptx")
-                || link.contains(".docx")
-                || link.contains("?_ga");
-    }
 }
@@ -0,0 +1,89 @@
+package searchengine.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import searchengine.dto.shard.ShardFetch;
+import searchengine.dto.shard.ShardHit;
+import searchengine.dto.shard.ShardHits;
+import searchengine.dto.shard.ShardQuery;
+import searchengine.dto.shard.ShardStatistics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Шард на другом узле: запросы отправляются в /api/shard/* удаленного экземпляра приложения,
+ * который ищет по всем своим сайтам.
+ */
+public class HttpSearchShard implements SearchShard {
+
+    private final String name;
+    private final String url;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+
+    /**
+     * @param name - имя шарда.
+     * @param url - адрес узла, например http://localhost:8081.
+     * @param httpClient - общий http-клиент всех шардов.
+     * @param objectMapper - сериализация запросов и ответов.
+     * @param timeout - время ожидания ответа, в миллисекундах.
+     */
+    public HttpSearchShard(String name, String url, HttpClient httpClient, ObjectMapper objectMapper, long timeout) {
+        this.name = name;
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.timeout = Duration.ofMillis(timeout);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ShardStatistics statistics(String query) throws IOException {
+        ShardQuery shardQuery = new ShardQuery();
+        shardQuery.setQuery(query);
+        return post("/api/shard/statistics", shardQuery, objectMapper.constructType(ShardStatistics.class));
+    }
+
+    @Override
+    public ShardHits search(ShardQuery query) throws IOException {
+        return post("/api/shard/search", query, objectMapper.constructType(ShardHits.class));
+    }
+
+    @Override
+    public List<ShardHit> fetch(ShardFetch fetch) throws IOException {
+        return post("/api/shard/fetch", fetch, objectMapper.getTypeFactory().constructType(
+                new TypeReference<List<ShardHit>>() {
+                }));
+    }
+
+    private <T> T post(String path, Object body, JavaType responseType) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Запрос к шарду " + name + " прерван", e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Шард " + name + " ответил кодом " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), responseType);
+    }
+}
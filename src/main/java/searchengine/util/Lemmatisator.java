@@ -9,21 +9,107 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Сервис для работы с морфологическими формами.
+ * Словари русской и английской морфологии загружаются параллельно в фоновых потоках, чтобы не задерживать
+ * запуск приложения; пока словари не загружены, приложение не готово к работе (см. MorphologyHealthIndicator),
+ * а методы, которым нужен словарь, ждут окончания загрузки.
  */
 @Component
 public class Lemmatisator {
 
-    private final LuceneMorphology luceneMorphRus = new RussianLuceneMorphology();
-    private final LuceneMorphology luceneMorphEng = new EnglishLuceneMorphology();
+    private final long loadStart = System.nanoTime();
+    private final CompletableFuture<LuceneMorphology> russianMorphology =
+            load("russian", RussianLuceneMorphology::new);
+    private final CompletableFuture<LuceneMorphology> englishMorphology =
+            load("english", EnglishLuceneMorphology::new);
+    private final CompletableFuture<Long> loadMillis = CompletableFuture.allOf(russianMorphology, englishMorphology)
+            .thenApply(ignored -> (System.nanoTime() - loadStart) / 1_000_000);
 
-    public Lemmatisator() throws IOException {
+    public Lemmatisator() {
+        loadMillis.whenComplete((millis, e) -> System.out.println(e == null
+                ? "Словари морфологии загружены за " + millis + " мс"
+                : "Не удалось загрузить словари морфологии: " + getLoadError()));
+    }
+
+    /**
+     * Метод, запускающий загрузку словаря в отдельном потоке.
+     * @param language - язык словаря (для имени потока).
+     * @param loader - загрузка словаря.
+     * @return - словарь, который будет загружен.
+     */
+    private static CompletableFuture<LuceneMorphology> load(String language, Callable<LuceneMorphology> loader) {
+        CompletableFuture<LuceneMorphology> morphology = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                morphology.complete(loader.call());
+            } catch (Throwable e) {
+                morphology.completeExceptionally(e);
+            }
+        }, "morphology-" + language);
+        thread.setDaemon(true);
+        thread.start();
+        return morphology;
+    }
+
+    /**
+     * Метод, проверяющий, что словари морфологии загружены.
+     * @return - true, если оба словаря загружены.
+     */
+    public boolean isLoaded() {
+        return loadMillis.isDone() && !loadMillis.isCompletedExceptionally();
+    }
+
+    /**
+     * Метод, возвращающий ошибку загрузки словарей.
+     * @return - ошибка, либо null, если словари загружаются или загружены.
+     */
+    public Throwable getLoadError() {
+        if (!loadMillis.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            loadMillis.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    /**
+     * Метод, ожидающий загрузки словарей.
+     * @return - время загрузки словарей, в миллисекундах.
+     * @throws IllegalStateException - если словари не удалось загрузить.
+     */
+    public long awaitLoaded() {
+        try {
+            return loadMillis.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Не удалось загрузить словари морфологии", e.getCause());
+        }
+    }
+
+    private LuceneMorphology getRussianMorphology() {
+        return getMorphology(russianMorphology);
+    }
+
+    private LuceneMorphology getEnglishMorphology() {
+        return getMorphology(englishMorphology);
+    }
+
+    private static LuceneMorphology getMorphology(CompletableFuture<LuceneMorphology> morphology) {
+        try {
+            return morphology.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Не удалось загрузить словарь морфологии", e.getCause());
+        }
     }
 
     /**
@@ -83,9 +169,9 @@ public class Lemmatisator {
      */
     public String getLemma(String word) {
         if (isRussianWord(word)) {
-            return luceneMorphRus.getNormalForms(word).get(0).trim();
+            return getRussianMorphology().getNormalForms(word).get(0).trim();
         } else {
-            return luceneMorphEng.getNormalForms(word).get(0).trim();
+            return getEnglishMorphology().getNormalForms(word).get(0).trim();
         }
     }
 
@@ -96,9 +182,9 @@ public class Lemmatisator {
      */
     public String getWordInfo(String word) {
         if (isRussianWord(word)) {
-            return luceneMorphRus.getMorphInfo(word.trim()).get(0);
+            return getRussianMorphology().getMorphInfo(word.trim()).get(0);
         } else {
-            return luceneMorphEng.getMorphInfo(word.trim()).get(0);
+            return getEnglishMorphology().getMorphInfo(word.trim()).get(0);
         }
     }
 
@@ -128,16 +214,16 @@ public class Lemmatisator {
     public String getCognateWord(String text, String word) {
         List<String> forms;
         if (isRussianWord(word)) {
-            forms = luceneMorphRus.getNormalForms(word);
+            forms = getRussianMorphology().getNormalForms(word);
         } else {
-            forms = luceneMorphEng.getNormalForms(word);
+            forms = getEnglishMorphology().getNormalForms(word);
         }
         List<String> words = getWordsFromString(text);
         for (String form : forms) {
             for (String wordFromText : words) {
-                if (isRussianWord(wordFromText) && luceneMorphRus.getNormalForms(wordFromText).get(0).equals(form)) {
+                if (isRussianWord(wordFromText) && getRussianMorphology().getNormalForms(wordFromText).get(0).equals(form)) {
                     return wordFromText;
-                } else if (!isRussianWord(wordFromText) && luceneMorphEng.getNormalForms(wordFromText).get(0).equals(form)) {
+                } else if (!isRussianWord(wordFromText) && getEnglishMorphology().getNormalForms(wordFromText).get(0).equals(form)) {
                     return wordFromText;
                 }
             }
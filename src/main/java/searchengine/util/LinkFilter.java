@@ -0,0 +1,47 @@
+package searchengine.util;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Фильтр ссылок и ответов, которые не являются html-страницами (файлы, изображения, архивы и т.п.).
+ */
+public final class LinkFilter {
+
+    private static final Pattern FILE_EXTENSION = Pattern.compile(
+            "\\.(?:jpe?g|png|gif|webp|svg|ico|bmp|tiff?|avif|pdf|eps|ps|docx?|xlsx?|pptx?|odt|ods|odp|rtf|csv"
+                    + "|zip|rar|7z|gz|tgz|bz2|tar|xz|mp3|mp4|m4a|ogg|wav|avi|mov|wmv|mkv|webm|flv"
+                    + "|css|js|json|xml|rss|atom|txt|exe|msi|dmg|apk|iso|woff2?|ttf|eot)$");
+
+    private LinkFilter() {
+    }
+
+    /**
+     * Метод, проверяющий, что по каноническому адресу ожидается html-страница, а не файл.
+     * Проверяется только расширение последнего сегмента пути.
+     * @param canonicalUrl - канонический адрес (см. {@link UrlCanonicalizer}).
+     * @return - true, если адрес похож на страницу.
+     */
+    public static boolean isPage(String canonicalUrl) {
+        String path = UrlCanonicalizer.getPath(canonicalUrl);
+        int queryIndex = path.indexOf('?');
+        if (queryIndex >= 0) {
+            path = path.substring(0, queryIndex);
+        }
+        int lastSegment = path.lastIndexOf('/');
+        if (path.indexOf('.', lastSegment) < 0) {
+            return true;
+        }
+        return !FILE_EXTENSION.matcher(path.substring(lastSegment).toLowerCase(Locale.ROOT)).find();
+    }
+
+    /**
+     * Метод, проверяющий, что ответ сервера является html-документом.
+     * @param contentType - значение заголовка Content-Type (пустое, если заголовка нет).
+     * @return - true, если ответ нужно разбирать как html.
+     */
+    public static boolean isHtmlContentType(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.isEmpty() || type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.util;
+
+import searchengine.dto.shard.ShardFetch;
+import searchengine.dto.shard.ShardHit;
+import searchengine.dto.shard.ShardHits;
+import searchengine.dto.shard.ShardQuery;
+import searchengine.dto.shard.ShardStatistics;
+import searchengine.services.SearchService;
+
+import java.util.List;
+
+/**
+ * Шард в этом же процессе: поиск по части сайтов локального индекса.
+ */
+public class LocalSearchShard implements SearchShard {
+
+    private final String name;
+    private final List<String> sites;
+    private final SearchService searchService;
+
+    /**
+     * @param name - имя шарда.
+     * @param sites - адреса сайтов шарда, либо null для всех сайтов.
+     * @param searchService - сервис поиска по локальному индексу.
+     */
+    public LocalSearchShard(String name, List<String> sites, SearchService searchService) {
+        this.name = name;
+        this.sites = sites;
+        this.searchService = searchService;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ShardStatistics statistics(String query) {
+        return searchService.getShardStatistics(query, sites);
+    }
+
+    @Override
+    public ShardHits search(ShardQuery query) {
+        return searchService.searchShard(query, sites);
+    }
+
+    @Override
+    public List<ShardHit> fetch(ShardFetch fetch) {
+        return searchService.fetchShard(fetch, sites);
+    }
+}
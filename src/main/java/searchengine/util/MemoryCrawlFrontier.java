@@ -0,0 +1,152 @@
+package searchengine.util;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Состояние обхода сайта, целиком хранящееся в памяти; контрольная точка записывается снимком состояния
+ * (CrawlCheckpointStore).
+ */
+public class MemoryCrawlFrontier implements CrawlFrontier {
+
+    private static final long UNKNOWN = -1;
+
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    /**
+     * Ожидающие адреса и дата их последнего изменения из карты сайта (UNKNOWN, если неизвестна).
+     */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    /**
+     * Ожидающие адреса, еще не выданные задачам обхода, в порядке добавления.
+     */
+    private final Queue<String> queue = new ArrayDeque<>();
+    /**
+     * Изменения состояния выполняются параллельно под блокировкой чтения, снимок - под блокировкой записи.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public boolean markVisited(String url) {
+        lock.readLock().lock();
+        try {
+            return visited.add(url);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addPending(String url, Instant lastModified) {
+        lock.readLock().lock();
+        try {
+            if (pending.put(url, lastModified == null ? UNKNOWN : lastModified.toEpochMilli()) == null) {
+                synchronized (queue) {
+                    queue.add(url);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Entry poll() {
+        lock.readLock().lock();
+        try {
+            while (true) {
+                String url;
+                synchronized (queue) {
+                    url = queue.poll();
+                }
+                if (url == null) {
+                    return null;
+                }
+                Long lastModified = pending.get(url);
+                if (lastModified != null) {
+                    return new Entry(url, lastModified == UNKNOWN ? null : Instant.ofEpochMilli(lastModified));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void complete(String url) {
+        lock.readLock().lock();
+        try {
+            pending.remove(url);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isPending(String url) {
+        return pending.containsKey(url);
+    }
+
+    @Override
+    public long getVisitedCount() {
+        return visited.size();
+    }
+
+    @Override
+    public long getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public boolean isBounded() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Метод, возвращающий согласованный снимок состояния обхода.
+     * @return - снимок.
+     */
+    public Snapshot snapshot() {
+        lock.writeLock().lock();
+        try {
+            Map<String, Instant> pendingCopy = new HashMap<>(pending.size() * 2);
+            pending.forEach((url, lastModified) ->
+                    pendingCopy.put(url, lastModified == UNKNOWN ? null : Instant.ofEpochMilli(lastModified)));
+            return new Snapshot(new ArrayList<>(visited), pendingCopy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Метод, восстанавливающий состояние обхода из снимка.
+     * @param snapshot - снимок.
+     * @return - состояние обхода.
+     */
+    public static MemoryCrawlFrontier restore(Snapshot snapshot) {
+        MemoryCrawlFrontier frontier = new MemoryCrawlFrontier();
+        frontier.visited.addAll(snapshot.visited());
+        snapshot.pending().forEach(frontier::addPending);
+        return frontier;
+    }
+
+    /**
+     * Снимок состояния обхода.
+     * @param visited - встреченные адреса.
+     * @param pending - ожидающие адреса и даты их последнего изменения (значение может быть null).
+     */
+    public record Snapshot(List<String> visited, Map<String, Instant> pending) {
+    }
+}
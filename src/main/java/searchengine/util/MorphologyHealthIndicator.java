@@ -0,0 +1,30 @@
+package searchengine.util;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Состояние загрузки словарей морфологии (/actuator/health/morphology). Входит в группу readiness:
+ * пока словари загружаются, приложение отвечает, но не считается готовым принимать запросы.
+ */
+@Component
+public class MorphologyHealthIndicator implements HealthIndicator {
+
+    private final Lemmatisator lemmatisator;
+
+    public MorphologyHealthIndicator(Lemmatisator lemmatisator) {
+        this.lemmatisator = lemmatisator;
+    }
+
+    @Override
+    public Health health() {
+        if (lemmatisator.isLoaded()) {
+            return Health.up().withDetail("loadMillis", lemmatisator.awaitLoaded()).build();
+        }
+        Throwable error = lemmatisator.getLoadError();
+        return error == null ? Health.outOfService().withDetail("status", "loading").build()
+                : Health.down(error instanceof Exception exception ? exception : new IllegalStateException(error))
+                .build();
+    }
+}
@@ -0,0 +1,201 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.repository.PageRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс отпечатков SimHash проиндексированных страниц для поиска почти одинаковых страниц сайта
+ * (версии для печати, страницы с параметрами фильтров и т.п.).
+ * Отпечаток делится на near-duplicate-max-distance + 1 полос: если отпечатки отличаются не более чем в
+ * near-duplicate-max-distance битах, хотя бы одна полоса у них совпадает, поэтому кандидаты ищутся
+ * по таблицам полос, а расстояние проверяется только для них.
+ * Отпечатки загружаются из БД при запуске приложения и пополняются при индексации страниц.
+ */
+@Component
+public class NearDuplicateIndex {
+
+    private final PageRepository pageRepository;
+    private final int maxDistance;
+    private final int bands;
+
+    private final Map<Integer, SiteFingerprints> sites = new ConcurrentHashMap<>();
+    /**
+     * Признак того, что отпечатки при запуске уже загружены из снимка индекса.
+     */
+    private volatile boolean loadedFromSnapshot;
+
+    public NearDuplicateIndex(PageRepository pageRepository, SitesList sitesList, MeterRegistry meterRegistry) {
+        this.pageRepository = pageRepository;
+        this.maxDistance = Math.max(0, Math.min(sitesList.getNearDuplicateMaxDistance(), Long.SIZE / 2 - 1));
+        this.bands = Math.max(2, maxDistance + 1);
+        meterRegistry.gauge("searchengine.indexing.fingerprints", this, NearDuplicateIndex::size);
+    }
+
+    /**
+     * Метод, загружающий отпечатки страниц из БД при запуске приложения.
+     * Страницы, сохраненные как копии других страниц, в индекс не попадают.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (loadedFromSnapshot) {
+            return;
+        }
+        try {
+            addAll(pageRepository.findFingerprints());
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Метод, заменяющий все отпечатки отпечатками из снимка индекса (без запроса к БД).
+     * @param fingerprints - строки [id страницы, id сайта, отпечаток].
+     */
+    public void load(List<Object[]> fingerprints) {
+        clearAll();
+        addAll(fingerprints);
+        loadedFromSnapshot = true;
+    }
+
+    /**
+     * Метод, ищущий страницу сайта, почти совпадающую со страницей с заданным отпечатком.
+     * @param siteId - id сайта.
+     * @param fingerprint - отпечаток страницы.
+     * @return - id ближайшей страницы с расстоянием не больше near-duplicate-max-distance, либо null.
+     */
+    public Integer find(int siteId, long fingerprint) {
+        SiteFingerprints site = sites.get(siteId);
+        return site == null ? null : site.find(fingerprint);
+    }
+
+    /**
+     * Метод, добавляющий отпечаток проиндексированной страницы.
+     * @param siteId - id сайта.
+     * @param pageId - id страницы.
+     * @param fingerprint - отпечаток страницы.
+     */
+    public void add(int siteId, int pageId, long fingerprint) {
+        sites.computeIfAbsent(siteId, id -> new SiteFingerprints()).add(pageId, fingerprint);
+    }
+
+    /**
+     * Метод, удаляющий отпечаток страницы (при ее переиндексации или удалении).
+     * @param siteId - id сайта.
+     * @param pageId - id страницы.
+     */
+    public void remove(int siteId, int pageId) {
+        SiteFingerprints site = sites.get(siteId);
+        if (site != null) {
+            site.remove(pageId);
+        }
+    }
+
+    /**
+     * Метод, удаляющий отпечатки всех страниц сайта.
+     * @param siteId - id сайта.
+     */
+    public void clear(int siteId) {
+        sites.remove(siteId);
+    }
+
+    public void clearAll() {
+        sites.clear();
+    }
+
+    /**
+     * Метод, возвращающий число отпечатков в индексе.
+     * @return - число отпечатков.
+     */
+    public int size() {
+        int size = 0;
+        for (SiteFingerprints site : sites.values()) {
+            size += site.size();
+        }
+        return size;
+    }
+
+    private void addAll(List<Object[]> fingerprints) {
+        for (Object[] row : fingerprints) {
+            add(((Number) row[1]).intValue(), ((Number) row[0]).intValue(), ((Number) row[2]).longValue());
+        }
+    }
+
+    /**
+     * Метод, возвращающий ключ таблицы полос: номер полосы и значение ее битов в отпечатке.
+     * Полосы делят 64 бита отпечатка на почти равные части (не длиннее 32 битов).
+     */
+    private long getBandKey(int band, long fingerprint) {
+        int from = band * Long.SIZE / bands;
+        int to = (band + 1) * Long.SIZE / bands;
+        return (long) band << 32 | (fingerprint >>> from & ((1L << (to - from)) - 1));
+    }
+
+    /**
+     * Отпечатки страниц одного сайта и таблицы полос: ключ - номер полосы и ее значение, значение - id страниц.
+     */
+    private class SiteFingerprints {
+
+        private final Map<Integer, Long> fingerprints = new HashMap<>();
+        private final Map<Long, List<Integer>> bandTables = new HashMap<>();
+
+        synchronized Integer find(long fingerprint) {
+            Integer nearest = null;
+            int nearestDistance = maxDistance;
+            for (int band = 0; band < bands; band++) {
+                List<Integer> candidates = bandTables.get(getBandKey(band, fingerprint));
+                if (candidates == null) {
+                    continue;
+                }
+                for (Integer pageId : candidates) {
+                    int distance = SimHash.distance(fingerprint, fingerprints.get(pageId));
+                    if (distance < nearestDistance || distance == nearestDistance && (nearest == null || pageId < nearest)) {
+                        nearest = pageId;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+            return nearest;
+        }
+
+        synchronized void add(int pageId, long fingerprint) {
+            if (fingerprints.containsKey(pageId)) {
+                return;
+            }
+            fingerprints.put(pageId, fingerprint);
+            for (int band = 0; band < bands; band++) {
+                bandTables.computeIfAbsent(getBandKey(band, fingerprint), key -> new ArrayList<>(1)).add(pageId);
+            }
+        }
+
+        synchronized void remove(int pageId) {
+            Long fingerprint = fingerprints.remove(pageId);
+            if (fingerprint == null) {
+                return;
+            }
+            for (int band = 0; band < bands; band++) {
+                long key = getBandKey(band, fingerprint);
+                List<Integer> pageIds = bandTables.get(key);
+                if (pageIds != null) {
+                    pageIds.remove(Integer.valueOf(pageId));
+                    if (pageIds.isEmpty()) {
+                        bandTables.remove(key);
+                    }
+                }
+            }
+        }
+
+        synchronized int size() {
+            return fingerprints.size();
+        }
+    }
+}
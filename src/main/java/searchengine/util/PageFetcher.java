@@ -0,0 +1,317 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import searchengine.config.FetcherSettings;
+import searchengine.config.SitesList;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Сервис загрузки страниц.
+ * Все запросы идут через один общий HttpClient: соединения к хосту переиспользуются (keep-alive),
+ * по возможности используется HTTP/2, ответы запрашиваются в сжатом виде и потоково разбираются Jsoup.
+ */
+@Component
+@Lazy
+public class PageFetcher {
+
+    private final FetcherSettings settings;
+    private final SitesList sitesList;
+    private final SiteRegistry siteRegistry;
+    private final HttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+
+    public PageFetcher(FetcherSettings settings, SitesList sitesList, SiteRegistry siteRegistry,
+                       MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.sitesList = sitesList;
+        this.siteRegistry = siteRegistry;
+        this.meterRegistry = meterRegistry;
+        this.httpClient = HttpClient.newBuilder()
+                .version(settings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(settings.isFollowRedirects() ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeout()))
+                .build();
+    }
+
+    /**
+     * Метод, загружающий страницу и разбирающий ее, если это html.
+     * Ответы с кодами ошибок не считаются исключением: код возвращается в результате.
+     * @param url - адрес страницы.
+     * @return - результат загрузки.
+     * @throws IOException - при ошибке сети или некорректном адресе.
+     */
+    public FetchedPage fetch(String url) throws IOException {
+        return fetch(url, new CancellationToken());
+    }
+
+    /**
+     * Метод, загружающий страницу с возможностью прервать запрос при отмене индексации.
+     * Если перенаправление привело на другой сайт, страница не разбирается, а в результате возвращается
+     * код ответа с перенаправлением.
+     * @param url - адрес страницы.
+     * @param token - признак отмены; при отмене запрос и чтение ответа прерываются.
+     * @return - результат загрузки.
+     * @throws IOException - при ошибке сети, некорректном адресе или отмене.
+     */
+    public FetchedPage fetch(String url, CancellationToken token) throws IOException {
+        long start = System.nanoTime();
+        String status = "error";
+        try {
+            HttpResponse<InputStream> response = send(newRequest(url), token);
+            status = String.valueOf(response.statusCode());
+            String contentType = response.headers().firstValue("Content-Type").orElse("");
+            try (InputStream body = openBody(response, settings.getMaxBodySize());
+                 CancellationToken.Registration ignored = token.onCancel(() -> closeQuietly(body))) {
+                String pageUrl = getPageUrl(url, response);
+                if (pageUrl == null) {
+                    int redirectCode = response.previousResponse().map(HttpResponse::statusCode)
+                            .orElse(response.statusCode());
+                    return new FetchedPage(url, redirectCode, contentType, null);
+                }
+                if (!LinkFilter.isHtmlContentType(contentType)) {
+                    return new FetchedPage(pageUrl, response.statusCode(), contentType, null);
+                }
+                Document document = Jsoup.parse(body, getCharset(contentType), response.uri().toString());
+                if (token.isCancelled()) {
+                    throw new InterruptedIOException("Загрузка отменена: " + url);
+                }
+                return new FetchedPage(pageUrl, response.statusCode(), contentType, document);
+            }
+        } finally {
+            recordFetch(url, status, start);
+        }
+    }
+
+    /**
+     * Метод, возвращающий адрес, с которого фактически получен ответ после перенаправлений.
+     * @param url - запрошенный адрес.
+     * @param response - ответ сервера.
+     * @return - канонический адрес ответа, либо null, если он не относится к сайту запрошенной страницы.
+     */
+    private String getPageUrl(String url, HttpResponse<?> response) {
+        String responseUrl = response.uri().toString();
+        if (responseUrl.equals(url)) {
+            return url;
+        }
+        String canonicalUrl = UrlCanonicalizer.canonicalize(responseUrl);
+        RegisteredSite site = siteRegistry.find(url);
+        if (canonicalUrl == null || site == null || !siteRegistry.belongsTo(canonicalUrl, site.getUrl())) {
+            return null;
+        }
+        return canonicalUrl;
+    }
+
+    /**
+     * Метод, загружающий текстовый ресурс целиком (robots.txt и т.п.).
+     * @param url - адрес ресурса.
+     * @return - тело ответа (не длиннее max-body-size байт), либо null, если код ответа не 200.
+     * @throws IOException - при ошибке сети или некорректном адресе.
+     */
+    public String fetchText(String url) throws IOException {
+        return fetchBody(url, settings.getMaxBodySize(),
+                body -> new String(body.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Метод, загружающий ресурс и передающий поток его тела обработчику (без чтения в память целиком).
+     * @param url - адрес ресурса.
+     * @param maxBodySize - максимальное число байт, которое будет прочитано.
+     * @param reader - обработчик тела ответа.
+     * @return - результат обработчика, либо null, если код ответа не 200.
+     * @throws IOException - при ошибке сети, некорректном адресе или ошибке обработчика.
+     */
+    public <T> T fetchBody(String url, long maxBodySize, BodyReader<T> reader) throws IOException {
+        return fetchBody(url, maxBodySize, reader, new CancellationToken());
+    }
+
+    /**
+     * Метод, загружающий ресурс и передающий поток его тела обработчику, с возможностью прервать загрузку.
+     * @param url - адрес ресурса.
+     * @param maxBodySize - максимальное число байт, которое будет прочитано.
+     * @param reader - обработчик тела ответа.
+     * @param token - признак отмены; при отмене запрос и чтение ответа прерываются.
+     * @return - результат обработчика, либо null, если код ответа не 200.
+     * @throws IOException - при ошибке сети, некорректном адресе, ошибке обработчика или отмене.
+     */
+    public <T> T fetchBody(String url, long maxBodySize, BodyReader<T> reader, CancellationToken token) throws IOException {
+        long start = System.nanoTime();
+        String status = "error";
+        try {
+            HttpResponse<InputStream> response = send(newRequest(url), token);
+            status = String.valueOf(response.statusCode());
+            try (InputStream body = openBody(response, maxBodySize);
+                 CancellationToken.Registration ignored = token.onCancel(() -> closeQuietly(body))) {
+                if (response.statusCode() != 200) {
+                    return null;
+                }
+                return reader.read(body);
+            }
+        } finally {
+            recordFetch(url, status, start);
+        }
+    }
+
+    /**
+     * Метод, записывающий время загрузки (вместе с чтением тела ответа) в метрику searchengine.fetch
+     * с тегами хоста и кода ответа.
+     * @param url - адрес.
+     * @param status - код ответа, либо "error" при ошибке сети или отмене.
+     * @param start - время начала загрузки (System.nanoTime).
+     */
+    private void recordFetch(String url, String status, long start) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        meterRegistry.timer("searchengine.fetch", "host", host == null ? "unknown" : host, "status", status)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Метод, открывающий поток тела ответа: распаковывает gzip/deflate и ограничивает размер.
+     * @param response - ответ сервера.
+     * @param maxBodySize - максимальное число байт, которое будет прочитано.
+     * @return - поток с телом ответа.
+     * @throws IOException - при ошибке чтения.
+     */
+    public InputStream openBody(HttpResponse<InputStream> response, long maxBodySize) throws IOException {
+        InputStream body = response.body();
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").toLowerCase(Locale.ROOT);
+        if (encoding.contains("gzip")) {
+            body = new GZIPInputStream(body);
+        } else if (encoding.contains("deflate")) {
+            body = new InflaterInputStream(body);
+        }
+        return new LimitedInputStream(body, maxBodySize);
+    }
+
+    private HttpRequest newRequest(String url) throws IOException {
+        try {
+            return HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(settings.getRequestTimeout()))
+                    .header("User-Agent", sitesList.getUserAgent())
+                    .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8")
+                    .header("Accept-Encoding", "gzip, deflate")
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректный адрес: " + url, e);
+        }
+    }
+
+    /**
+     * Метод, отправляющий запрос асинхронно и ожидающий заголовков ответа.
+     * При отмене индексации ожидание сразу прерывается, а сам запрос отменяется.
+     * @param request - запрос.
+     * @param token - признак отмены.
+     * @return - ответ с потоком тела.
+     * @throws IOException - при ошибке сети или отмене.
+     */
+    private HttpResponse<InputStream> send(HttpRequest request, CancellationToken token) throws IOException {
+        if (token.isCancelled()) {
+            throw new InterruptedIOException("Загрузка отменена: " + request.uri());
+        }
+        CompletableFuture<HttpResponse<InputStream>> future =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (CancellationToken.Registration ignored = token.onCancel(() -> future.cancel(true))) {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Загрузка отменена: " + request.uri());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static String getCharset(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                return trimmed.substring("charset=".length()).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Обработчик потока тела ответа.
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    /**
+     * Поток, который перестает отдавать данные после заданного числа байт.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Неизменяемый словарь для автодополнения: слова с весами, отсортированные по алфавиту.
+ * Все слова хранятся подряд в одном массиве символов (без отдельных объектов String), поэтому словарь
+ * из сотен тысяч слов занимает несколько мегабайт. Слова с заданным префиксом образуют непрерывный отрезок,
+ * который находится двоичным поиском, а k самых частых слов отрезка выбираются по дереву отрезков
+ * (индекс слова с максимальным весом) за O(k log n), независимо от длины отрезка.
+ */
+public final class PrefixDictionary {
+
+    private static final PrefixDictionary EMPTY = new PrefixDictionary(new char[0], new int[]{0}, new int[0]);
+
+    private final char[] chars;
+    /**
+     * Начало каждого слова в chars; offsets[n] - общая длина.
+     */
+    private final int[] offsets;
+    private final int[] weights;
+    /**
+     * Дерево отрезков: в узле хранится индекс слова с наибольшим весом; листья - в tree[n ... 2n).
+     */
+    private final int[] tree;
+    private final int size;
+
+    private PrefixDictionary(char[] chars, int[] offsets, int[] weights) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.weights = weights;
+        this.size = weights.length;
+        this.tree = new int[2 * size];
+        for (int i = 0; i < size; i++) {
+            tree[size + i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+        }
+    }
+
+    public static PrefixDictionary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Метод, строящий словарь. Если слов больше maxEntries, в словарь попадают самые частые.
+     * @param words - слова и их веса (частоты).
+     * @param maxEntries - максимальное число слов.
+     * @return - словарь.
+     */
+    public static PrefixDictionary build(Map<String, Integer> words, int maxEntries) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(words.entrySet());
+        if (entries.size() > maxEntries) {
+            entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+            entries = new ArrayList<>(entries.subList(0, Math.max(0, maxEntries)));
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : entries) {
+            length += entry.getKey().length();
+        }
+        char[] chars = new char[length];
+        int[] offsets = new int[entries.size() + 1];
+        int[] weights = new int[entries.size()];
+        int position = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            String word = entries.get(i).getKey();
+            word.getChars(0, word.length(), chars, position);
+            offsets[i] = position;
+            weights[i] = entries.get(i).getValue();
+            position += word.length();
+        }
+        offsets[entries.size()] = position;
+        return new PrefixDictionary(chars, offsets, weights);
+    }
+
+    /**
+     * Метод, возвращающий самые частые слова, начинающиеся с префикса.
+     * @param prefix - префикс.
+     * @param limit - максимальное число слов.
+     * @return - слова в порядке убывания веса.
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        int from = lowerBound(prefix);
+        int to = upperBound(prefix, from);
+        if (from >= to || limit <= 0) {
+            return result;
+        }
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                Comparator.<int[]>comparingInt(range -> -weights[range[2]]).thenComparingInt(range -> range[2]));
+        ranges.add(new int[]{from, to, argMax(from, to)});
+        while (!ranges.isEmpty() && result.size() < limit) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            result.add(getWord(best));
+            if (range[0] < best) {
+                ranges.add(new int[]{range[0], best, argMax(range[0], best)});
+            }
+            if (best + 1 < range[1]) {
+                ranges.add(new int[]{best + 1, range[1], argMax(best + 1, range[1])});
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Метод, оценивающий объем памяти, занятой словарем.
+     * @return - объем в байтах.
+     */
+    public long getMemoryBytes() {
+        return 2L * chars.length + 4L * (offsets.length + weights.length + tree.length);
+    }
+
+    private String getWord(int index) {
+        return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+
+    /**
+     * Метод, возвращающий индекс первого слова, не меньшего префикса.
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(middle, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Метод, возвращающий индекс первого слова после отрезка слов с префиксом.
+     */
+    private int upperBound(String prefix, int from) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (startsWith(middle, prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int index, String value) {
+        int start = offsets[index];
+        int length = offsets[index + 1] - start;
+        int common = Math.min(length, value.length());
+        for (int i = 0; i < common; i++) {
+            int difference = chars[start + i] - value.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - value.length();
+    }
+
+    private boolean startsWith(int index, String prefix) {
+        int start = offsets[index];
+        if (offsets[index + 1] - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Метод, возвращающий индекс слова с наибольшим весом на отрезке [from, to).
+     */
+    private int argMax(int from, int to) {
+        int best = from;
+        for (int low = from + size, high = to + size; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                best = better(best, tree[low++]);
+            }
+            if ((high & 1) == 1) {
+                best = better(best, tree[--high]);
+            }
+        }
+        return best;
+    }
+
+    private int better(int first, int second) {
+        if (weights[first] != weights[second]) {
+            return weights[first] > weights[second] ? first : second;
+        }
+        return Math.min(first, second);
+    }
+}
@@ -0,0 +1,284 @@
+package searchengine.util;
+
+import org.springframework.stereotype.Component;
+import searchengine.dto.result.QueryPlan;
+import searchengine.dto.result.QueryPlanStep;
+import searchengine.dto.shard.ShardStatistics;
+import searchengine.model.entity.Lemma;
+import searchengine.model.repository.LemmaRepository;
+import searchengine.model.repository.PageRepository;
+import searchengine.model.repository.PostingRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Планировщик поискового запроса.
+ * Запрос лемматизируется один раз, леммы загружаются одним запросом к БД (при поиске по всем сайтам частоты
+ * строк леммы разных сайтов суммируются), слишком частые леммы (встречающиеся более чем на 90 % страниц
+ * сайта или всех сайтов) отбрасываются, а остальные упорядочиваются по возрастанию частоты.
+ * Если слишком частыми оказались все леммы, используется самая редкая из них.
+ * При поиске по шардам частоты лемм и число страниц берутся из общей статистики всех шардов,
+ * чтобы каждый шард отбрасывал одни и те же леммы.
+ * Кандидаты берутся по самой редкой лемме и последовательно пересекаются со страницами следующих лемм;
+ * как только кандидатов не остается, выполнение прекращается. Для оставшихся кандидатов одним запросом
+ * (пакетами по MAX_IDS_PER_QUERY id) загружаются только id сайта и путь страницы, html-код не читается.
+ */
+@Component
+public class QueryPlanner {
+
+    /**
+     * Доля страниц, начиная с которой лемма считается слишком частой и не участвует в поиске.
+     */
+    private static final double STOP_LEMMA_SHARE = 0.9;
+
+    /**
+     * Максимальное число id страниц в одном запросе пересечения или загрузки страниц.
+     */
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final Lemmatisator lemmatisator;
+    private final LemmaRepository lemmaRepository;
+    private final PostingRepository postingRepository;
+    private final PageRepository pageRepository;
+
+    public QueryPlanner(Lemmatisator lemmatisator, LemmaRepository lemmaRepository,
+                        PostingRepository postingRepository, PageRepository pageRepository) {
+        this.lemmatisator = lemmatisator;
+        this.lemmaRepository = lemmaRepository;
+        this.postingRepository = postingRepository;
+        this.pageRepository = pageRepository;
+    }
+
+    /**
+     * Метод, находящий страницы, содержащие все значимые леммы запроса.
+     * @param query - поисковый запрос.
+     * @param siteId - id сайта, либо null для поиска по всем сайтам.
+     * @return - страницы-кандидаты с релевантностью (суммой рангов лемм запроса) и план выполнения.
+     */
+    public Result plan(String query, Integer siteId) {
+        return plan(query, siteId, null);
+    }
+
+    /**
+     * Метод, находящий страницы, содержащие все значимые леммы запроса, с учетом общей статистики шардов.
+     * @param query - поисковый запрос.
+     * @param siteId - id сайта, либо null для поиска по всем сайтам.
+     * @param statistics - общая статистика всех шардов, либо null, чтобы использовать статистику этого узла.
+     * @return - страницы-кандидаты с релевантностью (суммой рангов лемм запроса) и план выполнения.
+     */
+    public Result plan(String query, Integer siteId, ShardStatistics statistics) {
+        QueryPlan plan = new QueryPlan();
+        long planStart = System.nanoTime();
+        long start = System.nanoTime();
+        Set<String> queryLemmas = lemmatisator.splitTextInToLemmas(query).keySet();
+        addStep(plan, "lemmatize", null, null, null, start);
+        if (queryLemmas.isEmpty()) {
+            return finish(plan, planStart, new LinkedHashMap<>());
+        }
+
+        start = System.nanoTime();
+        Map<String, Lemma> lemmasByText = new HashMap<>();
+        List<Lemma> found = siteId == null ? lemmaRepository.findByLemmaIn(queryLemmas)
+                : lemmaRepository.findBySiteIdAndLemmaIn(siteId, queryLemmas);
+        for (Lemma lemma : found) {
+            lemmasByText.merge(lemma.getLemma(), lemma, QueryPlanner::sumFrequencies);
+        }
+        addStep(plan, "lookup", null, null, null, start);
+        for (String text : queryLemmas) {
+            if (!lemmasByText.containsKey(text)) {
+                addStep(plan, "missing", text, 0, 0, System.nanoTime());
+                return finish(plan, planStart, new LinkedHashMap<>());
+            }
+        }
+
+        List<Lemma> lemmas = new ArrayList<>(lemmasByText.values());
+        lemmas.sort(Comparator.comparing(Lemma::getFrequency));
+        double maxFrequency = (statistics != null ? statistics.getPages() : siteId == null
+                ? pageRepository.countByDuplicateOfIsNull()
+                : pageRepository.countBySiteIdInAndDuplicateOfIsNull(List.of(siteId))) * STOP_LEMMA_SHARE;
+        List<Lemma> significant = new ArrayList<>();
+        List<Lemma> dropped = new ArrayList<>();
+        for (Lemma lemma : lemmas) {
+            (getFrequency(lemma, statistics) < maxFrequency ? significant : dropped).add(lemma);
+        }
+        if (significant.isEmpty()) {
+            significant.add(dropped.remove(0));
+        }
+        for (Lemma lemma : dropped) {
+            addStep(plan, "drop", lemma.getLemma(), getFrequency(lemma, statistics), null, System.nanoTime());
+        }
+
+        Map<Integer, Float> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < significant.size(); i++) {
+            Lemma lemma = significant.get(i);
+            start = System.nanoTime();
+            if (i == 0) {
+                for (PostingRepository.Posting posting : postingRepository.findByLemma(lemma.getLemma(), siteId)) {
+                    candidates.merge(posting.pageId(), posting.rank(), Float::sum);
+                }
+                addStep(plan, "scan", lemma.getLemma(), lemma.getFrequency(), candidates.size(), start);
+            } else {
+                candidates = intersect(candidates, lemma);
+                addStep(plan, "intersect", lemma.getLemma(), lemma.getFrequency(), candidates.size(), start);
+            }
+            if (candidates.isEmpty()) {
+                for (Lemma skipped : significant.subList(i + 1, significant.size())) {
+                    addStep(plan, "skip", skipped.getLemma(), skipped.getFrequency(), 0, System.nanoTime());
+                }
+                break;
+            }
+        }
+        return finish(plan, planStart, candidates);
+    }
+
+    /**
+     * Метод, загружающий id сайта и путь страниц-кандидатов пакетами по MAX_IDS_PER_QUERY id.
+     * Страницы, удаленные после чтения индекса, пропускаются.
+     * @param relevances - релевантность кандидатов по id страницы.
+     * @return - кандидаты в прежнем порядке.
+     */
+    private List<Candidate> loadCandidates(Map<Integer, Float> relevances) {
+        Map<Integer, Candidate> candidates = new HashMap<>();
+        List<Integer> pageIds = new ArrayList<>(relevances.keySet());
+        for (int from = 0; from < pageIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, pageIds.size()));
+            for (Object[] row : pageRepository.findSummariesByIdIn(chunk)) {
+                int pageId = (Integer) row[0];
+                candidates.put(pageId,
+                        new Candidate(pageId, (Integer) row[1], (String) row[2], relevances.get(pageId)));
+            }
+        }
+        List<Candidate> result = new ArrayList<>(candidates.size());
+        for (Integer pageId : pageIds) {
+            Candidate candidate = candidates.get(pageId);
+            if (candidate != null) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Метод, собирающий статистику запроса на этом узле: число страниц (без дубликатов)
+     * и число страниц с каждой леммой запроса. Для всех сайтов узла это сумма частот лемм по сайтам,
+     * а для сайтов шарда - число страниц этих сайтов в поисковом индексе, то есть ровно те страницы,
+     * которые шард найдет по лемме (частота в таблице lemma может расходиться с индексом).
+     * @param query - поисковый запрос.
+     * @param siteIds - id сайтов шарда, либо null для всех сайтов.
+     * @return - статистика запроса.
+     */
+    public ShardStatistics statistics(String query, Set<Integer> siteIds) {
+        ShardStatistics statistics = new ShardStatistics();
+        Set<String> queryLemmas = lemmatisator.splitTextInToLemmas(query).keySet();
+        if (siteIds != null && siteIds.isEmpty()) {
+            return statistics;
+        }
+        statistics.setPages(siteIds == null ? pageRepository.countByDuplicateOfIsNull()
+                : pageRepository.countBySiteIdInAndDuplicateOfIsNull(siteIds));
+        Map<String, Integer> frequencies = new TreeMap<>();
+        if (siteIds != null) {
+            for (String lemma : queryLemmas) {
+                int pages = postingRepository.countPages(lemma, siteIds);
+                if (pages > 0) {
+                    frequencies.put(lemma, pages);
+                }
+            }
+        } else if (!queryLemmas.isEmpty()) {
+            for (Lemma lemma : lemmaRepository.findByLemmaIn(queryLemmas)) {
+                frequencies.merge(lemma.getLemma(), lemma.getFrequency(), Integer::sum);
+            }
+        }
+        statistics.setFrequencies(frequencies);
+        return statistics;
+    }
+
+    /**
+     * Метод, объединяющий строки одной леммы разных сайтов: частота леммы - сумма частот по сайтам.
+     * Строки, загруженные из БД, не изменяются.
+     * @param first - лемма с частотой по одним сайтам.
+     * @param second - та же лемма с частотой по другому сайту.
+     * @return - лемма с суммарной частотой.
+     */
+    private static Lemma sumFrequencies(Lemma first, Lemma second) {
+        Lemma lemma = new Lemma();
+        lemma.setLemma(first.getLemma());
+        lemma.setFrequency(first.getFrequency() + second.getFrequency());
+        return lemma;
+    }
+
+    private static int getFrequency(Lemma lemma, ShardStatistics statistics) {
+        return statistics == null ? lemma.getFrequency()
+                : statistics.getFrequencies().getOrDefault(lemma.getLemma(), lemma.getFrequency());
+    }
+
+    /**
+     * Метод, оставляющий среди кандидатов только страницы, на которых встречается лемма,
+     * и прибавляющий ранг леммы к их релевантности.
+     * @param candidates - текущие кандидаты.
+     * @param lemma - лемма.
+     * @return - новые кандидаты (релевантность по id страницы) в прежнем порядке.
+     */
+    private Map<Integer, Float> intersect(Map<Integer, Float> candidates, Lemma lemma) {
+        Map<Integer, Float> ranks = new HashMap<>();
+        List<Integer> pageIds = new ArrayList<>(candidates.keySet());
+        for (int from = 0; from < pageIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, pageIds.size()));
+            for (PostingRepository.Posting posting : postingRepository.findByLemmaAndPageIdIn(lemma.getLemma(), chunk)) {
+                ranks.merge(posting.pageId(), posting.rank(), Float::sum);
+            }
+        }
+        Map<Integer, Float> result = new LinkedHashMap<>();
+        candidates.forEach((pageId, relevance) -> {
+            Float rank = ranks.get(pageId);
+            if (rank != null) {
+                result.put(pageId, relevance + rank);
+            }
+        });
+        return result;
+    }
+
+    private static void addStep(QueryPlan plan, String step, String lemma, Integer frequency, Integer candidates,
+                                long start) {
+        plan.getSteps().add(new QueryPlanStep(step, lemma, frequency, candidates, toMillis(System.nanoTime() - start)));
+    }
+
+    private Result finish(QueryPlan plan, long planStart, Map<Integer, Float> relevances) {
+        List<Candidate> candidates = new ArrayList<>();
+        if (!relevances.isEmpty()) {
+            long start = System.nanoTime();
+            candidates = loadCandidates(relevances);
+            addStep(plan, "pages", null, null, candidates.size(), start);
+        }
+        plan.setMillis(toMillis(System.nanoTime() - planStart));
+        return new Result(candidates, plan);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Страница-кандидат.
+     * @param pageId - id страницы.
+     * @param siteId - id сайта страницы.
+     * @param path - путь страницы от корня сайта.
+     * @param relevance - сумма рангов лемм запроса на странице.
+     */
+    public record Candidate(int pageId, int siteId, String path, float relevance) {
+    }
+
+    /**
+     * Результат планирования.
+     * @param candidates - страницы, содержащие все значимые леммы запроса.
+     * @param plan - план выполнения.
+     */
+    public record Result(List<Candidate> candidates, QueryPlan plan) {
+    }
+}
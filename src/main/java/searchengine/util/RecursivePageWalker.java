@@ -1,54 +1,283 @@
 package searchengine.util;
 
-import org.springframework.stereotype.Component;
-import searchengine.services.IndexingService;
-
-import java.util.ArrayList;
+import java.net.URI;
+import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Задача обхода страницы сайта.
+ * Корневая задача наполняет очередь обхода (CrawlFrontier) и выдает из нее адреса задачам обхода страниц,
+ * пока число выполняющихся задач меньше окна (IN_FLIGHT_PER_THREAD задач на поток сайта); найденные ссылки
+ * добавляются в очередь обхода, а каждая завершившаяся задача выдает следующие адреса. Поэтому число задач
+ * в памяти не зависит от размера сайта, и очередь может храниться на диске (DiskCrawlFrontier).
+ * Задачи выполняются планировщиком обхода (CrawlScheduler), а не собственным пулом сайта;
+ * завершение задач отслеживается счетчиком CountedCompleter корневой задачи.
+ * Если хост еще не готов принять запрос, задача не усыпляет поток,
+ * а повторно ставится в очередь сайта по таймеру ограничителя частоты.
+ */
+public class RecursivePageWalker extends CountedCompleter<Void> {
 
-@Component
-public class RecursivePageWalker extends RecursiveAction {
+    private static final int IN_FLIGHT_PER_THREAD = 4;
 
     private final WebSiteTree webSiteTree;
 
-    private final IndexingService indexingService;
+    /**
+     * Корневая задача обхода сайта (для корневой задачи - она сама).
+     */
+    private final RecursivePageWalker coordinator;
+
+    private final CrawlContext context;
+
+    private final boolean root;
+
+    /**
+     * Дата последнего изменения страницы из карты сайта, либо null.
+     */
+    private final Instant lastModified;
+
+    /**
+     * Продолжается ли обход с контрольной точки (только для корневой задачи).
+     */
+    private final boolean resume;
+
+    /**
+     * Число выданных из очереди и еще не завершенных задач (только для корневой задачи).
+     */
+    private int inFlight;
 
-    private static final CopyOnWriteArrayList<String> linksPool = new CopyOnWriteArrayList<>();
+    private final Object drainLock = new Object();
+
+    private static final ScheduledExecutorService delayScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-delay-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Корневая задача обхода сайта. Корневая страница обходится, но не индексируется, индексируются найденные
+     * на ней ссылки и адреса из карты сайта.
+     * @param webSiteTree - корень карты сайта.
+     * @param context - сервисы и настройки обхода сайта.
+     */
+    public RecursivePageWalker(WebSiteTree webSiteTree, CrawlContext context) {
+        this(webSiteTree, context, false);
+    }
+
+    /**
+     * Корневая задача обхода сайта.
+     * @param webSiteTree - корень карты сайта.
+     * @param context - сервисы и настройки обхода сайта.
+     * @param resume - true, если состояние обхода восстановлено из контрольной точки: тогда обходятся
+     *               только ожидающие адреса, а карты сайта загружаются, только если корневая страница
+     *               еще ожидает обхода.
+     */
+    public RecursivePageWalker(WebSiteTree webSiteTree, CrawlContext context, boolean resume) {
+        this.webSiteTree = webSiteTree;
+        this.coordinator = this;
+        this.context = context;
+        this.root = true;
+        this.lastModified = null;
+        this.resume = resume;
+    }
 
-    public RecursivePageWalker(WebSiteTree webSiteTree, IndexingService indexingService) {
+    private RecursivePageWalker(RecursivePageWalker coordinator, WebSiteTree webSiteTree, Instant lastModified) {
+        super(coordinator);
         this.webSiteTree = webSiteTree;
-        this.indexingService = indexingService;
+        this.coordinator = coordinator;
+        this.context = coordinator.context;
+        this.root = false;
+        this.lastModified = lastModified;
+        this.resume = false;
     }
 
     @Override
-    protected void compute() {
-        linksPool.add(webSiteTree.getUrl());
-        ConcurrentSkipListSet<String> links = HtmlParser.getLinks(webSiteTree.getUrl());
-
-        for (String link : links) {
-            if (!linksPool.contains(link)) {
-                linksPool.add(link);
-                webSiteTree.addChildren(new WebSiteTree(link));
+    public void compute() {
+        if (context.getCancellationToken().isCancelled()) {
+            tryComplete();
+            return;
+        }
+        if (root) {
+            seed();
+            drain();
+            tryComplete();
+            return;
+        }
+        if (lastModified != null && context.getIndexingService().isPageUpToDate(webSiteTree.getUrl(), lastModified)) {
+            finish();
+            return;
+        }
+        if (!acquirePermit()) {
+            return;
+        }
+
+        FetchedPage page;
+        try {
+            page = context.getPageFetcher().fetch(webSiteTree.getUrl(), context.getCancellationToken());
+            if (context.getCancellationToken().isCancelled()) {
+                tryComplete();
+                return;
+            }
+            if (!webSiteTree.getUrl().equals(coordinator.webSiteTree.getUrl())) {
+                context.getIndexingService().indexPage(page);
+            }
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            if (context.getCancellationToken().isCancelled()) {
+                tryComplete();
+            } else {
+                finish();
             }
+            return;
+        }
+
+        if (page.isHtml()) {
+            for (String link : HtmlParser.getLinks(page.getDocument())) {
+                addChild(link, null);
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Метод, завершающий задачу после обработки страницы: адрес перестает быть ожидающим,
+     * а освободившееся место в окне занимают следующие адреса из очереди обхода.
+     * Задачи, прерванные отменой, завершаются без этого, чтобы их адреса остались в контрольной точке.
+     */
+    private void finish() {
+        context.getFrontier().complete(webSiteTree.getUrl());
+        synchronized (coordinator.drainLock) {
+            coordinator.inFlight--;
         }
+        coordinator.drain();
+        tryComplete();
+    }
 
-        List<RecursivePageWalker> recursivePageWalkerList = new ArrayList<>();
+    /**
+     * Метод, наполняющий очередь обхода: корневой страницей и адресами из карт сайта, либо, при продолжении
+     * с контрольной точки, только адресами из карт сайта, если корневая страница еще ожидает обхода
+     * (тогда загрузка карт сайта могла быть прервана).
+     */
+    private void seed() {
+        String url = webSiteTree.getUrl();
+        if (resume && !context.getFrontier().isPending(url)) {
+            return;
+        }
+        if (!resume) {
+            context.getFrontier().markVisited(url);
+            context.getFrontier().addPending(url, null);
+        }
+        if (context.isSitemapEnabled()) {
+            seedFromSitemaps();
+        }
+    }
 
-        for (WebSiteTree child : webSiteTree.getChildren()) {
-            try {
-                indexingService.indexPage(child.getUrl());
-                RecursivePageWalker recursivePageWalker = new RecursivePageWalker(child, indexingService);
-                recursivePageWalker.fork();
-                recursivePageWalkerList.add(recursivePageWalker);
-            } catch (Exception e) {
-                System.out.println(e.getMessage());
+    /**
+     * Метод, создающий задачи обхода для адресов из очереди, пока число выполняющихся задач меньше окна.
+     * Вызывается под общей блокировкой: задача, добавившая адреса в очередь, вызывает его до своего завершения,
+     * поэтому корневая задача не может завершиться, пока в очереди остаются адреса.
+     */
+    private void drain() {
+        int window = context.getSiteCrawl().getMaxConcurrency() * IN_FLIGHT_PER_THREAD;
+        synchronized (drainLock) {
+            while (inFlight < window && !context.getCancellationToken().isCancelled()) {
+                CrawlFrontier.Entry entry = context.getFrontier().poll();
+                if (entry == null) {
+                    return;
+                }
+                inFlight++;
+                submitChild(entry.url(), entry.lastModified());
             }
         }
-        for (RecursivePageWalker recursivePageWalker : recursivePageWalkerList) {
-            recursivePageWalker.join();
+    }
+
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+        if (root) {
+            context.getSiteCrawl().finish();
+        }
+    }
+
+    @Override
+    public boolean onExceptionalCompletion(Throwable ex, CountedCompleter<?> caller) {
+        if (root) {
+            context.getSiteCrawl().fail(ex);
+        }
+        return true;
+    }
+
+    /**
+     * Метод, добавляющий в очередь обхода все адреса сайта из его карт (robots.txt Sitemap, либо /sitemap.xml).
+     */
+    private void seedFromSitemaps() {
+        List<String> sitemaps = context.getRobotsTxtCache().getRules(context.getSiteUrl()).getSitemaps();
+        if (sitemaps.isEmpty()) {
+            sitemaps = List.of(URI.create(context.getSiteUrl()).resolve("/sitemap.xml").toString());
         }
+        for (String sitemap : sitemaps) {
+            context.getSitemapParser().parse(sitemap, context.getCancellationToken(), entry -> {
+                String link = UrlCanonicalizer.canonicalize(entry.url());
+                if (link != null && HtmlParser.isPageLink(link)) {
+                    addChild(link, entry.lastModified());
+                }
+            });
+        }
+    }
+
+    /**
+     * Метод, добавляющий в очередь обхода новый адрес, если он относится к обходимому сайту,
+     * еще не встречался и разрешен robots.txt.
+     * @param link - адрес страницы.
+     * @param linkLastModified - дата последнего изменения страницы из карты сайта, либо null.
+     */
+    private void addChild(String link, Instant linkLastModified) {
+        if (context.getSiteRegistry().belongsTo(link, context.getSiteUrl())
+                && context.getFrontier().markVisited(link) && context.getRobotsTxtCache().isAllowed(link)) {
+            context.getFrontier().addPending(link, linkLastModified);
+        }
+    }
+
+    /**
+     * Метод, создающий задачу обхода адреса из очереди. Карта сайта (WebSiteTree) накапливается,
+     * только если очередь обхода хранится в памяти.
+     */
+    private void submitChild(String link, Instant linkLastModified) {
+        WebSiteTree child = new WebSiteTree(link);
+        if (!context.getFrontier().isBounded()) {
+            webSiteTree.addChildren(child);
+        }
+        addToPendingCount(1);
+        context.getSiteCrawl().submit(new RecursivePageWalker(this, child, linkLastModified));
+    }
+
+    /**
+     * Метод, получающий разрешение на запрос к хосту страницы.
+     * Если разрешения нет, задача повторно ставится в очередь сайта после паузы, а поток освобождается.
+     * При отмене индексации отложенная задача снимается с ожидания сразу.
+     * @return - true, если запрос можно выполнять сейчас.
+     */
+    private boolean acquirePermit() {
+        Long robotsDelay = context.getRobotsTxtCache().getRules(webSiteTree.getUrl()).getCrawlDelay();
+        long interval = robotsDelay != null ? robotsDelay : context.getCrawlDelay();
+        long waitNanos = context.getRateLimiter().tryAcquire(webSiteTree.getUrl(), interval);
+        if (waitNanos == 0) {
+            return true;
+        }
+        AtomicBoolean resumed = new AtomicBoolean(false);
+        Runnable resume = () -> {
+            if (resumed.compareAndSet(false, true)) {
+                context.getSiteCrawl().submit(this);
+            }
+        };
+        CancellationToken.Registration registration = context.getCancellationToken().onCancel(resume);
+        delayScheduler.schedule(() -> {
+            registration.close();
+            resume.run();
+        }, waitNanos, TimeUnit.NANOSECONDS);
+        return false;
     }
 }
@@ -0,0 +1,15 @@
+package searchengine.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Сайт из конфигурации вместе с его идентификатором в таблице site (если сайт уже добавлен в БД).
+ */
+@Getter
+@AllArgsConstructor
+public class RegisteredSite {
+    private final Integer id;
+    private final String url;
+    private final String name;
+}
@@ -0,0 +1,186 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt, относящиеся к нашему поисковому роботу.
+ */
+public class RobotsRules {
+
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), null, List.of());
+
+    private final List<Rule> rules;
+    private final Long crawlDelay;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, Long crawlDelay, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * Метод, возвращающий правила, разрешающие обход всего сайта (robots.txt отсутствует или недоступен).
+     * @return - пустые правила.
+     */
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Метод, разбирающий содержимое robots.txt.
+     * Используется группа, user-agent которой совпадает с нашим, а если такой нет - группа "*".
+     * @param content - содержимое файла robots.txt.
+     * @param userAgent - user-agent поискового робота.
+     * @return - правила для робота.
+     */
+    public static RobotsRules parse(String content, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<Rule> ownRules = new ArrayList<>();
+        List<Rule> commonRules = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        Long ownDelay = null;
+        Long commonDelay = null;
+        boolean ownGroupFound = false;
+
+        List<String> groupAgents = new ArrayList<>();
+        boolean groupHasRules = false;
+
+        for (String rawLine : content.split("\\r?\\n|\\r")) {
+            int commentIndex = rawLine.indexOf('#');
+            String line = (commentIndex >= 0 ? rawLine.substring(0, commentIndex) : rawLine).trim();
+            int colonIndex = line.indexOf(':');
+            if (colonIndex <= 0) {
+                continue;
+            }
+            String field = line.substring(0, colonIndex).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colonIndex + 1).trim();
+
+            if (field.equals("sitemap")) {
+                if (!value.isEmpty()) {
+                    sitemaps.add(value);
+                }
+                continue;
+            }
+            if (field.equals("user-agent")) {
+                if (groupHasRules) {
+                    groupAgents.clear();
+                    groupHasRules = false;
+                }
+                groupAgents.add(value.toLowerCase(Locale.ROOT));
+                continue;
+            }
+            if (groupAgents.isEmpty()) {
+                continue;
+            }
+            groupHasRules = true;
+            boolean forUs = groupAgents.stream().anyMatch(a -> !a.equals("*") && agent.contains(a));
+            boolean forAll = groupAgents.contains("*");
+            if (!forUs && !forAll) {
+                continue;
+            }
+            ownGroupFound |= forUs;
+            switch (field) {
+                case "allow", "disallow" -> {
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    Rule rule = new Rule(value, field.equals("allow"));
+                    (forUs ? ownRules : commonRules).add(rule);
+                }
+                case "crawl-delay" -> {
+                    Long delay = parseDelay(value);
+                    if (forUs) {
+                        ownDelay = delay;
+                    } else {
+                        commonDelay = delay;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return ownGroupFound
+                ? new RobotsRules(ownRules, ownDelay, Collections.unmodifiableList(sitemaps))
+                : new RobotsRules(commonRules, commonDelay, Collections.unmodifiableList(sitemaps));
+    }
+
+    /**
+     * Метод, проверяющий разрешен ли обход адреса.
+     * Побеждает самое длинное совпавшее правило, при равной длине - Allow.
+     * @param path - путь страницы от корня сайта (вместе с query).
+     * @return - true, если адрес разрешено обходить.
+     */
+    public boolean isAllowed(String path) {
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null || rule.length() > best.length()
+                    || (rule.length() == best.length() && rule.allow()))) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow();
+    }
+
+    /**
+     * @return - интервал Crawl-delay в миллисекундах, либо null, если он не задан.
+     */
+    public Long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    /**
+     * @return - адреса карт сайта, перечисленные в директивах Sitemap.
+     */
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static Long parseDelay(String value) {
+        try {
+            return Math.round(Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Правило Allow/Disallow с поддержкой "*" и "$".
+     */
+    private record Rule(String value, boolean allow, Pattern pattern) {
+
+        Rule(String value, boolean allow) {
+            this(value, allow, compile(value));
+        }
+
+        boolean matches(String path) {
+            return pattern.matcher(path).lookingAt();
+        }
+
+        int length() {
+            return value.length();
+        }
+
+        private static Pattern compile(String value) {
+            boolean anchored = value.endsWith("$");
+            String body = anchored ? value.substring(0, value.length() - 1) : value;
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (regex.length() > 0 || body.startsWith("*")) {
+                    regex.append(".*");
+                }
+                if (!part.isEmpty()) {
+                    regex.append(Pattern.quote(part));
+                }
+            }
+            if (anchored) {
+                regex.append("$");
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
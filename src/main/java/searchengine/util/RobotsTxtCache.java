@@ -0,0 +1,107 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сервис, загружающий и кэширующий robots.txt для каждого хоста.
+ */
+@Component
+@Lazy
+public class RobotsTxtCache {
+
+    private final SitesList sitesList;
+    private final PageFetcher pageFetcher;
+
+    private final Map<String, RobotsRules> rulesByOrigin = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public RobotsTxtCache(SitesList sitesList, PageFetcher pageFetcher, MeterRegistry meterRegistry) {
+        this.sitesList = sitesList;
+        this.pageFetcher = pageFetcher;
+        this.hits = meterRegistry.counter("searchengine.cache.requests", "cache", "robots", "result", "hit");
+        this.misses = meterRegistry.counter("searchengine.cache.requests", "cache", "robots", "result", "miss");
+        meterRegistry.gaugeMapSize("searchengine.cache.size", Tags.of("cache", "robots"),
+                rulesByOrigin);
+    }
+
+    /**
+     * Метод, возвращающий правила robots.txt для хоста, которому принадлежит адрес.
+     * Файл загружается один раз на хост, далее правила берутся из кэша.
+     * @param url - адрес страницы.
+     * @return - правила robots.txt.
+     */
+    public RobotsRules getRules(String url) {
+        String origin = getOrigin(url);
+        if (origin == null) {
+            return RobotsRules.allowAll();
+        }
+        RobotsRules rules = rulesByOrigin.get(origin);
+        if (rules != null) {
+            hits.increment();
+            return rules;
+        }
+        misses.increment();
+        return rulesByOrigin.computeIfAbsent(origin, this::loadRules);
+    }
+
+    /**
+     * Метод, проверяющий разрешено ли обходить страницу правилами robots.txt.
+     * @param url - адрес страницы.
+     * @return - true, если страницу можно обходить.
+     */
+    public boolean isAllowed(String url) {
+        try {
+            URI uri = URI.create(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path = path + "?" + uri.getRawQuery();
+            }
+            return getRules(url).isAllowed(path);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Метод, очищающий кэш (например, перед новой индексацией).
+     */
+    public void clear() {
+        rulesByOrigin.clear();
+    }
+
+    private RobotsRules loadRules(String origin) {
+        try {
+            String content = pageFetcher.fetchText(origin + "/robots.txt");
+            if (content != null) {
+                return RobotsRules.parse(content, sitesList.getUserAgent());
+            }
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+        }
+        return RobotsRules.allowAll();
+    }
+
+    private static String getOrigin(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return null;
+            }
+            return uri.getScheme().toLowerCase() + "://" + uri.getHost().toLowerCase()
+                    + (uri.getPort() == -1 ? "" : ":" + uri.getPort());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.util;
+
+import searchengine.dto.result.RelevancePage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор постраничной выдачи поиска: релевантность и id последней выданной страницы.
+ * Результаты упорядочены по убыванию релевантности, а при равной релевантности - по возрастанию id страницы,
+ * поэтому следующая страница выдачи начинается сразу за позицией курсора, даже если между запросами
+ * в индекс добавились новые страницы. При поиске по шардам id страниц на разных шардах могут совпадать,
+ * поэтому курсор хранит и номер шарда последнего результата - при равной релевантности и id страницы
+ * результаты упорядочены по номеру шарда. Клиенту курсор передается в виде непрозрачной строки.
+ * @param relevance - релевантность последнего результата.
+ * @param pageId - id страницы последнего результата.
+ * @param shard - номер шарда последнего результата, либо NO_SHARD, если поиск идет без шардов.
+ */
+public record SearchCursor(float relevance, int pageId, int shard) {
+
+    /**
+     * Номер шарда курсора поиска без шардов.
+     */
+    public static final int NO_SHARD = -1;
+
+    private static final String VERSION = "1";
+    private static final String SHARD_VERSION = "2";
+
+    public SearchCursor(float relevance, int pageId) {
+        this(relevance, pageId, NO_SHARD);
+    }
+
+    /**
+     * Метод, создающий курсор, указывающий на результат поиска.
+     * @param page - результат поиска.
+     * @return - курсор.
+     */
+    public static SearchCursor after(RelevancePage page) {
+        return new SearchCursor(page.getRelevance(), page.getPageId());
+    }
+
+    /**
+     * Метод, кодирующий курсор в строку.
+     * @return - строка курсора.
+     */
+    public String encode() {
+        String value = Integer.toHexString(Float.floatToIntBits(relevance)) + ":" + pageId;
+        value = shard == NO_SHARD ? VERSION + ":" + value : SHARD_VERSION + ":" + value + ":" + shard;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Метод, разбирающий строку курсора.
+     * @param cursor - строка курсора, полученная в ответе на предыдущий запрос.
+     * @return - курсор.
+     * @throws IllegalArgumentException - если строка не является курсором.
+     */
+    public static SearchCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = value.split(":");
+            boolean withShard = parts.length == 4 && parts[0].equals(SHARD_VERSION);
+            if (!withShard && (parts.length != 3 || !parts[0].equals(VERSION))) {
+                throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+            }
+            int shard = withShard ? Integer.parseInt(parts[3]) : NO_SHARD;
+            if (withShard && shard < 0) {
+                throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+            }
+            return new SearchCursor(Float.intBitsToFloat(Integer.parseUnsignedInt(parts[1], 16)),
+                    Integer.parseInt(parts[2]), shard);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package searchengine.util;
+
+import searchengine.dto.shard.ShardFetch;
+import searchengine.dto.shard.ShardHit;
+import searchengine.dto.shard.ShardHits;
+import searchengine.dto.shard.ShardQuery;
+import searchengine.dto.shard.ShardStatistics;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Шард поискового индекса: часть сайтов, по которой поиск выполняется отдельно от остальных.
+ * Поиск по шардам идет в три этапа: сбор статистики запроса, поиск лучших результатов с общей статистикой
+ * и построение сниппетов только для результатов, попавших в выдачу.
+ */
+public interface SearchShard {
+
+    String getName();
+
+    /**
+     * Метод, возвращающий статистику запроса на шарде.
+     * @param query - поисковый запрос.
+     * @return - число страниц шарда и частоты лемм запроса.
+     */
+    ShardStatistics statistics(String query) throws IOException;
+
+    /**
+     * Метод, возвращающий лучшие результаты шарда (без заголовков и сниппетов).
+     * @param query - запрос с общей статистикой всех шардов.
+     * @return - результаты шарда.
+     */
+    ShardHits search(ShardQuery query) throws IOException;
+
+    /**
+     * Метод, строящий заголовки и сниппеты результатов шарда.
+     * @param fetch - запрос и id страниц.
+     * @return - результаты с заголовками и сниппетами.
+     */
+    List<ShardHit> fetch(ShardFetch fetch) throws IOException;
+}
@@ -0,0 +1,271 @@
+package searchengine.util;
+
+import searchengine.config.ShardSettings;
+import searchengine.dto.result.QueryPlan;
+import searchengine.dto.result.QueryPlanStep;
+import searchengine.dto.result.RelevancePage;
+import searchengine.dto.result.RelevancePageForResponse;
+import searchengine.dto.result.SearchResult;
+import searchengine.dto.shard.ShardFetch;
+import searchengine.dto.shard.ShardHit;
+import searchengine.dto.shard.ShardHits;
+import searchengine.dto.shard.ShardQuery;
+import searchengine.dto.shard.ShardStatistics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Координатор поиска по шардам (scatter-gather). Запрос выполняется в три этапа, на каждом
+ * запросы всем шардам отправляются параллельно:
+ * <ol>
+ *     <li>statistics - шарды возвращают число страниц и частоты лемм запроса, координатор их суммирует;</li>
+ *     <li>query - шарды получают общую статистику (и потому отбрасывают одни и те же слишком частые леммы,
+ *     а релевантности результатов сравнимы) и возвращают свои лучшие offset + limit результатов;
+ *     координатор объединяет их по релевантности и выбирает страницу выдачи;</li>
+ *     <li>fetch - заголовки и сниппеты строятся только для результатов страницы выдачи на их шардах.</li>
+ * </ol>
+ * Шард, не ответивший за timeout или ответивший ошибкой, пропускается на следующих этапах,
+ * а его имя возвращается в списке failedShards - результат поиска в этом случае неполный.
+ */
+public class ShardCoordinator {
+
+    /**
+     * Порядок выдачи: по убыванию релевантности, затем по возрастанию id страницы и номера шарда.
+     */
+    private static final Comparator<Hit> HIT_ORDER = Comparator
+            .comparing((Hit hit) -> hit.hit().getRelevance(), Comparator.reverseOrder())
+            .thenComparingInt(hit -> hit.hit().getPageId())
+            .thenComparingInt(Hit::shard);
+
+    private final List<SearchShard> shards;
+    private final long timeout;
+    private final ExecutorService executor;
+
+    public ShardCoordinator(List<SearchShard> shards, ShardSettings settings) {
+        this.shards = List.copyOf(shards);
+        this.timeout = settings.getTimeout();
+        int threads = Math.max(1, settings.getThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity())), runnable -> {
+            Thread thread = new Thread(runnable, "search-shard-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Метод поиска по всем шардам.
+     * @param query - непустой поисковый запрос в нижнем регистре.
+     * @param site - адрес сайта, либо null для поиска по всем сайтам.
+     * @param offset - число результатов, которые нужно пропустить (если курсор не задан).
+     * @param limit - количество совпадений на одной странице.
+     * @param cursor - курсор, после которого начинается страница выдачи, либо null.
+     * @param consumer - обработчик результатов страницы выдачи в порядке релевантности.
+     * @return - общее число найденных страниц, курсор следующей страницы, план запроса и не ответившие шарды.
+     */
+    public SearchResult search(String query, String site, int offset, int limit, SearchCursor cursor,
+                               Consumer<RelevancePage> consumer) {
+        QueryPlan plan = new QueryPlan();
+        plan.setShards(new LinkedHashMap<>());
+        Set<String> failed = new LinkedHashSet<>();
+        long planStart = System.nanoTime();
+
+        long start = System.nanoTime();
+        Map<SearchShard, ShardStatistics> statistics = scatter(shards, shard -> shard.statistics(query), failed);
+        ShardStatistics total = new ShardStatistics();
+        statistics.values().forEach(total::add);
+        addStep(plan, "statistics", null, start);
+
+        start = System.nanoTime();
+        int from = cursor == null ? Math.max(offset, 0) : 0;
+        int shardLimit = from + Math.max(limit, 1);
+        Map<SearchShard, ShardHits> results = scatter(statistics.keySet(),
+                shard -> shard.search(getShardQuery(shard, query, site, shardLimit, cursor, total)), failed);
+        List<Hit> merged = new ArrayList<>();
+        int count = 0;
+        int after = 0;
+        for (Map.Entry<SearchShard, ShardHits> result : results.entrySet()) {
+            ShardHits hits = result.getValue();
+            count += hits.getCount();
+            after += hits.getAfter();
+            plan.getShards().put(result.getKey().getName(), hits.getPlan());
+            int shard = shards.indexOf(result.getKey());
+            hits.getHits().forEach(hit -> merged.add(new Hit(shard, hit)));
+        }
+        merged.sort(HIT_ORDER);
+        addStep(plan, "query", count, start);
+
+        from = Math.min(from, merged.size());
+        int to = Math.min(from + Math.max(limit, 1), merged.size());
+        List<Hit> page = merged.subList(from, to);
+        String nextCursor = null;
+        if (to > from && to < (cursor == null ? count : after)) {
+            Hit last = page.get(page.size() - 1);
+            nextCursor = new SearchCursor(last.hit().getRelevance(), last.hit().getPageId(), last.shard()).encode();
+        }
+
+        start = System.nanoTime();
+        fetch(query, page, failed).forEach(consumer);
+        addStep(plan, "fetch", page.size(), start);
+        plan.setMillis((System.nanoTime() - planStart) / 1_000_000.0);
+
+        SearchResult searchResult = new SearchResult(count, nextCursor, plan);
+        if (!failed.isEmpty()) {
+            searchResult.setFailedShards(new ArrayList<>(failed));
+        }
+        return searchResult;
+    }
+
+    /**
+     * Метод, создающий запрос этапа query к шарду.
+     * Результат шарда, совпадающий с курсором по релевантности и id страницы, - это сам последний выданный
+     * результат только на шарде курсора; на шардах с большим номером он идет после курсора и должен войти в выдачу.
+     * @param shard - шард.
+     * @param query - поисковый запрос.
+     * @param site - адрес сайта, либо null.
+     * @param limit - сколько лучших результатов вернуть.
+     * @param cursor - курсор, либо null.
+     * @param statistics - общая статистика всех шардов.
+     * @return - запрос к шарду.
+     */
+    private ShardQuery getShardQuery(SearchShard shard, String query, String site, int limit, SearchCursor cursor,
+                                     ShardStatistics statistics) {
+        ShardQuery shardQuery = new ShardQuery();
+        shardQuery.setQuery(query);
+        shardQuery.setSite(site);
+        shardQuery.setLimit(limit);
+        shardQuery.setCursor(cursor == null ? null : cursor.encode());
+        shardQuery.setIncludeCursor(cursor != null && cursor.shard() != SearchCursor.NO_SHARD
+                && cursor.shard() < shards.indexOf(shard));
+        shardQuery.setStatistics(statistics);
+        return shardQuery;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Метод, запрашивающий заголовки и сниппеты результатов страницы выдачи у их шардов.
+     * Результаты шарда, не ответившего к сроку, возвращаются без заголовка и сниппета.
+     * @param query - поисковый запрос.
+     * @param page - результаты страницы выдачи.
+     * @param failed - имена не ответивших шардов.
+     * @return - результаты для ответа в порядке страницы выдачи.
+     */
+    private List<RelevancePage> fetch(String query, List<Hit> page, Set<String> failed) {
+        Map<SearchShard, ShardFetch> fetches = new LinkedHashMap<>();
+        for (Hit hit : page) {
+            fetches.computeIfAbsent(shards.get(hit.shard()), shard -> {
+                ShardFetch fetch = new ShardFetch();
+                fetch.setQuery(query);
+                return fetch;
+            }).getPageIds().add(hit.hit().getPageId());
+        }
+        Map<SearchShard, List<ShardHit>> fetched = scatter(fetches.keySet(),
+                shard -> shard.fetch(fetches.get(shard)), failed);
+        Map<SearchShard, Map<Integer, ShardHit>> fetchedById = new HashMap<>();
+        fetched.forEach((shard, hits) -> {
+            Map<Integer, ShardHit> byId = new HashMap<>();
+            hits.forEach(hit -> byId.put(hit.getPageId(), hit));
+            fetchedById.put(shard, byId);
+        });
+        List<RelevancePage> relevancePages = new ArrayList<>(page.size());
+        for (Hit hit : page) {
+            ShardHit assembled = fetchedById.getOrDefault(shards.get(hit.shard()), Map.of())
+                    .get(hit.hit().getPageId());
+            relevancePages.add(toRelevancePage(hit.hit(), assembled));
+        }
+        return relevancePages;
+    }
+
+    private static RelevancePage toRelevancePage(ShardHit hit, ShardHit assembled) {
+        RelevancePageForResponse relevancePage = new RelevancePageForResponse();
+        relevancePage.setSite(hit.getSite());
+        relevancePage.setSiteName(hit.getSiteName());
+        relevancePage.setSiteId(hit.getSiteId());
+        relevancePage.setPageId(hit.getPageId());
+        relevancePage.setUri(hit.getUri());
+        relevancePage.setTitle(assembled == null ? "" : assembled.getTitle());
+        relevancePage.setSnippet(assembled == null ? "" : assembled.getSnippet());
+        relevancePage.setRelevance(hit.getRelevance());
+        return relevancePage;
+    }
+
+    /**
+     * Метод, параллельно отправляющий запрос шардам и ожидающий ответов до срока (timeout на весь этап).
+     * @param targets - шарды.
+     * @param call - запрос к шарду.
+     * @param failed - имена не ответивших шардов; дополняется.
+     * @return - ответы шардов в порядке targets.
+     */
+    private <T> Map<SearchShard, T> scatter(Collection<SearchShard> targets, ShardCall<T> call, Set<String> failed) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Map<SearchShard, Future<T>> futures = new LinkedHashMap<>();
+        for (SearchShard shard : targets) {
+            try {
+                futures.put(shard, executor.submit(() -> call.apply(shard)));
+            } catch (RejectedExecutionException e) {
+                System.out.println("Шард " + shard.getName() + ": очередь запросов переполнена");
+                failed.add(shard.getName());
+            }
+        }
+        Map<SearchShard, T> results = new LinkedHashMap<>();
+        for (Map.Entry<SearchShard, Future<T>> entry : futures.entrySet()) {
+            Future<T> future = entry.getValue();
+            try {
+                results.put(entry.getKey(), future.get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS));
+                continue;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                System.out.println("Шард " + entry.getKey().getName() + " не ответил за " + timeout + " мс");
+            } catch (ExecutionException e) {
+                System.out.println("Шард " + entry.getKey().getName() + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+            }
+            failed.add(entry.getKey().getName());
+        }
+        return results;
+    }
+
+    private static void addStep(QueryPlan plan, String step, Integer candidates, long start) {
+        plan.getSteps().add(new QueryPlanStep(step, null, null, candidates,
+                (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        T apply(SearchShard shard) throws IOException;
+    }
+
+    /**
+     * Результат шарда.
+     * @param shard - номер шарда в списке шардов.
+     * @param hit - результат.
+     */
+    private record Hit(int shard, ShardHit hit) {
+    }
+}
@@ -0,0 +1,69 @@
+package searchengine.util;
+
+import java.util.Map;
+
+/**
+ * Вычисление SimHash - 64-битного отпечатка текста, у которого близкие по содержанию тексты
+ * отличаются в небольшом числе битов (расстояние Хэмминга).
+ * Признаки текста - его леммы с весом, равным числу их повторений.
+ */
+public final class SimHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    /**
+     * Метод, вычисляющий отпечаток текста по его леммам: каждый бит отпечатка - знак суммы весов лемм,
+     * у хэша которых этот бит установлен, минус сумма весов остальных лемм.
+     * @param lemmas - леммы текста и число их повторений.
+     * @return - отпечаток.
+     */
+    public static long compute(Map<String, Integer> lemmas) {
+        long[] weights = new long[Long.SIZE];
+        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
+            long hash = hash(entry.getKey());
+            int weight = entry.getValue();
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += (hash >>> bit & 1) == 1 ? weight : -weight;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Метод, возвращающий расстояние Хэмминга между отпечатками.
+     * @param first - первый отпечаток.
+     * @param second - второй отпечаток.
+     * @return - число различающихся битов.
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * Метод, вычисляющий 64-битный хэш леммы (FNV-1a с последующим перемешиванием битов,
+     * чтобы у похожих строк хэши различались во всех разрядах).
+     */
+    private static long hash(String lemma) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < lemma.length(); i++) {
+            hash ^= lemma.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,67 @@
+package searchengine.util;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Обход одного сайта в планировщике: очередь задач сайта, ограничения и признак отмены.
+ * Состояние очереди изменяется только под блокировкой планировщика.
+ */
+@Getter
+public class SiteCrawl {
+
+    private final String siteUrl;
+    private final int weight;
+    private final int maxConcurrency;
+    private final CancellationToken cancellationToken;
+    /**
+     * Завершается, когда обход сайта закончен (все задачи выполнены, либо обход отменен и выполняющиеся задачи завершились).
+     */
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    final Queue<Runnable> queue = new ArrayDeque<>();
+    int active;
+
+    private final CrawlScheduler scheduler;
+
+    SiteCrawl(CrawlScheduler scheduler, String siteUrl, int weight, int maxConcurrency,
+              CancellationToken cancellationToken) {
+        this.scheduler = scheduler;
+        this.siteUrl = siteUrl;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Метод, ставящий задачу обхода в очередь сайта. После отмены обхода задачи не принимаются.
+     * @param walker - задача обхода страницы.
+     */
+    public void submit(RecursivePageWalker walker) {
+        scheduler.submit(this, () -> {
+            try {
+                walker.compute();
+            } catch (RuntimeException e) {
+                walker.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Метод, завершающий обход сайта (вызывается корневой задачей обхода).
+     */
+    public void finish() {
+        scheduler.finish(this, null);
+    }
+
+    /**
+     * Метод, завершающий обход сайта с ошибкой.
+     * @param e - ошибка.
+     */
+    public void fail(Throwable e) {
+        scheduler.finish(this, e);
+    }
+}
@@ -0,0 +1,154 @@
+package searchengine.util;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.entity.Site;
+import searchengine.model.repository.SiteRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реестр сайтов из конфигурации, хранящийся в памяти.
+ * Адрес любой страницы сопоставляется сайту за один проход по строке (префиксное дерево по хосту и пути),
+ * без регулярных выражений и запросов к БД.
+ */
+@Component
+public class SiteRegistry {
+
+    private final SitesList sitesList;
+    private final SiteRepository siteRepository;
+
+    private volatile Snapshot snapshot;
+
+    public SiteRegistry(SitesList sitesList, SiteRepository siteRepository) {
+        this.sitesList = sitesList;
+        this.siteRepository = siteRepository;
+    }
+
+    /**
+     * Метод, перестраивающий реестр по файлу конфигурации и таблице site.
+     * Вызывается при запуске индексации, когда у сайтов появляются новые идентификаторы.
+     */
+    public void refresh() {
+        Map<String, Integer> idsByUrl = new HashMap<>();
+        for (Site site : siteRepository.findAll()) {
+            idsByUrl.put(site.getUrl(), site.getId());
+        }
+        Node root = new Node();
+        Map<Integer, RegisteredSite> sitesById = new HashMap<>();
+        List<searchengine.config.Site> sites = sitesList.getSites() == null ? List.of() : sitesList.getSites();
+        for (searchengine.config.Site siteFromProp : sites) {
+            String key = getKey(siteFromProp.getUrl());
+            if (key == null) {
+                continue;
+            }
+            if (key.endsWith("/")) {
+                key = key.substring(0, key.length() - 1);
+            }
+            RegisteredSite site = new RegisteredSite(idsByUrl.get(siteFromProp.getUrl()),
+                    siteFromProp.getUrl(), siteFromProp.getName());
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            node.site = site;
+            if (site.getId() != null) {
+                sitesById.put(site.getId(), site);
+            }
+        }
+        snapshot = new Snapshot(root, sitesById);
+    }
+
+    /**
+     * Метод, находящий сайт, которому принадлежит страница (самый длинный совпавший префикс "хост/путь").
+     * Схема и префикс "www." не учитываются.
+     * @param url - адрес страницы.
+     * @return - сайт, либо null, если страница не относится ни к одному сайту из конфигурации.
+     */
+    public RegisteredSite find(String url) {
+        String key = getKey(url);
+        if (key == null) {
+            return null;
+        }
+        Node node = getSnapshot().root;
+        RegisteredSite found = null;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+            if (node != null && node.site != null && (i + 1 == key.length() || key.charAt(i + 1) == '/')) {
+                found = node.site;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Метод, возвращающий сайт по его идентификатору в таблице site.
+     * @param id - идентификатор сайта.
+     * @return - сайт, либо null.
+     */
+    public RegisteredSite findById(Integer id) {
+        return id == null ? null : getSnapshot().sitesById.get(id);
+    }
+
+    /**
+     * Метод, возвращающий сайт по его адресу из конфигурации.
+     * @param siteUrl - адрес сайта, как он указан в конфигурации.
+     * @return - сайт, либо null.
+     */
+    public RegisteredSite findBySiteUrl(String siteUrl) {
+        RegisteredSite site = find(siteUrl);
+        return site != null && site.getUrl().equals(siteUrl) ? site : null;
+    }
+
+    /**
+     * Метод, проверяющий, что страница принадлежит заданному сайту.
+     * @param url - адрес страницы.
+     * @param siteUrl - адрес сайта из конфигурации.
+     * @return - true, если страница относится к этому сайту.
+     */
+    public boolean belongsTo(String url, String siteUrl) {
+        RegisteredSite site = find(url);
+        return site != null && site.getUrl().equals(siteUrl);
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Метод, возвращающий ключ адреса в дереве: хост без "www." и путь без параметров запроса.
+     * @param url - адрес.
+     * @return - ключ, либо null для некорректного адреса.
+     */
+    private static String getKey(String url) {
+        String canonicalUrl = UrlCanonicalizer.canonicalize(url);
+        if (canonicalUrl == null) {
+            return null;
+        }
+        String key = canonicalUrl.substring(canonicalUrl.indexOf("://") + 3);
+        if (key.startsWith("www.")) {
+            key = key.substring(4);
+        }
+        int queryIndex = key.indexOf('?');
+        return queryIndex < 0 ? key : key.substring(0, queryIndex);
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private RegisteredSite site;
+    }
+
+    private record Snapshot(Node root, Map<Integer, RegisteredSite> sitesById) {
+    }
+}
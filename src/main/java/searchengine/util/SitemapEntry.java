@@ -0,0 +1,9 @@
+package searchengine.util;
+
+import java.time.Instant;
+
+/**
+ * Адрес из карты сайта вместе с датой последнего изменения страницы (если она указана).
+ */
+public record SitemapEntry(String url, Instant lastModified) {
+}
@@ -0,0 +1,176 @@
+package searchengine.util;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Сервис, потоково разбирающий sitemap.xml и индексы карт сайта (в том числе сжатые gzip).
+ * Адреса передаются обработчику по мере чтения, в памяти не накапливаются.
+ */
+@Component
+@Lazy
+public class SitemapParser {
+
+    /**
+     * Максимальный размер карты сайта по протоколу sitemaps.org.
+     */
+    private static final long MAX_SITEMAP_SIZE = 50L * 1024 * 1024;
+
+    /**
+     * Глубина вложенности индексов карт сайта, дальше которой ссылки не загружаются.
+     */
+    private static final int MAX_DEPTH = 3;
+
+    private final PageFetcher pageFetcher;
+    private final XMLInputFactory xmlInputFactory;
+
+    public SitemapParser(PageFetcher pageFetcher) {
+        this.pageFetcher = pageFetcher;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    }
+
+    /**
+     * Метод, загружающий карту сайта (или индекс карт) и передающий обработчику все найденные адреса.
+     * Ошибки загрузки отдельных карт не прерывают обход остальных.
+     * @param sitemapUrl - адрес карты сайта.
+     * @param consumer - обработчик адресов.
+     */
+    public void parse(String sitemapUrl, Consumer<SitemapEntry> consumer) {
+        parse(sitemapUrl, new CancellationToken(), consumer);
+    }
+
+    /**
+     * Метод, загружающий карту сайта с возможностью прервать разбор при отмене индексации.
+     * @param sitemapUrl - адрес карты сайта.
+     * @param token - признак отмены.
+     * @param consumer - обработчик адресов.
+     */
+    public void parse(String sitemapUrl, CancellationToken token, Consumer<SitemapEntry> consumer) {
+        parse(sitemapUrl, token, consumer, 0);
+    }
+
+    private void parse(String sitemapUrl, CancellationToken token, Consumer<SitemapEntry> consumer, int depth) {
+        List<String> nestedSitemaps = new ArrayList<>();
+        Consumer<SitemapEntry> cancellableConsumer = entry -> {
+            if (!token.isCancelled()) {
+                consumer.accept(entry);
+            }
+        };
+        try {
+            pageFetcher.fetchBody(sitemapUrl, MAX_SITEMAP_SIZE, body -> {
+                read(body, cancellableConsumer, nestedSitemaps);
+                return null;
+            }, token);
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+        }
+        if (depth < MAX_DEPTH) {
+            for (String nestedSitemap : nestedSitemaps) {
+                if (token.isCancelled()) {
+                    return;
+                }
+                parse(nestedSitemap, token, consumer, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Метод, читающий карту сайта из потока.
+     * @param body - поток с содержимым карты (xml или xml в gzip).
+     * @param consumer - обработчик адресов из элементов url.
+     * @param nestedSitemaps - список, в который добавляются адреса из элементов sitemap (индекс карт).
+     * @throws IOException - при ошибке чтения или разбора.
+     */
+    public void read(InputStream body, Consumer<SitemapEntry> consumer, List<String> nestedSitemaps) throws IOException {
+        InputStream in = unwrapGzip(body);
+        try {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                String loc = null;
+                Instant lastModified = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        switch (reader.getLocalName()) {
+                            case "url", "sitemap" -> {
+                                loc = null;
+                                lastModified = null;
+                            }
+                            case "loc" -> loc = reader.getElementText().trim();
+                            case "lastmod" -> lastModified = parseLastModified(reader.getElementText().trim());
+                            default -> {
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && loc != null && !loc.isEmpty()) {
+                        String name = reader.getLocalName();
+                        if (name.equals("url")) {
+                            consumer.accept(new SitemapEntry(loc, lastModified));
+                            loc = null;
+                        } else if (name.equals("sitemap")) {
+                            nestedSitemaps.add(loc);
+                            loc = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Метод, распаковывающий поток, если он сжат gzip (определяется по сигнатуре, а не по расширению).
+     * @param body - исходный поток.
+     * @return - поток с xml.
+     * @throws IOException - при ошибке чтения.
+     */
+    private static InputStream unwrapGzip(InputStream body) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(body);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Метод, разбирающий дату lastmod в формате W3C Datetime (дата, либо дата и время с часовым поясом).
+     * @param value - значение lastmod.
+     * @return - момент времени, либо null, если формат не распознан.
+     */
+    private static Instant parseLastModified(String value) {
+        try {
+            if (value.length() <= 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package searchengine.util;
+
+import searchengine.dto.result.SnapshotInfo;
+import searchengine.model.Status;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.entity.Site;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Чтение снимка индекса, записанного SnapshotWriter. Записи передаются обработчику по мере чтения,
+ * поэтому снимок любого размера читается потоком; контрольная сумма проверяется после последней секции.
+ */
+public class SnapshotReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Inflater inflater = new Inflater();
+    private final InputStream body;
+    private final CRC32C checksum = new CRC32C();
+    private final DataInputStream in;
+    private final SnapshotInfo info = new SnapshotInfo();
+
+    /**
+     * Метод, открывающий снимок и читающий его заголовок.
+     * @param file - файл снимка.
+     * @throws IOException - если файл не является снимком или записан более новой версией формата.
+     */
+    public SnapshotReader(Path file) throws IOException {
+        InputStream raw = Files.newInputStream(file);
+        try {
+            DataInputStream rawIn = new DataInputStream(raw);
+            if (rawIn.readInt() != SnapshotWriter.MAGIC) {
+                throw new IOException("Not an index snapshot: " + file);
+            }
+            int version = rawIn.readInt();
+            if (version < 1 || version > SnapshotWriter.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            body = new BufferedInputStream(new InflaterInputStream(raw, inflater, BUFFER_SIZE), BUFFER_SIZE);
+            in = new DataInputStream(new CheckedInputStream(body, checksum));
+            info.setVersion(version);
+            info.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC));
+            info.setContent(in.readBoolean());
+            info.setNextId(in.readLong());
+            info.setSites(in.readInt());
+            info.setPages(in.readLong());
+            info.setMaxPageId(in.readInt());
+            info.setLemmas(in.readLong());
+            info.setBytes(Files.size(file));
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            inflater.end();
+            throw e;
+        }
+    }
+
+    /**
+     * Метод, возвращающий сведения из заголовка снимка (число записей индекса известно после чтения).
+     * @return - сведения о снимке.
+     */
+    public SnapshotInfo getInfo() {
+        return info;
+    }
+
+    /**
+     * Метод, читающий все секции снимка и проверяющий контрольную сумму.
+     * @param visitor - обработчик записей.
+     * @throws IOException - если снимок обрезан или поврежден.
+     */
+    public void read(Visitor visitor) throws IOException {
+        int previous = SnapshotWriter.END;
+        long postings = 0;
+        try {
+            for (int section = in.readUnsignedByte(); section != SnapshotWriter.END; section = in.readUnsignedByte()) {
+                if (section <= previous || section > SnapshotWriter.POSTINGS) {
+                    throw new IOException("Unexpected snapshot section " + section);
+                }
+                previous = section;
+                for (int id = readVarInt(); id != 0; id = readVarInt()) {
+                    switch (section) {
+                        case SnapshotWriter.SITES -> visitor.site(readSite(id));
+                        case SnapshotWriter.PAGES -> visitor.page(readPage(id));
+                        case SnapshotWriter.LEMMAS -> visitor.lemma(readLemma(id));
+                        default -> postings += readPostings(id, visitor);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Index snapshot is truncated", e);
+        }
+        long expected = checksum.getValue();
+        long actual = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            int next = body.read();
+            if (next < 0) {
+                throw new IOException("Index snapshot is truncated");
+            }
+            actual = actual << Byte.SIZE | next;
+        }
+        if (actual != expected) {
+            throw new IOException("Index snapshot checksum mismatch");
+        }
+        info.setPostings(postings);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Site readSite(int id) throws IOException {
+        Site site = new Site();
+        site.setId(id);
+        int status = in.readUnsignedByte();
+        if (status >= Status.values().length) {
+            throw new IOException("Unknown site status " + status);
+        }
+        site.setStatus(Status.values()[status]);
+        site.setStatusTime(readTime());
+        site.setLastError(readString());
+        site.setUrl(readString());
+        site.setName(readString());
+        return site;
+    }
+
+    private Page readPage(int id) throws IOException {
+        Page page = new Page();
+        page.setId(id);
+        page.setSite(getSiteReference(readVarInt()));
+        page.setPath(readString());
+        page.setCode(readVarInt());
+        page.setIndexedAt(readTime());
+        page.setSimhash(in.readBoolean() ? in.readLong() : null);
+        int duplicateOf = readVarInt();
+        page.setDuplicateOf(duplicateOf == 0 ? null : duplicateOf - 1);
+        page.setContent(info.isContent() ? readString() : "");
+        return page;
+    }
+
+    private Lemma readLemma(int id) throws IOException {
+        Lemma lemma = new Lemma();
+        lemma.setId(id);
+        lemma.setSite(getSiteReference(readVarInt()));
+        lemma.setLemma(readString());
+        lemma.setFrequency(readVarInt());
+        return lemma;
+    }
+
+    private int readPostings(int pageId, Visitor visitor) throws IOException {
+        int siteId = readVarInt();
+        int count = readVarInt();
+        if (count < 0) {
+            throw new IOException("Index snapshot is corrupted");
+        }
+        int[] lemmaIds = new int[count];
+        float[] ranks = new float[count];
+        int lemmaId = 0;
+        for (int i = 0; i < count; i++) {
+            lemmaId += readVarInt();
+            lemmaIds[i] = lemmaId;
+            ranks[i] = in.readFloat();
+        }
+        visitor.postings(pageId, siteId, lemmaIds, ranks, count);
+        return count;
+    }
+
+    /**
+     * Метод, возвращающий сайт, у которого задан только id (id записан со сдвигом на 1, 0 - сайта нет).
+     */
+    private static Site getSiteReference(int shiftedId) {
+        if (shiftedId == 0) {
+            return null;
+        }
+        Site site = new Site();
+        site.setId(shiftedId - 1);
+        return site;
+    }
+
+    private LocalDateTime readTime() throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC) : null;
+    }
+
+    private String readString() throws IOException {
+        int length = readVarInt();
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Index snapshot is corrupted");
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = in.readByte();
+            result |= (next & 0x7F) << shift;
+            if (next >= 0) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Обработчик записей снимка.
+     */
+    public interface Visitor {
+
+        default void site(Site site) throws IOException {
+        }
+
+        default void page(Page page) throws IOException {
+        }
+
+        default void lemma(Lemma lemma) throws IOException {
+        }
+
+        /**
+         * Метод, получающий индекс страницы.
+         * @param pageId - id страницы.
+         * @param siteId - id сайта страницы, либо 0.
+         * @param lemmaIds - id лемм страницы по возрастанию.
+         * @param ranks - ранги лемм.
+         * @param count - число лемм.
+         */
+        default void postings(int pageId, int siteId, int[] lemmaIds, float[] ranks, int count) throws IOException {
+        }
+    }
+}
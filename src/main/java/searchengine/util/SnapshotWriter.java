@@ -0,0 +1,214 @@
+package searchengine.util;
+
+import searchengine.dto.result.SnapshotInfo;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.entity.Site;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Запись снимка индекса. Формат файла:
+ * <ul>
+ *     <li>MAGIC и VERSION (без сжатия), далее все данные сжаты (deflate);</li>
+ *     <li>заголовок: время создания, признак html-кода страниц, следующее значение hibernate_sequence,
+ *     число сайтов, страниц, наибольший id страницы и число лемм;</li>
+ *     <li>секции сайтов, страниц, лемм и индекса в этом порядке: номер секции, затем записи,
+ *     каждая из которых начинается с id (varint), и 0 в конце секции;</li>
+ *     <li>END и контрольная сумма CRC32C всех данных после VERSION.</li>
+ * </ul>
+ * Целые числа записываются в varint, строки - длиной (varint, 0 для null) и байтами UTF-8,
+ * леммы страницы в секции индекса - по возрастанию id разностями с предыдущим id.
+ * Секции пишутся по порядку: запись первой строки следующей секции завершает предыдущую.
+ */
+public class SnapshotWriter implements Closeable {
+
+    public static final int MAGIC = 0x53454E58;
+    public static final int VERSION = 1;
+
+    static final int END = 0;
+    static final int SITES = 1;
+    static final int PAGES = 2;
+    static final int LEMMAS = 3;
+    static final int POSTINGS = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final OutputStream body;
+    private final CRC32C checksum = new CRC32C();
+    private final DataOutputStream out;
+    private final SnapshotInfo info;
+    private int section = END;
+
+    /**
+     * Метод, создающий файл снимка и записывающий его заголовок.
+     * @param file - файл снимка.
+     * @param info - сведения для заголовка; число записей индекса в нем обновляется при записи.
+     */
+    public SnapshotWriter(Path file, SnapshotInfo info) throws IOException {
+        this.info = info;
+        OutputStream raw = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        DataOutputStream rawOut = new DataOutputStream(raw);
+        rawOut.writeInt(MAGIC);
+        rawOut.writeInt(VERSION);
+        body = new BufferedOutputStream(new DeflaterOutputStream(raw, deflater, BUFFER_SIZE), BUFFER_SIZE);
+        out = new DataOutputStream(new CheckedOutputStream(body, checksum));
+        out.writeLong(info.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+        out.writeBoolean(info.isContent());
+        out.writeLong(info.getNextId());
+        out.writeInt(info.getSites());
+        out.writeLong(info.getPages());
+        out.writeInt(info.getMaxPageId());
+        out.writeLong(info.getLemmas());
+        info.setVersion(VERSION);
+        info.setPostings(0);
+    }
+
+    public void writeSite(Site site) throws IOException {
+        beginSection(SITES);
+        writeVarInt(site.getId());
+        out.writeByte(site.getStatus().ordinal());
+        writeTime(site.getStatusTime());
+        writeString(site.getLastError());
+        writeString(site.getUrl());
+        writeString(site.getName());
+    }
+
+    /**
+     * Метод, записывающий страницу; html-код записывается, только если он включен в заголовке снимка.
+     * @param page - страница.
+     */
+    public void writePage(Page page) throws IOException {
+        beginSection(PAGES);
+        writeVarInt(page.getId());
+        writeVarInt(page.getSite() == null ? 0 : page.getSite().getId() + 1);
+        writeString(page.getPath());
+        writeVarInt(page.getCode());
+        writeTime(page.getIndexedAt());
+        out.writeBoolean(page.getSimhash() != null);
+        if (page.getSimhash() != null) {
+            out.writeLong(page.getSimhash());
+        }
+        writeVarInt(page.getDuplicateOf() == null ? 0 : page.getDuplicateOf() + 1);
+        if (info.isContent()) {
+            writeString(page.getContent());
+        }
+    }
+
+    public void writeLemma(Lemma lemma) throws IOException {
+        beginSection(LEMMAS);
+        writeVarInt(lemma.getId());
+        writeVarInt(lemma.getSite() == null ? 0 : lemma.getSite().getId() + 1);
+        writeString(lemma.getLemma());
+        writeVarInt(lemma.getFrequency());
+    }
+
+    /**
+     * Метод, записывающий индекс страницы.
+     * @param pageId - id страницы.
+     * @param siteId - id сайта страницы, либо 0, если он неизвестен.
+     * @param lemmaIds - id лемм страницы.
+     * @param ranks - ранги лемм.
+     * @param count - число лемм.
+     */
+    public void writePostings(int pageId, int siteId, int[] lemmaIds, float[] ranks, int count) throws IOException {
+        beginSection(POSTINGS);
+        long[] entries = new long[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = (long) lemmaIds[i] << 32 | Float.floatToRawIntBits(ranks[i]) & 0xFFFFFFFFL;
+        }
+        Arrays.sort(entries);
+        writeVarInt(pageId);
+        writeVarInt(siteId);
+        writeVarInt(count);
+        int previous = 0;
+        for (long entry : entries) {
+            int lemmaId = (int) (entry >>> 32);
+            writeVarInt(lemmaId - previous);
+            out.writeFloat(Float.intBitsToFloat((int) entry));
+            previous = lemmaId;
+        }
+        info.setPostings(info.getPostings() + count);
+    }
+
+    /**
+     * Метод, завершающий снимок: после последней секции записываются END и контрольная сумма.
+     */
+    public void finish() throws IOException {
+        endSection();
+        out.writeByte(END);
+        out.flush();
+        long value = checksum.getValue();
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            body.write((int) (value >>> shift));
+        }
+        close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void beginSection(int next) throws IOException {
+        if (section == next) {
+            return;
+        }
+        if (next < section) {
+            throw new IllegalStateException("Snapshot section " + next + " after " + section);
+        }
+        endSection();
+        out.writeByte(next);
+        section = next;
+    }
+
+    private void endSection() throws IOException {
+        if (section != END) {
+            writeVarInt(0);
+        }
+    }
+
+    private void writeTime(LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
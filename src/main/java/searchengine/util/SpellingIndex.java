@@ -0,0 +1,101 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Индекс исправления опечаток в поисковых запросах: отдельные словари SymSpell для русских и английских лемм.
+ * Словари строятся заранее (вместе с общим словарем автодополнения, см. SuggestIndex) и заменяются целиком,
+ * поэтому исправление запроса не обращается к БД и не перебирает словарь.
+ */
+@Component
+public class SpellingIndex {
+
+    private final Lemmatisator lemmatisator;
+    private final SearchSettings searchSettings;
+
+    private volatile SymSpellDictionary russian = SymSpellDictionary.empty();
+    private volatile SymSpellDictionary english = SymSpellDictionary.empty();
+
+    public SpellingIndex(Lemmatisator lemmatisator, SearchSettings searchSettings, MeterRegistry meterRegistry) {
+        this.lemmatisator = lemmatisator;
+        this.searchSettings = searchSettings;
+        meterRegistry.gauge("searchengine.spelling.entries", this, SpellingIndex::getEntries);
+        meterRegistry.gauge("searchengine.spelling.memory", this, SpellingIndex::getMemoryBytes);
+    }
+
+    /**
+     * Метод, строящий словари по леммам.
+     * @param lemmas - леммы и их частоты.
+     */
+    public void build(Map<String, Integer> lemmas) {
+        Map<String, Integer> russianLemmas = new HashMap<>();
+        Map<String, Integer> englishLemmas = new HashMap<>();
+        lemmas.forEach((lemma, frequency) -> {
+            if (lemmatisator.isRussianWord(lemma)) {
+                russianLemmas.put(lemma, frequency);
+            } else if (isEnglishWord(lemma)) {
+                englishLemmas.put(lemma, frequency);
+            }
+        });
+        int maxEntries = searchSettings.getSpellingMaxEntries();
+        int maxEditDistance = searchSettings.getSpellingMaxEditDistance();
+        russian = SymSpellDictionary.build(russianLemmas, maxEntries, maxEditDistance);
+        english = SymSpellDictionary.build(englishLemmas, maxEntries, maxEditDistance);
+    }
+
+    /**
+     * Метод, исправляющий опечатки в запросе. Слово считается написанным верно, если в словаре есть
+     * его лемма; иначе оно заменяется ближайшей леммой словаря.
+     * @param query - поисковый запрос.
+     * @return - исправленный запрос, либо null, если исправлять нечего.
+     */
+    public String correct(String query) {
+        String[] words = query.toLowerCase().trim().split("\\s+");
+        boolean corrected = false;
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            SymSpellDictionary dictionary;
+            if (lemmatisator.isRussianWord(word)) {
+                dictionary = russian;
+            } else if (isEnglishWord(word)) {
+                dictionary = english;
+            } else {
+                continue;
+            }
+            if (dictionary.contains(word) || dictionary.contains(getLemma(word))) {
+                continue;
+            }
+            String correction = dictionary.lookup(word);
+            if (correction != null) {
+                words[i] = correction;
+                corrected = true;
+            }
+        }
+        return corrected ? String.join(" ", words) : null;
+    }
+
+    public int getEntries() {
+        return russian.size() + english.size();
+    }
+
+    public long getMemoryBytes() {
+        return russian.getMemoryBytes() + english.getMemoryBytes();
+    }
+
+    private String getLemma(String word) {
+        try {
+            return lemmatisator.getLemma(word);
+        } catch (RuntimeException e) {
+            return word;
+        }
+    }
+
+    private static boolean isEnglishWord(String word) {
+        return !word.isEmpty() && word.chars().allMatch(c -> c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,180 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.model.entity.Site;
+import searchengine.model.repository.LemmaRepository;
+import searchengine.model.repository.PostingRepository;
+import searchengine.model.repository.SiteRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Индекс автодополнения поисковых запросов по словарю лемм.
+ * Для всех сайтов вместе и для каждого сайта отдельно строится PrefixDictionary (веса - число страниц с леммой).
+ * Словари строятся в фоновом потоке при запуске приложения и после индексации сайта и заменяются целиком,
+ * поэтому запросы автодополнения не обращаются к БД и не ждут перестроения.
+ * Размер каждого словаря ограничен suggest-max-entries самыми частыми леммами.
+ * По тем же леммам вместе с общим словарем перестраивается индекс исправления опечаток.
+ */
+@Component
+public class SuggestIndex {
+
+    private final LemmaRepository lemmaRepository;
+    private final PostingRepository postingRepository;
+    private final SiteRepository siteRepository;
+    private final SearchSettings searchSettings;
+    private final SpellingIndex spellingIndex;
+
+    private volatile PrefixDictionary global = PrefixDictionary.empty();
+    private final Map<Integer, PrefixDictionary> sites = new ConcurrentHashMap<>();
+    /**
+     * Сайты, перестроение словарей которых уже поставлено в очередь.
+     */
+    private final Set<Integer> pendingSites = ConcurrentHashMap.newKeySet();
+    /**
+     * Признак того, что словари при запуске уже построены по снимку индекса.
+     */
+    private volatile boolean loadedFromSnapshot;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suggest-index-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SuggestIndex(LemmaRepository lemmaRepository, PostingRepository postingRepository,
+                        SiteRepository siteRepository, SearchSettings searchSettings, SpellingIndex spellingIndex,
+                        MeterRegistry meterRegistry) {
+        this.lemmaRepository = lemmaRepository;
+        this.postingRepository = postingRepository;
+        this.siteRepository = siteRepository;
+        this.searchSettings = searchSettings;
+        this.spellingIndex = spellingIndex;
+        meterRegistry.gauge("searchengine.suggest.entries", this, SuggestIndex::getEntries);
+        meterRegistry.gauge("searchengine.suggest.memory", this, SuggestIndex::getMemoryBytes);
+    }
+
+    /**
+     * Метод, возвращающий варианты дополнения запроса: последнее слово запроса дополняется
+     * до самых частых лемм, остальные слова сохраняются.
+     * @param query - введенная часть запроса.
+     * @param siteId - id сайта, либо null для всех сайтов.
+     * @param limit - максимальное число вариантов.
+     * @return - варианты запроса в порядке убывания частоты.
+     */
+    public List<String> suggest(String query, Integer siteId, int limit) {
+        String normalized = query.toLowerCase().stripLeading();
+        int lastSpace = normalized.lastIndexOf(' ');
+        String head = normalized.substring(0, lastSpace + 1);
+        String prefix = normalized.substring(lastSpace + 1);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        PrefixDictionary dictionary = siteId == null ? global : sites.getOrDefault(siteId, PrefixDictionary.empty());
+        List<String> completions = dictionary.complete(prefix, limit);
+        if (!head.isEmpty()) {
+            completions.replaceAll(completion -> head + completion);
+        }
+        return completions;
+    }
+
+    /**
+     * Метод, перестраивающий все словари при запуске приложения (если они не построены по снимку индекса).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        if (loadedFromSnapshot) {
+            return;
+        }
+        for (Site site : siteRepository.findAll()) {
+            rebuild(site.getId());
+        }
+    }
+
+    /**
+     * Метод, ставящий в очередь перестроение словаря сайта и общего словаря (после индексации сайта или страницы).
+     * Повторные вызовы до начала перестроения объединяются.
+     * @param siteId - id сайта.
+     */
+    public void rebuild(Integer siteId) {
+        if (siteId == null || !pendingSites.add(siteId)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            pendingSites.remove(siteId);
+            try {
+                sites.put(siteId, PrefixDictionary.build(
+                        postingRepository.countLemmasBySiteId(siteId), searchSettings.getSuggestMaxEntries()));
+                Map<String, Integer> lemmas = toWeights(lemmaRepository.findAllFrequencies());
+                global = PrefixDictionary.build(lemmas, searchSettings.getSuggestMaxEntries());
+                spellingIndex.build(lemmas);
+            } catch (RuntimeException e) {
+                System.out.println(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Метод, заменяющий все словари словарями, построенными по снимку индекса (без запросов к БД).
+     * @param siteLemmas - леммы каждого сайта с числом страниц сайта, на которых они встречаются.
+     * @param lemmas - все леммы и их частоты.
+     */
+    public void load(Map<Integer, Map<String, Integer>> siteLemmas, Map<String, Integer> lemmas) {
+        Map<Integer, PrefixDictionary> dictionaries = new HashMap<>();
+        siteLemmas.forEach((siteId, weights) -> dictionaries.put(siteId,
+                PrefixDictionary.build(weights, searchSettings.getSuggestMaxEntries())));
+        sites.keySet().retainAll(dictionaries.keySet());
+        sites.putAll(dictionaries);
+        global = PrefixDictionary.build(lemmas, searchSettings.getSuggestMaxEntries());
+        spellingIndex.build(lemmas);
+        loadedFromSnapshot = true;
+    }
+
+    /**
+     * Метод, удаляющий словарь сайта (например, при удалении данных сайта).
+     * @param siteId - id сайта.
+     */
+    public void remove(Integer siteId) {
+        sites.remove(siteId);
+    }
+
+    public int getEntries() {
+        int entries = global.size();
+        for (PrefixDictionary dictionary : sites.values()) {
+            entries += dictionary.size();
+        }
+        return entries;
+    }
+
+    public long getMemoryBytes() {
+        long bytes = global.getMemoryBytes();
+        for (PrefixDictionary dictionary : sites.values()) {
+            bytes += dictionary.getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    private static Map<String, Integer> toWeights(List<Object[]> rows) {
+        Map<String, Integer> weights = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            weights.merge((String) row[0], ((Number) row[1]).intValue(), Integer::sum);
+        }
+        return weights;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
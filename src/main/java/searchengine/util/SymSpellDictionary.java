@@ -0,0 +1,244 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Неизменяемый словарь для исправления опечаток по алгоритму symmetric delete (SymSpell).
+ * При построении для начала каждого слова (первые PREFIX_LENGTH символов) вычисляются все варианты
+ * с удалением до maxEditDistance символов. Варианты хранятся не строками, а парами (хеш варианта, номер слова)
+ * в одном отсортированном массиве long, поэтому словарь компактен. При поиске те же удаления вычисляются
+ * для введенного слова, кандидаты находятся двоичным поиском по хешам, а расстояние Дамерау-Левенштейна
+ * считается только для них (это же отсеивает совпадения хешей).
+ */
+public final class SymSpellDictionary {
+
+    /**
+     * Длина начала слова, по которому строятся удаления (ограничивает размер словаря для длинных слов).
+     */
+    private static final int PREFIX_LENGTH = 7;
+
+    private static final SymSpellDictionary EMPTY = new SymSpellDictionary(new char[0], new int[]{0}, new int[0],
+            new long[0], 0);
+
+    private final char[] chars;
+    private final int[] offsets;
+    private final int[] weights;
+    /**
+     * Пары (хеш удаления << 32 | номер слова), отсортированные по возрастанию.
+     */
+    private final long[] deletes;
+    private final int maxEditDistance;
+
+    private SymSpellDictionary(char[] chars, int[] offsets, int[] weights, long[] deletes, int maxEditDistance) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.weights = weights;
+        this.deletes = deletes;
+        this.maxEditDistance = maxEditDistance;
+    }
+
+    public static SymSpellDictionary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Метод, строящий словарь. Если слов больше maxEntries, в словарь попадают самые частые.
+     * @param words - слова и их веса (частоты).
+     * @param maxEntries - максимальное число слов.
+     * @param maxEditDistance - максимальное исправляемое расстояние.
+     * @return - словарь.
+     */
+    public static SymSpellDictionary build(Map<String, Integer> words, int maxEntries, int maxEditDistance) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(words.entrySet());
+        if (entries.size() > maxEntries) {
+            entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+            entries = new ArrayList<>(entries.subList(0, Math.max(0, maxEntries)));
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : entries) {
+            length += entry.getKey().length();
+        }
+        char[] chars = new char[length];
+        int[] offsets = new int[entries.size() + 1];
+        int[] weights = new int[entries.size()];
+        long[] deletes = new long[entries.size() * 8];
+        int deletesCount = 0;
+        int position = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            String word = entries.get(i).getKey();
+            word.getChars(0, word.length(), chars, position);
+            offsets[i] = position;
+            weights[i] = entries.get(i).getValue();
+            position += word.length();
+            for (String delete : getDeletes(getPrefix(word), maxEditDistance)) {
+                if (deletesCount == deletes.length) {
+                    deletes = Arrays.copyOf(deletes, deletes.length * 2);
+                }
+                deletes[deletesCount++] = toEntry(delete.hashCode(), i);
+            }
+        }
+        offsets[entries.size()] = position;
+        deletes = Arrays.copyOf(deletes, deletesCount);
+        Arrays.parallelSort(deletes);
+        return new SymSpellDictionary(chars, offsets, weights, deletes, maxEditDistance);
+    }
+
+    /**
+     * Метод, проверяющий, есть ли слово в словаре.
+     * @param word - слово.
+     * @return - true, если слово есть в словаре.
+     */
+    public boolean contains(String word) {
+        int low = 0;
+        int high = weights.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = getWord(middle).compareTo(word);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Метод, находящий ближайшее к заданному слово словаря: с наименьшим расстоянием,
+     * а при равном расстоянии - с наибольшим весом.
+     * @param word - слово с возможной опечаткой.
+     * @return - исправленное слово, либо null, если в пределах maxEditDistance слов нет.
+     */
+    public String lookup(String word) {
+        int best = -1;
+        int bestDistance = maxEditDistance + 1;
+        Set<Integer> checked = new HashSet<>();
+        for (String delete : getDeletes(getPrefix(word), maxEditDistance)) {
+            int hash = delete.hashCode();
+            for (int i = lowerBound(toEntry(hash, 0)); i < deletes.length && (int) (deletes[i] >> 32) == hash; i++) {
+                int candidate = (int) deletes[i];
+                if (!checked.add(candidate)) {
+                    continue;
+                }
+                String candidateWord = getWord(candidate);
+                if (Math.abs(candidateWord.length() - word.length()) > Math.min(bestDistance, maxEditDistance)) {
+                    continue;
+                }
+                int distance = getDistance(word, candidateWord, Math.min(bestDistance, maxEditDistance) + 1);
+                if (distance > maxEditDistance) {
+                    continue;
+                }
+                if (distance < bestDistance || distance == bestDistance && weights[candidate] > weights[best]) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best < 0 ? null : getWord(best);
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    /**
+     * Метод, оценивающий объем памяти, занятой словарем.
+     * @return - объем в байтах.
+     */
+    public long getMemoryBytes() {
+        return 2L * chars.length + 4L * (offsets.length + weights.length) + 8L * deletes.length;
+    }
+
+    private String getWord(int index) {
+        return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = deletes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (deletes[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long toEntry(int hash, int index) {
+        return ((long) hash << 32) | index;
+    }
+
+    private static String getPrefix(String word) {
+        return word.length() > PREFIX_LENGTH ? word.substring(0, PREFIX_LENGTH) : word;
+    }
+
+    /**
+     * Метод, возвращающий слово и все варианты с удалением от одного до maxEditDistance символов.
+     */
+    private static Set<String> getDeletes(String word, int maxEditDistance) {
+        Set<String> result = new HashSet<>();
+        result.add(word);
+        List<String> current = List.of(word);
+        for (int distance = 1; distance <= maxEditDistance; distance++) {
+            List<String> next = new ArrayList<>();
+            for (String value : current) {
+                for (int i = 0; i < value.length() && value.length() > 1; i++) {
+                    String delete = value.substring(0, i) + value.substring(i + 1);
+                    if (result.add(delete)) {
+                        next.add(delete);
+                    }
+                }
+            }
+            current = next;
+        }
+        return result;
+    }
+
+    /**
+     * Метод, вычисляющий расстояние Дамерау-Левенштейна (с перестановкой соседних символов).
+     * @param first - первое слово.
+     * @param second - второе слово.
+     * @param limit - расстояние, дальше которого считать не нужно.
+     * @return - расстояние, либо limit, если оно не меньше limit.
+     */
+    static int getDistance(String first, String second, int limit) {
+        int[] previousPrevious = new int[second.length() + 1];
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= second.length(); j++) {
+                int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && first.charAt(i - 1) == second.charAt(j - 2)
+                        && first.charAt(i - 2) == second.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], previousPrevious[j - 2] + 1);
+                }
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum >= limit) {
+                return limit;
+            }
+            int[] swap = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[second.length()], limit);
+    }
+}
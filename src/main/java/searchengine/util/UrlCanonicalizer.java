@@ -0,0 +1,157 @@
+package searchengine.util;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Приведение адресов страниц к каноническому виду, чтобы одна и та же страница
+ * не загружалась и не сохранялась несколько раз под разными адресами.
+ */
+public final class UrlCanonicalizer {
+
+    /**
+     * Параметры запроса, которые используются только для аналитики и не меняют содержимое страницы.
+     */
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "_ga", "_gl", "gclid", "fbclid", "yclid", "ysclid", "_openstat", "mc_cid", "mc_eid");
+
+    private static final String ILLEGAL_CHARACTERS = " \"<>\\^`{|}";
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Метод, приводящий адрес к каноническому виду:
+     * схема и хост в нижнем регистре, без порта по умолчанию, без фрагмента,
+     * с раскрытыми "." и ".." в пути, без завершающего "/" (кроме корня),
+     * без параметров отслеживания (utm_* и т.п.) и с отсортированными параметрами запроса.
+     * @param url - исходный адрес.
+     * @return - канонический адрес, либо null, если это не http(s)-адрес.
+     */
+    public static String canonicalize(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = URI.create(encodeIllegalCharacters(url.trim())).normalize();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost();
+        if (host == null || !("http".equals(scheme) || "https".equals(scheme))) {
+            return null;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+
+        StringBuilder builder = new StringBuilder(url.length());
+        builder.append(scheme).append("://").append(host);
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            builder.append(':').append(port);
+        }
+        builder.append(normalizePath(uri.getRawPath()));
+        String query = normalizeQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            builder.append('?').append(query);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Метод, возвращающий путь страницы от корня сайта (вместе с параметрами запроса).
+     * @param canonicalUrl - канонический адрес страницы.
+     * @return - путь, начинающийся с "/".
+     */
+    public static String getPath(String canonicalUrl) {
+        int schemeEnd = canonicalUrl.indexOf("://");
+        int pathStart = canonicalUrl.indexOf('/', schemeEnd + 3);
+        return pathStart < 0 ? "/" : canonicalUrl.substring(pathStart);
+    }
+
+    private static String normalizePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        String path = rawPath;
+        while (path.startsWith("/..")) {
+            path = path.substring(3);
+        }
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            path = "/" + path;
+        }
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return uppercasePercentEncoding(path);
+    }
+
+    private static String normalizeQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equalsIndex = parameter.indexOf('=');
+            String name = (equalsIndex < 0 ? parameter : parameter.substring(0, equalsIndex)).toLowerCase(Locale.ROOT);
+            if (name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name)) {
+                continue;
+            }
+            parameters.add(uppercasePercentEncoding(parameter));
+        }
+        parameters.sort(null);
+        return String.join("&", parameters);
+    }
+
+    private static String uppercasePercentEncoding(String value) {
+        int index = value.indexOf('%');
+        if (index < 0) {
+            return value;
+        }
+        char[] chars = value.toCharArray();
+        for (; index >= 0 && index + 2 < chars.length; index = value.indexOf('%', index + 1)) {
+            chars[index + 1] = Character.toUpperCase(chars[index + 1]);
+            chars[index + 2] = Character.toUpperCase(chars[index + 2]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Метод, кодирующий символы, недопустимые в URI (кириллица, пробелы и т.п.), не трогая уже закодированные.
+     * @param url - исходный адрес.
+     * @return - адрес, пригодный для разбора URI.
+     */
+    private static String encodeIllegalCharacters(String url) {
+        StringBuilder builder = null;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c < 0x80 && c > 0x20 && ILLEGAL_CHARACTERS.indexOf(c) < 0) {
+                if (builder != null) {
+                    builder.append(c);
+                }
+                continue;
+            }
+            if (builder == null) {
+                builder = new StringBuilder(url.length() + 16).append(url, 0, i);
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < url.length() ? i + 2 : i + 1;
+            for (byte b : url.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                builder.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+            i = end - 1;
+        }
+        return builder == null ? url : builder.toString();
+    }
+}
@@ -0,0 +1,51 @@
+-- Индексы для горячих запросов поиска и индексации.
+-- Миграция идемпотентна: каждый индекс создается только если его еще нет,
+-- поэтому при изменении файла Flyway может безопасно выполнить ее повторно.
+
+-- lemma -> lemma: поиск леммы по строке (findByLemma) с фильтром по сайту.
+SET @ddl := IF((SELECT COUNT(*) FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'lemma'
+                  AND index_name = 'idx_lemma_lemma_site') = 0,
+               'CREATE INDEX idx_lemma_lemma_site ON lemma (lemma, site_id)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- lemma -> pages: покрывающий индекс для findByLemma (страницы, содержащие лемму, и ранг).
+SET @ddl := IF((SELECT COUNT(*) FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'searching_index'
+                  AND index_name = 'idx_searching_index_lemma_page') = 0,
+               'CREATE INDEX idx_searching_index_lemma_page ON searching_index (lemma_id, page_id, lemmas_count)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- page -> lemmas: покрывающий индекс для findByPage (релевантность и переиндексация страницы).
+SET @ddl := IF((SELECT COUNT(*) FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'searching_index'
+                  AND index_name = 'idx_searching_index_page_lemma') = 0,
+               'CREATE INDEX idx_searching_index_page_lemma ON searching_index (page_id, lemma_id, lemmas_count)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Уникальность адреса страницы в рамках сайта.
+SET @ddl := IF((SELECT COUNT(*) FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'page'
+                  AND index_name = 'idx_page_site_path_hash') = 0,
+               'CREATE UNIQUE INDEX idx_page_site_path_hash ON page (site_id, path_hash)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Ограничение уникальности, которое Hibernate создавал для @OneToOne на searching_index.page_id:
+-- оно допускало только одну строку индекса на страницу. Удаляется после создания индекса выше,
+-- чтобы у внешнего ключа оставался подходящий индекс.
+SET @uk := (SELECT index_name FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'searching_index'
+              AND column_name = 'page_id' AND seq_in_index = 1 AND non_unique = 0
+            LIMIT 1);
+SET @ddl := IF(@uk IS NULL, 'DO 0', CONCAT('ALTER TABLE searching_index DROP INDEX `', @uk, '`'));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,48 @@
+-- Базовая схема, соответствующая таблицам, которые ранее создавал Hibernate (ddl-auto: update).
+-- На существующей базе выполняется без изменений благодаря IF NOT EXISTS.
+
+CREATE TABLE IF NOT EXISTS hibernate_sequence (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO hibernate_sequence (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM hibernate_sequence);
+
+CREATE TABLE IF NOT EXISTS site (
+    id          INT          NOT NULL,
+    status      ENUM('INDEXING', 'INDEXED', 'FAILED') NOT NULL,
+    status_time DATETIME     NOT NULL,
+    last_error  TEXT,
+    url         VARCHAR(255) NOT NULL,
+    name        VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS page (
+    id      INT        NOT NULL,
+    site_id INT,
+    path    TEXT       NOT NULL,
+    code    INT        NOT NULL,
+    content MEDIUMTEXT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_page_site FOREIGN KEY (site_id) REFERENCES site (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS lemma (
+    id        INT          NOT NULL,
+    site_id   INT,
+    lemma     VARCHAR(255) NOT NULL,
+    frequency INT          NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_lemma_site FOREIGN KEY (site_id) REFERENCES site (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS searching_index (
+    id           INT   NOT NULL,
+    page_id      INT,
+    lemma_id     INT,
+    lemmas_count FLOAT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_searching_index_page FOREIGN KEY (page_id) REFERENCES page (id),
+    CONSTRAINT fk_searching_index_lemma FOREIGN KEY (lemma_id) REFERENCES lemma (id)
+) ENGINE = InnoDB;
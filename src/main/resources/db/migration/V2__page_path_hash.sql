@@ -0,0 +1,19 @@
+-- Хэш адреса страницы: уникальность адреса теперь проверяется в рамках сайта по CHAR(32), а не по TEXT.
+
+ALTER TABLE page ADD COLUMN path_hash CHAR(32) NULL AFTER path;
+
+UPDATE page SET path_hash = MD5(path);
+
+-- Удаление дубликатов страниц одного сайта (вместе с их индексами), чтобы можно было построить уникальный индекс.
+DELETE si FROM searching_index si
+    JOIN page p1 ON si.page_id = p1.id
+    JOIN page p2 ON p1.site_id = p2.site_id AND p1.path_hash = p2.path_hash AND p1.id > p2.id;
+
+DELETE p1 FROM page p1
+    JOIN page p2 ON p1.site_id = p2.site_id AND p1.path_hash = p2.path_hash AND p1.id > p2.id;
+
+ALTER TABLE page MODIFY path_hash CHAR(32) NOT NULL;
+
+DELETE FROM searching_index WHERE page_id IS NULL OR lemma_id IS NULL;
+
+ALTER TABLE searching_index MODIFY page_id INT NOT NULL;
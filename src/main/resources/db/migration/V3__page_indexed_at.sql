@@ -0,0 +1,3 @@
+-- Время индексации страницы: по нему обход пропускает страницы, не изменившиеся с тех пор (lastmod из sitemap.xml).
+
+ALTER TABLE page ADD COLUMN indexed_at DATETIME NULL AFTER content;
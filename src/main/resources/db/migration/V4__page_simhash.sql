@@ -0,0 +1,7 @@
+-- Отпечаток SimHash страницы и ссылка на почти совпадающую страницу сайта, копией которой она сохранена.
+
+ALTER TABLE page ADD COLUMN simhash BIGINT NULL AFTER indexed_at;
+
+ALTER TABLE page ADD COLUMN duplicate_of INT NULL AFTER simhash;
+
+CREATE INDEX idx_page_duplicate_of ON page (duplicate_of);
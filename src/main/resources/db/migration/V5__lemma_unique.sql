@@ -0,0 +1,32 @@
+-- Уникальность леммы в рамках сайта: частоты лемм увеличиваются запросом INSERT ... ON DUPLICATE KEY UPDATE,
+-- поэтому одновременная индексация страниц с одной новой леммой не создает дубликатов.
+
+-- Слияние дубликатов: остается лемма с наименьшим id, ее частота увеличивается на частоты дубликатов,
+-- а индексы дубликатов переносятся на нее.
+CREATE TEMPORARY TABLE lemma_duplicate AS
+SELECT l.id, k.keep_id, l.frequency
+FROM lemma l
+    JOIN (SELECT lemma, site_id, MIN(id) AS keep_id FROM lemma
+          GROUP BY lemma, site_id HAVING COUNT(*) > 1) k
+    ON l.lemma = k.lemma AND l.site_id = k.site_id AND l.id <> k.keep_id;
+
+UPDATE lemma l
+    JOIN (SELECT keep_id, SUM(frequency) AS frequency FROM lemma_duplicate GROUP BY keep_id) d ON d.keep_id = l.id
+SET l.frequency = l.frequency + d.frequency;
+
+UPDATE searching_index si JOIN lemma_duplicate d ON d.id = si.lemma_id SET si.lemma_id = d.keep_id;
+
+DELETE l FROM lemma l JOIN lemma_duplicate d ON d.id = l.id;
+
+DROP TEMPORARY TABLE lemma_duplicate;
+
+-- Неуникальный индекс из R__search_indexes.sql (если он уже создан) заменяется уникальным с тем же именем.
+SET @ddl := IF((SELECT COUNT(*) FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'lemma'
+                  AND index_name = 'idx_lemma_lemma_site') = 0,
+               'DO 0', 'ALTER TABLE lemma DROP INDEX idx_lemma_lemma_site');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+CREATE UNIQUE INDEX idx_lemma_lemma_site ON lemma (lemma, site_id);
@@ -1945,6 +1945,48 @@ var Tabs = function(){
     };
 };
 Tabs().init();
+var Suggest = function(){
+    var $query = $('#query'),
+        $list = $('#query-suggestions'),
+        timer = null,
+        request = null;
+    return {
+        init: function(){
+            $query.on('input', function(){
+                clearTimeout(timer);
+                timer = setTimeout(function(){
+                    var query = $query.val(),
+                        site = $query.closest('form').find('select[name="site"]').val(),
+                        data = {query: query};
+                    if (site) {
+                        data.site = site;
+                    }
+                    if (request) {
+                        request.abort();
+                    }
+                    if (!$.trim(query)) {
+                        $list.empty();
+                        return;
+                    }
+                    request = $.ajax({
+                        url: '/api/suggest',
+                        type: 'get',
+                        data: data,
+                        success: function(result){
+                            $list.empty();
+                            if (result && result.result) {
+                                $.each(result.suggestions, function(i, suggestion){
+                                    $list.append($('<option>').attr('value', suggestion));
+                                });
+                            }
+                        }
+                    });
+                }, 100);
+            });
+        }
+    };
+};
+Suggest().init();
 // setTimeout(function(){
 //     $('body').css('opacity', '1');
 // }, 100);
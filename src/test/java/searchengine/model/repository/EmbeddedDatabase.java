@@ -0,0 +1,45 @@
+package searchengine.model.repository;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Встроенная MariaDB для тестов репозиториев: сервер на свободном порту и пустая база search_engine
+ * в кодировке utf8mb4, как у MySQL 8.
+ * База создается через JDBC (createDatabaseIfNotExist), поэтому консольный клиент mysql не нужен.
+ */
+public class EmbeddedDatabase implements AutoCloseable {
+
+    private final DB db;
+    private final String url;
+
+    public EmbeddedDatabase() throws Exception {
+        DBConfigurationBuilder dbConfig = DBConfigurationBuilder.newBuilder();
+        dbConfig.setPort(0);
+        dbConfig.addArg("--character-set-server=utf8mb4");
+        if ("root".equals(System.getProperty("user.name"))) {
+            dbConfig.addArg("--user=root");
+        }
+        db = DB.newEmbeddedDB(dbConfig.build());
+        db.start();
+        url = "jdbc:mysql://localhost:" + db.getConfiguration().getPort() + "/search_engine"
+                + "?createDatabaseIfNotExist=true&useSSL=false&allowPublicKeyRetrieval=true"
+                + "&rewriteBatchedStatements=true&characterEncoding=UTF-8";
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public DataSource getDataSource() {
+        return new DriverManagerDataSource(url, "root", "");
+    }
+
+    @Override
+    public void close() throws Exception {
+        db.stop();
+    }
+}
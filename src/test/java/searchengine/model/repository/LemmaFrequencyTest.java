@@ -0,0 +1,214 @@
+package searchengine.model.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.Application;
+import searchengine.dto.result.QueryPlanStep;
+import searchengine.services.IndexingServiceImpl;
+import searchengine.util.QueryPlanner;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка уникальности лемм сайта (V5__lemma_unique.sql), атомарного увеличения их частот
+ * и того, что при индексации страницы используются леммы ее сайта, а при поиске - частоты лемм сайта поиска.
+ */
+class LemmaFrequencyTest {
+
+    private static final int THREADS = 8;
+    private static final int PAGES_PER_THREAD = 50;
+
+    private static EmbeddedDatabase db;
+    private static DataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        db = new EmbeddedDatabase();
+        dataSource = db.getDataSource();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        Flyway.configure().dataSource(dataSource).target("4").load().migrate();
+        jdbcTemplate.update("INSERT INTO site (id, status, status_time, url, name) "
+                + "VALUES (1, 'INDEXED', NOW(), 'https://site.test', 'site'), "
+                + "(2, 'INDEXED', NOW(), 'https://other.test', 'other')");
+        jdbcTemplate.update("INSERT INTO page (id, site_id, path, path_hash, code, content) "
+                + "VALUES (10, 1, '/', MD5('/'), 200, ''), (11, 1, '/a', MD5('/a'), 200, '')");
+        jdbcTemplate.update("INSERT INTO lemma (id, site_id, lemma, frequency) "
+                + "VALUES (1, 1, 'дом', 1), (2, 1, 'дом', 1), (3, 1, 'сад', 1)");
+        jdbcTemplate.update("INSERT INTO searching_index (id, page_id, lemma_id, lemmas_count) "
+                + "VALUES (20, 10, 1, 1), (21, 11, 2, 1), (22, 11, 3, 1)");
+        jdbcTemplate.update("UPDATE hibernate_sequence SET next_val = 100");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        // Аргументы командной строки, а не свойства по умолчанию: иначе их перекрывает application.yaml.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", db.getUrl());
+        properties.put("spring.datasource.username", "root");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("indexing-settings.checkpoint-dir", Files.createTempDirectory("checkpoints").toString());
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        context = new SpringApplicationBuilder(Application.class).run(args);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    void migrationMergesDuplicateLemmas() {
+        assertEquals(1, count("SELECT COUNT(*) FROM lemma WHERE lemma = 'дом'"));
+        assertEquals(2, count("SELECT frequency FROM lemma WHERE id = 1"));
+        assertEquals(2, count("SELECT COUNT(*) FROM searching_index WHERE lemma_id = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM lemma WHERE lemma = 'сад'"));
+    }
+
+    @Test
+    void concurrentUpsertsCountEveryPage() throws Exception {
+        BulkLoadRepository repository = new BulkLoadRepository(jdbcTemplate);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int page = 0; page < PAGES_PER_THREAD; page++) {
+                        repository.upsertLemmas(1, List.of("кот", "пес"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (String lemma : List.of("кот", "пес")) {
+            assertEquals(1, count("SELECT COUNT(*) FROM lemma WHERE lemma = '" + lemma + "'"));
+            assertEquals(THREADS * PAGES_PER_THREAD,
+                    count("SELECT frequency FROM lemma WHERE lemma = '" + lemma + "' AND site_id = 1"));
+        }
+    }
+
+    /**
+     * Новые леммы добавляются в транзакции записи страницы, а генератор id Hibernate в той же транзакции
+     * обращается к hibernate_sequence в своем соединении: резервирование id не должно блокировать эту строку
+     * до конца транзакции.
+     */
+    @Test
+    void upsertInTransactionDoesNotLockSequence() {
+        BulkLoadRepository repository = new BulkLoadRepository(jdbcTemplate);
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(status -> {
+            repository.upsertLemmas(1, List.of("лис"));
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION innodb_lock_wait_timeout = 1");
+                statement.executeUpdate("UPDATE hibernate_sequence SET next_val = next_val + 1");
+            } catch (Exception e) {
+                throw new AssertionError("Строка hibernate_sequence заблокирована транзакцией", e);
+            }
+        });
+        assertEquals(1, count("SELECT COUNT(*) FROM lemma WHERE lemma = 'лис'"));
+    }
+
+    /**
+     * Лемма, уже известная на одном сайте, при индексации страниц другого сайта получает строку этого сайта:
+     * частота на первом сайте не меняется, а индексы страниц ссылаются только на леммы их сайта.
+     */
+    @Test
+    void lemmasAreSavedPerSite() {
+        jdbcTemplate.update("INSERT INTO page (id, site_id, path, path_hash, code, content) "
+                + "VALUES (30, 2, '/', MD5('/'), 200, ''), (31, 2, '/b', MD5('/b'), 200, '')");
+        jdbcTemplate.update("INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (40, 1, 'луг', 3)");
+        IndexingServiceImpl indexingService = context.getBean(IndexingServiceImpl.class);
+        SiteRepository siteRepository = context.getBean(SiteRepository.class);
+        PageRepository pageRepository = context.getBean(PageRepository.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        for (int pageId : List.of(30, 31)) {
+            transactionTemplate.executeWithoutResult(status -> indexingService.saveLemmasAndIndexes(
+                    siteRepository.findById(2).orElseThrow(), pageRepository.findById(pageId).orElseThrow(),
+                    Map.of("луг", 1, "поле", 2)));
+        }
+
+        assertEquals(3, count("SELECT frequency FROM lemma WHERE id = 40"));
+        assertEquals(2, count("SELECT frequency FROM lemma WHERE lemma = 'луг' AND site_id = 2"));
+        assertEquals(2, count("SELECT frequency FROM lemma WHERE lemma = 'поле' AND site_id = 2"));
+        assertEquals(4, count("SELECT COUNT(*) FROM searching_index WHERE page_id IN (30, 31)"));
+        assertEquals(0, count("SELECT COUNT(*) FROM searching_index si JOIN lemma l ON l.id = si.lemma_id "
+                + "JOIN page p ON p.id = si.page_id WHERE l.site_id <> p.site_id"));
+    }
+
+    /**
+     * Уменьшение частоты при переиндексации страницы меняет только строку леммы ее сайта: строка той же леммы
+     * на другом сайте не удаляется вместе с неиспользуемыми леммами.
+     */
+    @Test
+    void decreaseFrequencyChangesOnlySiteLemmas() {
+        jdbcTemplate.update("INSERT INTO lemma (id, site_id, lemma, frequency) "
+                + "VALUES (50, 1, 'роща', 1), (51, 2, 'роща', 1)");
+        LemmaRepository lemmaRepository = context.getBean(LemmaRepository.class);
+        context.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            lemmaRepository.decreaseFrequency(2, List.of("роща"), 1);
+            lemmaRepository.deleteUnused();
+        });
+
+        assertEquals(1, count("SELECT frequency FROM lemma WHERE id = 50"));
+        assertEquals(0, count("SELECT COUNT(*) FROM lemma WHERE id = 51"));
+    }
+
+    /**
+     * На сайте 2 реже встречается "пруд", а по всем сайтам (сумма частот) - "ива": поиск начинается
+     * с самой редкой леммы для сайта поиска.
+     */
+    @Test
+    void planUsesFrequenciesOfSearchedSites() {
+        jdbcTemplate.update("INSERT INTO lemma (id, site_id, lemma, frequency) "
+                + "VALUES (60, 1, 'пруд', 5), (61, 2, 'пруд', 1), (62, 1, 'ива', 1), (63, 2, 'ива', 4)");
+        QueryPlanner queryPlanner = context.getBean(QueryPlanner.class);
+
+        assertEquals(List.of("пруд", "1"), getScan(queryPlanner.plan("пруд ива", 2)));
+        assertEquals(List.of("ива", "5"), getScan(queryPlanner.plan("пруд ива", null)));
+    }
+
+    private static List<String> getScan(QueryPlanner.Result result) {
+        for (QueryPlanStep step : result.plan().getSteps()) {
+            if (step.getStep().equals("scan")) {
+                return List.of(step.getLemma(), String.valueOf(step.getFrequency()));
+            }
+        }
+        throw new AssertionError("Нет шага scan");
+    }
+
+    private static int count(String sql) {
+        Integer value = jdbcTemplate.queryForObject(sql, Integer.class);
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,179 @@
+package searchengine.model.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.Application;
+import searchengine.config.IndexStorageSettings;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.segment.SegmentPostingRepository;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка того, что хранилища индекса (таблица searching_index и сегменты на диске) возвращают одинаковые
+ * страницы и частоты лемм для одних и тех же сайтов. Индекс из нескольких сайтов записывается в таблицу,
+ * а затем загружается в сегменты. Одна строка индекса ссылается на лемму другого сайта, как в базах,
+ * проиндексированных до разделения лемм по сайтам: сайт записи определяется страницей.
+ */
+class PostingRepositoryTest {
+
+    private static final int SITES = 3;
+    private static final int PAGES_PER_SITE = 20;
+    private static final List<String> LEMMAS = List.of("общий", "четный", "редкий", "пятый");
+
+    private static EmbeddedDatabase db;
+    private static ConfigurableApplicationContext context;
+    private static PostingRepository jpaRepository;
+    private static SegmentPostingRepository segmentRepository;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        db = new EmbeddedDatabase();
+        // Аргументы командной строки, а не свойства по умолчанию: иначе их перекрывает application.yaml.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", db.getUrl());
+        properties.put("spring.datasource.username", "root");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("indexing-settings.checkpoint-dir", Files.createTempDirectory("checkpoints").toString());
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        context = new SpringApplicationBuilder(Application.class).run(args);
+        jpaRepository = context.getBean(PostingRepository.class);
+        fill(context.getBean(JdbcTemplate.class));
+
+        IndexStorageSettings settings = new IndexStorageSettings();
+        settings.setEngine("segments");
+        settings.setDir(Files.createTempDirectory("segments").toString());
+        segmentRepository = new SegmentPostingRepository(settings, context.getBean(PageRepository.class),
+                context.getBean(LemmaRepository.class), new SimpleMeterRegistry());
+        segmentRepository.open();
+        PageRepository pageRepository = context.getBean(PageRepository.class);
+        context.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            Map<Page, Map<Lemma, Float>> pages = new HashMap<>();
+            for (Page page : pageRepository.findAll()) {
+                Map<Lemma, Float> ranks = new HashMap<>();
+                jpaRepository.findByPage(page).forEach((text, rank) -> {
+                    Lemma lemma = new Lemma();
+                    lemma.setLemma(text);
+                    ranks.put(lemma, rank);
+                });
+                pages.put(page, ranks);
+            }
+            segmentRepository.loadAll(pages);
+        });
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (segmentRepository != null) {
+            segmentRepository.shutdown();
+        }
+        if (context != null) {
+            context.close();
+        }
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    void countPagesMatchesForEverySiteSet() {
+        List<List<Integer>> siteSets = List.of(List.of(1), List.of(2), List.of(3), List.of(1, 3), List.of(1, 2, 3));
+        for (String lemma : LEMMAS) {
+            for (List<Integer> siteIds : siteSets) {
+                assertEquals(segmentRepository.countPages(lemma, siteIds), jpaRepository.countPages(lemma, siteIds),
+                        lemma + " " + siteIds);
+            }
+        }
+        assertEquals(PAGES_PER_SITE, jpaRepository.countPages("общий", List.of(2)));
+        assertEquals(PAGES_PER_SITE / 2 + 1, jpaRepository.countPages("четный", List.of(2)));
+        assertEquals(PAGES_PER_SITE / 2, jpaRepository.countPages("четный", List.of(1)));
+    }
+
+    @Test
+    void findByLemmaMatchesForEverySite() {
+        for (String lemma : LEMMAS) {
+            assertEquals(getPageIds(segmentRepository.findByLemma(lemma, null)),
+                    getPageIds(jpaRepository.findByLemma(lemma, null)), lemma);
+            for (int siteId = 1; siteId <= SITES; siteId++) {
+                assertEquals(getPageIds(segmentRepository.findByLemma(lemma, siteId)),
+                        getPageIds(jpaRepository.findByLemma(lemma, siteId)), lemma + " " + siteId);
+                assertEquals(segmentRepository.countLemmasBySiteId(siteId).get(lemma),
+                        jpaRepository.countLemmasBySiteId(siteId).get(lemma), lemma + " " + siteId);
+            }
+        }
+    }
+
+    private static Set<Integer> getPageIds(List<PostingRepository.Posting> postings) {
+        Set<Integer> pageIds = new TreeSet<>();
+        postings.forEach(posting -> pageIds.add(posting.pageId()));
+        return pageIds;
+    }
+
+    /**
+     * Метод, заполняющий БД: у каждого сайта свои строки лемм; "общий" есть на всех страницах, "четный" -
+     * на четных, "редкий" - только на первых страницах сайтов 1 и 3, "пятый" - на каждой пятой.
+     * Первая нечетная страница сайта 2 ссылается на лемму "четный" сайта 1.
+     */
+    private static void fill(JdbcTemplate jdbcTemplate) {
+        List<Object[]> sites = new ArrayList<>();
+        List<Object[]> pages = new ArrayList<>();
+        List<Object[]> lemmas = new ArrayList<>();
+        List<Object[]> postings = new ArrayList<>();
+        for (int site = 1; site <= SITES; site++) {
+            sites.add(new Object[]{site, "https://site" + site + ".test", "site" + site});
+            for (int i = 0; i < LEMMAS.size(); i++) {
+                lemmas.add(new Object[]{getLemmaId(site, i), site, LEMMAS.get(i)});
+            }
+            for (int i = 0; i < PAGES_PER_SITE; i++) {
+                int pageId = site * 1000 + i;
+                pages.add(new Object[]{pageId, site, "/page/" + i, Page.hashPath("/page/" + i)});
+                postings.add(new Object[]{pageId, getLemmaId(site, 0), 1f});
+                if (i % 2 == 0) {
+                    postings.add(new Object[]{pageId, getLemmaId(site, 1), 2f});
+                }
+                if (i == 0 && site != 2) {
+                    postings.add(new Object[]{pageId, getLemmaId(site, 2), 3f});
+                }
+                if (i % 5 == 0) {
+                    postings.add(new Object[]{pageId, getLemmaId(site, 3), 4f});
+                }
+            }
+        }
+        postings.add(new Object[]{2001, getLemmaId(1, 1), 2f});
+        jdbcTemplate.batchUpdate("INSERT INTO site (id, status, status_time, url, name) "
+                + "VALUES (?, 'INDEXED', NOW(), ?, ?)", sites);
+        jdbcTemplate.batchUpdate("INSERT INTO page (id, site_id, path, path_hash, code, content) "
+                + "VALUES (?, ?, ?, ?, 200, '')", pages);
+        jdbcTemplate.batchUpdate("INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, 0)", lemmas);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < postings.size(); i++) {
+            Object[] posting = postings.get(i);
+            rows.add(new Object[]{i + 1, posting[0], posting[1], posting[2]});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO searching_index (id, page_id, lemma_id, lemmas_count) "
+                + "VALUES (?, ?, ?, ?)", rows);
+    }
+
+    private static int getLemmaId(int site, int lemma) {
+        return site * 100 + lemma;
+    }
+}
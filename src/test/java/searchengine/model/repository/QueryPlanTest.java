@@ -0,0 +1,166 @@
+package searchengine.model.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import searchengine.model.entity.Page;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка того, что горячие запросы поиска и индексации используют индексы из R__search_indexes.sql.
+ * Схема создается миграциями Flyway во встроенной MariaDB и заполняется данными, на которых полный просмотр
+ * таблицы заметно дороже обращения по индексу; затем для каждого запроса выполняется EXPLAIN.
+ * Тексты запросов совпадают с SQL, который Hibernate строит для методов репозиториев.
+ */
+class QueryPlanTest {
+
+    private static final int SITES = 2;
+    private static final int PAGES_PER_SITE = 1000;
+    private static final int LEMMAS_PER_SITE = 400;
+    private static final int LEMMAS_PER_PAGE = 20;
+
+    private static EmbeddedDatabase db;
+    private static Connection connection;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        db = new EmbeddedDatabase();
+        Flyway.configure().dataSource(db.getDataSource()).load().migrate();
+        connection = DriverManager.getConnection(db.getUrl(), "root", "");
+        fill();
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    /**
+     * SearchingIndexRepository.findPostingsByLemma: страницы, содержащие лемму.
+     */
+    @Test
+    void postingsByLemmaUseLemmaPageIndex() throws Exception {
+        Map<String, String> keys = explain("SELECT si.page_id, si.lemmas_count FROM searching_index si "
+                + "CROSS JOIN lemma l WHERE si.lemma_id = l.id AND l.lemma = 'lemma7'");
+        assertEquals("idx_lemma_lemma_site", keys.get("l"));
+        assertEquals("idx_searching_index_lemma_page", keys.get("si"));
+    }
+
+    /**
+     * SearchingIndexRepository.countByLemmaAndSiteIdIn: частота леммы на сайтах шарда.
+     */
+    @Test
+    void shardFrequencyUsesLemmaPageIndex() throws Exception {
+        Map<String, String> keys = explain("SELECT COUNT(si.id) FROM searching_index si CROSS JOIN lemma l "
+                + "CROSS JOIN page p WHERE si.lemma_id = l.id AND si.page_id = p.id AND l.lemma = 'lemma7' "
+                + "AND p.site_id IN (1)");
+        assertEquals("idx_lemma_lemma_site", keys.get("l"));
+        assertEquals("idx_searching_index_lemma_page", keys.get("si"));
+        assertEquals("PRIMARY", keys.get("p"));
+    }
+
+    /**
+     * SearchingIndexRepository.findLemmasByPage: леммы страницы.
+     */
+    @Test
+    void lemmasByPageUsePageLemmaIndex() throws Exception {
+        Map<String, String> keys = explain("SELECT l.lemma, si.lemmas_count FROM searching_index si "
+                + "CROSS JOIN lemma l WHERE si.lemma_id = l.id AND si.page_id = 17");
+        assertEquals("idx_searching_index_page_lemma", keys.get("si"));
+        assertEquals("PRIMARY", keys.get("l"));
+    }
+
+    /**
+     * PageRepository.findBySiteAndPathHash: поиск страницы сайта по адресу.
+     */
+    @Test
+    void pageBySiteAndPathHashUsesSitePathHashIndex() throws Exception {
+        Map<String, String> keys = explain("SELECT p.id, p.code, p.content, p.indexed_at, p.path, p.path_hash, "
+                + "p.site_id FROM page p WHERE p.site_id = 1 AND p.path_hash = '"
+                + Page.hashPath("/page/17") + "'");
+        assertEquals("idx_page_site_path_hash", keys.get("p"));
+    }
+
+    /**
+     * Метод, выполняющий EXPLAIN запроса.
+     * @param sql - запрос.
+     * @return - индекс, выбранный для каждой таблицы запроса (по псевдониму таблицы).
+     */
+    private static Map<String, String> explain(String sql) throws Exception {
+        Map<String, String> keys = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rows.next()) {
+                keys.put(rows.getString("table"), rows.getString("key"));
+            }
+        }
+        return keys;
+    }
+
+    private static void fill() throws Exception {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (int site = 1; site <= SITES; site++) {
+                statement.executeUpdate("INSERT INTO site (id, status, status_time, url, name) VALUES (" + site
+                        + ", 'INDEXED', NOW(), 'https://site" + site + ".test', 'site" + site + "')");
+            }
+        }
+        try (PreparedStatement pages = connection.prepareStatement("INSERT INTO page "
+                + "(id, site_id, path, path_hash, code, content) VALUES (?, ?, ?, ?, 200, 'content')");
+             PreparedStatement lemmas = connection.prepareStatement(
+                     "INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, ?)");
+             PreparedStatement postings = connection.prepareStatement(
+                     "INSERT INTO searching_index (id, page_id, lemma_id, lemmas_count) VALUES (?, ?, ?, ?)")) {
+            int postingId = 0;
+            for (int site = 1; site <= SITES; site++) {
+                int firstLemma = (site - 1) * LEMMAS_PER_SITE + 1;
+                for (int i = 0; i < LEMMAS_PER_SITE; i++) {
+                    lemmas.setInt(1, firstLemma + i);
+                    lemmas.setInt(2, site);
+                    lemmas.setString(3, "lemma" + i);
+                    lemmas.setInt(4, PAGES_PER_SITE * LEMMAS_PER_PAGE / LEMMAS_PER_SITE);
+                    lemmas.addBatch();
+                }
+                for (int i = 0; i < PAGES_PER_SITE; i++) {
+                    int pageId = (site - 1) * PAGES_PER_SITE + i + 1;
+                    String path = "/page/" + pageId;
+                    pages.setInt(1, pageId);
+                    pages.setInt(2, site);
+                    pages.setString(3, path);
+                    pages.setString(4, Page.hashPath(path));
+                    pages.addBatch();
+                    for (int j = 0; j < LEMMAS_PER_PAGE; j++) {
+                        postings.setInt(1, ++postingId);
+                        postings.setInt(2, pageId);
+                        postings.setInt(3, firstLemma + (i + j * 37) % LEMMAS_PER_SITE);
+                        postings.setFloat(4, j + 1);
+                        postings.addBatch();
+                    }
+                }
+            }
+            lemmas.executeBatch();
+            pages.executeBatch();
+            postings.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE site, page, lemma, searching_index");
+        }
+    }
+}
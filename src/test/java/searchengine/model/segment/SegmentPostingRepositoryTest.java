@@ -0,0 +1,184 @@
+package searchengine.model.segment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.IndexStorageSettings;
+import searchengine.model.entity.Lemma;
+import searchengine.model.entity.Page;
+import searchengine.model.entity.Site;
+import searchengine.model.repository.PostingRepository.Posting;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка хранилища индекса в сегментах: удаленные страницы не возвращаются и не переносятся
+ * в объединенный сегмент, а страницы из журнала восстанавливаются после аварийного завершения.
+ * Репозитории страниц и лемм не нужны: они используются только при удалении сайта.
+ */
+class SegmentPostingRepositoryTest {
+
+    private static final int FLUSH_PAGES = 10;
+    private static final long BACKGROUND_WAIT = 10_000;
+    private static final int SITE_ID = 1;
+
+    @TempDir
+    Path dir;
+
+    private final List<SegmentPostingRepository> repositories = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        repositories.forEach(SegmentPostingRepository::shutdown);
+    }
+
+    /**
+     * Страницы удаляются после записи в сегменты; при следующей записи сегментов становится больше
+     * merge-factor, и два маленьких сегмента с удаленными страницами объединяются.
+     */
+    @Test
+    void deletedPagesAreDroppedByMerge() throws Exception {
+        SegmentPostingRepository repository = open(2);
+        addPages(repository, 1, FLUSH_PAGES, 1);
+        await(() -> repository.getSegmentCount() == 1 && repository.getMemTablePages() == 0);
+        addPages(repository, FLUSH_PAGES + 1, FLUSH_PAGES * 2, 1);
+        await(() -> repository.getSegmentCount() == 2 && repository.getMemTablePages() == 0);
+
+        repository.deleteByPage(getPage(5));
+        repository.deleteByPage(getPage(15));
+        assertEquals(FLUSH_PAGES * 2 - 2, repository.findByLemma("общая", null).size());
+        assertTrue(repository.findByPage(getPage(5)).isEmpty());
+        assertTrue(repository.findByLemma("страница15", SITE_ID).isEmpty());
+
+        // Третий сегмент больше первых двух, поэтому объединяются именно они.
+        addPages(repository, FLUSH_PAGES * 2 + 1, FLUSH_PAGES * 3, 20);
+        await(() -> repository.getSegmentCount() == 2 && repository.getMemTablePages() == 0);
+
+        for (Path file : getLiveSegments()) {
+            Segment segment = Segment.open(file);
+            assertEquals(-1, segment.findPage(5));
+            assertEquals(-1, segment.findPage(15));
+            assertEquals(-1, segment.findTerm("страница15"));
+        }
+        assertTrue(BitSet.valueOf(Files.readAllBytes(dir.resolve("deletes.bin"))).isEmpty());
+        assertEquals(FLUSH_PAGES * 3 - 2, repository.findByLemma("общая", null).size());
+
+        repository.shutdown();
+        SegmentPostingRepository reopened = open(2);
+        assertEquals(2, reopened.getSegmentCount());
+        List<Integer> pageIds = reopened.findByLemma("общая", SITE_ID).stream().map(Posting::pageId).toList();
+        assertEquals(FLUSH_PAGES * 3 - 2, pageIds.size());
+        assertFalse(pageIds.contains(5));
+        assertFalse(pageIds.contains(15));
+        assertEquals(Map.of("общая", 7f, "страница7", 2.5f), reopened.findByPage(getPage(7)));
+    }
+
+    /**
+     * Хранилище не закрывается (как при аварийном завершении), а последняя запись журнала обрезана:
+     * при открытии добавленные и удаленные до нее страницы восстанавливаются из журнала в новый сегмент.
+     */
+    @Test
+    void logIsReplayedAfterUncleanShutdown() throws Exception {
+        SegmentPostingRepository crashed = new SegmentPostingRepository(getSettings(FLUSH_PAGES * 100, 2),
+                null, null, new SimpleMeterRegistry());
+        crashed.open();
+        addPages(crashed, 1, 5, 1);
+        crashed.deleteByPage(getPage(3));
+        Path log;
+        try (Stream<Path> files = Files.list(dir)) {
+            log = files.filter(file -> file.getFileName().toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        Files.write(log, new byte[]{1, 0, 0}, StandardOpenOption.APPEND);
+
+        SegmentPostingRepository repository = open(2);
+        assertEquals(1, repository.getSegmentCount());
+        assertEquals(0, repository.getMemTablePages());
+        Map<Integer, Float> ranks = new HashMap<>();
+        repository.findByLemma("общая", SITE_ID).forEach(posting -> ranks.put(posting.pageId(), posting.rank()));
+        assertEquals(Map.of(1, 1f, 2, 2f, 4, 4f, 5, 5f), ranks);
+        assertTrue(repository.findByPage(getPage(3)).isEmpty());
+        assertEquals(Map.of("общая", 4f, "страница4", 2.5f), repository.findByPage(getPage(4)));
+        assertTrue(Files.notExists(log));
+    }
+
+    private SegmentPostingRepository open(int mergeFactor) throws Exception {
+        SegmentPostingRepository repository = new SegmentPostingRepository(getSettings(FLUSH_PAGES, mergeFactor),
+                null, null, new SimpleMeterRegistry());
+        repository.open();
+        repositories.add(repository);
+        return repository;
+    }
+
+    private IndexStorageSettings getSettings(int flushPages, int mergeFactor) {
+        IndexStorageSettings settings = new IndexStorageSettings();
+        settings.setEngine("segments");
+        settings.setDir(dir.toString());
+        settings.setFlushPages(flushPages);
+        settings.setMergeFactor(mergeFactor);
+        return settings;
+    }
+
+    /**
+     * Метод, добавляющий страницы с леммами "общая" (ранг равен id страницы), "страницаN"
+     * и дополнительными леммами, увеличивающими размер сегмента.
+     * @param from - id первой страницы.
+     * @param to - id последней страницы.
+     * @param extraLemmas - число дополнительных лемм на странице.
+     */
+    private static void addPages(SegmentPostingRepository repository, int from, int to, int extraLemmas) {
+        for (int pageId = from; pageId <= to; pageId++) {
+            Map<Lemma, Float> ranks = new HashMap<>();
+            ranks.put(getLemma("общая"), (float) pageId);
+            ranks.put(getLemma("страница" + pageId), 2.5f);
+            for (int i = 1; i < extraLemmas; i++) {
+                ranks.put(getLemma("лемма" + pageId + "-" + i), 1f);
+            }
+            repository.saveAll(getPage(pageId), ranks);
+        }
+    }
+
+    private List<Path> getLiveSegments() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (String name : Files.readAllLines(dir.resolve("segments.manifest"))) {
+            files.add(dir.resolve(name));
+        }
+        return files;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + BACKGROUND_WAIT;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Фоновая запись сегментов не завершилась");
+            Thread.sleep(20);
+        }
+    }
+
+    private static Page getPage(int pageId) {
+        Site site = new Site();
+        site.setId(SITE_ID);
+        Page page = new Page();
+        page.setId(pageId);
+        page.setSite(site);
+        return page;
+    }
+
+    private static Lemma getLemma(String text) {
+        Lemma lemma = new Lemma();
+        lemma.setLemma(text);
+        return lemma;
+    }
+}
@@ -0,0 +1,161 @@
+package searchengine.model.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка формата сегмента: запись и чтение, поиск ранга по таблице пропусков и объединение сегментов.
+ */
+class SegmentTest {
+
+    private static final int PAGES = 300;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writtenSegmentReadsBack() throws Exception {
+        MemTable memTable = new MemTable();
+        Map<String, TreeMap<Integer, Float>> expected = new TreeMap<>();
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            Map<String, Float> ranks = getRanks(pageId);
+            memTable.add(pageId, pageId % 3 + 1, ranks);
+            for (Map.Entry<String, Float> entry : ranks.entrySet()) {
+                expected.computeIfAbsent(entry.getKey(), key -> new TreeMap<>()).put(pageId, entry.getValue());
+            }
+        }
+        Path file = dir.resolve("segment.seg");
+        memTable.writeTo(file);
+        Segment segment = Segment.open(file);
+
+        assertEquals(expected.size(), segment.getTermCount());
+        assertEquals(PAGES, segment.getPageCount());
+        assertEquals(expected.values().stream().mapToInt(Map::size).sum(), segment.getPostingCount());
+        assertEquals(-1, segment.findTerm("отсутствует"));
+        for (Map.Entry<String, TreeMap<Integer, Float>> entry : expected.entrySet()) {
+            int ordinal = segment.findTerm(entry.getKey());
+            assertEquals(entry.getKey(), segment.getTerm(ordinal));
+            assertEquals(entry.getValue().size(), segment.getPostingCount(ordinal));
+            List<Integer> pageIds = new ArrayList<>();
+            segment.forEachPosting(ordinal, (pageId, siteId, rank) -> {
+                pageIds.add(pageId);
+                assertEquals(pageId % 3 + 1, siteId);
+                assertEquals(entry.getValue().get(pageId), rank);
+            });
+            assertEquals(new ArrayList<>(entry.getValue().keySet()), pageIds);
+        }
+        assertEquals(-1, segment.findPage(0));
+        assertEquals(-1, segment.findPage(PAGES + 1));
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            int index = segment.findPage(pageId);
+            assertEquals(pageId, segment.getPageId(index));
+            Map<String, Float> ranks = new HashMap<>();
+            segment.forEachPageTerm(index, (ordinal, rank) -> ranks.put(segment.getTerm(ordinal), rank));
+            assertEquals(getRanks(pageId), ranks);
+        }
+    }
+
+    /**
+     * Страницы леммы занимают несколько блоков, а разности id - несколько байт varint:
+     * ранг находится для первой и последней страницы каждого блока, а пропущенные id не находятся.
+     */
+    @Test
+    void findRankAcrossBlockBoundaries() throws Exception {
+        int count = Segment.BLOCK_SIZE * 3 + 7;
+        int[] pageIds = new int[count];
+        int[] siteIds = new int[count];
+        float[] ranks = new float[count];
+        for (int i = 0; i < count; i++) {
+            pageIds[i] = 5 + i * 1000;
+            siteIds[i] = 1;
+            ranks[i] = i + 0.5f;
+        }
+        Path file = dir.resolve("blocks.seg");
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            writer.addTerm("лемма", pageIds, siteIds, ranks, count);
+            writer.finish();
+        }
+        Segment segment = Segment.open(file);
+        int ordinal = segment.findTerm("лемма");
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(ranks[i], segment.findRank(ordinal, pageIds[i]), "Страница " + pageIds[i]);
+            assertTrue(Float.isNaN(segment.findRank(ordinal, pageIds[i] - 1)));
+        }
+        assertTrue(Float.isNaN(segment.findRank(ordinal, 0)));
+        assertTrue(Float.isNaN(segment.findRank(ordinal, pageIds[count - 1] + 1)));
+    }
+
+    /**
+     * Страницы двух сегментов чередуются по id: в объединенном сегменте записи леммы упорядочены,
+     * а удаленные страницы и леммы, оставшиеся только на них, отсутствуют.
+     */
+    @Test
+    void mergeDropsDeletedPages() throws Exception {
+        MemTable even = new MemTable();
+        MemTable odd = new MemTable();
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            (pageId % 2 == 0 ? even : odd).add(pageId, 1, getRanks(pageId));
+        }
+        odd.add(PAGES + 1, 1, Map.of("удаленная", 1f));
+        Path evenFile = dir.resolve("even.seg");
+        Path oddFile = dir.resolve("odd.seg");
+        even.writeTo(evenFile);
+        odd.writeTo(oddFile);
+        BitSet deleted = new BitSet();
+        for (int pageId = 10; pageId <= PAGES + 1; pageId += 10) {
+            deleted.set(pageId);
+        }
+        deleted.set(PAGES + 1);
+
+        Path mergedFile = dir.resolve("merged.seg");
+        SegmentMerger.merge(List.of(Segment.open(evenFile), Segment.open(oddFile)), deleted, mergedFile);
+        Segment merged = Segment.open(mergedFile);
+
+        assertEquals(-1, merged.findTerm("удаленная"));
+        assertEquals(PAGES - PAGES / 10, merged.getPageCount());
+        int ordinal = merged.findTerm("общая");
+        List<Integer> pageIds = new ArrayList<>();
+        merged.forEachPosting(ordinal, (pageId, siteId, rank) -> pageIds.add(pageId));
+        List<Integer> expected = new ArrayList<>();
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            if (!deleted.get(pageId)) {
+                expected.add(pageId);
+            }
+        }
+        assertEquals(expected, pageIds);
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            int index = merged.findPage(pageId);
+            if (deleted.get(pageId)) {
+                assertEquals(-1, index);
+                continue;
+            }
+            Map<String, Float> ranks = new HashMap<>();
+            merged.forEachPageTerm(index, (term, rank) -> ranks.put(merged.getTerm(term), rank));
+            assertEquals(getRanks(pageId), ranks);
+            assertEquals(getRanks(pageId).get("общая"), merged.findRank(ordinal, pageId));
+        }
+    }
+
+    /**
+     * Метод, возвращающий леммы тестовой страницы: общая для всех страниц и две, зависящие от id.
+     * @param pageId - id страницы.
+     * @return - леммы и их ранг.
+     */
+    private static Map<String, Float> getRanks(int pageId) {
+        return Map.of("общая", pageId / 10f,
+                "остаток" + pageId % 7, 1f,
+                "страница" + pageId, 2.5f);
+    }
+}
@@ -0,0 +1,182 @@
+package searchengine.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+import searchengine.model.IndexingMode;
+import searchengine.model.Status;
+import searchengine.model.entity.Site;
+import searchengine.model.repository.EmbeddedDatabase;
+import searchengine.model.repository.PageRepository;
+import searchengine.model.repository.SiteRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Проверка инкрементальной индексации: сохраненные страницы не удаляются, страница из карты сайта,
+ * не изменявшаяся после индексации (по lastmod), не загружается, а измененная - индексируется заново.
+ * Сайт - локальный http-сервер с картой сайта из двух страниц.
+ */
+class IncrementalIndexingTest {
+
+    private static final long INDEXING_WAIT = 30_000;
+    private static final String UNCHANGED = "/unchanged";
+    private static final String CHANGED = "/changed";
+
+    private static EmbeddedDatabase db;
+    private static HttpServer server;
+    private static ConfigurableApplicationContext context;
+    private static IndexingService indexingService;
+    private static SiteRepository siteRepository;
+    private static PageRepository pageRepository;
+    private static String siteUrl;
+
+    /**
+     * Число запросов каждого пути сайта.
+     */
+    private static final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    /**
+     * Дата изменения страницы CHANGED в карте сайта.
+     */
+    private static volatile Instant changedAt = Instant.parse("2020-01-01T00:00:00Z");
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        db = new EmbeddedDatabase();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", IncrementalIndexingTest::handle);
+        server.start();
+        siteUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+
+        // Аргументы командной строки, а не свойства по умолчанию: иначе их перекрывает application.yaml.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", db.getUrl());
+        properties.put("spring.datasource.username", "root");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("indexing-settings.sites[0].url", siteUrl);
+        properties.put("indexing-settings.sites[0].name", "Сайт с картой");
+        properties.put("indexing-settings.crawl-delay", 0);
+        properties.put("indexing-settings.sitemap-enabled", true);
+        properties.put("indexing-settings.near-duplicate-enabled", false);
+        properties.put("indexing-settings.checkpoint-interval", 0);
+        properties.put("indexing-settings.checkpoint-dir",
+                Files.createTempDirectory("checkpoints").toString());
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        context = new SpringApplicationBuilder(Application.class).run(args);
+        indexingService = context.getBean(IndexingService.class);
+        siteRepository = context.getBean(SiteRepository.class);
+        pageRepository = context.getBean(PageRepository.class);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    void incrementalIndexingSkipsUnchangedPages() throws Exception {
+        index(IndexingMode.FULL);
+        assertEquals(1, getRequests(UNCHANGED));
+        assertEquals(1, getRequests(CHANGED));
+        assertEquals(2, pageRepository.findBySite(getSite()).size());
+
+        changedAt = Instant.now().plus(1, ChronoUnit.DAYS);
+        index(IndexingMode.INCREMENTAL);
+        assertEquals(1, getRequests(UNCHANGED));
+        assertEquals(2, getRequests(CHANGED));
+        assertEquals(2, pageRepository.findBySite(getSite()).size());
+        assertEquals(Status.INDEXED, getSite().getStatus());
+    }
+
+    private static void index(IndexingMode mode) throws InterruptedException {
+        indexingService.startIndexing(mode);
+        long deadline = System.currentTimeMillis() + INDEXING_WAIT;
+        while (indexingService.isIndexingStart() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertFalse(indexingService.isIndexingStart(), "Индексация не завершилась");
+    }
+
+    private static Site getSite() {
+        List<Site> sites = siteRepository.findByUrl(siteUrl);
+        assertEquals(1, sites.size());
+        return sites.get(0);
+    }
+
+    private static int getRequests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Обработчик запросов сайта: главная страница без ссылок, карта сайта и две страницы из нее.
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        String body;
+        String contentType = "text/html; charset=utf-8";
+        switch (path) {
+            case "/" -> body = page("Главная страница");
+            case UNCHANGED -> body = page("Старая статья про кошек");
+            case CHANGED -> body = page("Новая статья про собак");
+            case "/sitemap.xml" -> {
+                contentType = "application/xml";
+                body = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                        + "<url><loc>" + siteUrl + UNCHANGED.substring(1) + "</loc>"
+                        + "<lastmod>2020-01-01T00:00:00Z</lastmod></url>"
+                        + "<url><loc>" + siteUrl + CHANGED.substring(1) + "</loc>"
+                        + "<lastmod>" + changedAt + "</lastmod></url>"
+                        + "</urlset>";
+            }
+            default -> {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String page(String text) {
+        return "<html><head><title>" + text + "</title></head><body><p>" + text + "</p></body></html>";
+    }
+}
@@ -0,0 +1,188 @@
+package searchengine.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+import searchengine.model.IndexingMode;
+import searchengine.model.Status;
+import searchengine.model.entity.Site;
+import searchengine.model.repository.EmbeddedDatabase;
+import searchengine.model.repository.SiteRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка того, что остановка индексации укладывается в STOP_TIMEOUT, даже если сайт отвечает очень медленно:
+ * запрос, ожидающий ответа или тела страницы, прерывается, а сайт получает статус FAILED.
+ * Сайт - локальный http-сервер, который держит запрос главной страницы SLOW_RESPONSE мс.
+ */
+class IndexingStopTest {
+
+    private static final long SLOW_RESPONSE = 60_000;
+    private static final long REQUEST_WAIT = 10_000;
+    /**
+     * Пауза после получения сервером запроса, за которую клиент получает заголовки и начинает читать тело.
+     */
+    private static final long BODY_READ_DELAY = 500;
+
+    private static EmbeddedDatabase db;
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static ConfigurableApplicationContext context;
+    private static IndexingService indexingService;
+    private static SiteRepository siteRepository;
+    private static String siteUrl;
+
+    /**
+     * Запросы главной страницы, дошедшие до сервера.
+     */
+    private static final Semaphore rootRequests = new Semaphore(0);
+    /**
+     * true - сервер сразу отправляет заголовки и медленно отдает тело, false - медленно отправляет заголовки.
+     */
+    private static volatile boolean slowBody;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        db = new EmbeddedDatabase();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "slow-site");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(serverExecutor);
+        server.createContext("/", IndexingStopTest::handle);
+        server.start();
+        siteUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+
+        // Аргументы командной строки, а не свойства по умолчанию: иначе их перекрывает application.yaml.
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", db.getUrl());
+        properties.put("spring.datasource.username", "root");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("indexing-settings.sites[0].url", siteUrl);
+        properties.put("indexing-settings.sites[0].name", "Медленный сайт");
+        properties.put("indexing-settings.crawl-delay", 0);
+        properties.put("indexing-settings.sitemap-enabled", false);
+        properties.put("indexing-settings.checkpoint-interval", 0);
+        properties.put("indexing-settings.checkpoint-dir",
+                Files.createTempDirectory("checkpoints").toString());
+        properties.put("fetcher-settings.request-timeout", SLOW_RESPONSE * 2);
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        context = new SpringApplicationBuilder(Application.class).run(args);
+        indexingService = context.getBean(IndexingService.class);
+        siteRepository = context.getBean(SiteRepository.class);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        if (server != null) {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+        }
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    void stopIndexingInterruptsRequestWaitingForHeaders() throws Exception {
+        slowBody = false;
+        rootRequests.drainPermits();
+        indexingService.startIndexing(IndexingMode.FULL);
+        assertTrue(rootRequests.tryAcquire(REQUEST_WAIT, TimeUnit.MILLISECONDS), "Главная страница не запрошена");
+
+        long start = System.nanoTime();
+        indexingService.stopIndexing();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsed < IndexingServiceImpl.STOP_TIMEOUT, "Остановка заняла " + elapsed + " мс");
+        assertFalse(indexingService.isIndexingStart());
+        assertStoppedByUser();
+    }
+
+    @Test
+    void stopSiteIndexingInterruptsRequestReadingBody() throws Exception {
+        slowBody = true;
+        rootRequests.drainPermits();
+        assertTrue(indexingService.startSiteIndexing(siteUrl, IndexingMode.FULL));
+        assertTrue(rootRequests.tryAcquire(REQUEST_WAIT, TimeUnit.MILLISECONDS), "Главная страница не запрошена");
+        Thread.sleep(BODY_READ_DELAY);
+
+        long start = System.nanoTime();
+        assertTrue(indexingService.stopSiteIndexing(siteUrl));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsed < IndexingServiceImpl.STOP_TIMEOUT, "Остановка заняла " + elapsed + " мс");
+        assertFalse(indexingService.isSiteIndexing(siteUrl));
+        assertStoppedByUser();
+    }
+
+    private static void assertStoppedByUser() {
+        List<Site> sites = siteRepository.findByUrl(siteUrl);
+        assertEquals(1, sites.size());
+        assertEquals(Status.FAILED, sites.get(0).getStatus());
+        assertEquals(IndexingServiceImpl.STOPPED_BY_USER, sites.get(0).getLastError());
+    }
+
+    /**
+     * Обработчик запросов медленного сайта: robots.txt отсутствует, главная страница отдается SLOW_RESPONSE мс.
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/")) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        rootRequests.release();
+        long deadline = System.currentTimeMillis() + SLOW_RESPONSE;
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (slowBody) {
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0);
+                out.write("<html><body>".getBytes(StandardCharsets.UTF_8));
+            }
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+                if (slowBody) {
+                    out.write(' ');
+                    out.flush();
+                }
+            }
+            if (!slowBody) {
+                exchange.sendResponseHeaders(200, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package searchengine.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SearchSettings;
+import searchengine.config.ShardSettings;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка построения сниппета: запрос ищется в тексте страницы как обычный текст,
+ * даже если содержит специальные символы регулярных выражений.
+ */
+class SnippetTest {
+
+    private static SearchServiceImpl searchService;
+
+    @BeforeAll
+    static void setUp() {
+        searchService = new SearchServiceImpl(null, null, null, null, null, null, null, null,
+                new SimpleMeterRegistry(), new SearchSettings(), new ShardSettings(), new ObjectMapper(),
+                new TransactionTemplate());
+    }
+
+    @AfterAll
+    static void tearDown() {
+        searchService.shutdown();
+    }
+
+    @Test
+    void queryWithRegexCharactersIsMatchedLiterally() {
+        Document doc = Jsoup.parse("<html><body><p>Язык c++ (и java) [2024]</p><p>язык cxx</p></body></html>");
+        assertEquals("...язык <b>c++ (и java)</b> [2024]...", searchService.getSnippet(doc, "c++ (и java)"));
+        assertEquals("...язык c++ (и java) <b>[2024]</b>...", searchService.getSnippet(doc, "[2024]"));
+        assertEquals("", searchService.getSnippet(doc, "c.."));
+    }
+}
@@ -0,0 +1,272 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка очереди обхода на диске: порядок и даты изменения адресов, переход между сегментами,
+ * восстановление из контрольной точки и после сбоя, в том числе с недописанной последней записью.
+ * Сбой моделируется тем, что состояние обхода не закрывается, а открывается заново из того же каталога.
+ */
+class DiskCrawlFrontierTest {
+
+    private static final int MEMORY_ENTRIES = 4;
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int SMALL_SEGMENT_SIZE = 256;
+    private static final int VISITED_CAPACITY = 1024;
+
+    @TempDir
+    Path dir;
+
+    private final List<DiskCrawlFrontier> frontiers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        frontiers.forEach(DiskCrawlFrontier::close);
+    }
+
+    @Test
+    void pollReturnsAddedUrlsInOrder() throws Exception {
+        DiskCrawlFrontier frontier = create(SEGMENT_SIZE, false);
+        for (int i = 0; i < 100; i++) {
+            frontier.addPending(getUrl(i), getLastModified(i));
+        }
+        assertEquals(100, frontier.getPendingCount());
+        for (int i = 0; i < 100; i++) {
+            CrawlFrontier.Entry entry = frontier.poll();
+            assertEquals(getUrl(i), entry.url());
+            assertEquals(getLastModified(i), entry.lastModified());
+            assertTrue(frontier.isPending(entry.url()));
+            frontier.complete(entry.url());
+            assertFalse(frontier.isPending(entry.url()));
+        }
+        assertNull(frontier.poll());
+        assertEquals(0, frontier.getPendingCount());
+
+        assertTrue(frontier.markVisited(getUrl(1)));
+        assertFalse(frontier.markVisited(getUrl(1)));
+        assertEquals(1, frontier.getVisitedCount());
+    }
+
+    /**
+     * Записи не помещаются в один сегмент: каждый заполненный сегмент заканчивается меткой перехода
+     * END_OF_SEGMENT, и чтение продолжается со следующего; прочитанные сегменты удаляются.
+     */
+    @Test
+    void queueRollsOverToNextSegments() throws Exception {
+        DiskCrawlFrontier frontier = create(SMALL_SEGMENT_SIZE, true);
+        for (int i = 0; i < 50; i++) {
+            frontier.addPending(getUrl(i), getLastModified(i));
+        }
+        List<Path> segments = listSegments();
+        assertTrue(segments.size() > 3, "Сегментов: " + segments.size());
+        for (Path segment : segments.subList(0, segments.size() - 1)) {
+            assertEquals(-1, readInt(segment, getRecordsEnd(segment)), "Нет метки перехода в " + segment);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(getUrl(i), frontier.poll().url());
+        }
+        assertNull(frontier.poll());
+        assertFalse(Files.exists(segments.get(0)));
+        assertTrue(listSegments().size() <= 2, "Не удалены прочитанные сегменты: " + listSegments());
+    }
+
+    /**
+     * После открытия из контрольной точки очередь продолжается с позиции чтения, а адреса, выданные
+     * и не завершенные на момент контрольной точки, добавляются в конец очереди.
+     */
+    @Test
+    void openRequeuesInFlightUrls() throws Exception {
+        DiskCrawlFrontier frontier = create(SEGMENT_SIZE, false);
+        for (int i = 0; i < 10; i++) {
+            frontier.markVisited(getUrl(i));
+            frontier.addPending(getUrl(i), getLastModified(i));
+        }
+        for (int i = 0; i < 4; i++) {
+            frontier.poll();
+        }
+        frontier.complete(getUrl(0));
+        frontier.complete(getUrl(2));
+        frontier.checkpoint();
+        frontier.close();
+
+        DiskCrawlFrontier reopened = open(SEGMENT_SIZE, false);
+        assertEquals(8, reopened.getPendingCount());
+        assertEquals(10, reopened.getVisitedCount());
+        assertFalse(reopened.markVisited(getUrl(5)));
+        for (int i = 4; i < 10; i++) {
+            assertEquals(getUrl(i), reopened.poll().url());
+        }
+        Set<String> requeued = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            CrawlFrontier.Entry entry = reopened.poll();
+            requeued.add(entry.url());
+            assertEquals(getLastModified(entry.url().equals(getUrl(1)) ? 1 : 3), entry.lastModified());
+        }
+        assertEquals(Set.of(getUrl(1), getUrl(3)), requeued);
+        assertNull(reopened.poll());
+    }
+
+    @Test
+    void openWithoutCheckpointReturnsNull() throws Exception {
+        create(SEGMENT_SIZE, false).addPending(getUrl(0), null);
+        assertNull(DiskCrawlFrontier.open(dir, MEMORY_ENTRIES, SEGMENT_SIZE, false));
+    }
+
+    /**
+     * Сбой во время записи адреса: длина записи пишется последней, поэтому недописанная запись
+     * читается как конец очереди, а следующий адрес после восстановления записывается на ее место.
+     */
+    @Test
+    void tornRecordIsDroppedAfterCrash() throws Exception {
+        DiskCrawlFrontier crashed = create(SEGMENT_SIZE, false);
+        for (int i = 0; i < 5; i++) {
+            crashed.addPending(getUrl(i), getLastModified(i));
+        }
+        crashed.checkpoint();
+        for (int i = 5; i < 8; i++) {
+            crashed.addPending(getUrl(i), getLastModified(i));
+        }
+        tearLastRecord();
+
+        DiskCrawlFrontier frontier = open(SEGMENT_SIZE, false);
+        assertEquals(7, frontier.getPendingCount());
+        frontier.addPending(getUrl(100), getLastModified(100));
+        for (int i = 0; i < 7; i++) {
+            assertEquals(getUrl(i), frontier.poll().url());
+        }
+        CrawlFrontier.Entry entry = frontier.poll();
+        assertEquals(getUrl(100), entry.url());
+        assertEquals(getLastModified(100), entry.lastModified());
+        assertNull(frontier.poll());
+    }
+
+    /**
+     * Сбой после того, как очередь продолжилась в нескольких новых сегментах и часть адресов была выдана
+     * после контрольной точки: восстанавливаются все адреса с позиции контрольной точки до недописанной записи
+     * в последнем сегменте, а адреса, выданные на момент контрольной точки, - в конце очереди.
+     */
+    @Test
+    void crashAcrossSeveralSegmentsResumesFromCheckpoint() throws Exception {
+        DiskCrawlFrontier crashed = create(SMALL_SEGMENT_SIZE, false);
+        for (int i = 0; i < 10; i++) {
+            crashed.addPending(getUrl(i), getLastModified(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            crashed.poll();
+        }
+        crashed.checkpoint();
+        int checkpointSegments = listSegments().size();
+        for (int i = 10; i < 50; i++) {
+            crashed.addPending(getUrl(i), getLastModified(i));
+        }
+        for (int i = 0; i < 20; i++) {
+            crashed.complete(crashed.poll().url());
+        }
+        assertTrue(listSegments().size() >= checkpointSegments + 3, "Сегментов: " + listSegments().size());
+        tearLastRecord();
+
+        DiskCrawlFrontier frontier = open(SMALL_SEGMENT_SIZE, false);
+        assertEquals(7 + 39 + 3, frontier.getPendingCount());
+        for (int i = 3; i < 49; i++) {
+            CrawlFrontier.Entry entry = frontier.poll();
+            assertEquals(getUrl(i), entry.url());
+            assertEquals(getLastModified(i), entry.lastModified());
+        }
+        Set<String> requeued = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            requeued.add(frontier.poll().url());
+        }
+        assertEquals(Set.of(getUrl(0), getUrl(1), getUrl(2)), requeued);
+        assertNull(frontier.poll());
+    }
+
+    private DiskCrawlFrontier create(int segmentSize, boolean dropConsumed) throws Exception {
+        DiskCrawlFrontier frontier = DiskCrawlFrontier.create(dir, MEMORY_ENTRIES, segmentSize, VISITED_CAPACITY,
+                dropConsumed);
+        frontiers.add(frontier);
+        return frontier;
+    }
+
+    private DiskCrawlFrontier open(int segmentSize, boolean dropConsumed) throws Exception {
+        DiskCrawlFrontier frontier = DiskCrawlFrontier.open(dir, MEMORY_ENTRIES, segmentSize, dropConsumed);
+        frontiers.add(frontier);
+        return frontier;
+    }
+
+    /**
+     * Метод, обнуляющий длину последней записи последнего сегмента, как если бы запись прервалась
+     * до того, как длина была записана.
+     */
+    private void tearLastRecord() throws Exception {
+        List<Path> segments = listSegments();
+        Path segment = segments.get(segments.size() - 1);
+        int offset = 0;
+        int last = -1;
+        for (int length = readInt(segment, offset); length > 0; length = readInt(segment, offset)) {
+            last = offset;
+            offset += Integer.BYTES + length + Long.BYTES;
+        }
+        assertTrue(last >= 0, "Последний сегмент пуст");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES), last);
+        }
+    }
+
+    /**
+     * Метод, возвращающий смещение конца записей сегмента.
+     * @param segment - файл сегмента.
+     * @return - смещение первой записи с длиной 0 или метки перехода.
+     */
+    private static int getRecordsEnd(Path segment) throws Exception {
+        int offset = 0;
+        for (int length = readInt(segment, offset); length > 0; length = readInt(segment, offset)) {
+            offset += Integer.BYTES + length + Long.BYTES;
+        }
+        return offset;
+    }
+
+    private static int readInt(Path file, int offset) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (offset + Integer.BYTES > channel.size()) {
+                return 0;
+            }
+            channel.read(buffer, offset);
+        }
+        return buffer.getInt(0);
+    }
+
+    private List<Path> listSegments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("queue-")).sorted().toList();
+        }
+    }
+
+    private static String getUrl(int i) {
+        return "https://site.test/page/" + i;
+    }
+
+    private static Instant getLastModified(int i) {
+        return i % 3 == 0 ? null : Instant.ofEpochMilli(1_600_000_000_000L + i * 1000L);
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка множества отпечатков: увеличение таблицы при заполнении и чтение записанного множества.
+ */
+class FingerprintSetTest {
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int VALUES = 5000;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Таблица начального размера несколько раз удваивается: все добавленные строки остаются в множестве,
+     * файл заменяется таблицей нового размера, а временный файл не остается.
+     */
+    @Test
+    void growKeepsAllValues() throws Exception {
+        Path file = dir.resolve("visited.bin");
+        try (FingerprintSet set = FingerprintSet.create(file, MIN_CAPACITY)) {
+            for (int i = 0; i < VALUES; i++) {
+                assertTrue(set.add(getValue(i)));
+            }
+            assertFalse(set.add(getValue(0)));
+            assertEquals(VALUES, set.size());
+            for (int i = 0; i < VALUES; i++) {
+                assertTrue(set.contains(getValue(i)), getValue(i));
+            }
+            assertFalse(set.contains(getValue(VALUES)));
+            set.force();
+        }
+        assertEquals(16 + 16384L * Long.BYTES, Files.size(file));
+        assertFalse(Files.exists(dir.resolve("visited.bin.tmp")));
+
+        try (FingerprintSet set = FingerprintSet.open(file)) {
+            assertEquals(VALUES, set.size());
+            for (int i = 0; i < VALUES; i++) {
+                assertTrue(set.contains(getValue(i)), getValue(i));
+            }
+            assertTrue(set.add(getValue(VALUES)));
+            assertFalse(set.add(getValue(1)));
+        }
+    }
+
+    @Test
+    void openRejectsTruncatedFile() throws Exception {
+        Path file = dir.resolve("visited.bin");
+        try (FingerprintSet set = FingerprintSet.create(file, MIN_CAPACITY)) {
+            set.add(getValue(0));
+            set.force();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - Long.BYTES);
+        }
+        assertThrows(IOException.class, () -> FingerprintSet.open(file));
+    }
+
+    private static String getValue(int i) {
+        return "https://site.test/страница/" + i;
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import searchengine.config.FetcherSettings;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+import searchengine.model.repository.SiteRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка загрузки страниц с перенаправлениями: страница сохраняется под конечным адресом, если он на том же
+ * сайте, а перенаправление на другой сайт возвращается кодом ответа без документа.
+ * Другой сайт - тот же сервер под адресом 127.0.0.1 вместо localhost.
+ */
+class PageFetcherTest {
+
+    private static HttpServer server;
+    private static PageFetcher pageFetcher;
+    private static String siteUrl;
+    private static String otherSiteUrl;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", PageFetcherTest::handle);
+        server.start();
+        siteUrl = "http://localhost:" + server.getAddress().getPort();
+        otherSiteUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        Site site = new Site();
+        site.setUrl(siteUrl);
+        site.setName("site");
+        SitesList sitesList = new SitesList();
+        sitesList.setSites(List.of(site));
+        pageFetcher = new PageFetcher(new FetcherSettings(), sitesList,
+                new SiteRegistry(sitesList, Mockito.mock(SiteRepository.class)), new SimpleMeterRegistry());
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void redirectWithinSiteUsesTargetUrl() throws IOException {
+        FetchedPage page = pageFetcher.fetch(siteUrl + "/old");
+        assertEquals(200, page.getStatusCode());
+        assertEquals(siteUrl + "/new", page.getUrl());
+        assertTrue(page.isHtml());
+        assertEquals("new", page.getDocument().title());
+    }
+
+    @Test
+    void redirectToAnotherSiteIsNotParsed() throws IOException {
+        FetchedPage page = pageFetcher.fetch(siteUrl + "/away");
+        assertEquals(302, page.getStatusCode());
+        assertEquals(siteUrl + "/away", page.getUrl());
+        assertFalse(page.isHtml());
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/old")) {
+            exchange.getResponseHeaders().set("Location", siteUrl + "/new");
+            exchange.sendResponseHeaders(301, -1);
+        } else if (path.equals("/away")) {
+            exchange.getResponseHeaders().set("Location", otherSiteUrl + "/new");
+            exchange.sendResponseHeaders(302, -1);
+        } else {
+            byte[] body = ("<html><head><title>" + path.substring(1) + "</title></head><body></body></html>")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+}